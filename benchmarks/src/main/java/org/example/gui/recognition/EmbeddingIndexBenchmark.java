@@ -0,0 +1,102 @@
+package org.example.gui.recognition;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a 1:N search in the {@link EmbeddingIndex} with SFace-sized embeddings, for a single query and
+ * for a batch of queries as the continuous login sends them. Every query is a noisy copy of an enrolled
+ * embedding, so the quantized scan is followed by a real re-rank.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class EmbeddingIndexBenchmark {
+
+    private static final int DIMENSION = 128;
+    private static final int EMBEDDINGS_PER_USER = 5;
+    private static final int QUERIES = 64;
+    private static final int BATCH_SIZE = 8;
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    private EmbeddingIndex index;
+    private float[][] queries;
+    private List<List<float[]>> batches;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        index = new EmbeddingIndex(DIMENSION, EmbeddingIndex.Metric.COSINE, 0.363f);
+        float[][] enrolled = new float[rows][];
+        for (int user = 0; user < rows / EMBEDDINGS_PER_USER; user++) {
+            List<float[]> embeddings = new ArrayList<>();
+            for (int i = 0; i < EMBEDDINGS_PER_USER; i++) {
+                float[] embedding = gaussian(random);
+                enrolled[user * EMBEDDINGS_PER_USER + i] = embedding;
+                embeddings.add(embedding);
+            }
+            index.replace("user" + user, embeddings);
+        }
+
+        queries = new float[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            float[] query = enrolled[random.nextInt(rows)].clone();
+            for (int j = 0; j < DIMENSION; j++) {
+                query[j] += 0.3f * (float) random.nextGaussian();
+            }
+            queries[i] = query;
+        }
+        batches = new ArrayList<>();
+        for (int i = 0; i < QUERIES; i += BATCH_SIZE) {
+            batches.add(List.of(queries).subList(i, i + BATCH_SIZE));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        index.close();
+    }
+
+    @Benchmark
+    public Optional<Match> bestMatch() {
+        next = (next + 1) % QUERIES;
+        return index.bestMatch(queries[next]);
+    }
+
+    @Benchmark
+    public List<Optional<Match>> bestMatches() {
+        next = (next + 1) % batches.size();
+        return index.bestMatches(batches.get(next));
+    }
+
+    private static float[] gaussian(Random random) {
+        float[] embedding = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            embedding[i] = (float) random.nextGaussian();
+        }
+        return embedding;
+    }
+}
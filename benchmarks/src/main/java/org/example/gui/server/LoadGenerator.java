@@ -0,0 +1,141 @@
+package org.example.gui.server;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.example.gui.metrics.LatencyHistogram;
+import org.example.gui.util.SyntheticFrames;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imencode;
+
+/**
+ * Replays login frames against a {@link RecognitionServer} from many simulated kiosks at once and reports
+ * throughput, shed requests and latency percentiles, followed by the server's own statistics.
+ * <pre>
+ * LoadGenerator &lt;server url&gt; &lt;frame directory | synthetic&gt; [kiosks] [seconds]
+ * </pre>
+ * Each kiosk is a virtual thread sending one frame after the other, taking the frames of the directory
+ * (JPEG or PNG, e.g. {@code dataset/alice}) in turn. Run it from the benchmarks class path:
+ * <pre>
+ * mvn -f benchmarks/pom.xml exec:exec -Dbenchmark.main=org.example.gui.server.LoadGenerator \
+ *     -Djmh.args="http://127.0.0.1:8080 dataset/alice 32 30"
+ * </pre>
+ */
+public final class LoadGenerator {
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: LoadGenerator <server url> <frame directory | synthetic> [kiosks] [seconds]");
+            System.exit(2);
+        }
+        URI server = URI.create(args[0].endsWith("/") ? args[0] : args[0] + "/");
+        List<byte[]> frames = loadFrames(args[1]);
+        int kiosks = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        Duration duration = Duration.ofSeconds(args.length > 3 ? Long.parseLong(args[3]) : 30);
+
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder recognized = new LongAdder();
+        LongAdder rejected = new LongAdder();
+        LongAdder shed = new LongAdder();
+        LongAdder failed = new LongAdder();
+        AtomicInteger nextFrame = new AtomicInteger();
+
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        try (ExecutorService kioskThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int kiosk = 0; kiosk < kiosks; kiosk++) {
+                kioskThreads.execute(() -> {
+                    while (System.nanoTime() < end) {
+                        byte[] frame = frames.get(Math.floorMod(nextFrame.getAndIncrement(), frames.size()));
+                        HttpRequest request = HttpRequest.newBuilder(server.resolve("login"))
+                                .timeout(Duration.ofSeconds(30))
+                                .POST(HttpRequest.BodyPublishers.ofByteArray(frame))
+                                .build();
+                        long sent = System.nanoTime();
+                        try {
+                            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                            latency.record(System.nanoTime() - sent);
+                            if (response.statusCode() == 503) {
+                                shed.increment();
+                                Thread.sleep(100);
+                            } else if (response.statusCode() != 200) {
+                                failed.increment();
+                            } else if (response.body().contains("\"success\": true")) {
+                                recognized.increment();
+                            } else {
+                                rejected.increment();
+                            }
+                        } catch (IOException e) {
+                            failed.increment();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                });
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        long answered = recognized.sum() + rejected.sum();
+        System.out.printf(Locale.ROOT, "%d kiosks, %.1f s: %.1f answers/s (%d recognized, %d not), %d shed,"
+                        + " %d failed%n", kiosks, seconds, answered / seconds, recognized.sum(), rejected.sum(),
+                shed.sum(), failed.sum());
+        if (snapshot.count() > 0) {
+            System.out.printf(Locale.ROOT, "latency p50 %.1f ms, p90 %.1f ms, p99 %.1f ms%n",
+                    snapshot.percentile(50) / 1e6, snapshot.percentile(90) / 1e6, snapshot.percentile(99) / 1e6);
+        }
+        HttpResponse<String> stats = client.send(HttpRequest.newBuilder(server.resolve("stats")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        System.out.println("server " + stats.body().strip());
+    }
+
+    private static List<byte[]> loadFrames(String source) throws IOException {
+        if ("synthetic".equals(source)) {
+            try (Mat frame = SyntheticFrames.create("720p"); BytePointer encoded = new BytePointer()) {
+                imencode(".jpg", frame, encoded);
+                byte[] bytes = new byte[(int) encoded.limit()];
+                encoded.get(bytes);
+                return List.of(bytes);
+            }
+        }
+
+        List<byte[]> frames = new ArrayList<>();
+        try (Stream<Path> files = Files.list(Path.of(source))) {
+            for (Path file : files.sorted().toList()) {
+                String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+                if (name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png")) {
+                    frames.add(Files.readAllBytes(file));
+                }
+            }
+        }
+        if (frames.isEmpty()) {
+            throw new IOException("No JPEG or PNG frames in " + source);
+        }
+        return frames;
+    }
+}
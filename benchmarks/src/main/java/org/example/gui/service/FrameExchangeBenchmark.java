@@ -0,0 +1,106 @@
+package org.example.gui.service;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.example.gui.util.SyntheticFrames;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the {@link CameraService} frame hand-off: readers lease the latest frame from a
+ * {@link FrameExchange} while a producer thread publishes camera-sized frames as fast as it can, which is
+ * harsher than a real 30 fps camera.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameExchangeBenchmark {
+
+    @Param({"480p", "720p", "1080p"})
+    public String resolution;
+
+    private FrameExchange exchange;
+    private Mat source;
+    private Thread producer;
+    private volatile boolean running;
+
+    @Setup(Level.Trial)
+    public void setUp() throws InterruptedException {
+        source = SyntheticFrames.create(resolution);
+        exchange = new FrameExchange();
+        running = true;
+        producer = new Thread(this::produce, "BenchmarkProducerThread");
+        producer.setDaemon(true);
+        producer.start();
+
+        while (exchange.latestSequence() == 0) {
+            Thread.sleep(1);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        running = false;
+        producer.join();
+        exchange.close();
+        source.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long oneReader() {
+        return lease();
+    }
+
+    @Benchmark
+    @Threads(2)
+    public long twoReaders() {
+        return lease();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long fourReaders() {
+        return lease();
+    }
+
+    private long lease() {
+        Optional<FrameLease> frame = exchange.acquireLatest();
+        if (frame.isEmpty()) {
+            return -1;
+        }
+        try (FrameLease lease = frame.get()) {
+            // Touch the native frame so the lease is not reduced to a pure counter exchange.
+            return lease.sequence() + lease.frame().cols();
+        }
+    }
+
+    private void produce() {
+        while (running) {
+            Mat slot = exchange.beginWrite();
+            if (slot == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            source.copyTo(slot);
+            exchange.endWrite(slot, true, System.nanoTime());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.example.gui.service;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.example.gui.service.PythonProcessService.PythonResult;
+import org.example.gui.util.SyntheticFrames;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round-trip latency of a login request through {@link PythonProcessService} against a stub script that
+ * answers immediately: the frame is published to the {@link SharedFrameTransport} and the command is served
+ * either by the persistent {@link PythonWorker} or by a one-shot interpreter. Requires {@code python3}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PythonProcessServiceBenchmark {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    @Param({"480p", "720p", "1080p"})
+    public String resolution;
+
+    private Path directory;
+    private List<String> launchCommand;
+    private Mat frame;
+    private SharedFrameTransport transport;
+    private PythonProcessService workerService;
+    private PythonProcessService oneShotService;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("python-benchmark");
+        Path script = directory.resolve("stub_face_app.py");
+        try (InputStream stub = PythonProcessServiceBenchmark.class.getResourceAsStream("/stub_face_app.py")) {
+            if (stub == null) {
+                throw new IOException("stub_face_app.py is missing from the benchmark resources");
+            }
+            Files.copy(stub, script, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        launchCommand = List.of("python3", script.toString());
+        frame = SyntheticFrames.create(resolution);
+        transport = new SharedFrameTransport(directory.resolve("frames.bin"));
+        workerService = new PythonProcessService(new PythonWorker(launchCommand, REQUEST_TIMEOUT));
+        oneShotService = new PythonProcessService();
+        workerService.warmUp();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        workerService.shutdown();
+        oneShotService.shutdown();
+        transport.close();
+        frame.close();
+        try (var files = Files.list(directory)) {
+            for (Path path : files.toList()) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public PythonResult worker() throws Exception {
+        return roundTrip(workerService);
+    }
+
+    @Benchmark
+    public PythonResult oneShot() throws Exception {
+        return roundTrip(oneShotService);
+    }
+
+    private PythonResult roundTrip(PythonProcessService service) throws Exception {
+        SharedFrameTransport.Published published = transport.publish(frame, ++sequence, System.nanoTime());
+        List<String> command = new ArrayList<>(launchCommand);
+        command.add("login");
+        command.addAll(transport.arguments(List.of(published)));
+
+        CompletableFuture<PythonResult> result = new CompletableFuture<>();
+        service.executeAsync(command, result::complete);
+        PythonResult response = result.get(REQUEST_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        if (response.exitCode() != 0) {
+            throw new IllegalStateException("Stub failed: " + response.output());
+        }
+        return response;
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.gui.util;
+
+import javafx.scene.image.Image;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a camera frame into a JavaFX image with {@link FrameUtils#matToImage}. The
+ * {@link PreviewRenderer} path is not covered because it must run on the FX application thread.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameConversionBenchmark {
+
+    @Param({"480p", "720p", "1080p"})
+    public String resolution;
+
+    private Mat frame;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        frame = SyntheticFrames.create(resolution);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        frame.close();
+    }
+
+    @Benchmark
+    public Image matToImage() {
+        return FrameUtils.matToImage(frame);
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.gui.util;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.example.gui.service.DatasetWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cost of persisting one enrollment image: the synchronous {@link FrameUtils#saveFrame} against a
+ * single-frame {@link DatasetWriter} batch without fsync. Files go to a temporary directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrameSaveBenchmark {
+
+    @Param({"480p", "720p", "1080p"})
+    public String resolution;
+
+    private Mat frame;
+    private Path directory;
+    private Path target;
+    private DatasetWriter writer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        frame = SyntheticFrames.create(resolution);
+        directory = Files.createTempDirectory("frame-save-benchmark");
+        target = directory.resolve("img_1.jpg");
+        writer = new DatasetWriter(1, 4, DatasetWriter.Format.JPEG, DatasetWriter.BackpressurePolicy.BLOCK,
+                Duration.ofSeconds(5), false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        writer.close();
+        frame.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public Path saveFrame() {
+        FrameUtils.saveFrame(frame, target);
+        return target;
+    }
+
+    @Benchmark
+    public List<Path> datasetWriter() throws Exception {
+        DatasetWriter.Batch batch = writer.beginBatch(directory);
+        batch.submit(frame.clone(), "img_1");
+        return batch.complete().get();
+    }
+}
@@ -0,0 +1,35 @@
+package org.example.gui.util;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.util.Random;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+
+/**
+ * Camera-like test frames so the benchmarks run without a webcam.
+ */
+public final class SyntheticFrames {
+
+    private SyntheticFrames() {
+    }
+
+    /**
+     * Creates a BGR frame filled with seeded random noise, the worst case for JPEG encoding.
+     *
+     * @param resolution one of {@code 480p}, {@code 720p} or {@code 1080p}
+     * @return a new frame the caller must close
+     */
+    public static Mat create(String resolution) {
+        Mat frame = switch (resolution) {
+            case "480p" -> new Mat(480, 640, CV_8UC3);
+            case "720p" -> new Mat(720, 1280, CV_8UC3);
+            case "1080p" -> new Mat(1080, 1920, CV_8UC3);
+            default -> throw new IllegalArgumentException("Unknown resolution: " + resolution);
+        };
+        byte[] pixels = new byte[(int) (frame.total() * frame.elemSize())];
+        new Random(42).nextBytes(pixels);
+        frame.data().put(pixels);
+        return frame;
+    }
+}
@@ -0,0 +1,34 @@
+"""Stand-in for face_app.py that answers immediately, so benchmarks measure only the Java/Python round trip.
+
+Supports the one-shot command line and the length-prefixed worker protocol used by PythonWorker.
+"""
+import struct
+import sys
+
+
+def handle(arguments):
+    return 0, "ok " + " ".join(arguments[:1])
+
+
+def serve():
+    stdin = sys.stdin.buffer
+    stdout = sys.stdout.buffer
+    while True:
+        header = stdin.read(8)
+        if len(header) < 8:
+            return
+        request_id, length = struct.unpack(">ii", header)
+        arguments = stdin.read(length).decode("utf-8").split("\0")
+        status, output = handle(arguments)
+        payload = output.encode("utf-8")
+        stdout.write(struct.pack(">iii", request_id, status, len(payload)) + payload)
+        stdout.flush()
+
+
+if __name__ == "__main__":
+    if sys.argv[1:2] == ["worker"]:
+        serve()
+    else:
+        status, output = handle(sys.argv[1:])
+        print(output)
+        sys.exit(status)
@@ -4,6 +4,9 @@ module org.example.gui {
     requires javafx.swing;
     requires java.desktop;
     requires org.bytedeco.opencv;
+    requires jdk.incubator.vector;
+    requires jdk.jfr;
+    requires jdk.httpserver;
     opens org.example.gui.controller to javafx.fxml;
     opens org.example.gui to javafx.fxml;
     exports org.example.gui;
@@ -1,22 +1,67 @@
 package org.example.gui;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.layout.StackPane;
 import javafx.stage.Stage;
+import org.example.gui.controller.WebcamController;
+import org.example.gui.metrics.StartupTimeline;
+import org.example.gui.service.StartupOrchestrator;
 
-import java.io.IOException;
-
+/**
+ * Shows the window right away and leaves everything slow to a {@link StartupOrchestrator}: it loads the
+ * OpenCV natives and the view in the background, and the controller then builds its services and warms up
+ * the camera and the recognizer there too. The JavaFX thread only swaps in the loaded view. The milestones
+ * are recorded in the shared {@link StartupTimeline}.
+ */
 public class HelloApplication extends Application {
+
+    private final StartupTimeline timeline = StartupTimeline.shared();
+    private StartupOrchestrator orchestrator;
+    private WebcamController controller;
+
     @Override
-    public void start(Stage stage) throws IOException {
-        FXMLLoader fxmlLoader = new FXMLLoader(HelloApplication.class.getResource("hello-view.fxml"));
-        Scene scene = new Scene(fxmlLoader.load(), 800, 800);
+    public void start(Stage stage) {
+        orchestrator = new StartupOrchestrator(timeline);
+        orchestrator.preloadNatives();
+
+        Scene scene = new Scene(new StackPane(new ProgressIndicator()), 800, 800);
         stage.setTitle("Face Recognition");
         stage.setMinWidth(900);
         stage.setMinHeight(680);
         stage.setScene(scene);
         stage.show();
         stage.centerOnScreen();
+        timeline.mark(StartupTimeline.Milestone.WINDOW_SHOWN);
+
+        orchestrator.supply(StartupTimeline.Milestone.VIEW_LOADED, () -> {
+            FXMLLoader fxmlLoader = new FXMLLoader(HelloApplication.class.getResource("hello-view.fxml"));
+            fxmlLoader.load();
+            return fxmlLoader;
+        }).whenComplete((fxmlLoader, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                scene.setRoot(new StackPane(new Label("Cannot load the view: " + cause.getMessage())));
+                return;
+            }
+            scene.setRoot(fxmlLoader.getRoot());
+            controller = fxmlLoader.getController();
+            controller.warmUp(orchestrator);
+            orchestrator.completion();
+        }));
+    }
+
+    @Override
+    public void stop() {
+        if (orchestrator != null) {
+            orchestrator.close();
+        }
+        if (controller != null) {
+            controller.close();
+        }
     }
-}
\ No newline at end of file
+}
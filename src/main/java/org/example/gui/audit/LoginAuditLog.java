@@ -0,0 +1,629 @@
+package org.example.gui.audit;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.IntPointer;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Size;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMWRITE_JPEG_QUALITY;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imencode;
+import static org.bytedeco.opencv.global.opencv_imgproc.INTER_AREA;
+import static org.bytedeco.opencv.global.opencv_imgproc.resize;
+
+/**
+ * Append-only record of every login attempt: when it happened, its outcome and score, and a small JPEG of
+ * the frame it was made on.
+ * <p>
+ * {@link #record} never blocks and never touches the disk. Attempts enter a lock-free queue whose size is
+ * bounded by a counter; when it is full, e.g. because the disk stalls, the attempt is dropped and counted
+ * instead. A single writer thread drains the queue, encodes the thumbnails and appends each batch to the
+ * current segment file with one write.
+ * <p>
+ * A segment ({@code segment-<creation millis>.audit}) starts with a 16-byte header ({@code int magic 'AUD1',
+ * int version, long creation millis}) followed by little-endian records:
+ * <pre>
+ * int length, int crc32 of the body, body: long epoch millis, byte success, float score,
+ * short + UTF-8 username, short + UTF-8 message, int + JPEG thumbnail
+ * </pre>
+ * A segment is sealed and fsynced once it reaches the size limit or its lifetime, and its time range is
+ * then appended to {@code segments.idx}, so that {@link #query} only reads the segments overlapping the
+ * requested range. A torn record at the end of a segment is detected by its length or checksum and
+ * ignored; segments missing from the index after a crash are scanned and indexed when the log is opened.
+ */
+public class LoginAuditLog implements AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(LoginAuditLog.class.getName());
+
+    private static final int MAGIC = 0x31445541;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_PREFIX = 8;
+    private static final int JPEG_QUALITY = 80;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".audit";
+    private static final String INDEX_FILE = "segments.idx";
+
+    private final Path directory;
+    private final Settings settings;
+    private final ConcurrentLinkedQueue<Attempt> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final List<Segment> sealed = new ArrayList<>();
+    private final Thread writer;
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+
+    private volatile boolean running = true;
+    private volatile Path activeFile;
+
+    // Only touched on the writer thread.
+    private final BytePointer encoded = new BytePointer();
+    private final IntPointer jpegParameters = new IntPointer(IMWRITE_JPEG_QUALITY, JPEG_QUALITY);
+    private FileChannel channel;
+    private Segment active;
+
+    private LoginAuditLog(Path directory, Settings settings) {
+        this.directory = directory;
+        this.settings = settings;
+        this.writer = new AuditThreadFactory().newThread(this::run);
+    }
+
+    /**
+     * Opens the log in a directory, creating it if needed, indexes any segment a crash left unsealed and
+     * starts the writer thread. New attempts always go to a new segment.
+     *
+     * @param directory directory holding the segments and their index
+     * @param settings  queue, segment and thumbnail limits
+     * @return the open log
+     * @throws IOException if the directory or the index cannot be read or written
+     */
+    public static LoginAuditLog open(Path directory, Settings settings) throws IOException {
+        LoginAuditLog log = new LoginAuditLog(directory, settings);
+        Files.createDirectories(directory);
+        log.loadIndex();
+        log.writer.start();
+        return log;
+    }
+
+    /**
+     * Downscales a frame to the thumbnail width, e.g. the analysis frame of a lease, so that the attempt
+     * holds only a few kilobytes while it waits to be written. Cheap enough for any thread.
+     *
+     * @param frame BGR frame
+     * @return a new thumbnail owned by the caller
+     */
+    public Mat thumbnailOf(Mat frame) {
+        Mat thumbnail = new Mat();
+        int width = Math.min(settings.thumbnailWidth(), frame.cols());
+        int height = Math.max(1, frame.rows() * width / Math.max(1, frame.cols()));
+        try (Size size = new Size(Math.max(1, width), height)) {
+            resize(frame, thumbnail, size, 0, 0, INTER_AREA);
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Queues an attempt for writing without blocking.
+     *
+     * @param attempt the attempt; ownership of its thumbnail passes to the log
+     * @return {@code true} if it was queued, {@code false} if it was dropped because the queue is full or
+     *         the log is closed
+     */
+    public boolean record(Attempt attempt) {
+        if (!running || queued.incrementAndGet() > settings.queueCapacity()) {
+            queued.decrementAndGet();
+            dropped.increment();
+            attempt.close();
+            return false;
+        }
+        queue.add(attempt);
+        recorded.increment();
+        LockSupport.unpark(writer);
+        return true;
+    }
+
+    /**
+     * Reads the attempts of a time range. Segments that do not overlap the range are not opened.
+     *
+     * @param from start of the range, inclusive
+     * @param to   end of the range, exclusive
+     * @return the attempts written so far in the range, oldest first
+     * @throws IOException if a segment cannot be read
+     */
+    public List<Entry> query(Instant from, Instant to) throws IOException {
+        long fromMillis = epochMillis(from);
+        long toMillis = epochMillis(to);
+        List<Path> files = new ArrayList<>();
+        synchronized (sealed) {
+            for (Segment segment : sealed) {
+                if (segment.records > 0 && segment.lastMillis >= fromMillis && segment.firstMillis < toMillis) {
+                    files.add(directory.resolve(segment.name));
+                }
+            }
+            // Read under the lock, so a segment sealed meanwhile is found in exactly one place.
+            if (activeFile != null) {
+                files.add(activeFile);
+            }
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        for (Path file : files) {
+            for (Entry entry : readSegment(file)) {
+                long millis = entry.timestamp().toEpochMilli();
+                if (millis >= fromMillis && millis < toMillis) {
+                    entries.add(entry);
+                }
+            }
+        }
+        entries.sort(Comparator.comparing(Entry::timestamp));
+        return entries;
+    }
+
+    /**
+     * Returns the log's counters.
+     *
+     * @return the current statistics
+     */
+    public Stats stats() {
+        int segments;
+        synchronized (sealed) {
+            segments = sealed.size() + (activeFile != null ? 1 : 0);
+        }
+        return new Stats(recorded.sum(), dropped.sum(), written.sum(), writeFailures.sum(), queued.get(), segments);
+    }
+
+    /**
+     * Stops accepting attempts, writes the ones still queued and seals the current segment.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Attempt> batch = new ArrayList<>(settings.maxBatch());
+        try {
+            while (running || !queue.isEmpty()) {
+                Attempt attempt;
+                while (batch.size() < settings.maxBatch() && (attempt = queue.poll()) != null) {
+                    queued.decrementAndGet();
+                    batch.add(attempt);
+                }
+                if (batch.isEmpty()) {
+                    rotateIfExpired();
+                    // Sleep until the next attempt, or until the current segment is due to be sealed.
+                    long lifetime = settings.segmentDuration().toMillis();
+                    long remaining = active == null ? lifetime
+                            : active.createdMillis + lifetime - System.currentTimeMillis();
+                    LockSupport.parkNanos(this, Duration.ofMillis(Math.max(1, remaining)).toNanos());
+                    continue;
+                }
+                write(batch);
+                batch.forEach(Attempt::close);
+                batch.clear();
+            }
+        } finally {
+            try {
+                seal();
+            } catch (IOException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "Could not seal audit segment " + activeFile, e);
+            }
+            encoded.close();
+            jpegParameters.close();
+        }
+    }
+
+    private void write(List<Attempt> batch) {
+        List<byte[]> records = new ArrayList<>(batch.size());
+        int size = 0;
+        for (Attempt attempt : batch) {
+            byte[] record = encode(attempt);
+            records.add(record);
+            size += record.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        records.forEach(buffer::put);
+        buffer.flip();
+
+        try {
+            if (active == null) {
+                startSegment();
+            }
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            active.size += size;
+            active.records += batch.size();
+            for (Attempt attempt : batch) {
+                long millis = attempt.timestamp().toEpochMilli();
+                active.firstMillis = Math.min(active.firstMillis, millis);
+                active.lastMillis = Math.max(active.lastMillis, millis);
+            }
+            written.add(batch.size());
+            if (active.size >= settings.maxSegmentBytes()) {
+                seal();
+            } else {
+                rotateIfExpired();
+            }
+        } catch (IOException e) {
+            writeFailures.add(batch.size());
+            LOGGER.log(System.Logger.Level.WARNING, "Could not write " + batch.size() + " audit records", e);
+            // Continue in a fresh segment; the failed one keeps whatever reached the disk.
+            sealOrAbandon();
+        }
+    }
+
+    private byte[] encode(Attempt attempt) {
+        byte[] thumbnail = new byte[0];
+        Mat frame = attempt.thumbnail();
+        if (frame != null && !frame.empty()) {
+            Mat scaled = frame.cols() > settings.thumbnailWidth() ? thumbnailOf(frame) : frame;
+            try {
+                if (imencode(".jpg", scaled, encoded, jpegParameters)) {
+                    thumbnail = new byte[(int) encoded.limit()];
+                    encoded.get(thumbnail);
+                }
+            } finally {
+                if (scaled != frame) {
+                    scaled.close();
+                }
+            }
+        }
+        byte[] username = utf8(attempt.username());
+        byte[] message = utf8(attempt.message());
+
+        int bodySize = Long.BYTES + 1 + Float.BYTES + Short.BYTES + username.length + Short.BYTES + message.length
+                + Integer.BYTES + thumbnail.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_PREFIX + bodySize).order(ByteOrder.LITTLE_ENDIAN);
+        record.putInt(bodySize).putInt(0)
+                .putLong(attempt.timestamp().toEpochMilli())
+                .put((byte) (attempt.success() ? 1 : 0))
+                .putFloat((float) attempt.score())
+                .putShort((short) username.length).put(username)
+                .putShort((short) message.length).put(message)
+                .putInt(thumbnail.length).put(thumbnail);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_PREFIX, bodySize);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+        return record.array();
+    }
+
+    private static byte[] utf8(String value) {
+        if (value == null) {
+            return new byte[0];
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= Short.MAX_VALUE) {
+            return bytes;
+        }
+        return new String(bytes, 0, Short.MAX_VALUE, StandardCharsets.UTF_8).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void startSegment() throws IOException {
+        long created = System.currentTimeMillis();
+        Path file = directory.resolve(segmentName(created));
+        while (Files.exists(file)) {
+            file = directory.resolve(segmentName(++created));
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC).putInt(VERSION).putLong(created);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        active = new Segment(file.getFileName().toString(), created);
+        active.size = HEADER_SIZE;
+        activeFile = file;
+    }
+
+    private void rotateIfExpired() {
+        if (active != null && System.currentTimeMillis() - active.createdMillis
+                >= settings.segmentDuration().toMillis()) {
+            sealOrAbandon();
+        }
+    }
+
+    /**
+     * Seals the current segment or, if that fails, drops it so that the next batch starts a new one. A
+     * dropped segment is not in the index; it is rescanned and indexed when the log is next opened.
+     */
+    private void sealOrAbandon() {
+        try {
+            seal();
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Could not seal audit segment " + activeFile, e);
+            channel = null;
+            active = null;
+            synchronized (sealed) {
+                activeFile = null;
+            }
+        }
+    }
+
+    /**
+     * Fsyncs and closes the current segment and records its time range in the index. The next batch starts
+     * a new segment.
+     */
+    private void seal() throws IOException {
+        if (active == null) {
+            return;
+        }
+        Segment segment = active;
+        FileChannel segmentChannel = channel;
+        channel = null;
+        active = null;
+        try (segmentChannel) {
+            segmentChannel.force(true);
+        }
+        appendToIndex(segment);
+        synchronized (sealed) {
+            sealed.add(segment);
+            activeFile = null;
+        }
+    }
+
+    private void appendToIndex(Segment segment) throws IOException {
+        String line = String.format(Locale.ROOT, "%s %d %d %d%n", segment.name, segment.firstMillis,
+                segment.lastMillis, segment.records);
+        try (FileChannel index = FileChannel.open(directory.resolve(INDEX_FILE), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer bytes = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                index.write(bytes);
+            }
+            index.force(true);
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        Set<String> indexed = new HashSet<>();
+        Path indexFile = directory.resolve(INDEX_FILE);
+        if (Files.exists(indexFile)) {
+            for (String line : Files.readAllLines(indexFile, StandardCharsets.UTF_8)) {
+                String[] fields = line.strip().split(" ");
+                if (fields.length != 4) {
+                    // A torn last line; the segment is rescanned below.
+                    continue;
+                }
+                try {
+                    Segment segment = new Segment(fields[0], 0);
+                    segment.firstMillis = Long.parseLong(fields[1]);
+                    segment.lastMillis = Long.parseLong(fields[2]);
+                    segment.records = Long.parseLong(fields[3]);
+                    if (indexed.add(segment.name)) {
+                        sealed.add(segment);
+                    }
+                } catch (NumberFormatException e) {
+                    // Same as a torn line.
+                }
+            }
+        }
+
+        List<Path> unindexed;
+        try (Stream<Path> files = Files.list(directory)) {
+            unindexed = files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX) && !indexed.contains(name);
+            }).sorted().toList();
+        }
+        for (Path file : unindexed) {
+            Segment segment = new Segment(file.getFileName().toString(), 0);
+            for (Entry entry : readSegment(file)) {
+                long millis = entry.timestamp().toEpochMilli();
+                segment.firstMillis = Math.min(segment.firstMillis, millis);
+                segment.lastMillis = Math.max(segment.lastMillis, millis);
+                segment.records++;
+            }
+            LOGGER.log(System.Logger.Level.INFO, "Indexed audit segment " + segment.name + " left open by a crash");
+            appendToIndex(segment);
+            sealed.add(segment);
+        }
+    }
+
+    private static List<Entry> readSegment(Path file) throws IOException {
+        ByteBuffer data;
+        try (FileChannel segment = FileChannel.open(file, StandardOpenOption.READ)) {
+            data = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE, segment.size()));
+            while (data.hasRemaining() && segment.read(data) >= 0) {
+                // Read the whole snapshot of the file.
+            }
+        }
+        data.flip().order(ByteOrder.LITTLE_ENDIAN);
+
+        List<Entry> entries = new ArrayList<>();
+        if (data.remaining() < HEADER_SIZE || data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            return entries;
+        }
+        data.position(HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        while (data.remaining() >= RECORD_PREFIX) {
+            int bodySize = data.getInt(data.position());
+            int checksum = data.getInt(data.position() + Integer.BYTES);
+            if (bodySize <= 0 || bodySize > data.remaining() - RECORD_PREFIX) {
+                break;
+            }
+            crc.reset();
+            crc.update(data.array(), data.position() + RECORD_PREFIX, bodySize);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            data.position(data.position() + RECORD_PREFIX);
+            Instant timestamp = Instant.ofEpochMilli(data.getLong());
+            boolean success = data.get() != 0;
+            float score = data.getFloat();
+            String username = readString(data, Short.toUnsignedInt(data.getShort()));
+            String message = readString(data, Short.toUnsignedInt(data.getShort()));
+            byte[] thumbnail = new byte[data.getInt()];
+            data.get(thumbnail);
+            entries.add(new Entry(timestamp, success, username.isEmpty() ? null : username, score,
+                    message.isEmpty() ? null : message, thumbnail));
+        }
+        return entries;
+    }
+
+    private static String readString(ByteBuffer data, int length) {
+        String value = new String(data.array(), data.position(), length, StandardCharsets.UTF_8);
+        data.position(data.position() + length);
+        return value;
+    }
+
+    /**
+     * Converts a range bound to epoch millis, clamping bounds such as {@link Instant#MAX}.
+     */
+    private static long epochMillis(Instant instant) {
+        try {
+            return instant.toEpochMilli();
+        } catch (ArithmeticException e) {
+            return instant.isBefore(Instant.EPOCH) ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+    }
+
+    private static String segmentName(long createdMillis) {
+        return String.format(Locale.ROOT, "%s%013d%s", SEGMENT_PREFIX, createdMillis, SEGMENT_SUFFIX);
+    }
+
+    /**
+     * A login attempt to record.
+     *
+     * @param timestamp when the attempt was made
+     * @param success   whether a user was recognized
+     * @param username  the recognized user, or {@code null}
+     * @param score     match score, or {@code NaN} if the recognizer did not report one
+     * @param message   why nobody was recognized, or {@code null}
+     * @param thumbnail small BGR image of the frame, see {@link #thumbnailOf}, or {@code null}; owned by the
+     *                  log once recorded
+     */
+    public record Attempt(Instant timestamp, boolean success, String username, double score, String message,
+                          Mat thumbnail) implements AutoCloseable {
+
+        @Override
+        public void close() {
+            if (thumbnail != null) {
+                thumbnail.close();
+            }
+        }
+    }
+
+    /**
+     * A recorded login attempt.
+     *
+     * @param timestamp     when the attempt was made
+     * @param success       whether a user was recognized
+     * @param username      the recognized user, or {@code null}
+     * @param score         match score, or {@code NaN}
+     * @param message       why nobody was recognized, or {@code null}
+     * @param thumbnailJpeg JPEG thumbnail of the frame, empty if there was none
+     */
+    public record Entry(Instant timestamp, boolean success, String username, double score, String message,
+                        byte[] thumbnailJpeg) {
+    }
+
+    /**
+     * Queue, segment and thumbnail limits.
+     *
+     * @param queueCapacity   attempts that may wait for the writer before new ones are dropped
+     * @param maxBatch        attempts appended with one write
+     * @param maxSegmentBytes size at which a segment is sealed
+     * @param segmentDuration age at which a segment is sealed
+     * @param thumbnailWidth  width of the stored thumbnails
+     */
+    public record Settings(int queueCapacity, int maxBatch, long maxSegmentBytes, Duration segmentDuration,
+                           int thumbnailWidth) {
+
+        public static Settings defaults() {
+            return new Settings(256, 64, 16L << 20, Duration.ofDays(1), 96);
+        }
+
+        /**
+         * Reads the settings from {@code audit.*} system properties, using the defaults for missing ones.
+         * The segment duration is given in milliseconds and the segment size in bytes.
+         *
+         * @return the configured settings
+         */
+        public static Settings fromSystemProperties() {
+            Settings defaults = defaults();
+            Long durationMillis = Long.getLong("audit.segmentDuration");
+            return new Settings(
+                    Math.max(1, Integer.getInteger("audit.queueCapacity", defaults.queueCapacity())),
+                    Math.max(1, Integer.getInteger("audit.maxBatch", defaults.maxBatch())),
+                    Math.max(HEADER_SIZE + 1, Long.getLong("audit.maxSegmentBytes", defaults.maxSegmentBytes())),
+                    durationMillis == null || durationMillis <= 0
+                            ? defaults.segmentDuration()
+                            : Duration.ofMillis(durationMillis),
+                    Math.max(16, Integer.getInteger("audit.thumbnailWidth", defaults.thumbnailWidth())));
+        }
+    }
+
+    /**
+     * Counters of a log. {@code queued} is a gauge.
+     *
+     * @param recorded      attempts queued
+     * @param dropped       attempts dropped because the queue was full
+     * @param written       attempts appended to a segment
+     * @param writeFailures attempts lost to write errors
+     * @param queued        attempts waiting for the writer
+     * @param segments      segment files, including the one being written
+     */
+    public record Stats(long recorded, long dropped, long written, long writeFailures, int queued, int segments) {
+    }
+
+    /**
+     * Name and time range of a segment file.
+     */
+    private static final class Segment {
+
+        private final String name;
+        private final long createdMillis;
+        private long firstMillis = Long.MAX_VALUE;
+        private long lastMillis = Long.MIN_VALUE;
+        private long records;
+        private long size;
+
+        private Segment(String name, long createdMillis) {
+            this.name = name;
+            this.createdMillis = createdMillis;
+        }
+    }
+
+    private static class AuditThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "LoginAuditWriterThread");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
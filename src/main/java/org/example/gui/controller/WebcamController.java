@@ -1,5 +1,6 @@
 package org.example.gui.controller;
 
+import javafx.animation.AnimationTimer;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.application.Platform;
@@ -20,29 +21,97 @@ import javafx.util.Duration;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import org.bytedeco.opencv.opencv_core.Mat;
+import org.example.gui.audit.LoginAuditLog;
+import org.example.gui.memory.MatPool;
+import org.example.gui.memory.PooledMat;
+import org.example.gui.metrics.MetricsReporter;
+import org.example.gui.metrics.PipelineMetrics;
+import org.example.gui.metrics.StartupTimeline.Milestone;
+import org.example.gui.recognition.EmbeddingIndex;
+import org.example.gui.recognition.EmbeddingStore;
+import org.example.gui.recognition.FaceLocator;
+import org.example.gui.recognition.FaceRecognitionEngine;
+import org.example.gui.recognition.JavaRecognitionBackend;
+import org.example.gui.recognition.RecognitionCache;
+import org.example.gui.service.CameraManager;
 import org.example.gui.service.CameraService;
+import org.example.gui.service.CaptureFormat;
+import org.example.gui.service.ContinuousLoginService;
+import org.example.gui.service.DatasetWriter;
+import org.example.gui.service.DeviceFrameSource;
+import org.example.gui.service.EnrollmentFrameSelector;
+import org.example.gui.service.EnrollmentFrameSelector.FrameScore;
+import org.example.gui.service.EnrollmentFrameSelector.SelectedFrame;
+import org.example.gui.service.FairScheduler;
+import org.example.gui.service.FaceTracker;
+import org.example.gui.service.FrameLease;
+import org.example.gui.service.FrameSource;
 import org.example.gui.service.PythonProcessService;
 import org.example.gui.service.PythonProcessService.PythonResult;
+import org.example.gui.service.PythonWorker;
+import org.example.gui.service.RecognizerEvent;
+import org.example.gui.service.SharedFrameTransport;
+import org.example.gui.service.StartupOrchestrator;
+import org.example.gui.service.SyntheticFrameSource;
+import org.example.gui.service.VideoFileFrameSource;
 import org.example.gui.service.FaceLoginService;
 import org.example.gui.service.FaceLoginService.LoginResult;
-import org.example.gui.util.FrameUtils;
+import org.example.gui.util.PreviewRenderer;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 
 public class WebcamController {
 
+    private static final System.Logger LOGGER = System.getLogger(WebcamController.class.getName());
     private static final int NUM_PICTURES = 5;
     private static final int CAMERA_DEVICE_INDEX = 0;
+    private static final List<Integer> CAMERA_DEVICES = cameraDevices();
+    private static final int RECOGNITION_THREADS = Integer.getInteger("recognition.threads",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+    private static final int GRID_CELL_WIDTH = 640;
+    private static final int GRID_CELL_HEIGHT = 360;
     private static final int CAMERA_WIDTH = 1280;
     private static final int CAMERA_HEIGHT = 720;
-    private static final Duration FRAME_DURATION = Duration.millis(33);
+    private static final CaptureFormat CAPTURE_FORMAT = CaptureFormat.fromSystemProperties();
+    private static final String FRAME_SOURCE = System.getProperty("camera.source", "device");
+    private static final boolean FRAME_SOURCE_FASTEST = "fastest".equalsIgnoreCase(System.getProperty("camera.pacing"));
+    private static final java.time.Duration ENROLLMENT_BURST_TIMEOUT = java.time.Duration.ofSeconds(8);
+    private static final EnrollmentFrameSelector.Thresholds ENROLLMENT_THRESHOLDS =
+            EnrollmentFrameSelector.Thresholds.fromSystemProperties();
+    private static final int TRACKER_DETECTION_INTERVAL =
+            Integer.getInteger("tracker.detectionInterval", FaceTracker.DEFAULT_DETECTION_INTERVAL);
+    private static final double TRACKER_MIN_CONFIDENCE =
+            doubleProperty("tracker.minConfidence", FaceTracker.DEFAULT_MIN_CONFIDENCE);
+    private static final List<String> FACE_APP_COMMAND = List.of("python3", "face_app.py");
+    private static final Path FRAME_TRANSPORT_FILE = Path.of(System.getProperty("java.io.tmpdir"),
+            "face-app-frames-" + ProcessHandle.current().pid() + ".bin");
+    private static final int LOGIN_SETTLE_FRAMES = 5;
+    private static final long LOGIN_FRAME_TIMEOUT_MS = 3000;
+    private static final Path MODEL_DIRECTORY = Path.of(System.getProperty("face.models", "models"));
+    private static final Path EMBEDDING_STORE_FILE = Path.of("dataset", "embeddings.bin");
+    private static final boolean JAVA_BACKEND_REQUESTED = "java".equalsIgnoreCase(System.getProperty("face.backend"));
+    private static final java.time.Duration PYTHON_REQUEST_TIMEOUT = java.time.Duration.ofSeconds(60);
+    private static final int PYTHON_SLOTS = Integer.getInteger("python.slots", PythonProcessService.DEFAULT_SLOTS);
+    private static final double LOGIN_ACCEPT_SCORE =
+            doubleProperty("login.acceptScore", FaceLoginService.DEFAULT_ACCEPT_SCORE);
+    private static final boolean METRICS_OVERLAY = Boolean.getBoolean("metrics.overlay");
+    private static final java.time.Duration METRICS_LOG_INTERVAL =
+            java.time.Duration.ofSeconds(Long.getLong("metrics.logInterval", 60));
+    private static final Duration METRICS_OVERLAY_INTERVAL = Duration.seconds(1);
+    private static final boolean CONTINUOUS_LOGIN = Boolean.getBoolean("login.continuous");
+    private static final boolean STARTUP_OPEN_CAMERA =
+            Boolean.parseBoolean(System.getProperty("startup.openCamera", "true"));
+    private static final java.time.Duration FIRST_FRAME_TIMEOUT = java.time.Duration.ofSeconds(5);
+    private static final Path AUDIT_DIRECTORY = Path.of(System.getProperty("audit.dir", "audit"));
 
     @FXML
     private ImageView imageView;
@@ -58,18 +127,144 @@ public class WebcamController {
     private Button stopButton;
     @FXML
     private ProgressBar progressBar;
-
-    private final CameraService cameraService = new CameraService();
-    private final PythonProcessService pythonProcessService = new PythonProcessService();
-    private final FaceLoginService faceLoginService = new FaceLoginService(pythonProcessService);
+    @FXML
+    private Label metricsLabel;
+
+    private final PipelineMetrics metrics = new PipelineMetrics();
+    private final MetricsReporter metricsReporter = new MetricsReporter(metrics, METRICS_LOG_INTERVAL);
+    // Logins get an interpreter of their own so they never wait behind an enrollment.
+    private final PythonProcessService pythonProcessService =
+            new PythonProcessService(new PythonWorker(FACE_APP_COMMAND, PYTHON_REQUEST_TIMEOUT),
+                    new PythonWorker(FACE_APP_COMMAND, PYTHON_REQUEST_TIMEOUT), metrics, PYTHON_SLOTS,
+                    PYTHON_REQUEST_TIMEOUT);
     private final ExecutorService captureExecutor = Executors.newSingleThreadExecutor(new CaptureThreadFactory());
-
-    private Timeline displayTimeline;
+    private final PreviewRenderer previewRenderer = new PreviewRenderer();
+
+    // Built in the background by warmUp and attached on the JavaFX thread; the buttons stay disabled until then.
+    private CompletableFuture<Services> services;
+    private CameraManager cameraManager;
+    private CameraService cameraService;
+    private SharedFrameTransport frameTransport;
+    private JavaRecognitionBackend recognitionBackend;
+    private FaceLocator faceLocator;
+    private FaceLoginService faceLoginService;
+    private DatasetWriter datasetWriter;
+    private List<ContinuousLoginService> continuousLoginServices = List.of();
+    private Mat previewGrid;
+    private boolean closed;
+
+    private AnimationTimer previewTimer;
+    private long lastDisplayedSequence;
+    private long lastGridSequence;
+    private long operationStartNanos;
 
     @FXML
     public void initialize() {
         progressBar.setProgress(0);
         stopButton.setDisable(true);
+        captureButton.setDisable(true);
+        loginButton.setDisable(true);
+        statusLabel.setText("Starting...");
+    }
+
+    /**
+     * Opens the cameras, recognizer and audit trail in the background and attaches them once they are
+     * ready, then warms up the recognizer and the frame path and, unless {@code -Dstartup.openCamera=false},
+     * opens the camera so the preview is live by the time the user acts. Called once after the view is
+     * shown; nothing here blocks the JavaFX thread.
+     *
+     * @param orchestrator runs the warm-up tasks and records their milestones
+     */
+    public void warmUp(StartupOrchestrator orchestrator) {
+        orchestrator.warmFramePath();
+        services = orchestrator.supply(Milestone.SERVICES_READY, () -> Services.create(metrics, pythonProcessService));
+        services.whenComplete((ready, error) -> Platform.runLater(() -> attach(ready, error)));
+
+        orchestrator.runAfter(services, Milestone.RECOGNIZER_READY, () -> {
+            JavaRecognitionBackend backend = services.join().recognitionBackend();
+            if (backend != null) {
+                backend.warmUp().join();
+            } else if (!pythonProcessService.warmUp().join()) {
+                throw new IOException("The persistent Python worker did not start");
+            }
+        });
+
+        if (STARTUP_OPEN_CAMERA || CONTINUOUS_LOGIN) {
+            orchestrator.openCamera(services.thenApply(ready -> ready.cameraManager().camera(0).service()),
+                            () -> createFrameSource(0), FIRST_FRAME_TIMEOUT)
+                    .thenRun(() -> Platform.runLater(CONTINUOUS_LOGIN ? this::startContinuousLogin : this::showIdlePreview));
+        }
+    }
+
+    /**
+     * Takes over the services built by {@link #warmUp} and enables the controls. Runs on the JavaFX thread.
+     */
+    private void attach(Services ready, Throwable error) {
+        if (closed) {
+            return;
+        }
+        if (error != null) {
+            Throwable cause = error.getCause() != null ? error.getCause() : error;
+            statusLabel.setText("Startup failed: " + cause.getMessage());
+            return;
+        }
+        cameraManager = ready.cameraManager();
+        cameraService = cameraManager.camera(0).service();
+        frameTransport = ready.frameTransport();
+        recognitionBackend = ready.recognitionBackend();
+        faceLocator = ready.faceLocator();
+        faceLoginService = ready.faceLoginService();
+        datasetWriter = ready.datasetWriter();
+        continuousLoginServices = ready.continuousLoginServices();
+
+        resetControls();
+        statusLabel.setText("Ready");
+        if (METRICS_OVERLAY) {
+            startMetricsOverlay();
+        }
+        // The camera may have been opened before the services were attached.
+        if (CONTINUOUS_LOGIN) {
+            if (cameraService.isRunning()) {
+                startContinuousLogin();
+            }
+        } else {
+            showIdlePreview();
+        }
+    }
+
+    /**
+     * Stops the cameras and recognition and releases everything the controller started, including the
+     * persistent Python worker, so no thread or process outlives the window. Called once when the
+     * application stops.
+     */
+    public void close() {
+        closed = true;
+        stopPreview();
+        captureExecutor.shutdownNow();
+        pythonProcessService.shutdown();
+        if (services != null) {
+            // Services still being built are closed as soon as they are ready.
+            services.thenAccept(Services::close);
+        }
+        metricsReporter.close();
+        previewRenderer.release();
+        if (previewGrid != null) {
+            previewGrid.close();
+        }
+    }
+
+    /**
+     * Shows the camera opened at startup while no capture or login is running.
+     */
+    private void showIdlePreview() {
+        if (cameraService == null || !cameraService.isRunning() || previewTimer != null) {
+            return;
+        }
+        startPreview();
+        stopButton.setDisable(false);
+        statusLabel.setText(cameraService.captureSettings()
+                .map(settings -> "🎥 Camera ready: " + settings)
+                .orElse("🎥 Camera ready"));
     }
 
     @FXML
@@ -80,43 +275,127 @@ public class WebcamController {
             return;
         }
 
-        if (cameraService.isRunning()) {
-            statusLabel.setText("Camera is already running");
-            return;
-        }
-
-        boolean started = cameraService.start(CAMERA_DEVICE_INDEX, CAMERA_WIDTH, CAMERA_HEIGHT);
-        if (!started) {
+        // The camera may already be open from startup.
+        if (!cameraService.isRunning() && !cameraService.start(createFrameSource(0))) {
             statusLabel.setText("Cannot open camera");
             return;
         }
 
-        statusLabel.setText("🎥 Starting camera...");
+        operationStartNanos = System.nanoTime();
+        statusLabel.setText(cameraService.captureSettings()
+                .map(settings -> "🎥 Camera started: " + settings)
+                .orElse("🎥 Starting camera..."));
         captureButton.setDisable(true);
         loginButton.setDisable(true);
         stopButton.setDisable(false);
         progressBar.setProgress(0);
 
-        startDisplayTimeline();
+        startPreview();
         captureExecutor.submit(() -> captureImages(username));
     }
 
     @FXML
     private void onLoginByFace() {
+        if (CONTINUOUS_LOGIN) {
+            startContinuousLogin();
+            return;
+        }
+
         captureButton.setDisable(true);
         loginButton.setDisable(true);
         stopButton.setDisable(true);
         progressBar.setProgress(ProgressIndicator.INDETERMINATE_PROGRESS);
         statusLabel.setText("Recognizing face...");
+        operationStartNanos = System.nanoTime();
+
+        if (!cameraService.isRunning() && !cameraService.start(createFrameSource(0))) {
+            // The recognizer may still be able to open the camera on its own.
+            faceLoginService.loginByFace(event -> Platform.runLater(() -> showRecognizerEvent(event)),
+                    result -> Platform.runLater(() -> handleFaceLoginResult(result)));
+            return;
+        }
+
+        startPreview();
+        captureExecutor.submit(this::loginWithPreviewFrame);
+    }
+
+    private void loginWithPreviewFrame() {
+        try {
+            long deadline = System.currentTimeMillis() + LOGIN_FRAME_TIMEOUT_MS;
+            // Skip the first frames while the camera settles its exposure.
+            while (cameraService.isRunning() && cameraService.latestFrameSequence() < LOGIN_SETTLE_FRAMES
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+
+            Optional<FrameLease> frame = cameraService.acquireLatestFrame();
+            if (frame.isEmpty()) {
+                Platform.runLater(() -> handleFaceLoginResult(LoginResult.failure("No camera frame available")));
+                return;
+            }
+
+            try (FrameLease lease = frame.get()) {
+                faceLoginService.loginByFace(lease, event -> Platform.runLater(() -> showRecognizerEvent(event)),
+                        result -> Platform.runLater(() -> handleFaceLoginResult(result)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Keeps the cameras open and lets a {@link ContinuousLoginService} per camera recognize whoever steps in
+     * front of one, enabled with {@code -Dlogin.continuous=true}. With several cameras in
+     * {@code -Dcamera.devices} the preview shows them side by side. The login button restarts it after the
+     * cameras were stopped.
+     */
+    private void startContinuousLogin() {
+        if (cameraManager == null || continuousLoginServices.stream().anyMatch(ContinuousLoginService::isRunning)) {
+            return;
+        }
+        int running = cameraManager.start(WebcamController::createFrameSource);
+        if (running == 0) {
+            statusLabel.setText("Cannot open camera");
+            return;
+        }
+
+        startPreview();
+        for (ContinuousLoginService continuousLoginService : continuousLoginServices) {
+            continuousLoginService.start(result -> Platform.runLater(() -> handleContinuousLoginResult(result)));
+        }
+        captureButton.setDisable(true);
+        loginButton.setDisable(true);
+        stopButton.setDisable(false);
+        statusLabel.setText(CAMERA_DEVICES.size() == 1
+                ? "Hands-free login: step in front of the camera"
+                : "Hands-free login: step in front of a camera (" + running + " of " + CAMERA_DEVICES.size()
+                        + " running)");
+    }
 
-        faceLoginService.loginByFace(result -> Platform.runLater(() -> handleFaceLoginResult(result)));
+    private void handleContinuousLoginResult(LoginResult result) {
+        if (continuousLoginServices.stream().noneMatch(ContinuousLoginService::isRunning)) {
+            return;
+        }
+        if (result.success()) {
+            statusLabel.setText("Welcome, " + result.username());
+            showWelcomeScreen(result.username());
+        } else {
+            statusLabel.setText(result.message() == null || result.message().isBlank()
+                    ? "Face not recognized or face has not been registered"
+                    : result.message());
+        }
     }
 
     @FXML
     private void stopCamera() {
-        cameraService.stop();
-        stopDisplayTimeline();
+        continuousLoginServices.forEach(ContinuousLoginService::stop);
+        cameraManager.stop();
+        stopPreview();
         imageView.setImage(null);
+        previewRenderer.release();
+        if (previewGrid != null) {
+            previewGrid.release();
+        }
         progressBar.setProgress(0);
         captureButton.setDisable(false);
         loginButton.setDisable(false);
@@ -125,34 +404,46 @@ public class WebcamController {
     }
 
     private void captureImages(String username) {
-        try {
+        FaceTracker faceTracker = faceLocator == null ? null
+                : new FaceTracker(faceLocator, TRACKER_DETECTION_INTERVAL, TRACKER_MIN_CONFIDENCE);
+        List<SelectedFrame> selected = new ArrayList<>();
+        List<Mat> enrollmentFrames = new ArrayList<>();
+        DatasetWriter.Batch batch = null;
+        try (faceTracker; EnrollmentFrameSelector selector =
+                     new EnrollmentFrameSelector(NUM_PICTURES, ENROLLMENT_THRESHOLDS, faceTracker)) {
             Path userDir = Path.of("dataset", username);
             Files.createDirectories(userDir);
 
-            int savedCount = 0;
-            while (cameraService.isRunning() && savedCount < NUM_PICTURES) {
-                Optional<Mat> optionalFrame = cameraService.getLatestFrame();
-                if (optionalFrame.isEmpty()) {
-                    Thread.sleep(40);
+            long deadline = System.nanoTime() + ENROLLMENT_BURST_TIMEOUT.toNanos();
+            long lastSequence = 0;
+            while (cameraService.isRunning() && !selector.isComplete() && System.nanoTime() < deadline) {
+                Optional<FrameLease> optionalFrame = cameraService.acquireLatestFrame();
+                if (optionalFrame.isEmpty() || optionalFrame.get().sequence() == lastSequence) {
+                    optionalFrame.ifPresent(FrameLease::close);
+                    Thread.sleep(10);
                     continue;
                 }
 
-                try (Mat frame = optionalFrame.get()) {
-                    savedCount++;
-                    Path imagePath = userDir.resolve(String.format("img_%d.jpg", savedCount));
-                    FrameUtils.saveFrame(frame, imagePath);
+                FrameScore score;
+                try (FrameLease lease = optionalFrame.get()) {
+                    lastSequence = lease.sequence();
+                    score = selector.offer(lease);
                 }
 
-                int progress = savedCount;
+                int goodFrames = selector.goodFrames();
                 Platform.runLater(() -> {
-                    statusLabel.setText("Saved " + progress + "/" + NUM_PICTURES + " images");
-                    progressBar.setProgress(progress / (double) NUM_PICTURES);
+                    statusLabel.setText(String.format("Good frames %d/%d (sharpness %.0f, face %.2f, pose %.2f)",
+                            goodFrames, NUM_PICTURES, score.sharpness(), score.faceScore(), score.diversity()));
+                    progressBar.setProgress(goodFrames / (double) NUM_PICTURES);
                 });
+            }
 
-                Thread.sleep(750);
+            boolean cancelled = !cameraService.isRunning();
+            if (!cancelled) {
+                selected.addAll(selector.takeSelected());
             }
 
-            boolean completed = savedCount >= NUM_PICTURES;
+            boolean completed = !selected.isEmpty();
             Platform.runLater(() -> {
                 stopCamera();
                 if (completed) {
@@ -161,17 +452,51 @@ public class WebcamController {
                     captureButton.setDisable(true);
                     loginButton.setDisable(true);
                 } else {
-                    statusLabel.setText("Capture cancelled");
+                    statusLabel.setText(cancelled ? "Capture cancelled" : "No usable face found, please try again");
                 }
             });
+            if (!completed) {
+                return;
+            }
 
-            if (completed) {
-                pythonProcessService.executeAsync(
-                        List.of("python3", "face_app.py", "enroll", username),
-                        result -> Platform.runLater(() -> handlePythonCompletion(result, "Enrollment completed"))
-                );
+            batch = datasetWriter.beginBatch(userDir);
+            List<SharedFrameTransport.Published> frameSlots = new ArrayList<>();
+            for (int i = 0; i < selected.size(); i++) {
+                PooledMat pooledFrame = selected.get(i).frame();
+                Mat frame = pooledFrame.mat();
+                if (!batch.submit(frame.clone(), String.format("img_%d", i + 1))) {
+                    throw new IOException("Dataset writer is busy, image " + (i + 1) + " was not saved");
+                }
+                if (recognitionBackend != null && selected.get(i).face() != null) {
+                    // The dataset keeps the full frame; the backend only needs the face.
+                    enrollmentFrames.add(JavaRecognitionBackend.cropFace(frame, selected.get(i).face()));
+                    pooledFrame.close();
+                } else if (recognitionBackend != null) {
+                    enrollmentFrames.add(pooledFrame.detach());
+                } else {
+                    frameSlots.add(frameTransport.publish(frame, selected.get(i).score().sequence(), System.nanoTime()));
+                    pooledFrame.close();
+                }
             }
+            selected.clear();
+
+            batch.complete().whenComplete((paths, error) -> {
+                if (error != null) {
+                    enrollmentFrames.forEach(Mat::close);
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    Platform.runLater(() -> finishEnrollment(false, "Error saving images: " + cause.getMessage()));
+                } else {
+                    startEnrollment(username, enrollmentFrames, frameSlots);
+                }
+            });
+            // The completion callback owns the enrollment frames from here on.
+            batch = null;
         } catch (Exception e) {
+            selected.forEach(frame -> frame.frame().close());
+            if (batch != null) {
+                batch.abandon();
+                enrollmentFrames.forEach(Mat::close);
+            }
             Platform.runLater(() -> {
                 stopCamera();
                 statusLabel.setText("Error saving images: " + e.getMessage());
@@ -179,29 +504,162 @@ public class WebcamController {
         }
     }
 
-    private void startDisplayTimeline() {
-        stopDisplayTimeline();
-        displayTimeline = new Timeline(new KeyFrame(FRAME_DURATION, event -> {
-            Optional<Mat> frame = cameraService.getLatestFrame();
-            if (frame.isPresent()) {
-                try (Mat mat = frame.get()) {
-                    Image fxImage = FrameUtils.matToImage(mat);
-                    imageView.setImage(fxImage);
-                }
+    /**
+     * Hands the saved frames to the recognition backend, or the published transport slots to Python.
+     */
+    private void startEnrollment(String username, List<Mat> enrollmentFrames,
+                                 List<SharedFrameTransport.Published> frameSlots) {
+        if (recognitionBackend != null) {
+            recognitionBackend.enrollAsync(username, enrollmentFrames,
+                    result -> Platform.runLater(() -> finishEnrollment(result.success(), result.message())));
+        } else {
+            List<String> command = new ArrayList<>(FACE_APP_COMMAND);
+            command.add("enroll");
+            command.add(username);
+            command.addAll(frameTransport.arguments(frameSlots));
+            pythonProcessService.executeAsync(
+                    command,
+                    PythonProcessService.Priority.NORMAL,
+                    line -> RecognizerEvent.parse(line)
+                            .ifPresent(event -> Platform.runLater(() -> showRecognizerEvent(event))),
+                    result -> Platform.runLater(() -> handlePythonCompletion(result, "Enrollment completed"))
+            );
+        }
+    }
+
+    /**
+     * Drives the preview from the JavaFX pulse: a frame is converted at most once per pulse, only when the
+     * camera has published a newer one, and not at all while the window is hidden or minimized.
+     */
+    private void startPreview() {
+        stopPreview();
+        lastDisplayedSequence = 0;
+        lastGridSequence = 0;
+        previewTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                renderLatestFrame();
+            }
+        };
+        previewTimer.start();
+    }
+
+    private void renderLatestFrame() {
+        if (cameraManager.runningCameras() > 1) {
+            renderCameraGrid();
+            return;
+        }
+        if (cameraService.latestFrameSequence() == lastDisplayedSequence || !isPreviewVisible()) {
+            return;
+        }
+
+        Optional<FrameLease> frame = cameraService.acquireLatestFrame();
+        if (frame.isEmpty()) {
+            return;
+        }
+        try (FrameLease lease = frame.get()) {
+            if (lastDisplayedSequence > 0 && lease.sequence() > lastDisplayedSequence + 1) {
+                metrics.framesSkipped(lease.sequence() - lastDisplayedSequence - 1);
+            }
+            lastDisplayedSequence = lease.sequence();
+
+            long renderStart = System.nanoTime();
+            Image fxImage = previewRenderer.render(lease.frame());
+            if (imageView.getImage() != fxImage) {
+                imageView.setImage(fxImage);
+            }
+            long displayed = System.nanoTime();
+            metrics.frameDisplayed(lease.sequence(), displayed - renderStart, displayed - lease.timestampNanos());
+        }
+    }
+
+    /**
+     * Shows the cameras side by side, redrawing the grid whenever any of them has a new frame.
+     */
+    private void renderCameraGrid() {
+        long sequence = cameraManager.latestFrameSequence();
+        if (sequence == lastGridSequence || !isPreviewVisible()) {
+            return;
+        }
+        lastGridSequence = sequence;
+
+        if (previewGrid == null) {
+            previewGrid = new Mat();
+        }
+        cameraManager.composite(previewGrid, GRID_CELL_WIDTH, GRID_CELL_HEIGHT);
+        Image fxImage = previewRenderer.render(previewGrid);
+        if (imageView.getImage() != fxImage) {
+            imageView.setImage(fxImage);
+        }
+    }
+
+    private boolean isPreviewVisible() {
+        Scene scene = imageView.getScene();
+        if (scene == null || !(scene.getWindow() instanceof Stage stage)) {
+            return false;
+        }
+        return stage.isShowing() && !stage.isIconified();
+    }
+
+    private void startMetricsOverlay() {
+        metricsLabel.setVisible(true);
+        metricsLabel.setManaged(true);
+        PipelineMetrics.Snapshot[] previous = {metrics.snapshot()};
+        Timeline overlayTimeline = new Timeline(new KeyFrame(METRICS_OVERLAY_INTERVAL, event -> {
+            PipelineMetrics.Snapshot current = metrics.snapshot();
+            StringBuilder text = new StringBuilder(current.since(previous[0]).summary().replace(" | ", "\n"));
+            if (cameraManager.cameras().size() > 1) {
+                cameraManager.stats().forEach(stats -> text.append('\n').append(stats.summary()));
             }
+            metricsLabel.setText(text.toString());
+            previous[0] = current;
         }));
-        displayTimeline.setCycleCount(Timeline.INDEFINITE);
-        displayTimeline.play();
+        overlayTimeline.setCycleCount(Timeline.INDEFINITE);
+        overlayTimeline.play();
     }
 
-    private void stopDisplayTimeline() {
-        if (displayTimeline != null) {
-            displayTimeline.stop();
-            displayTimeline = null;
+    private void stopPreview() {
+        if (previewTimer != null) {
+            previewTimer.stop();
+            previewTimer = null;
+        }
+    }
+
+    /**
+     * Shows the progress a running recognizer reports; its final result is handled by the completion callback.
+     */
+    private void showRecognizerEvent(RecognizerEvent event) {
+        switch (event) {
+            case RecognizerEvent.Progress progress -> {
+                progressBar.setProgress(progress.fraction());
+                if (progress.message() != null) {
+                    statusLabel.setText(progress.message());
+                }
+            }
+            case RecognizerEvent.Match match ->
+                    statusLabel.setText(String.format("Best match so far: %s (%.2f)", match.username(), match.score()));
+            default -> {
+            }
         }
     }
 
     private void handlePythonCompletion(PythonResult result, String fallbackMessage) {
+        RecognizerEvent outcome = null;
+        for (RecognizerEvent event : RecognizerEvent.parseAll(result.output())) {
+            if (event instanceof RecognizerEvent.Result || event instanceof RecognizerEvent.Failure) {
+                outcome = event;
+            }
+        }
+        if (outcome instanceof RecognizerEvent.Result done) {
+            finishEnrollment(done.success(), done.message() == null ? fallbackMessage : done.message());
+            return;
+        }
+        if (outcome instanceof RecognizerEvent.Failure failure) {
+            finishEnrollment(false, failure.message() == null ? "Enrollment failed" : failure.message());
+            return;
+        }
+
+        metrics.enrollmentCompleted(result.exitCode() == 0, System.nanoTime() - operationStartNanos);
         if (result.exitCode() == 0) {
             String output = result.output() == null || result.output().isBlank()
                     ? fallbackMessage
@@ -211,6 +669,16 @@ public class WebcamController {
             statusLabel.setText("Python exited (" + result.exitCode() + "): " + result.output());
         }
 
+        resetControls();
+    }
+
+    private void finishEnrollment(boolean success, String message) {
+        metrics.enrollmentCompleted(success, System.nanoTime() - operationStartNanos);
+        statusLabel.setText(message);
+        resetControls();
+    }
+
+    private void resetControls() {
         captureButton.setDisable(false);
         loginButton.setDisable(false);
         stopButton.setDisable(true);
@@ -218,10 +686,11 @@ public class WebcamController {
     }
 
     private void handleFaceLoginResult(LoginResult result) {
-        captureButton.setDisable(false);
-        loginButton.setDisable(false);
-        stopButton.setDisable(true);
-        progressBar.setProgress(0);
+        metrics.loginCompleted(result.success(), System.nanoTime() - operationStartNanos);
+        if (cameraService.isRunning()) {
+            stopCamera();
+        }
+        resetControls();
 
         if (result.success()) {
             statusLabel.setText("Welcome, " + result.username());
@@ -269,6 +738,218 @@ public class WebcamController {
         }
     }
 
+    /**
+     * Selects the frame source of a camera from {@code -Dcamera.source}: {@code device} (the default) for the
+     * webcam, {@code synthetic} for generated frames, or the path of a recording or image sequence pattern to
+     * replay in a loop. {@code -Dcamera.pacing=fastest} replays recordings without waiting between frames.
+     */
+    private static FrameSource createFrameSource(int camera) {
+        if ("device".equalsIgnoreCase(FRAME_SOURCE)) {
+            return new DeviceFrameSource(CAMERA_DEVICES.get(camera), CAMERA_WIDTH, CAMERA_HEIGHT, CAPTURE_FORMAT);
+        }
+        if ("synthetic".equalsIgnoreCase(FRAME_SOURCE)) {
+            return new SyntheticFrameSource(CAMERA_WIDTH, CAMERA_HEIGHT, FRAME_SOURCE_FASTEST ? 0 : 30);
+        }
+        return new VideoFileFrameSource(FRAME_SOURCE, 0,
+                FRAME_SOURCE_FASTEST ? VideoFileFrameSource.Pacing.FASTEST : VideoFileFrameSource.Pacing.RECORDED, true);
+    }
+
+    /**
+     * Reads the webcam device indexes from {@code -Dcamera.devices}, e.g. {@code 0,1,2} for a gate with three
+     * cameras. The first one is used for enrollment and button-triggered login.
+     */
+    private static List<Integer> cameraDevices() {
+        List<Integer> devices = new ArrayList<>();
+        for (String device : System.getProperty("camera.devices", String.valueOf(CAMERA_DEVICE_INDEX)).split(",")) {
+            try {
+                devices.add(Integer.parseInt(device.strip()));
+            } catch (NumberFormatException e) {
+                // Skip malformed entries.
+            }
+        }
+        return devices.isEmpty() ? List.of(CAMERA_DEVICE_INDEX) : List.copyOf(devices);
+    }
+
+    /**
+     * Reads a numeric system property, using the fallback when it is missing or not a number.
+     */
+    private static double doubleProperty(String name, double fallback) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    private static List<ContinuousLoginService> createContinuousLoginServices(CameraManager cameraManager,
+                                                                             FaceLoginService faceLoginService,
+                                                                             PipelineMetrics metrics,
+                                                                             FaceLocator faceLocator) {
+        ContinuousLoginService.Settings settings = ContinuousLoginService.Settings.fromSystemProperties();
+        List<ContinuousLoginService> services = new ArrayList<>();
+        for (CameraManager.Camera camera : cameraManager.cameras()) {
+            services.add(new ContinuousLoginService(camera.service(), faceLoginService, settings, metrics,
+                    camera.recognitionLane(), faceLocator));
+        }
+        return List.copyOf(services);
+    }
+
+    /**
+     * Opens the login audit trail in {@code -Daudit.dir} ({@code audit} by default). Queued attempts are
+     * written out when the JVM exits.
+     */
+    private static LoginAuditLog createAuditLog() {
+        try {
+            LoginAuditLog log = LoginAuditLog.open(AUDIT_DIRECTORY, LoginAuditLog.Settings.fromSystemProperties());
+            Runtime.getRuntime().addShutdownHook(new Thread(log::close, "LoginAuditShutdownThread"));
+            return log;
+        } catch (IOException e) {
+            LOGGER.log(System.Logger.Level.WARNING,
+                    "Login audit trail unavailable in " + AUDIT_DIRECTORY.toAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    private static JavaRecognitionBackend createRecognitionBackend() {
+        if (!JAVA_BACKEND_REQUESTED || !FaceRecognitionEngine.modelsAvailable(MODEL_DIRECTORY)) {
+            return null;
+        }
+        EmbeddingIndex index = null;
+        EmbeddingStore store = null;
+        try {
+            index = JavaRecognitionBackend.newIndex();
+            store = EmbeddingStore.open(EMBEDDING_STORE_FILE, index);
+            return new JavaRecognitionBackend(FaceRecognitionEngine.fromDirectory(MODEL_DIRECTORY), index, store,
+                    new RecognitionCache(RecognitionCache.Settings.fromSystemProperties()));
+        } catch (IOException | RuntimeException | LinkageError e) {
+            // A missing native library or unsupported CPU surfaces as a LinkageError.
+            if (store != null) {
+                try {
+                    store.close();
+                } catch (IOException closeFailure) {
+                    e.addSuppressed(closeFailure);
+                }
+            }
+            if (index != null) {
+                index.close();
+            }
+            LOGGER.log(System.Logger.Level.WARNING,
+                    "Java recognition backend unavailable, falling back to the Python recognizer", e);
+            return null;
+        }
+    }
+
+    /**
+     * Loads a detector for judging enrollment frames and noticing faces in front of a kiosk when the Python
+     * recognizer is used, so that faces are still located whenever the models are installed.
+     */
+    private static FaceRecognitionEngine createFaceDetector(JavaRecognitionBackend recognitionBackend) {
+        if (recognitionBackend != null || !FaceRecognitionEngine.modelsAvailable(MODEL_DIRECTORY)) {
+            return null;
+        }
+        try {
+            return FaceRecognitionEngine.fromDirectory(MODEL_DIRECTORY);
+        } catch (IOException | RuntimeException | LinkageError e) {
+            LOGGER.log(System.Logger.Level.WARNING,
+                    "Face detector unavailable, enrollment frames are not checked for a face", e);
+            return null;
+        }
+    }
+
+    /**
+     * Everything the controller needs that loads natives, models or files, so it is built off the JavaFX
+     * thread.
+     */
+    private record Services(FairScheduler recognitionScheduler, CameraManager cameraManager,
+                            SharedFrameTransport frameTransport, JavaRecognitionBackend recognitionBackend,
+                            FaceRecognitionEngine faceDetector, LoginAuditLog auditLog, FaceLoginService faceLoginService, DatasetWriter datasetWriter,
+                            List<ContinuousLoginService> continuousLoginServices) {
+
+        static Services create(PipelineMetrics metrics, PythonProcessService pythonProcessService) {
+            // Closers of what has been built so far, so that a failure part-way releases it.
+            List<Runnable> built = new ArrayList<>();
+            try {
+                FairScheduler recognitionScheduler = new FairScheduler("CameraRecognitionThread", RECOGNITION_THREADS);
+                built.add(recognitionScheduler::close);
+                CameraManager cameraManager =
+                        new CameraManager(CAMERA_DEVICES.size(), metrics, MatPool.shared(), recognitionScheduler);
+                built.add(cameraManager::close);
+                SharedFrameTransport frameTransport = new SharedFrameTransport(FRAME_TRANSPORT_FILE);
+                built.add(frameTransport::close);
+                JavaRecognitionBackend recognitionBackend = createRecognitionBackend();
+                if (recognitionBackend != null) {
+                    built.add(recognitionBackend::close);
+                }
+                FaceRecognitionEngine faceDetector = createFaceDetector(recognitionBackend);
+                if (faceDetector != null) {
+                    built.add(faceDetector::close);
+                }
+                LoginAuditLog auditLog = createAuditLog();
+                if (auditLog != null) {
+                    built.add(auditLog::close);
+                }
+                FaceLoginService faceLoginService = recognitionBackend != null
+                        ? new FaceLoginService(recognitionBackend, auditLog)
+                        : new FaceLoginService(pythonProcessService, frameTransport, LOGIN_ACCEPT_SCORE, auditLog);
+                DatasetWriter datasetWriter = new DatasetWriter();
+                built.add(datasetWriter::close);
+                return new Services(recognitionScheduler, cameraManager, frameTransport, recognitionBackend, faceDetector,
+                        auditLog, faceLoginService, datasetWriter,
+                        createContinuousLoginServices(cameraManager, faceLoginService, metrics,
+                                faceLocator(recognitionBackend, faceDetector)));
+            } catch (RuntimeException | LinkageError e) {
+                // A missing native library surfaces as a LinkageError from the camera manager.
+                for (Runnable close : built.reversed()) {
+                    try {
+                        close.run();
+                    } catch (RuntimeException closeFailure) {
+                        e.addSuppressed(closeFailure);
+                    }
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Returns the locator used to judge enrollment frames and to notice faces in front of a kiosk,
+         * whichever backend recognizes them.
+         *
+         * @return the locator, or {@code null} if no detector could be loaded
+         */
+        FaceLocator faceLocator() {
+            return faceLocator(recognitionBackend, faceDetector);
+        }
+
+        private static FaceLocator faceLocator(JavaRecognitionBackend recognitionBackend,
+                                               FaceRecognitionEngine faceDetector) {
+            if (recognitionBackend != null) {
+                return recognitionBackend.faceLocator();
+            }
+            return faceDetector == null ? null : faceDetector::detectLargest;
+        }
+
+        void close() {
+            continuousLoginServices.forEach(ContinuousLoginService::close);
+            cameraManager.close();
+            recognitionScheduler.close();
+            datasetWriter.close();
+            frameTransport.close();
+            if (recognitionBackend != null) {
+                recognitionBackend.close();
+            }
+            if (faceDetector != null) {
+                faceDetector.close();
+            }
+            if (auditLog != null) {
+                auditLog.close();
+            }
+        }
+    }
+
     private static class CaptureThreadFactory implements ThreadFactory {
         @Override
         public Thread newThread(Runnable r) {
@@ -0,0 +1,369 @@
+package org.example.gui.memory;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.lang.ref.Cleaner;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Recycles the native buffers of {@link Mat}s of the same size and type, so that a process running for weeks
+ * does not keep freeing and reallocating megabyte-sized frames and fragmenting the native heap.
+ * <p>
+ * {@link #acquire} hands out a {@link PooledMat} whose buffer either comes from the idle list for its
+ * geometry or is newly allocated; closing it puts the buffer back, under the geometry it has by then. Each
+ * geometry keeps a few idle buffers, the pool as a whole keeps a bounded number of bytes, and anything beyond
+ * that is freed immediately.
+ * <p>
+ * A {@code PooledMat} that becomes unreachable without being closed is reported as a leak. Its buffer is left
+ * to JavaCPP's own deallocator, since the {@code Mat} itself may still be referenced. With {@code debug}
+ * enabled the report includes the stack that acquired it.
+ * <p>
+ * An optional ceiling on the process's resident set size turns optional work away instead of running into an
+ * {@link OutOfMemoryError}: above it, {@link #tryAcquire} first frees the idle buffers and then declines to
+ * allocate. {@link #acquire} always allocates, for buffers the caller cannot do without.
+ * <p>
+ * Thread-safe.
+ */
+public final class MatPool implements AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(MatPool.class.getName());
+    private static final Cleaner CLEANER = Cleaner.create(new CleanerThreadFactory());
+    private static final long CEILING_CHECK_INTERVAL_NANOS = 100_000_000L;
+    private static final MatPool SHARED = new MatPool(Settings.fromSystemProperties());
+
+    private final Settings settings;
+    private final Map<Long, ArrayDeque<Mat>> idle = new HashMap<>();
+
+    private long allocations;
+    private long reuses;
+    private long leased;
+    private long leasedBytes;
+    private long idleCount;
+    private long idleBytes;
+    private long leaks;
+    private long shed;
+    private boolean closed;
+
+    private volatile long lastPhysicalBytes;
+    private volatile long lastCeilingCheckNanos;
+
+    /**
+     * Creates a pool.
+     *
+     * @param settings limits and diagnostics
+     */
+    public MatPool(Settings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Returns the process-wide pool, configured from system properties.
+     *
+     * @return the shared pool
+     * @see Settings#fromSystemProperties()
+     */
+    public static MatPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Leases a buffer of the given geometry. Its content is undefined. A {@code rows} or {@code cols} of 0
+     * leases an empty {@code Mat} for code that shapes it itself, e.g. a capture target; it joins the pool
+     * once closed.
+     *
+     * @param rows number of rows
+     * @param cols number of columns
+     * @param type OpenCV type, e.g. {@code CV_8UC3}
+     * @return the leased buffer
+     */
+    public PooledMat acquire(int rows, int cols, int type) {
+        Mat mat = takeIdle(rows, cols, type);
+        return lease(mat != null ? mat : allocate(rows, cols, type));
+    }
+
+    /**
+     * Leases a buffer of the given geometry unless that would need a new allocation while the process is
+     * above the memory ceiling.
+     *
+     * @param rows number of rows
+     * @param cols number of columns
+     * @param type OpenCV type, e.g. {@code CV_8UC3}
+     * @return the leased buffer, or empty if the work needing it should be shed
+     */
+    public Optional<PooledMat> tryAcquire(int rows, int cols, int type) {
+        Mat mat = takeIdle(rows, cols, type);
+        if (mat == null) {
+            if (aboveCeiling(false)) {
+                trim();
+                if (aboveCeiling(true)) {
+                    synchronized (this) {
+                        shed++;
+                    }
+                    return Optional.empty();
+                }
+            }
+            mat = allocate(rows, cols, type);
+        }
+        return Optional.of(lease(mat));
+    }
+
+    /**
+     * Copies a frame into a pooled buffer, subject to the memory ceiling like {@link #tryAcquire}.
+     *
+     * @param source the frame to copy
+     * @return the copy, or empty if it should be shed
+     */
+    public Optional<PooledMat> copyOf(Mat source) {
+        Optional<PooledMat> copy = tryAcquire(source.rows(), source.cols(), source.type());
+        copy.ifPresent(pooled -> source.copyTo(pooled.mat()));
+        return copy;
+    }
+
+    /**
+     * Indicates whether the process is above the configured memory ceiling. The resident set size is
+     * sampled at most every 100 ms.
+     *
+     * @return {@code true} if optional work should be shed
+     */
+    public boolean isAboveCeiling() {
+        return aboveCeiling(false);
+    }
+
+    /**
+     * Frees every idle buffer.
+     */
+    public void trim() {
+        synchronized (this) {
+            for (ArrayDeque<Mat> buffers : idle.values()) {
+                buffers.forEach(Mat::close);
+            }
+            idle.clear();
+            idleCount = 0;
+            idleBytes = 0;
+        }
+    }
+
+    /**
+     * Returns the pool's counters.
+     *
+     * @return the current statistics
+     */
+    public synchronized Stats stats() {
+        return new Stats(allocations, reuses, leased, leasedBytes, idleCount, idleBytes, leaks, shed);
+    }
+
+    /**
+     * Frees the idle buffers and stops pooling: buffers closed from now on are freed.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        trim();
+    }
+
+    void returned(Lease lease, Mat mat) {
+        long bytes = bytesOf(mat);
+        boolean pressure = aboveCeiling(false);
+        synchronized (this) {
+            leased--;
+            leasedBytes -= lease.bytes;
+            if (bytes > 0 && !closed && !pressure && fitsIdle(mat, bytes)) {
+                idle.computeIfAbsent(key(mat.rows(), mat.cols(), mat.type()), k -> new ArrayDeque<>()).push(mat);
+                idleCount++;
+                idleBytes += bytes;
+                return;
+            }
+        }
+        mat.close();
+    }
+
+    synchronized void detached(Lease lease) {
+        leased--;
+        leasedBytes -= lease.bytes;
+    }
+
+    void leaked(Lease lease) {
+        synchronized (this) {
+            leased--;
+            leasedBytes -= lease.bytes;
+            leaks++;
+        }
+        if (lease.origin != null) {
+            LOGGER.log(System.Logger.Level.WARNING, "Pooled Mat of " + lease.geometry + " was never returned",
+                    lease.origin);
+        } else {
+            LOGGER.log(System.Logger.Level.WARNING, "Pooled Mat of " + lease.geometry + " was never returned;"
+                    + " run with -Dmatpool.debug=true to record where it was acquired");
+        }
+    }
+
+    private boolean fitsIdle(Mat mat, long bytes) {
+        ArrayDeque<Mat> buffers = idle.get(key(mat.rows(), mat.cols(), mat.type()));
+        int count = buffers == null ? 0 : buffers.size();
+        return count < settings.maxIdlePerGeometry() && idleBytes + bytes <= settings.maxIdleBytes();
+    }
+
+    private Mat takeIdle(int rows, int cols, int type) {
+        if (rows <= 0 || cols <= 0) {
+            return null;
+        }
+        synchronized (this) {
+            ArrayDeque<Mat> buffers = idle.get(key(rows, cols, type));
+            Mat mat = buffers == null ? null : buffers.poll();
+            if (mat == null) {
+                return null;
+            }
+            if (buffers.isEmpty()) {
+                idle.remove(key(rows, cols, type));
+            }
+            idleCount--;
+            idleBytes -= bytesOf(mat);
+            reuses++;
+            return mat;
+        }
+    }
+
+    private Mat allocate(int rows, int cols, int type) {
+        Mat mat = rows > 0 && cols > 0 ? new Mat(rows, cols, type) : new Mat();
+        synchronized (this) {
+            allocations++;
+        }
+        return mat;
+    }
+
+    private PooledMat lease(Mat mat) {
+        long bytes = bytesOf(mat);
+        Throwable origin = settings.debug() ? new Throwable("Acquired here") : null;
+        Lease lease = new Lease(this, bytes, mat.rows() + "x" + mat.cols() + " type " + mat.type(), origin);
+        synchronized (this) {
+            leased++;
+            leasedBytes += bytes;
+        }
+        PooledMat pooled = new PooledMat(mat, lease);
+        pooled.cleanable = CLEANER.register(pooled, lease);
+        return pooled;
+    }
+
+    private boolean aboveCeiling(boolean fresh) {
+        long ceiling = settings.memoryCeiling();
+        if (ceiling <= 0) {
+            return false;
+        }
+        long now = System.nanoTime();
+        if (fresh || now - lastCeilingCheckNanos > CEILING_CHECK_INTERVAL_NANOS) {
+            lastPhysicalBytes = NativeMemory.physicalBytes();
+            lastCeilingCheckNanos = now;
+        }
+        return lastPhysicalBytes > ceiling;
+    }
+
+    private static long bytesOf(Mat mat) {
+        return mat.isNull() || mat.empty() ? 0 : mat.total() * mat.elemSize();
+    }
+
+    private static long key(int rows, int cols, int type) {
+        return (long) rows << 40 | (long) cols << 16 | type & 0xFFFF;
+    }
+
+    /**
+     * Limits and diagnostics of a pool.
+     *
+     * @param maxIdlePerGeometry idle buffers kept per size and type
+     * @param maxIdleBytes       idle bytes kept in total
+     * @param memoryCeiling      resident set size above which optional allocations are shed, 0 for none
+     * @param debug              whether to record the acquiring stack of every lease for leak reports
+     */
+    public record Settings(int maxIdlePerGeometry, long maxIdleBytes, long memoryCeiling, boolean debug) {
+
+        public static Settings defaults() {
+            return new Settings(4, 64L << 20, 0, false);
+        }
+
+        /**
+         * Reads the settings from system properties, using the defaults for missing ones:
+         * {@code matpool.maxIdlePerGeometry}, {@code matpool.maxIdleBytes} and {@code native.memoryCeiling}
+         * take sizes such as {@code 1500m}, {@code matpool.debug} enables allocation stacks.
+         *
+         * @return the configured settings
+         */
+        public static Settings fromSystemProperties() {
+            Settings defaults = defaults();
+            return new Settings(
+                    Integer.getInteger("matpool.maxIdlePerGeometry", defaults.maxIdlePerGeometry()),
+                    NativeMemory.parseBytes(System.getProperty("matpool.maxIdleBytes"), defaults.maxIdleBytes()),
+                    NativeMemory.parseBytes(System.getProperty("native.memoryCeiling"), defaults.memoryCeiling()),
+                    Boolean.getBoolean("matpool.debug"));
+        }
+    }
+
+    /**
+     * Counters of a pool. {@code leased}, {@code leasedBytes}, {@code idle} and {@code idleBytes} are gauges.
+     *
+     * @param allocations buffers allocated because none was idle
+     * @param reuses      leases served from an idle buffer
+     * @param leased      buffers currently leased
+     * @param leasedBytes bytes currently leased
+     * @param idle        buffers waiting to be reused
+     * @param idleBytes   bytes waiting to be reused
+     * @param leaks       leases that were garbage collected without being closed
+     * @param shed        allocations declined because of the memory ceiling
+     */
+    public record Stats(long allocations, long reuses, long leased, long leasedBytes, long idle, long idleBytes,
+                        long leaks, long shed) {
+    }
+
+    /**
+     * Bookkeeping of one lease, also the cleaning action that reports it as leaked. It must not reference the
+     * {@link PooledMat} or its {@code Mat}, or neither could ever become unreachable.
+     */
+    static final class Lease implements Runnable {
+        private final MatPool pool;
+        private final long bytes;
+        private final String geometry;
+        private final Throwable origin;
+        private final AtomicBoolean ended = new AtomicBoolean();
+
+        private Lease(MatPool pool, long bytes, String geometry, Throwable origin) {
+            this.pool = pool;
+            this.bytes = bytes;
+            this.geometry = geometry;
+            this.origin = origin;
+        }
+
+        MatPool pool() {
+            return pool;
+        }
+
+        /**
+         * Ends the lease.
+         *
+         * @return {@code true} for the first caller only
+         */
+        boolean end() {
+            return ended.compareAndSet(false, true);
+        }
+
+        @Override
+        public void run() {
+            if (end()) {
+                pool.leaked(this);
+            }
+        }
+    }
+
+    private static class CleanerThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "MatPoolCleanerThread");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
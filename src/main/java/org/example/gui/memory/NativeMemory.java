@@ -0,0 +1,75 @@
+package org.example.gui.memory;
+
+import org.bytedeco.javacpp.Pointer;
+
+/**
+ * Gauges for the memory that lives outside the Java heap.
+ * <p>
+ * JavaCPP only accounts for the buffers it allocates itself, such as {@code BytePointer}s; the pixel data
+ * of a {@code Mat} is allocated by OpenCV and shows up in the resident set size alone. Both are reported, and
+ * limits are checked against the resident set size, which is what the operating system kills the process
+ * for.
+ */
+public final class NativeMemory {
+
+    private NativeMemory() {
+    }
+
+    /**
+     * Returns the memory currently allocated through JavaCPP.
+     *
+     * @return bytes tracked by JavaCPP
+     */
+    public static long javacppBytes() {
+        return Pointer.totalBytes();
+    }
+
+    /**
+     * Returns the resident set size of the process, Java heap included.
+     *
+     * @return physical bytes in use, or 0 if the platform does not report it
+     */
+    public static long physicalBytes() {
+        return Pointer.physicalBytes();
+    }
+
+    /**
+     * Returns the physical memory limit at which JavaCPP refuses further allocations with an
+     * {@link OutOfMemoryError}, set with {@code -Dorg.bytedeco.javacpp.maxPhysicalBytes}.
+     *
+     * @return the limit in bytes, or 0 if there is none
+     */
+    public static long maxPhysicalBytes() {
+        return Pointer.maxPhysicalBytes();
+    }
+
+    /**
+     * Parses a size such as {@code 1500m} or {@code 2g}, the notation JavaCPP uses for its own limits.
+     *
+     * @param value    the size, or {@code null}
+     * @param fallback value returned when the size is missing or malformed
+     * @return the size in bytes
+     */
+    public static long parseBytes(String value, long fallback) {
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Pointer.parseBytes(value.strip(), fallback);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Formats a byte count for logs, e.g. {@code 312 MB}.
+     *
+     * @param bytes the byte count
+     * @return the formatted size
+     */
+    public static String format(long bytes) {
+        return bytes >= 10L << 20
+                ? (bytes >> 20) + " MB"
+                : String.format("%.1f MB", bytes / (double) (1 << 20));
+    }
+}
@@ -0,0 +1,56 @@
+package org.example.gui.memory;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.lang.ref.Cleaner;
+
+/**
+ * A {@link Mat} leased from a {@link MatPool}. Closing it returns the buffer to the pool, after which the
+ * {@code Mat} must no longer be used; {@link #detach()} hands it over for good instead. A lease that is
+ * neither closed nor detached before it becomes unreachable is reported as a leak.
+ */
+public final class PooledMat implements AutoCloseable {
+
+    private final Mat mat;
+    private final MatPool.Lease lease;
+    Cleaner.Cleanable cleanable;
+
+    PooledMat(Mat mat, MatPool.Lease lease) {
+        this.mat = mat;
+        this.lease = lease;
+    }
+
+    /**
+     * Returns the leased buffer.
+     *
+     * @return the {@code Mat}, valid until this lease is closed
+     */
+    public Mat mat() {
+        return mat;
+    }
+
+    /**
+     * Ends the lease without returning the buffer, e.g. to pass the {@code Mat} to code that closes it. The
+     * caller becomes responsible for closing it.
+     *
+     * @return the {@code Mat}
+     */
+    public Mat detach() {
+        if (lease.end()) {
+            lease.pool().detached(lease);
+            cleanable.clean();
+        }
+        return mat;
+    }
+
+    /**
+     * Returns the buffer to the pool. Closing a lease twice has no effect.
+     */
+    @Override
+    public void close() {
+        if (lease.end()) {
+            lease.pool().returned(lease, mat);
+            cleanable.clean();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.gui.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+
+/**
+ * Periodic JFR event with the cumulative frame counters and the native memory gauges.
+ */
+@Name("org.example.gui.CaptureStatistics")
+@Label("Capture Statistics")
+@Category({"Face Access", "Capture"})
+@Period("1 s")
+class CaptureStatisticsEvent extends Event {
+
+    @Label("Captured Frames")
+    long capturedFrames;
+
+    @Label("Dropped Frames")
+    long droppedFrames;
+
+    @Label("Displayed Frames")
+    long displayedFrames;
+
+    @Label("Skipped Frames")
+    @Description("Captured frames superseded before the preview showed them")
+    long skippedFrames;
+
+    @Label("Physical Memory")
+    @Description("Resident set size of the process")
+    @DataAmount
+    long physicalBytes;
+
+    @Label("JavaCPP Memory")
+    @Description("Native memory allocated through JavaCPP")
+    @DataAmount
+    long javacppBytes;
+
+    @Label("Pooled Frame Memory")
+    @Description("Frame buffers leased from or idle in the pool")
+    @DataAmount
+    long pooledBytes;
+}
@@ -0,0 +1,31 @@
+package org.example.gui.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for one preview frame.
+ */
+@Name("org.example.gui.FrameDisplayed")
+@Label("Frame Displayed")
+@Category({"Face Access", "Capture"})
+@Description("A camera frame converted and shown in the preview")
+class FrameDisplayedEvent extends Event {
+
+    @Label("Frame Sequence")
+    long sequence;
+
+    @Label("Render Time")
+    @Description("Time spent converting the frame for display")
+    @Timespan
+    long renderTime;
+
+    @Label("Frame Age")
+    @Description("Time from capture to display")
+    @Timespan
+    long age;
+}
@@ -0,0 +1,117 @@
+package org.example.gui.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets in the style of HdrHistogram.
+ * <p>
+ * Values below 16 ns get a bucket each; above that every power of two is split into eight linear
+ * sub-buckets, which bounds the relative error of a reported percentile to 12.5% while covering the whole
+ * {@code long} range in under 500 counters. Recording is a single atomic increment and never allocates.
+ * Counts are cumulative; {@link Snapshot#since(Snapshot)} turns two snapshots into a window.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * Records one value.
+     *
+     * @param nanos the latency in nanoseconds; negative values are counted as zero
+     */
+    public void record(long nanos) {
+        buckets.incrementAndGet(indexOf(Math.max(0, nanos)));
+    }
+
+    /**
+     * Copies the current counts.
+     *
+     * @return a snapshot of everything recorded so far
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return new Snapshot(counts);
+    }
+
+    static int indexOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return LINEAR_LIMIT + (magnitude - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the value in the middle of the bucket, the best single estimate for its contents.
+     */
+    static long valueOf(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int offset = index - LINEAR_LIMIT;
+        int shift = offset / SUB_BUCKETS + 1;
+        long lower = (long) (SUB_BUCKETS + offset % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) / 2;
+    }
+
+    /**
+     * Bucket counts at one point in time.
+     *
+     * @param counts count per bucket
+     */
+    public record Snapshot(long[] counts) {
+
+        /**
+         * Returns what was recorded between an earlier snapshot and this one.
+         *
+         * @param earlier a snapshot of the same histogram taken before this one
+         * @return the window between both snapshots
+         */
+        public Snapshot since(Snapshot earlier) {
+            long[] window = new long[counts.length];
+            for (int i = 0; i < window.length; i++) {
+                window[i] = counts[i] - earlier.counts[i];
+            }
+            return new Snapshot(window);
+        }
+
+        public long count() {
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            return total;
+        }
+
+        /**
+         * Estimates a percentile.
+         *
+         * @param percentile value between 0 and 100
+         * @return the estimated latency in nanoseconds, or {@code 0} if nothing was recorded
+         */
+        public long percentile(double percentile) {
+            long total = count();
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return valueOf(i);
+                }
+            }
+            return valueOf(counts.length - 1);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.example.gui.metrics;
+
+import jdk.jfr.FlightRecorder;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a summary of the last interval to the {@link System.Logger} at a fixed rate and feeds the periodic
+ * {@code CaptureStatistics} JFR event while it is open.
+ */
+public class MetricsReporter implements AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(MetricsReporter.class.getName());
+
+    private final PipelineMetrics metrics;
+    private final Runnable statisticsHook = this::emitStatistics;
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new ReporterThreadFactory());
+
+    private PipelineMetrics.Snapshot previous;
+
+    /**
+     * Starts reporting.
+     *
+     * @param metrics  the metrics to report
+     * @param interval time between two log lines
+     */
+    public MetricsReporter(PipelineMetrics metrics, Duration interval) {
+        this.metrics = metrics;
+        this.previous = metrics.snapshot();
+        FlightRecorder.addPeriodicEvent(CaptureStatisticsEvent.class, statisticsHook);
+        long millis = interval.toMillis();
+        scheduler.scheduleAtFixedRate(this::logInterval, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops reporting.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        FlightRecorder.removePeriodicEvent(statisticsHook);
+    }
+
+    private void logInterval() {
+        PipelineMetrics.Snapshot current = metrics.snapshot();
+        PipelineMetrics.Snapshot window = current.since(previous);
+        previous = current;
+        LOGGER.log(System.Logger.Level.INFO, window.summary());
+    }
+
+    private void emitStatistics() {
+        PipelineMetrics.Snapshot current = metrics.snapshot();
+        CaptureStatisticsEvent event = new CaptureStatisticsEvent();
+        event.capturedFrames = current.capturedFrames();
+        event.droppedFrames = current.droppedFrames();
+        event.displayedFrames = current.displayedFrames();
+        event.skippedFrames = current.skippedFrames();
+        event.physicalBytes = current.physicalBytes();
+        event.javacppBytes = current.javacppBytes();
+        event.pooledBytes = current.pooledBytes();
+        event.commit();
+    }
+
+    private static class ReporterThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "MetricsReporterThread");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package org.example.gui.metrics;
+
+import org.example.gui.memory.MatPool;
+import org.example.gui.memory.NativeMemory;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for the capture, preview and recognition pipeline.
+ * <p>
+ * Every recording method is lock-free and safe to call from any thread. Each timed operation is also
+ * emitted as a JFR event, which costs next to nothing while no recording is running. Readers take a
+ * {@link Snapshot} and subtract an earlier one to get rates and percentiles for a window. Snapshots also
+ * sample the native memory gauges and the frame buffer pool.
+ */
+public class PipelineMetrics {
+
+    private final MatPool matPool;
+
+    private final LongAdder capturedFrames = new LongAdder();
+    private final LongAdder droppedFrames = new LongAdder();
+    private final LongAdder displayedFrames = new LongAdder();
+    private final LongAdder skippedFrames = new LongAdder();
+    private final LongAdder pythonQueueDepth = new LongAdder();
+    private final LatencyHistogram renderTime = new LatencyHistogram();
+    private final LatencyHistogram frameAge = new LatencyHistogram();
+    private final LatencyHistogram pythonSpawn = new LatencyHistogram();
+    private final LatencyHistogram pythonQueueWait = new LatencyHistogram();
+    private final LatencyHistogram pythonRoundTrip = new LatencyHistogram();
+    private final LatencyHistogram login = new LatencyHistogram();
+    private final LatencyHistogram enrollment = new LatencyHistogram();
+
+    public PipelineMetrics() {
+        this(MatPool.shared());
+    }
+
+    /**
+     * Creates metrics that report the given frame buffer pool.
+     *
+     * @param matPool the pool whose usage is sampled
+     */
+    public PipelineMetrics(MatPool matPool) {
+        this.matPool = matPool;
+    }
+
+    /**
+     * Counts a frame published by the capture thread.
+     */
+    public void frameCaptured() {
+        capturedFrames.increment();
+    }
+
+    /**
+     * Counts a frame the capture thread had to discard because every slot was leased.
+     */
+    public void frameDropped() {
+        droppedFrames.increment();
+    }
+
+    /**
+     * Records a preview frame that was converted and shown.
+     *
+     * @param sequence   the frame's sequence number
+     * @param renderNanos time spent converting the frame
+     * @param ageNanos    time from capture to display
+     */
+    public void frameDisplayed(long sequence, long renderNanos, long ageNanos) {
+        displayedFrames.increment();
+        renderTime.record(renderNanos);
+        frameAge.record(ageNanos);
+
+        FrameDisplayedEvent event = new FrameDisplayedEvent();
+        if (event.shouldCommit()) {
+            event.sequence = sequence;
+            event.renderTime = renderNanos;
+            event.age = ageNanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * Counts captured frames that were superseded by a newer one before the preview got to show them.
+     *
+     * @param count number of frames skipped
+     */
+    public void framesSkipped(long count) {
+        skippedFrames.add(count);
+    }
+
+    /**
+     * Records how long it took to start a Python process.
+     *
+     * @param nanos the spawn time
+     */
+    public void pythonSpawned(long nanos) {
+        pythonSpawn.record(nanos);
+    }
+
+    /**
+     * Counts a Python command entering the queue.
+     */
+    public void pythonQueued() {
+        pythonQueueDepth.increment();
+    }
+
+    /**
+     * Records a queued Python command being picked up by a free slot.
+     *
+     * @param waitNanos time the command spent in the queue
+     */
+    public void pythonStarted(long waitNanos) {
+        pythonQueueDepth.decrement();
+        pythonQueueWait.record(waitNanos);
+    }
+
+    /**
+     * Counts a queued Python command that was cancelled or expired before it started.
+     */
+    public void pythonAbandoned() {
+        pythonQueueDepth.decrement();
+    }
+
+    /**
+     * Records a completed Python command.
+     *
+     * @param command   the script arguments
+     * @param worker    whether the persistent worker served the command
+     * @param exitCode  the command's exit code
+     * @param nanos     time from submission to result
+     */
+    public void pythonCompleted(List<String> command, boolean worker, int exitCode, long nanos) {
+        pythonRoundTrip.record(nanos);
+
+        PythonCallEvent event = new PythonCallEvent();
+        if (event.shouldCommit()) {
+            event.command = String.join(" ", command);
+            event.worker = worker;
+            event.exitCode = exitCode;
+            event.roundTrip = nanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records a login attempt from the button press to the result.
+     *
+     * @param success whether the user was recognized
+     * @param nanos   end-to-end latency
+     */
+    public void loginCompleted(boolean success, long nanos) {
+        login.record(nanos);
+        recognitionEvent("login", success, nanos);
+    }
+
+    /**
+     * Records an enrollment from the button press to the result.
+     *
+     * @param success whether the user was enrolled
+     * @param nanos   end-to-end latency
+     */
+    public void enrollmentCompleted(boolean success, long nanos) {
+        enrollment.record(nanos);
+        recognitionEvent("enroll", success, nanos);
+    }
+
+    /**
+     * Copies all counters and histograms.
+     *
+     * @return the cumulative state at this instant
+     */
+    public Snapshot snapshot() {
+        MatPool.Stats pool = matPool.stats();
+        return new Snapshot(System.nanoTime(), capturedFrames.sum(), droppedFrames.sum(), displayedFrames.sum(),
+                skippedFrames.sum(), pythonQueueDepth.sum(), renderTime.snapshot(), frameAge.snapshot(),
+                pythonSpawn.snapshot(), pythonQueueWait.snapshot(), pythonRoundTrip.snapshot(), login.snapshot(),
+                enrollment.snapshot(), NativeMemory.physicalBytes(), NativeMemory.javacppBytes(),
+                pool.leasedBytes() + pool.idleBytes(), pool.shed(), pool.leaks());
+    }
+
+    private static void recognitionEvent(String operation, boolean success, long nanos) {
+        RecognitionEvent event = new RecognitionEvent();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.success = success;
+            event.latency = nanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * The pipeline metrics at one instant, or over a window when produced by {@link #since(Snapshot)}.
+     * {@code pythonQueueDepth} is a gauge: the number of commands waiting for a slot. So are
+     * {@code physicalBytes}, the resident set size, {@code javacppBytes}, the memory JavaCPP allocated, and
+     * {@code pooledBytes}, the frame buffers leased from or idle in the pool; {@code shedAllocations} and
+     * {@code leakedMats} count pooled buffers refused at the memory ceiling and leases never returned.
+     */
+    public record Snapshot(long nanoTime, long capturedFrames, long droppedFrames, long displayedFrames,
+                           long skippedFrames, long pythonQueueDepth, LatencyHistogram.Snapshot renderTime,
+                           LatencyHistogram.Snapshot frameAge, LatencyHistogram.Snapshot pythonSpawn,
+                           LatencyHistogram.Snapshot pythonQueueWait, LatencyHistogram.Snapshot pythonRoundTrip,
+                           LatencyHistogram.Snapshot login, LatencyHistogram.Snapshot enrollment,
+                           long physicalBytes, long javacppBytes, long pooledBytes, long shedAllocations,
+                           long leakedMats) {
+
+        /**
+         * Returns the activity between an earlier snapshot and this one; {@link #nanoTime()} becomes the
+         * window length and gauges keep their current value.
+         *
+         * @param earlier a snapshot taken before this one
+         * @return the window between both snapshots
+         */
+        public Snapshot since(Snapshot earlier) {
+            return new Snapshot(nanoTime - earlier.nanoTime,
+                    capturedFrames - earlier.capturedFrames,
+                    droppedFrames - earlier.droppedFrames,
+                    displayedFrames - earlier.displayedFrames,
+                    skippedFrames - earlier.skippedFrames,
+                    pythonQueueDepth,
+                    renderTime.since(earlier.renderTime),
+                    frameAge.since(earlier.frameAge),
+                    pythonSpawn.since(earlier.pythonSpawn),
+                    pythonQueueWait.since(earlier.pythonQueueWait),
+                    pythonRoundTrip.since(earlier.pythonRoundTrip),
+                    login.since(earlier.login),
+                    enrollment.since(earlier.enrollment),
+                    physicalBytes,
+                    javacppBytes,
+                    pooledBytes,
+                    shedAllocations - earlier.shedAllocations,
+                    leakedMats - earlier.leakedMats);
+        }
+
+        /**
+         * Summarizes a window in one line, e.g. for the overlay or the log.
+         *
+         * @return the formatted summary
+         */
+        public String summary() {
+            double seconds = Math.max(1e-9, nanoTime / 1e9);
+            StringBuilder line = new StringBuilder(String.format(
+                    "capture %.1f fps, dropped %d, skipped %d | render %s | age %s",
+                    capturedFrames / seconds, droppedFrames, skippedFrames,
+                    percentiles(renderTime), percentiles(frameAge)));
+            appendIfRecorded(line, "python spawn", pythonSpawn);
+            if (pythonQueueDepth > 0 || pythonQueueWait.count() > 0) {
+                line.append(" | python queue ").append(pythonQueueDepth).append(", wait ")
+                        .append(percentiles(pythonQueueWait));
+            }
+            appendIfRecorded(line, "python", pythonRoundTrip);
+            appendIfRecorded(line, "login", login);
+            appendIfRecorded(line, "enroll", enrollment);
+            line.append(" | native rss ").append(NativeMemory.format(physicalBytes))
+                    .append(", javacpp ").append(NativeMemory.format(javacppBytes))
+                    .append(", pooled ").append(NativeMemory.format(pooledBytes));
+            if (shedAllocations > 0 || leakedMats > 0) {
+                line.append(", shed ").append(shedAllocations).append(", leaked ").append(leakedMats);
+            }
+            return line.toString();
+        }
+
+        private static void appendIfRecorded(StringBuilder line, String name, LatencyHistogram.Snapshot histogram) {
+            if (histogram.count() > 0) {
+                line.append(" | ").append(name).append(' ').append(percentiles(histogram));
+            }
+        }
+
+        private static String percentiles(LatencyHistogram.Snapshot histogram) {
+            if (histogram.count() == 0) {
+                return "-";
+            }
+            return String.format("p50 %.1f ms, p99 %.1f ms", histogram.percentile(50) / 1e6,
+                    histogram.percentile(99) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.example.gui.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for one Python command, from submission to result.
+ */
+@Name("org.example.gui.PythonCall")
+@Label("Python Call")
+@Category({"Face Access", "Recognition"})
+class PythonCallEvent extends Event {
+
+    @Label("Command")
+    String command;
+
+    @Label("Worker")
+    boolean worker;
+
+    @Label("Exit Code")
+    int exitCode;
+
+    @Label("Round Trip")
+    @Timespan
+    long roundTrip;
+}
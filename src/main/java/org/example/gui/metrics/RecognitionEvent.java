@@ -0,0 +1,26 @@
+package org.example.gui.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for a login or enrollment, from the button press to the result shown to the user.
+ */
+@Name("org.example.gui.Recognition")
+@Label("Login or Enrollment")
+@Category({"Face Access", "Recognition"})
+class RecognitionEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Success")
+    boolean success;
+
+    @Label("Latency")
+    @Timespan
+    long latency;
+}
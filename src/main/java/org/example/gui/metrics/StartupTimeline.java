@@ -0,0 +1,146 @@
+package org.example.gui.metrics;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Records when the milestones of application startup were reached, measured from the start of the JVM, and
+ * logs each one as it happens.
+ * <p>
+ * Every milestone is recorded once; later marks are ignored, so a milestone keeps the time it was first
+ * reached even if, say, the camera is reopened. Callers can wait for a milestone, which lets a test assert
+ * on the time to the first frame or to a ready recognizer. Thread-safe.
+ */
+public class StartupTimeline {
+
+    private static final System.Logger LOGGER = System.getLogger(StartupTimeline.class.getName());
+    private static final StartupTimeline SHARED = new StartupTimeline();
+
+    /**
+     * The points of startup that are recorded, in the order they are expected.
+     */
+    public enum Milestone {
+        WINDOW_SHOWN("window shown"),
+        NATIVES_LOADED("OpenCV natives loaded"),
+        VIEW_LOADED("view loaded"),
+        SERVICES_READY("services ready"),
+        CAMERA_OPENED("camera opened"),
+        FIRST_FRAME("first frame"),
+        FRAME_PATH_WARM("frame conversion warmed up"),
+        RECOGNIZER_READY("recognizer ready");
+
+        private final String label;
+
+        Milestone(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final long originNanos;
+    private final Map<Milestone, CompletableFuture<Duration>> milestones = new EnumMap<>(Milestone.class);
+
+    /**
+     * Creates a timeline measured from the start of the JVM, or from now if the start time is unknown.
+     */
+    public StartupTimeline() {
+        long now = System.nanoTime();
+        long sinceJvmStart = ProcessHandle.current().info().startInstant()
+                .map(start -> Math.max(0, Duration.between(start, Instant.now()).toNanos()))
+                .orElse(0L);
+        this.originNanos = now - sinceJvmStart;
+        for (Milestone milestone : Milestone.values()) {
+            milestones.put(milestone, new CompletableFuture<>());
+        }
+    }
+
+    /**
+     * Returns the timeline of this process's startup.
+     *
+     * @return the shared timeline
+     */
+    public static StartupTimeline shared() {
+        return SHARED;
+    }
+
+    /**
+     * Records that a milestone was reached now, unless it was reached before.
+     *
+     * @param milestone the milestone
+     * @return {@code true} if this call recorded it
+     */
+    public boolean mark(Milestone milestone) {
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - originNanos);
+        if (!milestones.get(milestone).complete(elapsed)) {
+            return false;
+        }
+        LOGGER.log(System.Logger.Level.INFO, () -> String.format(Locale.ROOT, "Startup: %s after %d ms",
+                milestone, elapsed.toMillis()));
+        return true;
+    }
+
+    /**
+     * Returns when a milestone was reached.
+     *
+     * @param milestone the milestone
+     * @return time since the JVM started, or empty if it has not been reached
+     */
+    public Optional<Duration> elapsed(Milestone milestone) {
+        return Optional.ofNullable(milestones.get(milestone).getNow(null));
+    }
+
+    /**
+     * Waits until a milestone is reached.
+     *
+     * @param milestone the milestone
+     * @param timeout   how long to wait at most
+     * @return time since the JVM started, or empty if it was not reached in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public Optional<Duration> await(Milestone milestone, Duration timeout) throws InterruptedException {
+        try {
+            return Optional.of(milestones.get(milestone).get(timeout.toNanos(), TimeUnit.NANOSECONDS));
+        } catch (TimeoutException e) {
+            return Optional.empty();
+        } catch (ExecutionException e) {
+            // Milestones are never completed exceptionally.
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns a future completing with the time a milestone was reached.
+     *
+     * @param milestone the milestone
+     * @return the future, completed already if the milestone was reached
+     */
+    public CompletableFuture<Duration> whenReached(Milestone milestone) {
+        return milestones.get(milestone).copy();
+    }
+
+    /**
+     * Summarizes the milestones reached so far in one line.
+     *
+     * @return e.g. {@code window shown 412 ms, OpenCV natives loaded 690 ms, ...}
+     */
+    public String summary() {
+        StringJoiner summary = new StringJoiner(", ");
+        for (Milestone milestone : Milestone.values()) {
+            elapsed(milestone).ifPresent(elapsed -> summary.add(milestone + " " + elapsed.toMillis() + " ms"));
+        }
+        return summary.length() == 0 ? "no milestones reached" : summary.toString();
+    }
+}
@@ -0,0 +1,361 @@
+package org.example.gui.recognition;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_COLOR;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imread;
+
+/**
+ * Enrolls every user of an existing dataset directory in the {@code <dataset>/<username>/img_N.jpg} layout the
+ * enrollment capture writes, e.g. when onboarding a site.
+ * <p>
+ * Users are imported in parallel on a {@link ForkJoinPool}. Each worker owns its own embedder, since the
+ * engine's methods are synchronized and workers sharing one would embed one image at a time, and holds a
+ * single decoded image at a time, so the number of workers bounds both CPU and memory use: it defaults to the
+ * number of cores and is lowered to fit the memory budget, if one is set.
+ * <p>
+ * Every user is written to the {@link EmbeddingStore} with its own fsync as soon as it is done, and users
+ * the index already knows are skipped unless replacing is requested. An interrupted import therefore resumes
+ * where it stopped when it is run again.
+ */
+public class DatasetImporter {
+
+    /**
+     * Rough native memory one worker needs: the detector and recognizer networks plus one decoded 1080p image.
+     */
+    public static final long WORKER_MEMORY_ESTIMATE = 96L << 20;
+
+    private static final System.Logger LOGGER = System.getLogger(DatasetImporter.class.getName());
+
+    /**
+     * Computes face embeddings; one instance is used by one worker at a time.
+     */
+    public interface Embedder extends AutoCloseable {
+
+        /**
+         * Embeds the most prominent face of an image.
+         *
+         * @param image BGR image
+         * @return the embedding, or empty if no face was found
+         */
+        Optional<float[]> embed(Mat image);
+
+        @Override
+        void close();
+    }
+
+    /**
+     * Creates the embedder of each worker.
+     */
+    public interface EmbedderFactory {
+
+        Embedder create() throws IOException;
+
+        /**
+         * Returns a factory loading a {@link FaceRecognitionEngine} per worker.
+         *
+         * @param modelDirectory directory containing the models
+         * @return the factory
+         */
+        static EmbedderFactory fromModels(Path modelDirectory) {
+            return () -> {
+                FaceRecognitionEngine engine = FaceRecognitionEngine.fromDirectory(modelDirectory);
+                return new Embedder() {
+                    @Override
+                    public Optional<float[]> embed(Mat image) {
+                        return engine.embedLargestFace(image);
+                    }
+
+                    @Override
+                    public void close() {
+                        engine.close();
+                    }
+                };
+            };
+        }
+    }
+
+    private final EmbedderFactory embedderFactory;
+    private final EmbeddingIndex index;
+    private final EmbeddingStore store;
+    private final Settings settings;
+
+    /**
+     * Creates an importer.
+     *
+     * @param embedderFactory creates one embedder per worker
+     * @param index           index receiving the embeddings; users it contains are skipped unless replacing
+     * @param store           store the index was loaded from, or {@code null} to only fill the index
+     * @param settings        parallelism and resume behaviour
+     */
+    public DatasetImporter(EmbedderFactory embedderFactory, EmbeddingIndex index, EmbeddingStore store,
+                           Settings settings) {
+        this.embedderFactory = embedderFactory;
+        this.index = index;
+        this.store = store;
+        this.settings = settings;
+    }
+
+    /**
+     * Imports a dataset from the command line:
+     * {@code DatasetImporter [dataset directory]}, with the models in {@code -Dface.models} and the
+     * embeddings in {@code <dataset>/embeddings.bin}.
+     *
+     * @param args optional dataset directory, {@code dataset} by default
+     * @throws IOException if the models, the store or the dataset cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        Path dataset = Path.of(args.length > 0 ? args[0] : "dataset");
+        Path modelDirectory = Path.of(System.getProperty("face.models", "models"));
+        if (!FaceRecognitionEngine.modelsAvailable(modelDirectory)) {
+            throw new IOException("Face models not found in " + modelDirectory.toAbsolutePath());
+        }
+
+        EmbeddingIndex index = JavaRecognitionBackend.newIndex();
+        try (index; EmbeddingStore store = EmbeddingStore.open(dataset.resolve("embeddings.bin"), index)) {
+            DatasetImporter importer = new DatasetImporter(EmbedderFactory.fromModels(modelDirectory), index, store,
+                    Settings.fromSystemProperties());
+            AtomicInteger done = new AtomicInteger();
+            Report report = importer.importAll(dataset, outcome -> {
+                int count = done.incrementAndGet();
+                if (!outcome.success()) {
+                    System.out.println("FAILED " + outcome.username() + ": " + outcome.failure());
+                } else if (count % 100 == 0) {
+                    System.out.println(count + " users imported");
+                }
+            });
+            System.out.println(report.summary());
+        }
+    }
+
+    /**
+     * Imports every user directory below the dataset directory.
+     *
+     * @param dataset  the dataset directory
+     * @param progress receives the outcome of every user as it completes, on a worker thread
+     * @return the summary of the import
+     * @throws IOException if the dataset directory cannot be listed or a worker's embedder cannot be created
+     */
+    public Report importAll(Path dataset, Consumer<UserOutcome> progress) throws IOException {
+        long start = System.nanoTime();
+        List<Path> userDirectories;
+        try (Stream<Path> entries = Files.list(dataset)) {
+            userDirectories = entries.filter(Files::isDirectory).sorted().toList();
+        }
+        Set<String> enrolled = settings.replace() ? Set.of() : index.enrolledUsers();
+        List<Path> pending = userDirectories.stream()
+                .filter(directory -> !enrolled.contains(directory.getFileName().toString()))
+                .toList();
+
+        int workers = workerCount();
+        LOGGER.log(System.Logger.Level.INFO, "Importing " + pending.size() + " of " + userDirectories.size()
+                + " users with " + workers + " workers");
+
+        BlockingQueue<Embedder> embedders = new LinkedBlockingQueue<>();
+        List<Embedder> created = new ArrayList<>();
+        try {
+            for (int i = 0; i < Math.min(workers, Math.max(1, pending.size())); i++) {
+                Embedder embedder = embedderFactory.create();
+                created.add(embedder);
+                embedders.add(embedder);
+            }
+
+            AtomicLong images = new AtomicLong();
+            List<UserOutcome> failures = Collections.synchronizedList(new ArrayList<>());
+            ForkJoinPool pool = new ForkJoinPool(workers);
+            try {
+                List<ForkJoinTask<?>> tasks = new ArrayList<>();
+                for (Path directory : pending) {
+                    tasks.add(pool.submit(() -> {
+                        UserOutcome outcome = importUser(directory, embedders);
+                        images.addAndGet(outcome.images());
+                        if (!outcome.success()) {
+                            failures.add(outcome);
+                        }
+                        progress.accept(outcome);
+                        return null;
+                    }));
+                }
+                for (ForkJoinTask<?> task : tasks) {
+                    task.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Import interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Import failed", e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+
+            return new Report(userDirectories.size(), pending.size() - failures.size(),
+                    userDirectories.size() - pending.size(), List.copyOf(failures), images.get(),
+                    Duration.ofNanos(System.nanoTime() - start));
+        } finally {
+            created.forEach(Embedder::close);
+        }
+    }
+
+    private int workerCount() {
+        int workers = settings.workers();
+        if (settings.memoryBudget() > 0) {
+            workers = (int) Math.min(workers, settings.memoryBudget() / WORKER_MEMORY_ESTIMATE);
+        }
+        return Math.max(1, workers);
+    }
+
+    private UserOutcome importUser(Path directory, BlockingQueue<Embedder> embedders) throws InterruptedException {
+        String username = directory.getFileName().toString();
+        List<Path> imageFiles;
+        try (Stream<Path> entries = Files.list(directory)) {
+            imageFiles = entries.filter(DatasetImporter::isImage).sorted().toList();
+        } catch (IOException e) {
+            return UserOutcome.failure(username, 0, 0, "Cannot list images: " + e.getMessage());
+        }
+        if (imageFiles.isEmpty()) {
+            return UserOutcome.failure(username, 0, 0, "No images");
+        }
+
+        List<float[]> embeddings = new ArrayList<>();
+        int unreadable = 0;
+        Embedder embedder = embedders.take();
+        try {
+            for (Path imageFile : imageFiles) {
+                try (Mat image = imread(imageFile.toString(), IMREAD_COLOR)) {
+                    if (image.empty()) {
+                        unreadable++;
+                        continue;
+                    }
+                    embedder.embed(image).ifPresent(embeddings::add);
+                }
+            }
+        } finally {
+            embedders.add(embedder);
+        }
+
+        if (embeddings.isEmpty()) {
+            return UserOutcome.failure(username, imageFiles.size(), unreadable, unreadable == imageFiles.size()
+                    ? "No readable images"
+                    : "No face found in " + (imageFiles.size() - unreadable) + " images");
+        }
+        if (store != null) {
+            try {
+                store.replaceUser(username, embeddings);
+            } catch (IOException e) {
+                return UserOutcome.failure(username, imageFiles.size(), unreadable,
+                        "Could not save the enrollment: " + e.getMessage());
+            }
+        }
+        index.replace(username, embeddings);
+        return new UserOutcome(username, imageFiles.size(), embeddings.size(), unreadable, null);
+    }
+
+    private static boolean isImage(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return Files.isRegularFile(file) && (name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png"));
+    }
+
+    /**
+     * Import configuration.
+     *
+     * @param workers      maximum number of users imported at once
+     * @param memoryBudget native memory the workers may use, 0 for no limit; each worker is assumed to need
+     *                     {@link #WORKER_MEMORY_ESTIMATE}
+     * @param replace      whether users already in the index are imported again
+     */
+    public record Settings(int workers, long memoryBudget, boolean replace) {
+
+        public static Settings defaults() {
+            return new Settings(Runtime.getRuntime().availableProcessors(), 0, false);
+        }
+
+        /**
+         * Reads the settings from {@code import.*} system properties, using the defaults for missing ones.
+         * The memory budget is given in bytes.
+         *
+         * @return the configured settings
+         */
+        public static Settings fromSystemProperties() {
+            Settings defaults = defaults();
+            return new Settings(
+                    Math.max(1, Integer.getInteger("import.workers", defaults.workers())),
+                    Long.getLong("import.memoryBudget", defaults.memoryBudget()),
+                    Boolean.getBoolean("import.replace"));
+        }
+    }
+
+    /**
+     * Outcome of importing one user.
+     *
+     * @param username   the user
+     * @param images     image files found
+     * @param embeddings faces enrolled
+     * @param unreadable images that could not be decoded
+     * @param failure    why the user was not enrolled, or {@code null} on success
+     */
+    public record UserOutcome(String username, int images, int embeddings, int unreadable, String failure) {
+
+        static UserOutcome failure(String username, int images, int unreadable, String failure) {
+            return new UserOutcome(username, images, 0, unreadable, failure);
+        }
+
+        public boolean success() {
+            return failure == null;
+        }
+    }
+
+    /**
+     * Summary of an import.
+     *
+     * @param users    user directories found
+     * @param imported users enrolled by this run
+     * @param skipped  users skipped because they were already enrolled
+     * @param failures users that could not be enrolled
+     * @param images   images processed
+     * @param elapsed  wall-clock time of the import
+     */
+    public record Report(int users, int imported, int skipped, List<UserOutcome> failures, long images,
+                         Duration elapsed) {
+
+        /**
+         * Returns the throughput of the import.
+         *
+         * @return images processed per second
+         */
+        public double imagesPerSecond() {
+            double seconds = elapsed.toNanos() / 1e9;
+            return seconds > 0 ? images / seconds : 0;
+        }
+
+        /**
+         * Summarizes the import in one line.
+         *
+         * @return the formatted summary
+         */
+        public String summary() {
+            return String.format(Locale.ROOT, "%d users: %d imported, %d already enrolled, %d failed;"
+                            + " %d images in %.1f s (%.1f images/s)", users, imported, skipped, failures.size(),
+                    images, elapsed.toNanos() / 1e9, imagesPerSecond());
+        }
+    }
+}
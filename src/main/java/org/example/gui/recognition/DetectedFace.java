@@ -0,0 +1,103 @@
+package org.example.gui.recognition;
+
+/**
+ * A face found by {@link FaceRecognitionEngine#detect}, in the row layout produced by {@code FaceDetectorYN}:
+ * bounding box, five landmark points (right eye, left eye, nose tip, right and left mouth corner) and score.
+ *
+ * @param values the 15 detector values: {@code x, y, w, h, 5 x (lx, ly), score}
+ */
+public record DetectedFace(float[] values) {
+
+    static final int VALUE_COUNT = 15;
+
+    public DetectedFace {
+        if (values.length != VALUE_COUNT) {
+            throw new IllegalArgumentException("A detected face has " + VALUE_COUNT + " values");
+        }
+    }
+
+    public float x() {
+        return values[0];
+    }
+
+    public float y() {
+        return values[1];
+    }
+
+    public float width() {
+        return values[2];
+    }
+
+    public float height() {
+        return values[3];
+    }
+
+    public float score() {
+        return values[14];
+    }
+
+    /**
+     * Estimates head yaw from the landmarks: the horizontal offset of the nose tip from the midpoint of the
+     * eyes, relative to the eye distance. Zero is frontal; the sign tells the direction.
+     *
+     * @return the normalized yaw estimate
+     */
+    public float yaw() {
+        float eyeDistance = Math.max(1f, Math.abs(values[6] - values[4]));
+        return (values[8] - (values[4] + values[6]) / 2) / eyeDistance;
+    }
+
+    /**
+     * Estimates head pitch from the landmarks: where the nose tip sits between the eye line and the mouth
+     * line. Roughly 0.5 is level.
+     *
+     * @return the normalized pitch estimate
+     */
+    public float pitch() {
+        float eyeY = (values[5] + values[7]) / 2;
+        float mouthY = (values[11] + values[13]) / 2;
+        float span = Math.max(1f, mouthY - eyeY);
+        return (values[9] - eyeY) / span;
+    }
+
+    /**
+     * Returns the bounding box area, used to pick the most prominent face.
+     *
+     * @return width times height in pixels
+     */
+    public float area() {
+        return width() * height();
+    }
+
+    /**
+     * Maps the face to a frame of a different resolution, e.g. from the analysis frame to the full frame.
+     *
+     * @param factor the scale factor applied to every coordinate
+     * @return the scaled face with the same score
+     */
+    public DetectedFace scaled(float factor) {
+        float[] scaled = values.clone();
+        for (int i = 0; i < VALUE_COUNT - 1; i++) {
+            scaled[i] *= factor;
+        }
+        return new DetectedFace(scaled);
+    }
+
+    /**
+     * Moves the bounding box and landmarks, e.g. to follow a tracked face or to map it out of a crop.
+     *
+     * @param dx horizontal offset in pixels
+     * @param dy vertical offset in pixels
+     * @return the moved face with the same size and score
+     */
+    public DetectedFace translated(float dx, float dy) {
+        float[] moved = values.clone();
+        moved[0] += dx;
+        moved[1] += dy;
+        for (int i = 4; i < VALUE_COUNT - 1; i += 2) {
+            moved[i] += dx;
+            moved[i + 1] += dy;
+        }
+        return new DetectedFace(moved);
+    }
+}
@@ -0,0 +1,560 @@
+package org.example.gui.recognition;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * Nearest-neighbour index over enrolled face embeddings for 1:N matching.
+ * <p>
+ * Embeddings are stored row by row in one contiguous off-heap segment and scored with the Vector API. A full
+ * float scan is bound by memory bandwidth, so {@link #bestMatch(float[])} scans a second, int8-quantized copy
+ * of the rows (a quarter of the bytes, one scale per row) and re-scores only the best few candidates against
+ * the exact floats. Large indexes are scanned in parallel chunks. Queries may run concurrently; enrollment
+ * changes take an exclusive lock.
+ */
+public class EmbeddingIndex implements AutoCloseable {
+
+    /**
+     * How embeddings are compared.
+     */
+    public enum Metric {
+        /**
+         * Cosine similarity of normalized embeddings; higher is better and the threshold is a minimum.
+         */
+        COSINE,
+        /**
+         * Squared Euclidean distance; lower is better and the threshold is a maximum.
+         */
+        L2;
+
+        boolean better(float candidate, float current) {
+            return this == COSINE ? candidate > current : candidate < current;
+        }
+
+        boolean accepts(float score, float threshold) {
+            return this == COSINE ? score >= threshold : score <= threshold;
+        }
+
+        float worst() {
+            return this == COSINE ? Float.NEGATIVE_INFINITY : Float.POSITIVE_INFINITY;
+        }
+    }
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+    /**
+     * Codes are loaded one byte per float lane, but no byte vector is narrower than 64 bits: with 128-bit
+     * float vectors (SSE, NEON) one load of codes is widened into several float vectors.
+     */
+    private static final VectorSpecies<Byte> CODE_SPECIES = VectorSpecies.of(byte.class,
+            VectorShape.forBitSize(Math.max(64, SPECIES.length() * Byte.SIZE)));
+    private static final int CODE_PARTS = CODE_SPECIES.length() / SPECIES.length();
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int PARALLEL_CHUNK_ROWS = 32 * 1024;
+    private static final int RERANK_CANDIDATES = 16;
+
+    private final int dimension;
+    private final long rowBytes;
+    private final Metric metric;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<String> usernames = new ArrayList<>();
+    private final Map<String, Integer> userIds = new HashMap<>();
+
+    private volatile float acceptanceThreshold;
+    private Arena arena;
+    private MemorySegment storage;
+    private MemorySegment codes;
+    private float[] codeScales;
+    private float[] squaredNorms;
+    private int[] rowUsers;
+    private int capacity;
+    private int rows;
+
+    /**
+     * Creates an empty index.
+     *
+     * @param dimension           embedding length, e.g. 128 for SFace
+     * @param metric              scoring metric
+     * @param acceptanceThreshold score a match must reach, see {@link Metric}
+     */
+    public EmbeddingIndex(int dimension, Metric metric, float acceptanceThreshold) {
+        if (dimension < 1) {
+            throw new IllegalArgumentException("dimension must be positive");
+        }
+        this.dimension = dimension;
+        this.rowBytes = (long) dimension * Float.BYTES;
+        this.metric = metric;
+        this.acceptanceThreshold = acceptanceThreshold;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds one embedding for a user. Cosine indexes store the embedding normalized.
+     *
+     * @param username  the user the embedding belongs to
+     * @param embedding the embedding, of length {@link #dimension()}
+     */
+    public void add(String username, float[] embedding) {
+        lock.writeLock().lock();
+        try {
+            appendRow(userId(username), embedding);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces all embeddings of a user, e.g. after re-enrollment.
+     *
+     * @param username   the user
+     * @param embeddings the user's new embeddings
+     */
+    public void replace(String username, List<float[]> embeddings) {
+        lock.writeLock().lock();
+        try {
+            removeRows(username);
+            int userId = userId(username);
+            for (float[] embedding : embeddings) {
+                appendRow(userId, embedding);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes every embedding of a user.
+     *
+     * @param username the user to remove
+     * @return {@code true} if the user had embeddings
+     */
+    public boolean remove(String username) {
+        lock.writeLock().lock();
+        try {
+            return removeRows(username) > 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the best matching user if their score passes the acceptance threshold.
+     *
+     * @param query the query embedding
+     * @return the best acceptable match, if any
+     */
+    public Optional<Match> bestMatch(float[] query) {
+        float[] probe = prepare(query);
+        float probeNorm = dot(probe, probe);
+        lock.readLock().lock();
+        try {
+            if (rows == 0) {
+                return Optional.empty();
+            }
+
+            int[] candidates = rows <= PARALLEL_CHUNK_ROWS
+                    ? candidates(probe, probeNorm, 0, rows)
+                    : parallelCandidates(probe, probeNorm);
+            return rerank(probe, candidates);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the best acceptable match for each of several queries in one pass over the index: every stored
+     * row is read once for the whole batch rather than once per query.
+     *
+     * @param queries the query embeddings
+     * @return the best acceptable match of each query, in query order
+     */
+    public List<Optional<Match>> bestMatches(List<float[]> queries) {
+        float[][] probes = new float[queries.size()][];
+        float[] probeNorms = new float[probes.length];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = prepare(queries.get(i));
+            probeNorms[i] = dot(probes[i], probes[i]);
+        }
+        lock.readLock().lock();
+        try {
+            List<Optional<Match>> matches = new ArrayList<>(probes.length);
+            if (rows == 0) {
+                for (int i = 0; i < probes.length; i++) {
+                    matches.add(Optional.empty());
+                }
+                return matches;
+            }
+
+            int[][] candidates = rows <= PARALLEL_CHUNK_ROWS
+                    ? candidates(probes, probeNorms, 0, rows)
+                    : parallelCandidates(probes, probeNorms);
+            for (int i = 0; i < probes.length; i++) {
+                matches.add(rerank(probes[i], candidates[i]));
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the {@code k} best scoring users, each scored by their closest embedding, regardless of the
+     * acceptance threshold.
+     *
+     * @param query the query embedding
+     * @param k     maximum number of users to return
+     * @return matches ordered from best to worst
+     */
+    public List<Match> topK(float[] query, int k) {
+        float[] probe = prepare(query);
+        lock.readLock().lock();
+        try {
+            float[] perUser = new float[usernames.size()];
+            Arrays.fill(perUser, metric.worst());
+            for (int row = 0; row < rows; row++) {
+                float score = score(probe, row);
+                int user = rowUsers[row];
+                if (metric.better(score, perUser[user])) {
+                    perUser[user] = score;
+                }
+            }
+
+            List<Match> matches = new ArrayList<>();
+            for (int user = 0; user < perUser.length; user++) {
+                if (perUser[user] != metric.worst()) {
+                    matches.add(new Match(usernames.get(user), perUser[user]));
+                }
+            }
+            matches.sort((a, b) -> metric == Metric.COSINE
+                    ? Float.compare(b.score(), a.score())
+                    : Float.compare(a.score(), b.score()));
+            return matches.size() > k ? List.copyOf(matches.subList(0, k)) : matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Changes the score a match must reach to be accepted.
+     *
+     * @param acceptanceThreshold the new threshold, see {@link Metric}
+     */
+    public void setAcceptanceThreshold(float acceptanceThreshold) {
+        this.acceptanceThreshold = acceptanceThreshold;
+    }
+
+    public float acceptanceThreshold() {
+        return acceptanceThreshold;
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public Metric metric() {
+        return metric;
+    }
+
+    /**
+     * Returns the number of stored embeddings.
+     *
+     * @return the embedding count
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the users that have at least one embedding.
+     *
+     * @return a snapshot of the enrolled usernames
+     */
+    public Set<String> enrolledUsers() {
+        lock.readLock().lock();
+        try {
+            Set<String> enrolled = new HashSet<>();
+            for (int row = 0; row < rows; row++) {
+                enrolled.add(usernames.get(rowUsers[row]));
+            }
+            return enrolled;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Releases the off-heap storage.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            arena.close();
+            rows = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int[] parallelCandidates(float[] probe, float probeNorm) {
+        int chunks = (rows + PARALLEL_CHUNK_ROWS - 1) / PARALLEL_CHUNK_ROWS;
+        return IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> candidates(probe, probeNorm, chunk * PARALLEL_CHUNK_ROWS,
+                        Math.min(rows, (chunk + 1) * PARALLEL_CHUNK_ROWS)))
+                .flatMapToInt(IntStream::of)
+                .toArray();
+    }
+
+    private int[][] parallelCandidates(float[][] probes, float[] probeNorms) {
+        int chunks = (rows + PARALLEL_CHUNK_ROWS - 1) / PARALLEL_CHUNK_ROWS;
+        List<int[][]> perChunk = IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> candidates(probes, probeNorms, chunk * PARALLEL_CHUNK_ROWS,
+                        Math.min(rows, (chunk + 1) * PARALLEL_CHUNK_ROWS)))
+                .toList();
+        int[][] merged = new int[probes.length][];
+        for (int i = 0; i < probes.length; i++) {
+            int query = i;
+            merged[i] = perChunk.stream().flatMapToInt(chunk -> IntStream.of(chunk[query])).toArray();
+        }
+        return merged;
+    }
+
+    /**
+     * Scans a row range on the quantized codes and returns the rows with the best approximate scores.
+     */
+    private int[] candidates(float[] probe, float probeNorm, int from, int to) {
+        int limit = Math.min(RERANK_CANDIDATES, to - from);
+        int[] bestRows = new int[limit];
+        float[] bestScores = new float[limit];
+        int count = 0;
+        for (int row = from; row < to; row++) {
+            float dot = approximateDot(probe, row);
+            float score = metric == Metric.COSINE ? dot : squaredNorms[row] + probeNorm - 2 * dot;
+            count = offerCandidate(bestRows, bestScores, count, row, score);
+        }
+        return bestRows;
+    }
+
+    /**
+     * Batch version of {@link #candidates(float[], float, int, int)}: each row's codes are scored against
+     * every probe while they are in cache.
+     */
+    private int[][] candidates(float[][] probes, float[] probeNorms, int from, int to) {
+        int limit = Math.min(RERANK_CANDIDATES, to - from);
+        int[][] bestRows = new int[probes.length][limit];
+        float[][] bestScores = new float[probes.length][limit];
+        int[] counts = new int[probes.length];
+        for (int row = from; row < to; row++) {
+            for (int i = 0; i < probes.length; i++) {
+                float dot = approximateDot(probes[i], row);
+                float score = metric == Metric.COSINE ? dot : squaredNorms[row] + probeNorms[i] - 2 * dot;
+                counts[i] = offerCandidate(bestRows[i], bestScores[i], counts[i], row, score);
+            }
+        }
+        return bestRows;
+    }
+
+    /**
+     * Inserts a row into a candidate list sorted from best to worst, dropping the worst one once the list is
+     * full, and returns the new number of candidates.
+     */
+    private int offerCandidate(int[] bestRows, float[] bestScores, int count, int row, float score) {
+        if (count < bestRows.length) {
+            count++;
+        } else if (!metric.better(score, bestScores[count - 1])) {
+            return count;
+        }
+
+        int position = count - 1;
+        while (position > 0 && metric.better(score, bestScores[position - 1])) {
+            bestScores[position] = bestScores[position - 1];
+            bestRows[position] = bestRows[position - 1];
+            position--;
+        }
+        bestScores[position] = score;
+        bestRows[position] = row;
+        return count;
+    }
+
+    /**
+     * Re-scores the candidates against the exact floats and returns the best one if it is acceptable.
+     */
+    private Optional<Match> rerank(float[] probe, int[] candidates) {
+        int bestRow = -1;
+        float bestScore = metric.worst();
+        for (int row : candidates) {
+            float score = score(probe, row);
+            if (metric.better(score, bestScore)) {
+                bestScore = score;
+                bestRow = row;
+            }
+        }
+        if (bestRow < 0 || !metric.accepts(bestScore, acceptanceThreshold)) {
+            return Optional.empty();
+        }
+        return Optional.of(new Match(usernames.get(rowUsers[bestRow]), bestScore));
+    }
+
+    private float approximateDot(float[] probe, int row) {
+        long offset = (long) row * dimension;
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = CODE_SPECIES.loopBound(dimension);
+        for (; i < bound; i += CODE_SPECIES.length()) {
+            ByteVector code = ByteVector.fromMemorySegment(CODE_SPECIES, codes, offset + i, ByteOrder.nativeOrder());
+            for (int part = 0; part < CODE_PARTS; part++) {
+                FloatVector stored = (FloatVector) code.convertShape(VectorOperators.B2F, SPECIES, part);
+                acc = stored.fma(FloatVector.fromArray(SPECIES, probe, i + part * SPECIES.length()), acc);
+            }
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < dimension; i++) {
+            sum += codes.get(ValueLayout.JAVA_BYTE, offset + i) * probe[i];
+        }
+        return sum * codeScales[row];
+    }
+
+    private float score(float[] probe, int row) {
+        long offset = row * rowBytes;
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(dimension);
+        if (metric == Metric.COSINE) {
+            for (; i < bound; i += SPECIES.length()) {
+                FloatVector stored = FloatVector.fromMemorySegment(SPECIES, storage, offset + (long) i * Float.BYTES,
+                        ByteOrder.nativeOrder());
+                acc = stored.fma(FloatVector.fromArray(SPECIES, probe, i), acc);
+            }
+            float sum = acc.reduceLanes(VectorOperators.ADD);
+            for (; i < dimension; i++) {
+                sum += storage.getAtIndex(ValueLayout.JAVA_FLOAT, row * (long) dimension + i) * probe[i];
+            }
+            return sum;
+        }
+
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector stored = FloatVector.fromMemorySegment(SPECIES, storage, offset + (long) i * Float.BYTES,
+                    ByteOrder.nativeOrder());
+            FloatVector diff = stored.sub(FloatVector.fromArray(SPECIES, probe, i));
+            acc = diff.fma(diff, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < dimension; i++) {
+            float diff = storage.getAtIndex(ValueLayout.JAVA_FLOAT, row * (long) dimension + i) - probe[i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private float[] prepare(float[] embedding) {
+        if (embedding.length != dimension) {
+            throw new IllegalArgumentException("Expected an embedding of length " + dimension);
+        }
+        float[] copy = embedding.clone();
+        return metric == Metric.COSINE ? FaceRecognitionEngine.normalize(copy) : copy;
+    }
+
+    private int userId(String username) {
+        return userIds.computeIfAbsent(username, name -> {
+            usernames.add(name);
+            return usernames.size() - 1;
+        });
+    }
+
+    private void appendRow(int userId, float[] embedding) {
+        float[] row = prepare(embedding);
+        if (rows == capacity) {
+            allocate(capacity * 2);
+        }
+        MemorySegment.copy(row, 0, storage, ValueLayout.JAVA_FLOAT, rows * rowBytes, dimension);
+
+        float maxAbs = 0;
+        for (float value : row) {
+            maxAbs = Math.max(maxAbs, Math.abs(value));
+        }
+        float scale = maxAbs == 0 ? 1 : maxAbs / Byte.MAX_VALUE;
+        long codeOffset = (long) rows * dimension;
+        for (int i = 0; i < dimension; i++) {
+            codes.set(ValueLayout.JAVA_BYTE, codeOffset + i, (byte) Math.round(row[i] / scale));
+        }
+        codeScales[rows] = scale;
+        squaredNorms[rows] = dot(row, row);
+        rowUsers[rows] = userId;
+        rows++;
+    }
+
+    private int removeRows(String username) {
+        Integer userId = userIds.get(username);
+        if (userId == null) {
+            return 0;
+        }
+
+        int removed = 0;
+        int row = 0;
+        while (row < rows) {
+            if (rowUsers[row] == userId) {
+                int last = rows - 1;
+                if (row != last) {
+                    MemorySegment.copy(storage, last * rowBytes, storage, row * rowBytes, rowBytes);
+                    MemorySegment.copy(codes, (long) last * dimension, codes, (long) row * dimension, dimension);
+                    codeScales[row] = codeScales[last];
+                    squaredNorms[row] = squaredNorms[last];
+                    rowUsers[row] = rowUsers[last];
+                }
+                rows--;
+                removed++;
+            } else {
+                row++;
+            }
+        }
+        return removed;
+    }
+
+    private void allocate(int newCapacity) {
+        Arena newArena = Arena.ofShared();
+        MemorySegment newStorage = newArena.allocate(newCapacity * rowBytes, 64);
+        MemorySegment newCodes = newArena.allocate((long) newCapacity * dimension, 64);
+        if (storage != null) {
+            MemorySegment.copy(storage, 0, newStorage, 0, rows * rowBytes);
+            MemorySegment.copy(codes, 0, newCodes, 0, (long) rows * dimension);
+            arena.close();
+        }
+        arena = newArena;
+        storage = newStorage;
+        codes = newCodes;
+        codeScales = Arrays.copyOf(codeScales == null ? new float[0] : codeScales, newCapacity);
+        squaredNorms = Arrays.copyOf(squaredNorms == null ? new float[0] : squaredNorms, newCapacity);
+        rowUsers = Arrays.copyOf(rowUsers == null ? new int[0] : rowUsers, newCapacity);
+        capacity = newCapacity;
+    }
+}
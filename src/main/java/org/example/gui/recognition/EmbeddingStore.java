@@ -0,0 +1,414 @@
+package org.example.gui.recognition;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, memory-mapped file of enrolled face embeddings.
+ * <p>
+ * The file starts with a 16-byte header ({@code int magic 'EMB1', int version, int dimension,
+ * int recordSize}) followed by fixed-width little-endian records:
+ * <pre>
+ * int type, int userId, payload (dimension * 4 bytes), int crc32 of type, userId and payload
+ * </pre>
+ * A {@code USER} record adds a username to the dictionary (payload: {@code short length} and UTF-8 bytes),
+ * an {@code EMBEDDING} record adds one embedding to a user and a {@code DELETE} record drops all earlier
+ * embeddings of a user. Every append ends with a {@code COMMIT} record whose payload is the number of records
+ * it commits, and only committed records are replayed: a re-enrollment torn after its {@code DELETE} leaves
+ * the previous enrollment in place instead of deleting the user.
+ * <p>
+ * Opening the store maps the file and replays it into an {@link EmbeddingIndex} without decoding any
+ * images; a torn or corrupt tail is detected by its checksum or a missing commit and overwritten by the next
+ * append. Each enrollment is written with a single append followed by an fsync. Once most records are
+ * obsolete the file is rewritten in the background with only the live ones. Files of version 1, which had no
+ * commit records, are read record by record and rewritten in the current version when opened.
+ */
+public class EmbeddingStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x31424D45;
+    private static final int VERSION = 2;
+    private static final int VERSION_WITHOUT_COMMITS = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private static final int TYPE_USER = 1;
+    private static final int TYPE_EMBEDDING = 2;
+    private static final int TYPE_DELETE = 3;
+    private static final int TYPE_COMMIT = 4;
+
+    private static final int COMPACTION_MIN_RECORDS = 1024;
+    private static final long CLOSE_TIMEOUT_SECONDS = 60;
+
+    private final Path file;
+    private final int dimension;
+    private final int recordSize;
+    private final Map<String, Integer> userIds = new HashMap<>();
+    private final Map<Integer, Integer> liveEmbeddings = new HashMap<>();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(new DaemonThreadFactory());
+
+    private FileChannel channel;
+    private long endOffset;
+    private long totalRecords;
+    private boolean compactionScheduled;
+
+    private EmbeddingStore(Path file, int dimension) {
+        this.file = file;
+        this.dimension = dimension;
+        this.recordSize = 12 + dimension * Float.BYTES;
+    }
+
+    /**
+     * Opens the store, creating it if needed, and loads every live embedding into the index.
+     *
+     * @param file  path of the store file
+     * @param index index to populate; its dimension defines the record width
+     * @return the open store
+     * @throws IOException if the file cannot be read or belongs to a different embedding dimension
+     */
+    public static EmbeddingStore open(Path file, EmbeddingIndex index) throws IOException {
+        EmbeddingStore store = new EmbeddingStore(file, index.dimension());
+        Map<Integer, List<float[]>> embeddings = store.load();
+        Map<Integer, String> usernames = new HashMap<>();
+        store.userIds.forEach((name, id) -> usernames.put(id, name));
+        embeddings.forEach((userId, userEmbeddings) -> {
+            if (!userEmbeddings.isEmpty()) {
+                index.replace(usernames.get(userId), userEmbeddings);
+            }
+        });
+        return store;
+    }
+
+    /**
+     * Durably replaces all embeddings of a user with a single append and fsync.
+     *
+     * @param username   the user
+     * @param embeddings the user's new embeddings
+     * @throws IOException if the records cannot be written
+     */
+    public synchronized void replaceUser(String username, List<float[]> embeddings) throws IOException {
+        List<ByteBuffer> records = new ArrayList<>();
+        int userId = userRecord(username, records);
+        records.add(record(TYPE_DELETE, userId, null));
+        for (float[] embedding : embeddings) {
+            records.add(record(TYPE_EMBEDDING, userId, embedding));
+        }
+        append(records);
+        liveEmbeddings.put(userId, embeddings.size());
+        scheduleCompactionIfWorthwhile();
+    }
+
+    /**
+     * Durably removes all embeddings of a user.
+     *
+     * @param username the user to remove
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized void removeUser(String username) throws IOException {
+        Integer userId = userIds.get(username);
+        if (userId == null) {
+            return;
+        }
+        append(List.of(record(TYPE_DELETE, userId, null)));
+        liveEmbeddings.remove(userId);
+        scheduleCompactionIfWorthwhile();
+    }
+
+    /**
+     * Rewrites the file with only the live records. Runs on the caller's thread; appends wait meanwhile.
+     *
+     * @throws IOException if the compacted file cannot be written
+     */
+    public synchronized void compact() throws IOException {
+        if (channel == null) {
+            throw new IOException("Embedding store is closed");
+        }
+        Map<Integer, List<float[]>> embeddings;
+        // The mapping is released before the file is replaced; a mapped file cannot be replaced everywhere.
+        try (Arena mapping = Arena.ofConfined()) {
+            embeddings = replay(mapValidRecords(mapping));
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".compact");
+        Map<String, Integer> compactedIds = new LinkedHashMap<>();
+        long records = 0;
+
+        try (FileChannel output = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = writeFully(output, header(), 0);
+            for (Map.Entry<String, Integer> user : userIds.entrySet()) {
+                List<float[]> userEmbeddings = embeddings.get(user.getValue());
+                if (userEmbeddings == null || userEmbeddings.isEmpty()) {
+                    continue;
+                }
+                int userId = compactedIds.size();
+                compactedIds.put(user.getKey(), userId);
+                position = writeFully(output, record(TYPE_USER, userId, user.getKey()), position);
+                for (float[] embedding : userEmbeddings) {
+                    position = writeFully(output, record(TYPE_EMBEDDING, userId, embedding), position);
+                }
+                records += 1 + userEmbeddings.size();
+            }
+            position = writeFully(output, commit(records), position);
+            records++;
+            output.force(true);
+        }
+
+        channel.close();
+        channel = null;
+        try {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The old file is untouched and still matches the user ids in memory.
+            Files.deleteIfExists(temporary);
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            throw e;
+        }
+        // Should reopening fail, the store stays closed rather than appending with the old user ids.
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        endOffset = channel.size();
+        liveEmbeddings.clear();
+        compactedIds.forEach((name, id) -> liveEmbeddings.put(id, embeddings.get(userIds.get(name)).size()));
+        userIds.clear();
+        userIds.putAll(compactedIds);
+        totalRecords = records;
+    }
+
+    /**
+     * Closes the file after any scheduled compaction has finished.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    private synchronized Map<Integer, List<float[]>> load() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < HEADER_SIZE) {
+            endOffset = writeFully(channel, header(), 0);
+            channel.force(true);
+            return new HashMap<>();
+        }
+
+        Map<Integer, List<float[]>> embeddings;
+        boolean outdated;
+        try (Arena mapping = Arena.ofConfined()) {
+            ByteBuffer mapped = mapValidRecords(mapping);
+            outdated = mapped.getInt(4) != VERSION;
+            endOffset = mapped.limit();
+            embeddings = replay(mapped);
+        }
+        if (outdated) {
+            // Compaction renumbers the users, so the rewritten file is replayed again.
+            compact();
+            try (Arena mapping = Arena.ofConfined()) {
+                embeddings = replay(mapValidRecords(mapping));
+            }
+        }
+        embeddings.forEach((userId, userEmbeddings) -> liveEmbeddings.put(userId, userEmbeddings.size()));
+        return embeddings;
+    }
+
+    /**
+     * Maps the file into the given arena, validates the header and limits the buffer to the committed records
+     * before the first one whose checksum does not match. The file is not truncated because mapped files
+     * cannot be resized everywhere; the mapping is released when the arena is closed.
+     */
+    private ByteBuffer mapValidRecords(Arena mapping) throws IOException {
+        long length = endOffset > 0 ? Math.min(endOffset, channel.size()) : channel.size();
+        ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length, mapping).asByteBuffer();
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        int version = mapped.getInt(4);
+        if (mapped.getInt(0) != MAGIC || (version != VERSION && version != VERSION_WITHOUT_COMMITS)) {
+            throw new IOException("Not an embedding store: " + file);
+        }
+        if (mapped.getInt(8) != dimension || mapped.getInt(12) != recordSize) {
+            throw new IOException("Embedding store " + file + " has dimension " + mapped.getInt(8)
+                    + ", expected " + dimension);
+        }
+
+        long validLength = HEADER_SIZE;
+        long committedLength = HEADER_SIZE;
+        int uncommitted = 0;
+        CRC32 crc = new CRC32();
+        while (validLength + recordSize <= mapped.limit()) {
+            int offset = (int) validLength;
+            crc.reset();
+            crc.update(mapped.slice(offset, recordSize - 4));
+            if ((int) crc.getValue() != mapped.getInt(offset + recordSize - 4)) {
+                break;
+            }
+            validLength += recordSize;
+            if (mapped.getInt(offset) != TYPE_COMMIT) {
+                uncommitted++;
+            } else if (mapped.getInt(offset + 8) == uncommitted) {
+                committedLength = validLength;
+                uncommitted = 0;
+            } else {
+                break;
+            }
+        }
+        mapped.limit((int) (version == VERSION ? committedLength : validLength));
+        return mapped;
+    }
+
+    private Map<Integer, List<float[]>> replay(ByteBuffer mapped) {
+        Map<Integer, List<float[]>> embeddings = new HashMap<>();
+        totalRecords = 0;
+        for (int offset = HEADER_SIZE; offset + recordSize <= mapped.limit(); offset += recordSize) {
+            int type = mapped.getInt(offset);
+            int userId = mapped.getInt(offset + 4);
+            int payload = offset + 8;
+            totalRecords++;
+
+            switch (type) {
+                case TYPE_USER -> {
+                    byte[] name = new byte[mapped.getShort(payload)];
+                    mapped.get(payload + 2, name);
+                    userIds.put(new String(name, StandardCharsets.UTF_8), userId);
+                }
+                case TYPE_EMBEDDING -> {
+                    float[] embedding = new float[dimension];
+                    mapped.slice(payload, dimension * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                            .asFloatBuffer().get(embedding);
+                    embeddings.computeIfAbsent(userId, id -> new ArrayList<>()).add(embedding);
+                }
+                case TYPE_DELETE -> embeddings.remove(userId);
+                case TYPE_COMMIT -> {
+                    // The buffer ends after the last commit, so every record before it is applied.
+                }
+                default -> {
+                    // Unknown record types are skipped so newer files stay readable.
+                }
+            }
+        }
+        return embeddings;
+    }
+
+    private int userRecord(String username, List<ByteBuffer> records) {
+        Integer existing = userIds.get(username);
+        if (existing != null) {
+            return existing;
+        }
+        int userId = userIds.values().stream().mapToInt(Integer::intValue).max().orElse(-1) + 1;
+        records.add(record(TYPE_USER, userId, username));
+        userIds.put(username, userId);
+        return userId;
+    }
+
+    private void append(List<ByteBuffer> records) throws IOException {
+        if (channel == null) {
+            throw new IOException("Embedding store is closed");
+        }
+        ByteBuffer batch = ByteBuffer.allocate((records.size() + 1) * recordSize);
+        records.forEach(batch::put);
+        batch.put(commit(records.size()));
+        endOffset = writeFully(channel, batch.flip(), endOffset);
+        channel.force(false);
+        totalRecords += records.size() + 1;
+    }
+
+    private void scheduleCompactionIfWorthwhile() {
+        long live = userIds.size() + liveEmbeddings.values().stream().mapToLong(Integer::longValue).sum();
+        if (compactionScheduled || totalRecords < COMPACTION_MIN_RECORDS || live * 2 > totalRecords) {
+            return;
+        }
+        compactionScheduled = true;
+        compactor.submit(() -> {
+            try {
+                compact();
+            } catch (IOException e) {
+                // The uncompacted file is still valid; retry on a later enrollment.
+            } finally {
+                synchronized (this) {
+                    compactionScheduled = false;
+                }
+            }
+        });
+    }
+
+    private ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(recordSize)
+                .flip();
+    }
+
+    private ByteBuffer commit(long records) {
+        return record(TYPE_COMMIT, 0, Math.toIntExact(records));
+    }
+
+    private ByteBuffer record(int type, int userId, Object payload) {
+        ByteBuffer record = ByteBuffer.allocate(recordSize).order(ByteOrder.LITTLE_ENDIAN);
+        record.putInt(type).putInt(userId);
+        if (payload instanceof float[] embedding) {
+            if (embedding.length != dimension) {
+                throw new IllegalArgumentException("Expected an embedding of length " + dimension);
+            }
+            for (float value : embedding) {
+                record.putFloat(value);
+            }
+        } else if (payload instanceof String username) {
+            byte[] name = username.getBytes(StandardCharsets.UTF_8);
+            if (name.length > dimension * Float.BYTES - 2) {
+                throw new IllegalArgumentException("Username is too long: " + username);
+            }
+            record.putShort((short) name.length).put(name);
+        } else if (payload instanceof Integer count) {
+            record.putInt(count);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, recordSize - 4);
+        record.putInt(recordSize - 4, (int) crc.getValue());
+        return record.position(0).limit(recordSize);
+    }
+
+    private static long writeFully(FileChannel target, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += target.write(buffer, position);
+        }
+        return position;
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "EmbeddingStoreCompactionThread");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.example.gui.recognition;
+
+/**
+ * Outcome of enrolling a user from a set of frames.
+ *
+ * @param success    whether at least one usable face was enrolled
+ * @param embeddings number of embeddings stored for the user
+ * @param message    human readable summary
+ */
+public record EnrollmentResult(boolean success, int embeddings, String message) {
+
+    public static EnrollmentResult success(int embeddings, String message) {
+        return new EnrollmentResult(true, embeddings, message);
+    }
+
+    public static EnrollmentResult failure(String message) {
+        return new EnrollmentResult(false, 0, message);
+    }
+}
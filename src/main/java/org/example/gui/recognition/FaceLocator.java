@@ -0,0 +1,20 @@
+package org.example.gui.recognition;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.util.Optional;
+
+/**
+ * Finds the most prominent face in a frame.
+ */
+@FunctionalInterface
+public interface FaceLocator {
+
+    /**
+     * Locates the most prominent face.
+     *
+     * @param frame BGR frame
+     * @return the face, or empty if none was found
+     */
+    Optional<DetectedFace> locate(Mat frame);
+}
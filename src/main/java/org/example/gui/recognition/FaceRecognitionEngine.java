@@ -0,0 +1,207 @@
+package org.example.gui.recognition;
+
+import org.bytedeco.javacpp.FloatPointer;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.bytedeco.opencv.opencv_objdetect.FaceDetectorYN;
+import org.bytedeco.opencv.opencv_objdetect.FaceRecognizerSF;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_32F;
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+
+/**
+ * Detects, aligns and embeds faces inside the JVM using OpenCV's YuNet detector and SFace recognizer.
+ * <p>
+ * Both networks are loaded once from local ONNX files. The engine reuses its native buffers between calls
+ * and is therefore not thread-safe; all methods are synchronized.
+ */
+public class FaceRecognitionEngine implements AutoCloseable {
+
+    public static final String DETECTOR_MODEL = "face_detection_yunet_2023mar.onnx";
+    public static final String RECOGNIZER_MODEL = "face_recognition_sface_2021dec.onnx";
+
+    private static final float SCORE_THRESHOLD = 0.8f;
+    private static final float NMS_THRESHOLD = 0.3f;
+    private static final int TOP_K = 50;
+    private static final int WARM_UP_SIZE = 320;
+
+    private final FaceDetectorYN detector;
+    private final FaceRecognizerSF recognizer;
+    private final Mat faces = new Mat();
+    private final Mat aligned = new Mat();
+    private final Mat feature = new Mat();
+    private final Mat faceRow = new Mat(1, DetectedFace.VALUE_COUNT, CV_32F);
+
+    private int inputWidth;
+    private int inputHeight;
+
+    /**
+     * Loads the detector and recognizer models.
+     *
+     * @param detectorModel   path to the YuNet ONNX model
+     * @param recognizerModel path to the SFace ONNX model
+     * @throws IOException if either model file is missing
+     */
+    public FaceRecognitionEngine(Path detectorModel, Path recognizerModel) throws IOException {
+        requireFile(detectorModel);
+        requireFile(recognizerModel);
+
+        inputWidth = 320;
+        inputHeight = 320;
+        try (Size inputSize = new Size(inputWidth, inputHeight)) {
+            detector = FaceDetectorYN.create(detectorModel.toString(), "", inputSize,
+                    SCORE_THRESHOLD, NMS_THRESHOLD, TOP_K, 0, 0);
+        }
+        recognizer = FaceRecognizerSF.create(recognizerModel.toString(), "");
+    }
+
+    /**
+     * Loads the engine from a directory holding {@link #DETECTOR_MODEL} and {@link #RECOGNIZER_MODEL}.
+     *
+     * @param modelDirectory directory containing both models
+     * @return the loaded engine
+     * @throws IOException if either model file is missing
+     */
+    public static FaceRecognitionEngine fromDirectory(Path modelDirectory) throws IOException {
+        return new FaceRecognitionEngine(modelDirectory.resolve(DETECTOR_MODEL), modelDirectory.resolve(RECOGNIZER_MODEL));
+    }
+
+    /**
+     * Indicates whether both model files exist in the directory.
+     *
+     * @param modelDirectory directory to check
+     * @return {@code true} if {@link #fromDirectory(Path)} can load the engine
+     */
+    public static boolean modelsAvailable(Path modelDirectory) {
+        return Files.isRegularFile(modelDirectory.resolve(DETECTOR_MODEL))
+                && Files.isRegularFile(modelDirectory.resolve(RECOGNIZER_MODEL));
+    }
+
+    /**
+     * Detects all faces in a BGR frame.
+     *
+     * @param frame the frame to search
+     * @return detected faces in detector order, empty if none
+     */
+    public synchronized List<DetectedFace> detect(Mat frame) {
+        if (frame.cols() != inputWidth || frame.rows() != inputHeight) {
+            inputWidth = frame.cols();
+            inputHeight = frame.rows();
+            try (Size inputSize = new Size(inputWidth, inputHeight)) {
+                detector.setInputSize(inputSize);
+            }
+        }
+
+        detector.detect(frame, faces);
+        int count = faces.empty() ? 0 : faces.rows();
+        List<DetectedFace> detected = new ArrayList<>(count);
+        if (count == 0) {
+            return detected;
+        }
+
+        FloatPointer values = new FloatPointer(faces.data());
+        for (int i = 0; i < count; i++) {
+            float[] row = new float[DetectedFace.VALUE_COUNT];
+            values.position((long) i * DetectedFace.VALUE_COUNT).get(row);
+            detected.add(new DetectedFace(row));
+        }
+        return detected;
+    }
+
+    /**
+     * Aligns a detected face and computes its L2-normalized embedding.
+     *
+     * @param frame the frame the face was detected in
+     * @param face  the detected face
+     * @return the embedding, so that the dot product of two embeddings is their cosine similarity
+     */
+    public synchronized float[] embed(Mat frame, DetectedFace face) {
+        new FloatPointer(faceRow.data()).put(face.values());
+        recognizer.alignCrop(frame, faceRow, aligned);
+        recognizer.feature(aligned, feature);
+
+        float[] embedding = new float[(int) feature.total()];
+        new FloatPointer(feature.data()).get(embedding);
+        return normalize(embedding);
+    }
+
+    /**
+     * Detects the largest face in the frame.
+     *
+     * @param frame the frame to search
+     * @return the most prominent face, or empty if no face was found
+     */
+    public synchronized Optional<DetectedFace> detectLargest(Mat frame) {
+        return detect(frame).stream().max(Comparator.comparingDouble(DetectedFace::area));
+    }
+
+    /**
+     * Detects the largest face in the frame and embeds it.
+     *
+     * @param frame the frame to search
+     * @return the embedding of the most prominent face, or empty if no face was found
+     */
+    public synchronized Optional<float[]> embedLargestFace(Mat frame) {
+        return detectLargest(frame).map(face -> embed(frame, face));
+    }
+
+    /**
+     * Runs both networks once on a blank frame, so that the first real frame does not pay for their lazy
+     * initialization.
+     */
+    public synchronized void warmUp() {
+        try (Scalar black = new Scalar(0, 0, 0, 0);
+             Mat blank = new Mat(WARM_UP_SIZE, WARM_UP_SIZE, CV_8UC3, black)) {
+            detect(blank);
+            // A frontal face in the centre of the frame, with plausible landmarks for the alignment.
+            float size = WARM_UP_SIZE;
+            embed(blank, new DetectedFace(new float[]{
+                    size / 4, size / 4, size / 2, size / 2,
+                    size * 0.4f, size * 0.4f, size * 0.6f, size * 0.4f, size / 2, size / 2,
+                    size * 0.42f, size * 0.62f, size * 0.58f, size * 0.62f,
+                    1f}));
+        }
+    }
+
+    /**
+     * Releases the networks and native buffers.
+     */
+    @Override
+    public synchronized void close() {
+        faces.close();
+        aligned.close();
+        feature.close();
+        faceRow.close();
+        detector.close();
+        recognizer.close();
+    }
+
+    static float[] normalize(float[] vector) {
+        double sum = 0;
+        for (float value : vector) {
+            sum += value * value;
+        }
+        if (sum > 0) {
+            float scale = (float) (1.0 / Math.sqrt(sum));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    private static void requireFile(Path model) throws IOException {
+        if (!Files.isRegularFile(model)) {
+            throw new IOException("Model not found: " + model.toAbsolutePath());
+        }
+    }
+}
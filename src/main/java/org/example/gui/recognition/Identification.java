@@ -0,0 +1,22 @@
+package org.example.gui.recognition;
+
+/**
+ * Outcome of running recognition on a single frame.
+ *
+ * @param match   the recognized user, or {@code null} if nobody was recognized
+ * @param message explanation when nobody was recognized
+ */
+public record Identification(Match match, String message) {
+
+    public static Identification matched(Match match) {
+        return new Identification(match, null);
+    }
+
+    public static Identification unmatched(String message) {
+        return new Identification(null, message);
+    }
+
+    public boolean recognized() {
+        return match != null;
+    }
+}
@@ -0,0 +1,395 @@
+package org.example.gui.recognition;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Recognition backend that runs detection, embedding and matching inside the JVM, with no process spawn
+ * or IPC. Work is serialized on a dedicated background thread because the engine is not thread-safe.
+ * <p>
+ * With a {@link RecognitionCache}, a face that closely resembles one matched a few minutes earlier is
+ * recognized without searching the index, provided its similarity to that earlier face also reaches the
+ * index's acceptance threshold; it is reported with that similarity. A face that resembles a recent match
+ * less closely is searched in the index as usual, and the recent user only wins a near tie. The embedding is
+ * still computed for every attempt.
+ */
+public class JavaRecognitionBackend implements AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(JavaRecognitionBackend.class.getName());
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * Length of an SFace embedding.
+     */
+    public static final int EMBEDDING_DIMENSION = 128;
+
+    /**
+     * Cosine similarity above which SFace embeddings are considered the same person.
+     */
+    public static final float DEFAULT_MATCH_THRESHOLD = 0.363f;
+
+    /**
+     * Context kept around a face crop on each side, relative to the face size, so that the detector run on
+     * the crop still sees the whole head.
+     */
+    private static final float CROP_MARGIN = 0.5f;
+
+    /**
+     * Score difference within which the index's two best users count as tied, so that a recent match of the
+     * runner-up decides.
+     */
+    private static final float TIE_MARGIN = 0.02f;
+
+    private final FaceRecognitionEngine engine;
+    private final EmbeddingIndex index;
+    private final EmbeddingStore store;
+    private final RecognitionCache cache;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(new DaemonThreadFactory());
+
+    /**
+     * Creates a backend on top of a loaded engine.
+     *
+     * @param engine the detection and embedding engine
+     * @param index  the enrolled embeddings to match against, including the acceptance threshold
+     */
+    public JavaRecognitionBackend(FaceRecognitionEngine engine, EmbeddingIndex index) {
+        this(engine, index, null);
+    }
+
+    /**
+     * Creates a backend whose enrollments are persisted.
+     *
+     * @param engine the detection and embedding engine
+     * @param index  the enrolled embeddings to match against, including the acceptance threshold
+     * @param store  store the index was loaded from and enrollments are written to, or {@code null}
+     */
+    public JavaRecognitionBackend(FaceRecognitionEngine engine, EmbeddingIndex index, EmbeddingStore store) {
+        this(engine, index, store, null);
+    }
+
+    /**
+     * Creates a backend whose enrollments are persisted and whose recent matches are cached.
+     *
+     * @param engine the detection and embedding engine
+     * @param index  the enrolled embeddings to match against, including the acceptance threshold
+     * @param store  store the index was loaded from and enrollments are written to, or {@code null}
+     * @param cache  cache of recent matches consulted before the index, or {@code null}
+     */
+    public JavaRecognitionBackend(FaceRecognitionEngine engine, EmbeddingIndex index, EmbeddingStore store,
+                                  RecognitionCache cache) {
+        this.engine = Objects.requireNonNull(engine, "engine");
+        this.index = Objects.requireNonNull(index, "index");
+        this.store = store;
+        this.cache = cache;
+    }
+
+    /**
+     * Creates an empty cosine index sized for SFace embeddings with the default acceptance threshold.
+     *
+     * @return a new index
+     */
+    public static EmbeddingIndex newIndex() {
+        return new EmbeddingIndex(EMBEDDING_DIMENSION, EmbeddingIndex.Metric.COSINE, DEFAULT_MATCH_THRESHOLD);
+    }
+
+    /**
+     * Returns the cache of recent matches, e.g. to read its statistics.
+     *
+     * @return the cache, or empty if matches are not cached
+     */
+    public Optional<RecognitionCache> recognitionCache() {
+        return Optional.ofNullable(cache);
+    }
+
+    /**
+     * Returns a locator backed by this backend's detector, e.g. to judge enrollment frames.
+     *
+     * @return a thread-safe face locator
+     */
+    public FaceLocator faceLocator() {
+        return engine::detectLargest;
+    }
+
+    /**
+     * Copies the full-resolution region around a face located on a smaller frame, so that only the crop has
+     * to be handed to {@link #identifyAsync} or {@link #enrollAsync}. The crop is widened by a margin and
+     * clipped to the frame.
+     *
+     * @param frame the full-resolution frame
+     * @param face  the face in the frame's coordinates
+     * @return a new {@link Mat} owned by the caller, or a full copy of the frame if the face lies outside it
+     */
+    public static Mat cropFace(Mat frame, DetectedFace face) {
+        int left = Math.max(0, (int) Math.floor(face.x() - face.width() * CROP_MARGIN));
+        int top = Math.max(0, (int) Math.floor(face.y() - face.height() * CROP_MARGIN));
+        int right = Math.min(frame.cols(), (int) Math.ceil(face.x() + face.width() * (1 + CROP_MARGIN)));
+        int bottom = Math.min(frame.rows(), (int) Math.ceil(face.y() + face.height() * (1 + CROP_MARGIN)));
+        if (right <= left || bottom <= top) {
+            return frame.clone();
+        }
+        try (Rect region = new Rect(left, top, right - left, bottom - top); Mat view = frame.apply(region)) {
+            return view.clone();
+        }
+    }
+
+    /**
+     * Initializes the networks on the backend thread, e.g. at startup, so that the first login is as fast as
+     * later ones.
+     *
+     * @return completes once both networks have run once
+     */
+    public CompletableFuture<Void> warmUp() {
+        return CompletableFuture.runAsync(engine::warmUp, executor);
+    }
+
+    /**
+     * Recognizes the most prominent face in the frame on the backend thread.
+     *
+     * @param frame    BGR frame or face crop; ownership passes to the backend, which closes it
+     * @param callback callback invoked with the outcome on the backend thread, or on the calling thread if
+     *                 the backend is closed
+     */
+    public void identifyAsync(Mat frame, Consumer<Identification> callback) {
+        try {
+            executor.execute(() -> {
+                Identification result;
+                try (frame) {
+                    result = identify(frame);
+                } catch (Exception e) {
+                    result = Identification.unmatched("Recognition failed: " + e.getMessage());
+                }
+                if (callback != null) {
+                    callback.accept(result);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            frame.close();
+            if (callback != null) {
+                callback.accept(Identification.unmatched("Recognition backend is closed"));
+            }
+        }
+    }
+
+    /**
+     * Recognizes the most prominent face in the frame on the calling thread.
+     *
+     * @param frame BGR frame
+     * @return the recognized user, or the reason nobody was recognized
+     */
+    public Identification identify(Mat frame) {
+        Optional<float[]> embedding = engine.embedLargestFace(frame);
+        if (embedding.isEmpty()) {
+            return Identification.unmatched("No face detected");
+        }
+        Optional<Match> match = cache == null ? index.bestMatch(embedding.get()) : cachedOrSearched(embedding.get());
+        return match
+                .map(Identification::matched)
+                .orElseGet(() -> Identification.unmatched("Face not recognized or face has not been registered"));
+    }
+
+    /**
+     * Recognizes the most prominent face in each of several frames on the calling thread. The embeddings that
+     * miss the cache are matched in a single pass over the index.
+     *
+     * @param frames BGR frames or face crops; they stay owned by the caller
+     * @return the outcome for each frame, in frame order
+     */
+    public List<Identification> identifyAll(List<Mat> frames) {
+        Identification[] results = new Identification[frames.size()];
+        List<float[]> queries = new ArrayList<>();
+        List<Integer> querySlots = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            Optional<float[]> embedding = engine.embedLargestFace(frames.get(i));
+            if (embedding.isEmpty()) {
+                results[i] = Identification.unmatched("No face detected");
+                continue;
+            }
+            Optional<Match> cached = cache == null ? Optional.empty() : cache.lookup(embedding.get(), cacheThreshold());
+            Optional<String> recentUser = cache == null || cached.isPresent()
+                    ? Optional.empty() : cache.nearestUser(embedding.get());
+            if (cached.isPresent()) {
+                results[i] = Identification.matched(cached.get());
+            } else if (recentUser.isPresent()) {
+                results[i] = searchPreferring(embedding.get(), recentUser.get())
+                        .map(Identification::matched)
+                        .orElseGet(() -> Identification.unmatched("Face not recognized or face has not been registered"));
+            } else {
+                queries.add(embedding.get());
+                querySlots.add(i);
+            }
+        }
+
+        List<Optional<Match>> matches = queries.isEmpty() ? List.of() : index.bestMatches(queries);
+        for (int i = 0; i < matches.size(); i++) {
+            Optional<Match> match = matches.get(i);
+            if (cache != null) {
+                float[] query = queries.get(i);
+                match.ifPresent(found -> cache.put(query, found));
+            }
+            results[querySlots.get(i)] = match
+                    .map(Identification::matched)
+                    .orElseGet(() -> Identification.unmatched("Face not recognized or face has not been registered"));
+        }
+        return List.of(results);
+    }
+
+    private Optional<Match> cachedOrSearched(float[] embedding) {
+        Optional<Match> cached = cache.lookup(embedding, cacheThreshold());
+        if (cached.isPresent()) {
+            return cached;
+        }
+        Optional<String> recentUser = cache.nearestUser(embedding);
+        if (recentUser.isPresent()) {
+            return searchPreferring(embedding, recentUser.get());
+        }
+        Optional<Match> match = index.bestMatch(embedding);
+        match.ifPresent(found -> cache.put(embedding, found));
+        return match;
+    }
+
+    /**
+     * The cache compares cosine similarities, which only the cosine metric's acceptance threshold is
+     * comparable with; with any other metric every query is searched in the index.
+     */
+    private float cacheThreshold() {
+        return index.metric() == EmbeddingIndex.Metric.COSINE ? index.acceptanceThreshold() : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Searches the index and returns the recent user instead of the best one if both are accepted and their
+     * scores are within {@link #TIE_MARGIN}.
+     */
+    private Optional<Match> searchPreferring(float[] embedding, String recentUser) {
+        List<Match> best = index.topK(embedding, 2);
+        EmbeddingIndex.Metric metric = index.metric();
+        float threshold = index.acceptanceThreshold();
+        Optional<Match> match = best.stream().findFirst().filter(first -> metric.accepts(first.score(), threshold));
+        if (match.isPresent() && best.size() == 2) {
+            Match runnerUp = best.get(1);
+            if (runnerUp.username().equals(recentUser) && metric.accepts(runnerUp.score(), threshold)
+                    && Math.abs(best.getFirst().score() - runnerUp.score()) <= TIE_MARGIN) {
+                match = Optional.of(runnerUp);
+            }
+        }
+        match.ifPresent(found -> cache.put(embedding, found));
+        return match;
+    }
+
+    /**
+     * Enrolls a user from the given frames on the backend thread, replacing any previous enrollment.
+     *
+     * @param username the user to enroll
+     * @param frames   BGR frames or face crops; ownership passes to the backend, which closes them
+     * @param callback callback invoked with the outcome on the backend thread, or on the calling thread if
+     *                 the backend is closed
+     */
+    public void enrollAsync(String username, List<Mat> frames, Consumer<EnrollmentResult> callback) {
+        try {
+            executor.execute(() -> {
+                EnrollmentResult result;
+                try {
+                    result = enroll(username, frames);
+                } catch (Exception e) {
+                    result = EnrollmentResult.failure("Enrollment failed: " + e.getMessage());
+                } finally {
+                    frames.forEach(Mat::close);
+                }
+                if (callback != null) {
+                    callback.accept(result);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            frames.forEach(Mat::close);
+            if (callback != null) {
+                callback.accept(EnrollmentResult.failure("Recognition backend is closed"));
+            }
+        }
+    }
+
+    /**
+     * Enrolls a user from the given frames on the calling thread, replacing any previous enrollment.
+     *
+     * @param username the user to enroll
+     * @param frames   BGR frames, each expected to show the user's face
+     * @return the outcome of the enrollment
+     */
+    public EnrollmentResult enroll(String username, List<Mat> frames) {
+        List<float[]> embeddings = new ArrayList<>();
+        for (Mat frame : frames) {
+            engine.embedLargestFace(frame).ifPresent(embeddings::add);
+        }
+        if (embeddings.isEmpty()) {
+            return EnrollmentResult.failure("No face found in the captured images");
+        }
+
+        if (store != null) {
+            try {
+                store.replaceUser(username, embeddings);
+            } catch (IOException e) {
+                return EnrollmentResult.failure("Could not save the enrollment of " + username + ": " + e.getMessage());
+            }
+        }
+        index.replace(username, embeddings);
+        if (cache != null) {
+            cache.invalidate(username);
+        }
+        return EnrollmentResult.success(embeddings.size(),
+                "Enrolled " + username + " with " + embeddings.size() + "/" + frames.size() + " images");
+    }
+
+    /**
+     * Stops accepting work, lets the queued recognitions and enrollments finish and then releases the engine,
+     * index and store. If the backend thread does not stop in time, it is interrupted, and if it still runs
+     * the native resources are left allocated rather than freed under it.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                executor.shutdownNow();
+                if (!executor.awaitTermination(CLOSE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                    LOGGER.log(System.Logger.Level.WARNING,
+                            "Recognition thread did not stop; its engine, index and store stay allocated");
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+            return;
+        }
+        engine.close();
+        index.close();
+        if (store != null) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                // Every enrollment has already been synced to disk.
+            }
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "FaceRecognitionThread");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
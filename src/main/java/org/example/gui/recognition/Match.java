@@ -0,0 +1,10 @@
+package org.example.gui.recognition;
+
+/**
+ * A recognized user together with the similarity score of the match.
+ *
+ * @param username the matched user
+ * @param score    cosine similarity between the query and the user's closest embedding
+ */
+public record Match(String username, float score) {
+}
@@ -0,0 +1,239 @@
+package org.example.gui.recognition;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+
+/**
+ * Remembers the embeddings of recent positive matches so that a user who logs in again shortly afterwards is
+ * recognized without searching the whole {@link EmbeddingIndex}.
+ * <p>
+ * Each user has at most one entry: the query embedding of their last match found by the full search. A new
+ * query is compared with every entry and accepted only if its cosine similarity to the closest one reaches
+ * the hit threshold, which is meant to be much tighter than the index's acceptance threshold, since the query
+ * is compared with a single earlier capture rather than with the enrolled embeddings, and also the
+ * similarity the caller requires. A hit is scored with that similarity, never with the score of the earlier
+ * search. A query that is close to an entry but not close enough to be accepted can still use the entry's
+ * user as a hint, see {@link #nearestUser(float[])}. A hit does not refresh an entry; entries expire a fixed
+ * time after the full search that produced them, and the least recently hit entry is evicted when the cache
+ * is full. Re-enrolling a user must {@link #invalidate(String) invalidate} their entry.
+ * <p>
+ * Thread-safe.
+ */
+public class RecognitionCache {
+
+    private final Settings settings;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long hits;
+    private long misses;
+    private long expirations;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param settings capacity, lifetime and hit threshold
+     */
+    public RecognitionCache(Settings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Looks for a recent match whose embedding is close enough to the query to skip the full search.
+     *
+     * @param embedding         the query embedding
+     * @param minimumSimilarity cosine similarity the query must reach besides the hit threshold, e.g. the
+     *                          index's acceptance threshold
+     * @return the cached user scored with the query's cosine similarity to their entry, or empty on a miss
+     */
+    public synchronized Optional<Match> lookup(float[] embedding, float minimumSimilarity) {
+        Optional<Match> nearest = nearest(embedding);
+        if (nearest.isEmpty() || nearest.get().score() < minimumSimilarity) {
+            misses++;
+            return Optional.empty();
+        }
+        hits++;
+        // Marks the entry as recently hit for eviction.
+        entries.get(nearest.get().username());
+        return nearest;
+    }
+
+    /**
+     * Returns the user whose entry is closest to the query if it reaches the hit threshold, e.g. to prefer
+     * them when the full search finds several users about equally close. Not counted as a lookup.
+     *
+     * @param embedding the query embedding
+     * @return the user, or empty if no entry is close enough
+     */
+    public synchronized Optional<String> nearestUser(float[] embedding) {
+        return nearest(embedding).map(Match::username);
+    }
+
+    private Optional<Match> nearest(float[] embedding) {
+        expire(System.nanoTime());
+        float[] probe = normalized(embedding);
+        Entry best = null;
+        float bestSimilarity = Float.NEGATIVE_INFINITY;
+        for (Entry entry : entries.values()) {
+            float similarity = dot(probe, entry.embedding);
+            if (similarity > bestSimilarity) {
+                bestSimilarity = similarity;
+                best = entry;
+            }
+        }
+        if (best == null || bestSimilarity < settings.hitThreshold()) {
+            return Optional.empty();
+        }
+        return Optional.of(new Match(best.username, bestSimilarity));
+    }
+
+    /**
+     * Records a match found by the full search, replacing the user's previous entry.
+     *
+     * @param embedding the query embedding that matched
+     * @param match     the match
+     */
+    public synchronized void put(float[] embedding, Match match) {
+        if (settings.capacity() <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        expire(now);
+        entries.put(match.username(), new Entry(match.username(), normalized(embedding), now));
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > settings.capacity()) {
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Forgets a user's entry, e.g. because they were re-enrolled or removed.
+     *
+     * @param username the user
+     */
+    public synchronized void invalidate(String username) {
+        if (entries.remove(username) != null) {
+            invalidations++;
+        }
+    }
+
+    /**
+     * Forgets every entry.
+     */
+    public synchronized void clear() {
+        invalidations += entries.size();
+        entries.clear();
+    }
+
+    /**
+     * Returns the cache's counters.
+     *
+     * @return the current statistics
+     */
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, expirations, evictions, invalidations, entries.size());
+    }
+
+    private void expire(long now) {
+        long ttl = settings.ttl().toNanos();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().insertedNanos >= ttl) {
+                iterator.remove();
+                expirations++;
+            }
+        }
+    }
+
+    private static float[] normalized(float[] embedding) {
+        float norm = (float) Math.sqrt(dot(embedding, embedding));
+        float[] copy = new float[embedding.length];
+        if (norm > 0) {
+            for (int i = 0; i < embedding.length; i++) {
+                copy[i] = embedding[i] / norm;
+            }
+        }
+        return copy;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        int length = Math.min(a.length, b.length);
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Cache configuration.
+     *
+     * @param capacity     maximum number of users remembered, 0 to disable the cache
+     * @param ttl          how long a match found by the full search is trusted
+     * @param hitThreshold cosine similarity to a cached embedding at which a query is accepted
+     */
+    public record Settings(int capacity, Duration ttl, float hitThreshold) {
+
+        public static Settings defaults() {
+            return new Settings(64, Duration.ofMinutes(10), 0.6f);
+        }
+
+        /**
+         * Reads the settings from {@code recognition.cache.*} system properties, using the defaults for
+         * missing ones. The lifetime is given in milliseconds.
+         *
+         * @return the configured settings
+         */
+        public static Settings fromSystemProperties() {
+            Settings defaults = defaults();
+            Long ttlMillis = Long.getLong("recognition.cache.ttl");
+            return new Settings(
+                    Integer.getInteger("recognition.cache.capacity", defaults.capacity()),
+                    ttlMillis == null || ttlMillis <= 0 ? defaults.ttl() : Duration.ofMillis(ttlMillis),
+                    floatProperty("recognition.cache.threshold", defaults.hitThreshold()));
+        }
+
+        private static float floatProperty(String name, float fallback) {
+            String value = System.getProperty(name);
+            if (value == null) {
+                return fallback;
+            }
+            try {
+                return Float.parseFloat(value);
+            } catch (NumberFormatException e) {
+                return fallback;
+            }
+        }
+    }
+
+    /**
+     * Counters of a cache.
+     *
+     * @param hits          lookups answered from the cache
+     * @param misses        lookups that fell through to the full search
+     * @param expirations   entries dropped because they outlived the lifetime
+     * @param evictions     entries dropped to make room
+     * @param invalidations entries dropped because their user changed
+     * @param size          entries currently cached
+     */
+    public record Stats(long hits, long misses, long expirations, long evictions, long invalidations, int size) {
+
+        /**
+         * Returns the fraction of lookups answered from the cache.
+         *
+         * @return the hit rate, 0 if there were no lookups
+         */
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : hits / (double) lookups;
+        }
+    }
+
+    private record Entry(String username, float[] embedding, long insertedNanos) {
+    }
+}
@@ -0,0 +1,377 @@
+package org.example.gui.server;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.example.gui.metrics.LatencyHistogram;
+import org.example.gui.recognition.EnrollmentResult;
+import org.example.gui.recognition.Identification;
+import org.example.gui.recognition.JavaRecognitionBackend;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Feeds recognition requests from many clients through a single recognition thread, in batches.
+ * <p>
+ * Requests wait in a bounded queue. When it is full a new request is shed at once rather than queued behind
+ * work it could never catch up with, and a request that has waited longer than the maximum wait by the time
+ * it is picked up is expired without being recognized. Both complete with a
+ * {@link RejectedExecutionException}, which the caller reports as "busy, retry later". A caller that gives up
+ * on a request cancels its future: a request the recognition thread has not started yet is withdrawn and
+ * never run, while one it has started runs to completion and the cancellation fails.
+ * <p>
+ * The recognition thread takes every login frame that is waiting, up to the batch size, and hands them to
+ * the backend together; when the queue is empty it waits a few milliseconds for more to arrive first.
+ * Enrollments run one at a time between batches.
+ */
+public class BatchingRecognizer implements AutoCloseable {
+
+    /**
+     * The recognition work, called on the recognition thread only.
+     */
+    public interface Backend {
+
+        /**
+         * Recognizes the most prominent face in each frame.
+         *
+         * @param frames BGR frames, owned by the caller
+         * @return the outcome for each frame, in frame order
+         */
+        List<Identification> identifyAll(List<Mat> frames);
+
+        /**
+         * Enrolls a user, replacing any previous enrollment.
+         *
+         * @param username the user to enroll
+         * @param frames   BGR frames, owned by the caller
+         * @return the outcome of the enrollment
+         */
+        EnrollmentResult enroll(String username, List<Mat> frames);
+
+        /**
+         * Adapts an in-JVM recognition backend.
+         *
+         * @param backend the backend
+         * @return a batching backend delegating to it
+         */
+        static Backend of(JavaRecognitionBackend backend) {
+            return new Backend() {
+                @Override
+                public List<Identification> identifyAll(List<Mat> frames) {
+                    return backend.identifyAll(frames);
+                }
+
+                @Override
+                public EnrollmentResult enroll(String username, List<Mat> frames) {
+                    return backend.enroll(username, frames);
+                }
+            };
+        }
+    }
+
+    private final Backend backend;
+    private final Settings settings;
+    private final BlockingQueue<Request> queue;
+    private final Thread worker;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedFrames = new LongAdder();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private volatile boolean running = true;
+
+    /**
+     * Starts the recognition thread.
+     *
+     * @param backend  the recognition work
+     * @param settings queue and batch limits
+     */
+    public BatchingRecognizer(Backend backend, Settings settings) {
+        this.backend = backend;
+        this.settings = settings;
+        this.queue = new ArrayBlockingQueue<>(settings.queueCapacity());
+        this.worker = new RecognitionThreadFactory().newThread(this::run);
+        worker.start();
+    }
+
+    /**
+     * Queues a login frame.
+     *
+     * @param frame BGR frame; ownership passes to the recognizer, which closes it
+     * @return the pending identification, or empty if the request was shed because the queue is full;
+     *         cancelling it withdraws the request unless it has started
+     */
+    public Optional<CompletableFuture<Identification>> submitLogin(Mat frame) {
+        Pending<Identification> result = new Pending<>();
+        if (!offer(new Request(List.of(frame), null, result, null, System.nanoTime()))) {
+            return Optional.empty();
+        }
+        return Optional.of(result);
+    }
+
+    /**
+     * Queues an enrollment.
+     *
+     * @param username the user to enroll
+     * @param frames   BGR frames; ownership passes to the recognizer, which closes them
+     * @return the pending enrollment, or empty if the request was shed because the queue is full;
+     *         cancelling it withdraws the request unless it has started
+     */
+    public Optional<CompletableFuture<EnrollmentResult>> submitEnrollment(String username, List<Mat> frames) {
+        Pending<EnrollmentResult> result = new Pending<>();
+        if (!offer(new Request(List.copyOf(frames), username, null, result, System.nanoTime()))) {
+            return Optional.empty();
+        }
+        return Optional.of(result);
+    }
+
+    /**
+     * Returns the recognizer's counters.
+     *
+     * @return the current statistics
+     */
+    public Stats stats() {
+        return new Stats(accepted.sum(), shed.sum(), expired.sum(), batches.sum(), batchedFrames.sum(),
+                queue.size(), queueWait.snapshot(), latency.snapshot());
+    }
+
+    /**
+     * Stops the recognition thread and fails every request still waiting.
+     */
+    @Override
+    public void close() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Request> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(request -> request.fail(new RejectedExecutionException("Recognizer stopped")));
+    }
+
+    private boolean offer(Request request) {
+        if (running && queue.offer(request)) {
+            accepted.increment();
+            return true;
+        }
+        shed.increment();
+        request.frames.forEach(Mat::close);
+        return false;
+    }
+
+    private void run() {
+        List<Request> logins = new ArrayList<>();
+        List<Request> enrollments = new ArrayList<>();
+        try {
+            while (running) {
+                collect(queue.take(), logins, enrollments);
+                if (queue.isEmpty() && logins.size() == 1 && enrollments.isEmpty()) {
+                    Request next = queue.poll(settings.batchWindow().toNanos(), TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        collect(next, logins, enrollments);
+                    }
+                }
+                while (logins.size() < settings.maxBatch()) {
+                    Request next = queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    collect(next, logins, enrollments);
+                }
+
+                if (!logins.isEmpty()) {
+                    identify(logins);
+                    logins.clear();
+                }
+                for (Request enrollment : enrollments) {
+                    enroll(enrollment);
+                }
+                enrollments.clear();
+            }
+        } catch (InterruptedException e) {
+            // Closed.
+        } finally {
+            RejectedExecutionException stopped = new RejectedExecutionException("Recognizer stopped");
+            logins.forEach(request -> request.fail(stopped));
+            enrollments.forEach(request -> request.fail(stopped));
+        }
+    }
+
+    /**
+     * Sorts a dequeued request into the current batch, expires it if it has waited too long, or drops it if its
+     * caller withdrew it. Once sorted into a batch, a request can no longer be withdrawn.
+     */
+    private void collect(Request request, List<Request> logins, List<Request> enrollments) {
+        long waited = System.nanoTime() - request.queuedNanos;
+        if (waited > settings.maxWait().toNanos()) {
+            expired.increment();
+            request.fail(new RejectedExecutionException("Request expired after " + waited / 1_000_000 + " ms"));
+            return;
+        }
+        if (!request.start()) {
+            request.frames.forEach(Mat::close);
+            return;
+        }
+        queueWait.record(waited);
+        (request.username == null ? logins : enrollments).add(request);
+    }
+
+    private void identify(List<Request> logins) {
+        List<Mat> frames = new ArrayList<>(logins.size());
+        for (Request login : logins) {
+            frames.add(login.frames.getFirst());
+        }
+        batches.increment();
+        batchedFrames.add(frames.size());
+
+        List<Identification> results;
+        try {
+            results = backend.identifyAll(frames);
+        } catch (RuntimeException e) {
+            Identification failure = Identification.unmatched("Recognition failed: " + e.getMessage());
+            results = frames.stream().map(frame -> failure).toList();
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < logins.size(); i++) {
+            Request login = logins.get(i);
+            login.frames.forEach(Mat::close);
+            latency.record(now - login.queuedNanos);
+            login.identification.complete(results.get(i));
+        }
+    }
+
+    private void enroll(Request enrollment) {
+        EnrollmentResult result;
+        try {
+            result = backend.enroll(enrollment.username, enrollment.frames);
+        } catch (RuntimeException e) {
+            result = EnrollmentResult.failure("Enrollment failed: " + e.getMessage());
+        } finally {
+            enrollment.frames.forEach(Mat::close);
+        }
+        latency.record(System.nanoTime() - enrollment.queuedNanos);
+        enrollment.enrollment.complete(result);
+    }
+
+    /**
+     * Queue and batch limits.
+     *
+     * @param queueCapacity requests that may wait before new ones are shed
+     * @param maxBatch      login frames recognized together
+     * @param batchWindow   how long a lone login frame waits for company
+     * @param maxWait       queueing time after which a request is expired instead of recognized
+     */
+    public record Settings(int queueCapacity, int maxBatch, Duration batchWindow, Duration maxWait) {
+
+        public static Settings defaults() {
+            return new Settings(64, 8, Duration.ofMillis(2), Duration.ofSeconds(2));
+        }
+
+        /**
+         * Reads the settings from {@code server.*} system properties, using the defaults for missing ones.
+         * Durations are given in milliseconds.
+         *
+         * @return the configured settings
+         */
+        public static Settings fromSystemProperties() {
+            Settings defaults = defaults();
+            return new Settings(
+                    Math.max(1, Integer.getInteger("server.queueCapacity", defaults.queueCapacity())),
+                    Math.max(1, Integer.getInteger("server.maxBatch", defaults.maxBatch())),
+                    durationProperty("server.batchWindow", defaults.batchWindow()),
+                    durationProperty("server.maxWait", defaults.maxWait()));
+        }
+
+        private static Duration durationProperty(String name, Duration fallback) {
+            Long millis = Long.getLong(name);
+            return millis == null || millis < 0 ? fallback : Duration.ofMillis(millis);
+        }
+    }
+
+    /**
+     * Counters of a recognizer. {@code queueDepth} is a gauge.
+     *
+     * @param accepted      requests queued
+     * @param shed          requests turned away because the queue was full
+     * @param expired       queued requests dropped because they waited too long
+     * @param batches       login batches recognized
+     * @param batchedFrames login frames recognized in those batches
+     * @param queueDepth    requests currently waiting
+     * @param queueWait     time from queueing to being picked up
+     * @param latency       time from queueing to the result
+     */
+    public record Stats(long accepted, long shed, long expired, long batches, long batchedFrames, int queueDepth,
+                        LatencyHistogram.Snapshot queueWait, LatencyHistogram.Snapshot latency) {
+
+        /**
+         * Returns the average number of login frames per batch.
+         *
+         * @return the mean batch size, 0 before the first batch
+         */
+        public double meanBatchSize() {
+            return batches == 0 ? 0 : batchedFrames / (double) batches;
+        }
+    }
+
+    private record Request(List<Mat> frames, String username, Pending<Identification> identification,
+                           Pending<EnrollmentResult> enrollment, long queuedNanos) {
+
+        boolean start() {
+            return identification != null ? identification.start() : enrollment.start();
+        }
+
+        void fail(Throwable cause) {
+            frames.forEach(Mat::close);
+            if (identification != null) {
+                identification.completeExceptionally(cause);
+            } else {
+                enrollment.completeExceptionally(cause);
+            }
+        }
+    }
+
+    /**
+     * Result of a queued request that can only be cancelled before the recognition thread starts it.
+     */
+    private static final class Pending<T> extends CompletableFuture<T> {
+        private static final int QUEUED = 0;
+        private static final int STARTED = 1;
+        private static final int WITHDRAWN = 2;
+
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return state.compareAndSet(QUEUED, WITHDRAWN) && super.cancel(mayInterruptIfRunning);
+        }
+
+        boolean start() {
+            return state.compareAndSet(QUEUED, STARTED);
+        }
+    }
+
+    private static class RecognitionThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "RecognitionBatchThread");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
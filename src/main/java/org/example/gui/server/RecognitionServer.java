@@ -0,0 +1,417 @@
+package org.example.gui.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.example.gui.metrics.LatencyHistogram;
+import org.example.gui.recognition.EmbeddingIndex;
+import org.example.gui.recognition.EmbeddingStore;
+import org.example.gui.recognition.EnrollmentResult;
+import org.example.gui.recognition.FaceRecognitionEngine;
+import org.example.gui.recognition.Identification;
+import org.example.gui.recognition.JavaRecognitionBackend;
+import org.example.gui.recognition.RecognitionCache;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_COLOR;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imdecode;
+
+/**
+ * Headless recognition server for several kiosks, so that recognition runs on one machine instead of every
+ * desktop running its own recognizer.
+ * <p>
+ * Kiosks send encoded frames (JPEG or PNG) over HTTP:
+ * <pre>
+ * POST /login              body: one encoded frame
+ * POST /enroll?user=alice  body: frames, each preceded by its length as a 4-byte big-endian integer
+ * GET  /stats              queue, batching, latency and cache counters
+ * </pre>
+ * Login and enrollment answer with one JSON object in the recognizer event format understood by
+ * {@code RecognizerEvent}, e.g. {@code {"event": "result", "success": true, "user": "alice", "score": 0.912,
+ * "message": null}}. A request shed because the server is overloaded, or not started before the request
+ * timeout, gets status 503 with a {@code Retry-After} header and an {@code error} event; it has had no
+ * effect and can be retried. An enrollment that is still running at the timeout gets status 202 with an
+ * {@code accepted} event instead, as it will still complete and must not be retried.
+ * <p>
+ * Every request is handled on its own virtual thread, which decodes the frames and then waits for the
+ * {@link BatchingRecognizer}, so a slow client holds no platform thread.
+ */
+public class RecognitionServer implements AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(RecognitionServer.class.getName());
+    private static final Path EMBEDDING_STORE_FILE = Path.of("dataset", "embeddings.bin");
+
+    private final BatchingRecognizer recognizer;
+    private final RecognitionCache cache;
+    private final Settings settings;
+    private ExecutorService executor;
+    private HttpServer server;
+
+    /**
+     * Creates a server; call {@link #start()} to listen.
+     *
+     * @param recognizer the recognizer serving the requests; it is not closed by the server
+     * @param cache      the recognizer's cache, reported in the statistics, or {@code null}
+     * @param settings   address and request limits
+     */
+    public RecognitionServer(BatchingRecognizer recognizer, RecognitionCache cache, Settings settings) {
+        this.recognizer = recognizer;
+        this.cache = cache;
+        this.settings = settings;
+    }
+
+    /**
+     * Runs the server on the models in {@code -Dface.models} and the enrollments in
+     * {@code dataset/embeddings.bin} until the process is stopped.
+     *
+     * @param args unused
+     * @throws IOException if the models or the enrollments cannot be loaded, or the port is taken
+     */
+    public static void main(String[] args) throws IOException {
+        Path modelDirectory = Path.of(System.getProperty("face.models", "models"));
+        if (!FaceRecognitionEngine.modelsAvailable(modelDirectory)) {
+            throw new IOException("Face models not found in " + modelDirectory.toAbsolutePath());
+        }
+
+        EmbeddingIndex index = JavaRecognitionBackend.newIndex();
+        EmbeddingStore store = EmbeddingStore.open(EMBEDDING_STORE_FILE, index);
+        RecognitionCache cache = new RecognitionCache(RecognitionCache.Settings.fromSystemProperties());
+        JavaRecognitionBackend backend = new JavaRecognitionBackend(
+                FaceRecognitionEngine.fromDirectory(modelDirectory), index, store, cache);
+        BatchingRecognizer recognizer = new BatchingRecognizer(BatchingRecognizer.Backend.of(backend),
+                BatchingRecognizer.Settings.fromSystemProperties());
+        RecognitionServer server = new RecognitionServer(recognizer, cache, Settings.fromSystemProperties());
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            recognizer.close();
+            backend.close();
+        }, "RecognitionServerShutdown"));
+        server.start();
+        LOGGER.log(System.Logger.Level.INFO, "Recognition server listening on " + server.address()
+                + " with " + index.size() + " enrolled embeddings");
+    }
+
+    /**
+     * Starts listening.
+     *
+     * @throws IOException if the address cannot be bound
+     */
+    public synchronized void start() throws IOException {
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server = HttpServer.create(new InetSocketAddress(settings.host(), settings.port()), settings.backlog());
+        server.setExecutor(executor);
+        server.createContext("/login", exchange -> handle(exchange, "POST", this::login));
+        server.createContext("/enroll", exchange -> handle(exchange, "POST", this::enroll));
+        server.createContext("/stats", exchange -> handle(exchange, "GET", this::stats));
+        server.start();
+    }
+
+    /**
+     * Returns the address the server listens on, e.g. to find the port chosen for port 0.
+     *
+     * @return the bound address
+     */
+    public synchronized InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    /**
+     * Stops accepting requests and waits briefly for the running ones.
+     */
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(1);
+            executor.close();
+            server = null;
+        }
+    }
+
+    private interface Handler {
+        Response handle(HttpExchange exchange) throws IOException;
+    }
+
+    private record Response(int status, String body) {
+
+        static Response event(int status, String type, String message) {
+            return new Response(status, "{\"event\": " + quote(type) + ", \"message\": " + quote(message) + "}");
+        }
+
+        static Response busy(String message) {
+            return event(503, "error", message);
+        }
+    }
+
+    private void handle(HttpExchange exchange, String method, Handler handler) throws IOException {
+        try (exchange) {
+            Response response;
+            try {
+                response = method.equals(exchange.getRequestMethod())
+                        ? handler.handle(exchange)
+                        : Response.event(405, "error", "Use " + method);
+            } catch (IOException | RuntimeException e) {
+                response = Response.event(400, "error", e.getMessage());
+            }
+
+            byte[] body = (response.body() + "\n").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            if (response.status() == 503) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+            }
+            exchange.sendResponseHeaders(response.status(), body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        }
+    }
+
+    private Response login(HttpExchange exchange) throws IOException {
+        Mat frame = decode(readBody(exchange));
+        if (frame == null) {
+            return Response.event(400, "error", "The body is not an encoded image");
+        }
+
+        Optional<CompletableFuture<Identification>> pending = recognizer.submitLogin(frame);
+        if (pending.isEmpty()) {
+            return Response.busy("Server busy");
+        }
+        return await(pending.get()).map(identification -> identification.recognized()
+                ? result(true, identification.match().username(), identification.match().score(), null)
+                : result(false, null, 0, identification.message()))
+                .orElseGet(() -> Response.busy("Server busy"));
+    }
+
+    private Response enroll(HttpExchange exchange) throws IOException {
+        String username = queryParameter(exchange, "user");
+        if (username == null || username.isBlank()) {
+            return Response.event(400, "error", "Missing user parameter");
+        }
+
+        List<Mat> frames = new ArrayList<>();
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(readBody(exchange)))) {
+            while (true) {
+                int length;
+                try {
+                    length = input.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > input.available()) {
+                    throw new IOException("Truncated frame " + (frames.size() + 1));
+                }
+                Mat frame = decode(input.readNBytes(length));
+                if (frame == null) {
+                    throw new IOException("Frame " + (frames.size() + 1) + " is not an encoded image");
+                }
+                frames.add(frame);
+            }
+        } catch (IOException e) {
+            frames.forEach(Mat::close);
+            throw e;
+        }
+        if (frames.isEmpty()) {
+            return Response.event(400, "error", "No frames");
+        }
+
+        Optional<CompletableFuture<EnrollmentResult>> pending = recognizer.submitEnrollment(username, frames);
+        if (pending.isEmpty()) {
+            return Response.busy("Server busy");
+        }
+        CompletableFuture<EnrollmentResult> enrollment = pending.get();
+        Optional<EnrollmentResult> result = await(enrollment);
+        if (result.isEmpty() && enrollment.state() == Future.State.RUNNING) {
+            // Started before the timeout and could not be withdrawn: it completes without the client.
+            return Response.event(202, "accepted", "Enrollment of " + username + " is still running");
+        }
+        if (result.isEmpty() && enrollment.state() == Future.State.SUCCESS) {
+            result = Optional.of(enrollment.resultNow());
+        }
+        return result
+                .map(done -> result(done.success(), done.success() ? username : null, 0, done.message()))
+                .orElseGet(() -> Response.busy("Server busy"));
+    }
+
+    private Response stats(HttpExchange exchange) {
+        BatchingRecognizer.Stats stats = recognizer.stats();
+        StringBuilder body = new StringBuilder("{")
+                .append("\"accepted\": ").append(stats.accepted())
+                .append(", \"shed\": ").append(stats.shed())
+                .append(", \"expired\": ").append(stats.expired())
+                .append(", \"queueDepth\": ").append(stats.queueDepth())
+                .append(", \"batches\": ").append(stats.batches())
+                .append(", \"meanBatchSize\": ").append(String.format(Locale.ROOT, "%.2f", stats.meanBatchSize()))
+                .append(", \"queueWaitP99Ms\": ").append(millis(stats.queueWait(), 99))
+                .append(", \"latencyP50Ms\": ").append(millis(stats.latency(), 50))
+                .append(", \"latencyP99Ms\": ").append(millis(stats.latency(), 99));
+        if (cache != null) {
+            RecognitionCache.Stats cacheStats = cache.stats();
+            body.append(", \"cacheHits\": ").append(cacheStats.hits())
+                    .append(", \"cacheMisses\": ").append(cacheStats.misses())
+                    .append(", \"cacheEvictions\": ").append(cacheStats.evictions() + cacheStats.expirations());
+        }
+        return new Response(200, body.append('}').toString());
+    }
+
+    /**
+     * Waits for a queued request and withdraws it if it has not started by the request timeout.
+     *
+     * @return the result, or empty if the request was shed, expired or timed out
+     */
+    private <T> Optional<T> await(CompletableFuture<T> pending) throws IOException {
+        try {
+            return Optional.of(pending.get(settings.requestTimeout().toMillis(), TimeUnit.MILLISECONDS));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                return Optional.empty();
+            }
+            throw new IOException(e.getCause());
+        } catch (TimeoutException e) {
+            pending.cancel(false);
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+    }
+
+    private byte[] readBody(HttpExchange exchange) throws IOException {
+        try (InputStream input = exchange.getRequestBody()) {
+            byte[] body = input.readNBytes(settings.maxBodyBytes() + 1);
+            if (body.length > settings.maxBodyBytes()) {
+                throw new IOException("Request body exceeds " + settings.maxBodyBytes() + " bytes");
+            }
+            return body;
+        }
+    }
+
+    /**
+     * Decodes an encoded image into a BGR frame.
+     *
+     * @return the frame, or {@code null} if the bytes are not an image
+     */
+    private static Mat decode(byte[] encoded) {
+        if (encoded.length == 0) {
+            return null;
+        }
+        try (BytePointer bytes = new BytePointer(encoded); Mat buffer = new Mat(bytes, false)) {
+            Mat frame = imdecode(buffer, IMREAD_COLOR);
+            if (frame.empty()) {
+                frame.close();
+                return null;
+            }
+            return frame;
+        }
+    }
+
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0 && pair.substring(0, separator).equals(name)) {
+                return URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static Response result(boolean success, String username, double score, String message) {
+        return new Response(200, "{\"event\": \"result\", \"success\": " + success
+                + ", \"user\": " + quote(username)
+                + ", \"score\": " + String.format(Locale.ROOT, "%.3f", score)
+                + ", \"message\": " + quote(message) + "}");
+    }
+
+    private static String millis(LatencyHistogram.Snapshot histogram, double percentile) {
+        return histogram.count() == 0
+                ? "null"
+                : String.format(Locale.ROOT, "%.1f", histogram.percentile(percentile) / 1e6);
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Address and request limits.
+     *
+     * @param host           interface to listen on
+     * @param port           port to listen on, 0 for any free port
+     * @param backlog        pending connections the socket queues
+     * @param maxBodyBytes   largest accepted request body
+     * @param requestTimeout how long a request waits for its result before it is answered as busy
+     */
+    public record Settings(String host, int port, int backlog, int maxBodyBytes, Duration requestTimeout) {
+
+        public static Settings defaults() {
+            return new Settings("127.0.0.1", 8080, 256, 16 << 20, Duration.ofSeconds(10));
+        }
+
+        /**
+         * Reads the settings from {@code server.*} system properties, using the defaults for missing ones.
+         * The timeout is given in milliseconds.
+         *
+         * @return the configured settings
+         */
+        public static Settings fromSystemProperties() {
+            Settings defaults = defaults();
+            Long timeoutMillis = Long.getLong("server.requestTimeout");
+            return new Settings(
+                    System.getProperty("server.host", defaults.host()),
+                    Integer.getInteger("server.port", defaults.port()),
+                    Integer.getInteger("server.backlog", defaults.backlog()),
+                    Integer.getInteger("server.maxBodyBytes", defaults.maxBodyBytes()),
+                    timeoutMillis == null || timeoutMillis <= 0
+                            ? defaults.requestTimeout()
+                            : Duration.ofMillis(timeoutMillis));
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package org.example.gui.service;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.example.gui.memory.MatPool;
+import org.example.gui.metrics.PipelineMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+import static org.bytedeco.opencv.global.opencv_imgproc.INTER_AREA;
+import static org.bytedeco.opencv.global.opencv_imgproc.resize;
+
+/**
+ * Runs several cameras side by side, e.g. the two or three cameras of an entrance gate.
+ * <p>
+ * Every camera is a {@link CameraService} of its own, with its own capture thread, frame slots and frame
+ * rate, and they are opened concurrently since opening a device can take a second. All cameras share the
+ * frame counters of one {@link PipelineMetrics} and the buffers of one {@link MatPool}. Each camera also gets
+ * a lane of a shared {@link FairScheduler}, so recognition work from all of them runs on the same bounded
+ * set of threads, in turn.
+ */
+public class CameraManager implements AutoCloseable {
+
+    private static final int RECOGNITION_LANE_CAPACITY = 1;
+
+    private final List<Camera> cameras;
+    private final FairScheduler recognitionScheduler;
+
+    /**
+     * Creates the cameras without opening them.
+     *
+     * @param cameraCount          number of cameras
+     * @param metrics              where to record the frame counters of all cameras
+     * @param matPool              pool for the frame buffers of all cameras
+     * @param recognitionScheduler scheduler the recognition work of the cameras shares
+     */
+    public CameraManager(int cameraCount, PipelineMetrics metrics, MatPool matPool,
+                         FairScheduler recognitionScheduler) {
+        this.recognitionScheduler = recognitionScheduler;
+        List<Camera> created = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, cameraCount); i++) {
+            String name = "camera " + i;
+            created.add(new Camera(i, name, new CameraService(metrics, matPool),
+                    recognitionScheduler.lane(name, RECOGNITION_LANE_CAPACITY)));
+        }
+        this.cameras = List.copyOf(created);
+    }
+
+    /**
+     * Opens every camera concurrently. Cameras that are already running are left alone.
+     *
+     * @param sources creates the frame source of the camera with the given index
+     * @return the number of cameras running afterwards
+     */
+    public int start(IntFunction<FrameSource> sources) {
+        List<Future<Boolean>> started = new ArrayList<>();
+        try (ExecutorService openers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Camera camera : cameras) {
+                started.add(openers.submit(() -> camera.service().isRunning()
+                        || camera.service().start(sources.apply(camera.index()))));
+            }
+        }
+
+        int running = 0;
+        for (Future<Boolean> future : started) {
+            try {
+                if (future.get()) {
+                    running++;
+                }
+            } catch (ExecutionException e) {
+                // The camera stays stopped.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return running;
+    }
+
+    /**
+     * Stops every camera.
+     */
+    public void stop() {
+        cameras.forEach(camera -> camera.service().stop());
+    }
+
+    /**
+     * Returns the cameras, in index order.
+     *
+     * @return the cameras
+     */
+    public List<Camera> cameras() {
+        return cameras;
+    }
+
+    /**
+     * Returns a camera.
+     *
+     * @param index the camera index
+     * @return the camera
+     */
+    public Camera camera(int index) {
+        return cameras.get(index);
+    }
+
+    /**
+     * Returns the number of cameras that are capturing.
+     *
+     * @return the running camera count
+     */
+    public int runningCameras() {
+        int running = 0;
+        for (Camera camera : cameras) {
+            if (camera.service().isRunning()) {
+                running++;
+            }
+        }
+        return running;
+    }
+
+    /**
+     * Returns a number that changes whenever any camera publishes a frame, which lets a preview detect new
+     * frames without leasing any.
+     *
+     * @return the sum of the cameras' latest frame sequence numbers
+     */
+    public long latestFrameSequence() {
+        long sum = 0;
+        for (Camera camera : cameras) {
+            sum += camera.service().latestFrameSequence();
+        }
+        return sum;
+    }
+
+    /**
+     * Tiles the latest frame of every camera into one preview image, in a grid of equally sized cells in
+     * camera order. Cells of cameras without a frame are black.
+     *
+     * @param grid       target image, reallocated only if its size changes
+     * @param cellWidth  width of one cell
+     * @param cellHeight height of one cell
+     */
+    public void composite(Mat grid, int cellWidth, int cellHeight) {
+        int columns = (int) Math.ceil(Math.sqrt(cameras.size()));
+        int rows = (cameras.size() + columns - 1) / columns;
+        grid.create(rows * cellHeight, columns * cellWidth, CV_8UC3);
+
+        try (Size cellSize = new Size(cellWidth, cellHeight)) {
+            for (Camera camera : cameras) {
+                int x = camera.index() % columns * cellWidth;
+                int y = camera.index() / columns * cellHeight;
+                try (Rect bounds = new Rect(x, y, cellWidth, cellHeight); Mat cell = grid.apply(bounds)) {
+                    Optional<FrameLease> frame = camera.service().acquireLatestFrame();
+                    if (frame.isEmpty() || frame.get().frame().type() != CV_8UC3) {
+                        frame.ifPresent(FrameLease::close);
+                        try (Scalar black = new Scalar(0, 0, 0, 0)) {
+                            cell.put(black);
+                        }
+                        continue;
+                    }
+                    try (FrameLease lease = frame.get()) {
+                        resize(lease.frame(), cell, cellSize, 0, 0, INTER_AREA);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the statistics of every camera, in index order.
+     *
+     * @return the per-camera statistics
+     */
+    public List<CameraStats> stats() {
+        List<CameraStats> stats = new ArrayList<>(cameras.size());
+        for (Camera camera : cameras) {
+            CameraService service = camera.service();
+            stats.add(new CameraStats(camera.name(), service.isRunning(), service.latestFrameSequence(),
+                    service.effectiveFrameRate(), camera.recognitionLane().stats()));
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the number of threads the recognition work of all cameras shares.
+     *
+     * @return the recognition worker count
+     */
+    public int recognitionWorkers() {
+        return recognitionScheduler.workers();
+    }
+
+    /**
+     * Stops every camera. The recognition scheduler belongs to the caller.
+     */
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * One camera of the manager.
+     *
+     * @param index           position of the camera, also its cell in the preview grid
+     * @param name            name used in the statistics
+     * @param service         the camera's capture
+     * @param recognitionLane the camera's share of the recognition threads
+     */
+    public record Camera(int index, String name, CameraService service, FairScheduler.Lane recognitionLane) {
+    }
+
+    /**
+     * Statistics of one camera.
+     *
+     * @param name               the camera
+     * @param running            whether it is capturing
+     * @param frames             frames published since it was started
+     * @param effectiveFrameRate frames per second the source delivers
+     * @param recognition        counters of the camera's recognition lane
+     */
+    public record CameraStats(String name, boolean running, long frames, double effectiveFrameRate,
+                              FairScheduler.LaneStats recognition) {
+
+        /**
+         * Formats the statistics in one line.
+         *
+         * @return the formatted statistics
+         */
+        public String summary() {
+            return String.format(Locale.ROOT, "%s: %s, %d frames, %.1f fps, %d recognitions, %d shed",
+                    name, running ? "running" : "stopped", frames, effectiveFrameRate, recognition.completed(),
+                    recognition.rejected());
+        }
+    }
+}
@@ -1,24 +1,59 @@
 package org.example.gui.service;
 
 import org.bytedeco.opencv.opencv_core.Mat;
-import org.bytedeco.opencv.opencv_videoio.VideoCapture;
+import org.example.gui.memory.MatPool;
+import org.example.gui.memory.PooledMat;
+import org.example.gui.metrics.PipelineMetrics;
 
 import java.util.Optional;
 
-import static org.bytedeco.opencv.global.opencv_videoio.CAP_PROP_FRAME_HEIGHT;
-import static org.bytedeco.opencv.global.opencv_videoio.CAP_PROP_FRAME_WIDTH;
-
 /**
  * Encapsulates the lifecycle of the webcam and exposes the latest frame in a thread-safe manner.
+ * <p>
+ * Frames are read from a {@link FrameSource}, normally the webcam but also a recording or a generator, and
+ * captured straight into the slots of a {@link FrameExchange}, so neither the capture thread nor the
+ * readers copy pixels or wait on each other. Sources that deliver raw MJPEG are decoded by a
+ * {@link FrameDecoderPool} so the capture thread only grabs. The frame buffers are leased from a
+ * {@link MatPool} and reused across sessions, and the pool's memory ceiling tells consumers when to shed
+ * optional work.
  */
 public class CameraService {
 
-    private final Object frameLock = new Object();
+    private static final double FRAME_RATE_SMOOTHING = 0.05;
 
-    private VideoCapture capture;
-    private Mat latestFrame;
+    private final PipelineMetrics metrics;
+    private final MatPool matPool;
+    private FrameSource source;
+    private volatile FrameExchange frameExchange;
     private Thread captureThread;
     private volatile boolean running;
+    private volatile double effectiveFrameRate;
+    private double frameInterval;
+    private long lastReadNanos;
+
+    public CameraService() {
+        this(new PipelineMetrics());
+    }
+
+    /**
+     * Creates a service that counts captured and dropped frames.
+     *
+     * @param metrics where to record the frame counters
+     */
+    public CameraService(PipelineMetrics metrics) {
+        this(metrics, MatPool.shared());
+    }
+
+    /**
+     * Creates a service that leases its frame buffers from the given pool.
+     *
+     * @param metrics where to record the frame counters
+     * @param matPool pool for the frame buffers
+     */
+    public CameraService(PipelineMetrics metrics, MatPool matPool) {
+        this.metrics = metrics;
+        this.matPool = matPool;
+    }
 
     /**
      * Starts the webcam capture using the specified device index and resolution.
@@ -28,19 +63,35 @@ public class CameraService {
      * @param height      desired frame height
      * @return {@code true} if the camera was started successfully, otherwise {@code false}
      */
-    public synchronized boolean start(int deviceIndex, int width, int height) {
+    public boolean start(int deviceIndex, int width, int height) {
+        return start(new DeviceFrameSource(deviceIndex, width, height));
+    }
+
+    /**
+     * Starts capturing from the given source. The service takes ownership of the source and closes it on
+     * {@link #stop()} or when this method fails.
+     *
+     * @param frameSource the source to read frames from
+     * @return {@code true} if the source was opened successfully, otherwise {@code false}
+     */
+    public synchronized boolean start(FrameSource frameSource) {
         stop();
 
-        capture = new VideoCapture(deviceIndex);
-        if (!capture.isOpened()) {
+        source = frameSource;
+        if (!source.open()) {
             stop();
             return false;
         }
 
-        capture.set(CAP_PROP_FRAME_WIDTH, width);
-        capture.set(CAP_PROP_FRAME_HEIGHT, height);
-
-        latestFrame = new Mat();
+        Optional<CaptureSettings> settings = source.settings();
+        int decoderThreads = settings.map(CaptureSettings::decoderThreads).orElse(0);
+        // Every decoder holds a slot while it writes, on top of the ones the readers need.
+        frameExchange = new FrameExchange(FrameExchange.DEFAULT_SLOT_COUNT + Math.max(0, decoderThreads - 1),
+                matPool, settings.map(CaptureSettings::height).orElse(0),
+                settings.map(CaptureSettings::width).orElse(0));
+        effectiveFrameRate = 0;
+        frameInterval = 0;
+        lastReadNanos = 0;
         running = true;
 
         captureThread = new Thread(this::captureLoop, "CameraCaptureThread");
@@ -50,20 +101,84 @@ public class CameraService {
     }
 
     private void captureLoop() {
-        Mat frame = new Mat();
+        FrameExchange exchange = frameExchange;
+        FrameSource frameSource = source;
+        int decoderThreads = frameSource.settings().map(CaptureSettings::decoderThreads).orElse(0);
+        PooledMat scratchBuffer = matPool.acquire(0, 0, 0);
+        Mat scratch = scratchBuffer.mat();
         try {
-            while (running && capture != null && capture.isOpened()) {
-                if (capture.read(frame) && !frame.empty()) {
-                    synchronized (frameLock) {
-                        frame.copyTo(latestFrame);
+            if (decoderThreads > 0) {
+                try (FrameDecoderPool decoders = new FrameDecoderPool(exchange, decoderThreads, metrics)) {
+                    grabEncodedFrames(frameSource, decoders, scratch);
+                }
+                return;
+            }
+
+            while (running && frameSource.isOpen()) {
+                Mat target = exchange.beginWrite();
+                if (target == null) {
+                    // Every slot is leased: keep draining the source so the next frame is fresh.
+                    if (frameSource.read(scratch)) {
+                        frameRead(System.nanoTime());
+                        metrics.frameDropped();
                     }
+                    continue;
+                }
+
+                boolean captured = frameSource.read(target);
+                long timestamp = System.nanoTime();
+                if (captured) {
+                    frameRead(timestamp);
+                }
+                if (exchange.endWrite(target, captured, timestamp) > 0) {
+                    metrics.frameCaptured();
                 }
             }
         } finally {
-            frame.close();
+            // A recording that ended stops the service, unless a new session has already replaced this one.
+            if (frameExchange == exchange) {
+                running = false;
+            }
+            scratchBuffer.close();
+        }
+    }
+
+    /**
+     * Grab loop for sources delivering compressed frames: it only copies JPEG bytes and leaves decoding and
+     * publishing to the decoder pool, so it never waits for a decode.
+     */
+    private void grabEncodedFrames(FrameSource frameSource, FrameDecoderPool decoders, Mat scratch) {
+        while (running && frameSource.isOpen()) {
+            Mat buffer = decoders.acquireBuffer();
+            if (buffer == null) {
+                if (frameSource.read(scratch)) {
+                    frameRead(System.nanoTime());
+                    metrics.frameDropped();
+                }
+                continue;
+            }
+
+            boolean grabbed = frameSource.read(buffer);
+            long timestamp = System.nanoTime();
+            if (grabbed) {
+                frameRead(timestamp);
+            }
+            decoders.submit(buffer, grabbed, timestamp);
         }
     }
 
+    /**
+     * Updates the effective frame rate, smoothed over roughly the last second of frames.
+     */
+    private void frameRead(long timestampNanos) {
+        if (lastReadNanos != 0) {
+            long interval = timestampNanos - lastReadNanos;
+            frameInterval = frameInterval == 0 ? interval : frameInterval + FRAME_RATE_SMOOTHING * (interval - frameInterval);
+            effectiveFrameRate = 1e9 / Math.max(1, frameInterval);
+        }
+        lastReadNanos = timestampNanos;
+    }
+
     /**
      * Stops the webcam capture and releases native resources.
      */
@@ -79,36 +194,69 @@ public class CameraService {
             captureThread = null;
         }
 
-        if (capture != null) {
-            if (capture.isOpened()) {
-                capture.release();
-            }
-            capture.close();
-            capture = null;
+        if (source != null) {
+            source.close();
+            source = null;
         }
 
-        if (latestFrame != null) {
-            latestFrame.close();
-            latestFrame = null;
+        if (frameExchange != null) {
+            frameExchange.close();
+            frameExchange = null;
         }
     }
 
     /**
-     * Returns a defensive copy of the latest frame if available.
+     * Leases the latest frame without copying it. The returned lease must be closed once the caller
+     * is done with the frame; clone the {@link Mat} if it needs to be kept longer.
      *
-     * @return optional containing a cloned frame
+     * @return optional containing a read-only lease on the latest frame
      */
-    public Optional<Mat> getLatestFrame() {
-        if (!running || latestFrame == null || latestFrame.empty()) {
+    public Optional<FrameLease> acquireLatestFrame() {
+        FrameExchange exchange = frameExchange;
+        if (!running || exchange == null) {
             return Optional.empty();
         }
+        return exchange.acquireLatest();
+    }
 
-        Mat copy = new Mat();
-        synchronized (frameLock) {
-            latestFrame.copyTo(copy);
-        }
+    /**
+     * Returns the sequence number of the latest captured frame, which lets callers detect new frames
+     * without leasing one.
+     *
+     * @return the latest frame sequence number, or {@code 0} if none is available
+     */
+    public long latestFrameSequence() {
+        FrameExchange exchange = frameExchange;
+        return exchange == null ? 0 : exchange.latestSequence();
+    }
+
+    /**
+     * Returns what the current source actually delivers, e.g. the pixel format and frame rate the camera
+     * granted.
+     *
+     * @return the capture settings, or empty if not running or the source cannot tell
+     */
+    public synchronized Optional<CaptureSettings> captureSettings() {
+        return running && source != null ? source.settings() : Optional.empty();
+    }
 
-        return copy.empty() ? Optional.empty() : Optional.of(copy);
+    /**
+     * Returns the frame rate the source is delivering, measured on the capture thread.
+     *
+     * @return frames per second, or {@code 0} until two frames have been read
+     */
+    public double effectiveFrameRate() {
+        return effectiveFrameRate;
+    }
+
+    /**
+     * Indicates whether the process is above the native memory ceiling of the frame buffer pool, in which
+     * case consumers should skip optional work such as speculative recognition passes.
+     *
+     * @return {@code true} if optional work should be shed
+     */
+    public boolean isAboveMemoryCeiling() {
+        return matPool.isAboveCeiling();
     }
 
     /**
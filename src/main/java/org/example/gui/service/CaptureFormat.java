@@ -0,0 +1,81 @@
+package org.example.gui.service;
+
+/**
+ * Capture format requested from a camera. The device may grant something else; see {@link CaptureSettings}.
+ *
+ * @param fourcc         pixel format code such as {@code MJPG} or {@code YUYV}, or {@code null} for the
+ *                       device default
+ * @param frameRate      requested frames per second, or {@code 0} for the device default
+ * @param decoderThreads threads decoding MJPEG frames outside the grab loop, or {@code 0} to let the driver
+ *                       decode them inside {@code read()}
+ */
+public record CaptureFormat(String fourcc, double frameRate, int decoderThreads) {
+
+    public CaptureFormat {
+        if (fourcc != null && fourcc.length() != 4) {
+            throw new IllegalArgumentException("A FOURCC has exactly four characters: " + fourcc);
+        }
+        if (decoderThreads < 0) {
+            throw new IllegalArgumentException("decoderThreads must not be negative");
+        }
+    }
+
+    /**
+     * Leaves the format to the device, as OpenCV does when only the size is set.
+     *
+     * @return the device default format
+     */
+    public static CaptureFormat deviceDefault() {
+        return new CaptureFormat(null, 0, 0);
+    }
+
+    /**
+     * Requests compressed MJPEG, which most USB 2.0 cameras need for 720p at 30 fps.
+     *
+     * @param frameRate      requested frames per second
+     * @param decoderThreads threads decoding frames outside the grab loop, or {@code 0} to decode in the driver
+     * @return the MJPEG format
+     */
+    public static CaptureFormat mjpeg(double frameRate, int decoderThreads) {
+        return new CaptureFormat("MJPG", frameRate, decoderThreads);
+    }
+
+    /**
+     * Requests uncompressed YUYV.
+     *
+     * @param frameRate requested frames per second
+     * @return the YUYV format
+     */
+    public static CaptureFormat yuyv(double frameRate) {
+        return new CaptureFormat("YUYV", frameRate, 0);
+    }
+
+    /**
+     * Reads the format from {@code camera.fourcc} (default {@code MJPG}, {@code default} for the device
+     * default), {@code camera.fps} (default 30, also used when the value is not a number) and
+     * {@code camera.decoderThreads} (default 1).
+     *
+     * @return the configured format
+     */
+    public static CaptureFormat fromSystemProperties() {
+        String fourcc = System.getProperty("camera.fourcc", "MJPG");
+        double frameRate = doubleProperty("camera.fps", 30);
+        int decoderThreads = Integer.getInteger("camera.decoderThreads", 1);
+        if ("default".equalsIgnoreCase(fourcc)) {
+            return new CaptureFormat(null, frameRate, 0);
+        }
+        return new CaptureFormat(fourcc.toUpperCase(), frameRate, decoderThreads);
+    }
+
+    private static double doubleProperty(String name, double fallback) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
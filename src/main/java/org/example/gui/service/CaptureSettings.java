@@ -0,0 +1,29 @@
+package org.example.gui.service;
+
+/**
+ * Capture format a source actually delivers, as reported after opening it.
+ *
+ * @param width          frame width
+ * @param height         frame height
+ * @param fourcc         pixel format granted by the device, or {@code null} if unknown
+ * @param frameRate      frame rate reported by the device, or {@code 0} if unknown
+ * @param decoderThreads threads decoding compressed frames outside the grab loop; {@code 0} means
+ *                       {@link FrameSource#read} already returns decoded BGR frames
+ */
+public record CaptureSettings(int width, int height, String fourcc, double frameRate, int decoderThreads) {
+
+    /**
+     * Indicates whether {@link FrameSource#read} returns compressed JPEG bytes that still need decoding.
+     *
+     * @return {@code true} for raw MJPEG capture
+     */
+    public boolean encoded() {
+        return decoderThreads > 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%dx%d %s @ %.0f fps%s", width, height, fourcc == null ? "?" : fourcc, frameRate,
+                encoded() ? ", decoded on " + decoderThreads + " thread(s)" : "");
+    }
+}
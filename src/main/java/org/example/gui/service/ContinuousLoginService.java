@@ -0,0 +1,444 @@
+package org.example.gui.service;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.example.gui.metrics.PipelineMetrics;
+import org.example.gui.recognition.FaceLocator;
+import org.example.gui.service.FaceLoginService.LoginResult;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.bytedeco.opencv.global.opencv_core.absdiff;
+import static org.bytedeco.opencv.global.opencv_core.mean;
+import static org.bytedeco.opencv.global.opencv_imgproc.COLOR_BGR2GRAY;
+import static org.bytedeco.opencv.global.opencv_imgproc.INTER_AREA;
+import static org.bytedeco.opencv.global.opencv_imgproc.cvtColor;
+import static org.bytedeco.opencv.global.opencv_imgproc.resize;
+
+/**
+ * Hands-free login for kiosks: watches the frames of a running {@link CameraService} and attempts
+ * recognition by itself whenever someone steps in front of the camera.
+ * <p>
+ * The camera is sampled a few times per second rather than at its frame rate. Each sample is reduced to a
+ * tiny grayscale thumbnail of the lease's analysis frame and compared with the previous one; only a mean
+ * difference above the motion threshold makes the scene active. While it is active, recognition runs at
+ * most once per retry interval, one attempt at a time, until somebody is recognized or the scene has been
+ * still for the active window. A static scene therefore costs a thumbnail per sample and no recognition.
+ * <p>
+ * Given a {@link FaceLocator}, a face appearing in the analysis frame also makes the scene active, so that
+ * somebody who steps in slowly enough to stay under the motion threshold is still recognized. The face is
+ * followed with a {@link FaceTracker} while it stays in view; with nobody in view the detector runs at most
+ * once per retry interval.
+ * <p>
+ * Results are debounced: a result equal to the last reported one (same user, or same failure message) is
+ * suppressed for the hold time, and every repetition extends it, so a person standing in front of the
+ * kiosk is announced once.
+ * <p>
+ * While the camera reports the process above its native memory ceiling, attempts are skipped.
+ * <p>
+ * Recognition passes run on the watcher thread unless a recognition executor is given, e.g. the lane of a
+ * {@link FairScheduler} shared by several cameras. The pass then holds one of the executor's threads until
+ * its result is known, and an attempt the executor rejects is skipped like one above the memory ceiling.
+ */
+public class ContinuousLoginService implements AutoCloseable {
+
+    private static final int THUMBNAIL_WIDTH = 32;
+
+    private final CameraService cameraService;
+    private final FaceLoginService faceLoginService;
+    private final Settings settings;
+    private final PipelineMetrics metrics;
+    private final Executor recognitionExecutor;
+    private final FaceTracker faceTracker;
+
+    private final AtomicLong attempts = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+    private volatile ScheduledExecutorService executor;
+    private volatile Consumer<LoginResult> callback;
+
+    // Only touched on the executor thread.
+    private final Mat small = new Mat();
+    private final Mat thumbnail = new Mat();
+    private final Mat previousThumbnail = new Mat();
+    private final Mat difference = new Mat();
+    private long lastSequence;
+    private long lastMotionNanos;
+    private long nextAttemptNanos;
+    private long attemptStartNanos;
+    private boolean active;
+    private boolean inFlight;
+    private String lastReported;
+    private long holdUntilNanos;
+    private boolean facePresent;
+    private long nextDetectionNanos;
+
+    /**
+     * @param cameraService    the camera to watch; it is started and stopped by the caller
+     * @param faceLoginService service running the recognition passes
+     * @param settings         sampling, motion and debounce settings
+     * @param metrics          where recognition latency is recorded
+     */
+    public ContinuousLoginService(CameraService cameraService, FaceLoginService faceLoginService, Settings settings,
+                                  PipelineMetrics metrics) {
+        this(cameraService, faceLoginService, settings, metrics, null);
+    }
+
+    /**
+     * @param cameraService       the camera to watch; it is started and stopped by the caller
+     * @param faceLoginService    service running the recognition passes
+     * @param settings            sampling, motion and debounce settings
+     * @param metrics             where recognition latency is recorded
+     * @param recognitionExecutor executor the recognition passes run on, or {@code null} for the watcher
+     *                            thread
+     */
+    public ContinuousLoginService(CameraService cameraService, FaceLoginService faceLoginService, Settings settings,
+                                  PipelineMetrics metrics, Executor recognitionExecutor) {
+        this(cameraService, faceLoginService, settings, metrics, recognitionExecutor, null);
+    }
+
+    /**
+     * @param cameraService       the camera to watch; it is started and stopped by the caller
+     * @param faceLoginService    service running the recognition passes
+     * @param settings            sampling, motion and debounce settings
+     * @param metrics             where recognition latency is recorded
+     * @param recognitionExecutor executor the recognition passes run on, or {@code null} for the watcher
+     *                            thread
+     * @param faceLocator         detector whose faces also make the scene active, or {@code null} to rely on
+     *                            motion alone; it must be thread-safe if it is shared
+     */
+    public ContinuousLoginService(CameraService cameraService, FaceLoginService faceLoginService, Settings settings,
+                                  PipelineMetrics metrics, Executor recognitionExecutor, FaceLocator faceLocator) {
+        this.cameraService = Objects.requireNonNull(cameraService, "cameraService");
+        this.faceLoginService = Objects.requireNonNull(faceLoginService, "faceLoginService");
+        this.settings = Objects.requireNonNull(settings, "settings");
+        this.metrics = Objects.requireNonNull(metrics, "metrics");
+        this.recognitionExecutor = recognitionExecutor;
+        this.faceTracker = faceLocator == null ? null : new FaceTracker(faceLocator);
+    }
+
+    /**
+     * Starts watching the camera.
+     *
+     * @param callback callback invoked on the watcher thread with every result that is not debounced
+     * @return {@code true} if watching started, {@code false} if it was already running
+     */
+    public synchronized boolean start(Consumer<LoginResult> callback) {
+        if (executor != null) {
+            return false;
+        }
+
+        this.callback = callback;
+        executor = Executors.newSingleThreadScheduledExecutor(new LoginThreadFactory());
+        executor.execute(this::reset);
+        executor.scheduleWithFixedDelay(this::poll, 0, settings.pollInterval().toMillis(), TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * Stops watching. A recognition pass already running completes, but its result is not reported.
+     */
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+    }
+
+    /**
+     * Indicates whether the camera is being watched.
+     *
+     * @return {@code true} between {@link #start} and {@link #stop()}
+     */
+    public boolean isRunning() {
+        return executor != null;
+    }
+
+    /**
+     * Returns how many recognition passes were started.
+     *
+     * @return number of attempts
+     */
+    public long attempts() {
+        return attempts.get();
+    }
+
+    /**
+     * Returns how many results were not reported because they repeated the last one.
+     *
+     * @return number of suppressed results
+     */
+    public long suppressedResults() {
+        return suppressed.get();
+    }
+
+    /**
+     * Returns how many attempts were skipped because native memory was above the ceiling or the
+     * recognition executor was busy.
+     *
+     * @return number of shed attempts
+     */
+    public long shedAttempts() {
+        return shed.get();
+    }
+
+    /**
+     * Stops watching and releases the thumbnails and the face tracker.
+     */
+    @Override
+    public synchronized void close() {
+        stop();
+        small.close();
+        thumbnail.close();
+        previousThumbnail.close();
+        difference.close();
+        if (faceTracker != null) {
+            faceTracker.close();
+        }
+    }
+
+    private void reset() {
+        previousThumbnail.release();
+        lastSequence = 0;
+        nextAttemptNanos = System.nanoTime();
+        active = false;
+        inFlight = false;
+        lastReported = null;
+        facePresent = false;
+        nextDetectionNanos = nextAttemptNanos;
+        if (faceTracker != null) {
+            faceTracker.reset();
+        }
+    }
+
+    private void poll() {
+        if (!cameraService.isRunning() || cameraService.latestFrameSequence() == lastSequence) {
+            return;
+        }
+        Optional<FrameLease> frame = cameraService.acquireLatestFrame();
+        if (frame.isEmpty()) {
+            return;
+        }
+
+        FrameLease lease = frame.get();
+        boolean handedOver = false;
+        try {
+            lastSequence = lease.sequence();
+            long now = System.nanoTime();
+            // Both are evaluated on every sample so that the thumbnail and the tracker stay current.
+            boolean moved = motion(lease.analysisFrame()) >= settings.motionThreshold();
+            if (faceArrived(lease, now) || moved) {
+                active = true;
+                lastMotionNanos = now;
+            }
+            if (!active || inFlight || now - nextAttemptNanos < 0) {
+                return;
+            }
+            if (cameraService.isAboveMemoryCeiling()) {
+                // Shed the attempt rather than allocate crops and copies; the scene stays active.
+                nextAttemptNanos = now + settings.retryInterval().toNanos();
+                shed.incrementAndGet();
+                return;
+            }
+
+            inFlight = true;
+            attemptStartNanos = now;
+            attempts.incrementAndGet();
+            ScheduledExecutorService owner = executor;
+            if (recognitionExecutor == null) {
+                faceLoginService.loginByFace(lease, result -> resultReady(owner, result));
+                return;
+            }
+            try {
+                recognitionExecutor.execute(() -> recognize(owner, lease));
+                handedOver = true;
+            } catch (RejectedExecutionException e) {
+                inFlight = false;
+                nextAttemptNanos = now + settings.retryInterval().toNanos();
+                shed.incrementAndGet();
+            }
+        } finally {
+            if (!handedOver) {
+                lease.close();
+            }
+        }
+    }
+
+    /**
+     * Runs a recognition pass on the recognition executor and keeps its thread until the result is known,
+     * so that the executor's size bounds the passes in progress.
+     */
+    private void recognize(ScheduledExecutorService owner, FrameLease lease) {
+        CompletableFuture<LoginResult> done = new CompletableFuture<>();
+        try (lease) {
+            faceLoginService.loginByFace(lease, result -> {
+                done.complete(result);
+                resultReady(owner, result);
+            });
+        } catch (RuntimeException e) {
+            resultReady(owner, LoginResult.failure("Recognition failed: " + e.getMessage()));
+            return;
+        }
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Never completed exceptionally.
+        }
+    }
+
+    /**
+     * Returns the mean absolute difference (0..1) between the frame's thumbnail and the previous one. The
+     * first frame counts as full motion.
+     */
+    private double motion(Mat analysis) {
+        int height = Math.max(1, analysis.rows() * THUMBNAIL_WIDTH / Math.max(1, analysis.cols()));
+        try (Size size = new Size(THUMBNAIL_WIDTH, height)) {
+            resize(analysis, small, size, 0, 0, INTER_AREA);
+        }
+        cvtColor(small, thumbnail, COLOR_BGR2GRAY);
+
+        double motion = 1.0;
+        if (previousThumbnail.rows() == thumbnail.rows() && previousThumbnail.cols() == thumbnail.cols()) {
+            absdiff(thumbnail, previousThumbnail, difference);
+            try (var average = mean(difference)) {
+                motion = average.get(0) / 255.0;
+            }
+        }
+        thumbnail.copyTo(previousThumbnail);
+        return motion;
+    }
+
+    /**
+     * Looks for a face in the lease's analysis frame and indicates whether one has just come into view. While
+     * nobody is in view the detector runs at most once per retry interval.
+     */
+    private boolean faceArrived(FrameLease lease, long now) {
+        if (faceTracker == null || !facePresent && now - nextDetectionNanos < 0) {
+            return false;
+        }
+        boolean present = faceTracker.update(lease).isPresent();
+        boolean arrived = present && !facePresent;
+        facePresent = present;
+        if (!present) {
+            nextDetectionNanos = now + settings.retryInterval().toNanos();
+        }
+        return arrived;
+    }
+
+    /**
+     * Moves the result onto the watcher thread, which owns all state, unless watching was stopped or
+     * restarted since the pass began.
+     */
+    private void resultReady(ScheduledExecutorService owner, LoginResult result) {
+        if (owner != executor) {
+            return;
+        }
+        try {
+            owner.execute(() -> handleResult(result));
+        } catch (RejectedExecutionException e) {
+            // Stopped while the recognition pass was running.
+        }
+    }
+
+    private void handleResult(LoginResult result) {
+        long now = System.nanoTime();
+        inFlight = false;
+        metrics.loginCompleted(result.success(), now - attemptStartNanos);
+        nextAttemptNanos = now + settings.retryInterval().toNanos();
+        // Keep trying while the scene is moving; stop once somebody was recognized or it went still.
+        active = !result.success() && now - lastMotionNanos < settings.activeWindow().toNanos();
+
+        String key = result.success() ? "user:" + result.username() : "failure:" + result.message();
+        boolean repeated = key.equals(lastReported) && now - holdUntilNanos < 0;
+        lastReported = key;
+        holdUntilNanos = now + settings.holdTime().toNanos();
+        if (repeated) {
+            suppressed.incrementAndGet();
+            return;
+        }
+        if (callback != null) {
+            callback.accept(result);
+        }
+    }
+
+    /**
+     * Sampling, motion and debounce settings.
+     *
+     * @param pollInterval    time between two samples of the camera
+     * @param motionThreshold mean thumbnail difference (0..1) that counts as motion
+     * @param retryInterval   minimum time between the end of one recognition pass and the next
+     * @param activeWindow    how long after the last motion recognition keeps being retried
+     * @param holdTime        how long a repeated result is suppressed
+     */
+    public record Settings(Duration pollInterval, double motionThreshold, Duration retryInterval,
+                           Duration activeWindow, Duration holdTime) {
+
+        public static Settings defaults() {
+            return new Settings(Duration.ofMillis(100), 0.02, Duration.ofSeconds(1), Duration.ofSeconds(3),
+                    Duration.ofSeconds(10));
+        }
+
+        /**
+         * Reads the settings from {@code login.*} system properties, using the defaults for missing ones.
+         * Durations are given in milliseconds.
+         *
+         * @return the configured settings
+         */
+        public static Settings fromSystemProperties() {
+            Settings defaults = defaults();
+            return new Settings(
+                    durationProperty("login.pollInterval", defaults.pollInterval()),
+                    doubleProperty("login.motionThreshold", defaults.motionThreshold()),
+                    durationProperty("login.retryInterval", defaults.retryInterval()),
+                    durationProperty("login.activeWindow", defaults.activeWindow()),
+                    durationProperty("login.holdTime", defaults.holdTime()));
+        }
+
+        private static Duration durationProperty(String name, Duration fallback) {
+            Long millis = Long.getLong(name);
+            return millis == null || millis <= 0 ? fallback : Duration.ofMillis(millis);
+        }
+
+        private static double doubleProperty(String name, double fallback) {
+            String value = System.getProperty(name);
+            if (value == null) {
+                return fallback;
+            }
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                return fallback;
+            }
+        }
+    }
+
+    private static class LoginThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ContinuousLoginThread");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package org.example.gui.service;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.IntPointer;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMWRITE_JPEG_QUALITY;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMWRITE_PNG_COMPRESSION;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imencode;
+
+/**
+ * Encodes and writes dataset images off the capture thread.
+ * <p>
+ * Frames enter through a bounded queue and are encoded in parallel by a small pool of workers, each with its
+ * own reusable {@code imencode} buffer, then written through a {@link FileChannel}. When the queue is full
+ * the {@link BackpressurePolicy} decides whether the producer waits (up to a timeout) or the frame is
+ * rejected straight away; a rejected frame is never silently dropped, {@link Batch#submit} reports it.
+ * Frames are grouped into one {@link Batch} per enrollment whose completion future fires once every file
+ * is written and, if enabled, fsynced together with its directory.
+ */
+public class DatasetWriter implements AutoCloseable {
+
+    /**
+     * Image encoding used for the dataset files.
+     */
+    public enum Format {
+        JPEG(".jpg"),
+        PNG(".png");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String extension() {
+            return extension;
+        }
+    }
+
+    /**
+     * What {@link Batch#submit} does when the queue is full.
+     */
+    public enum BackpressurePolicy {
+        /**
+         * Wait for queue space up to the configured timeout, then reject the frame.
+         */
+        BLOCK,
+        /**
+         * Reject the frame immediately.
+         */
+        REJECT
+    }
+
+    private static final int JPEG_QUALITY = 95;
+    private static final int PNG_COMPRESSION = 3;
+
+    private final BlockingQueue<WriteTask> queue;
+    private final ExecutorService workers;
+    private final ExecutorService syncExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("DatasetSyncThread"));
+    private final Format format;
+    private final BackpressurePolicy policy;
+    private final Duration blockTimeout;
+    private final boolean syncOnComplete;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a writer with two workers, a queue of 16 frames, JPEG output, a blocking policy with a
+     * two-second timeout and batched fsync.
+     */
+    public DatasetWriter() {
+        this(2, 16, Format.JPEG, BackpressurePolicy.BLOCK, Duration.ofSeconds(2), true);
+    }
+
+    /**
+     * Creates a writer.
+     *
+     * @param threads        number of encoding workers
+     * @param queueCapacity  maximum number of frames waiting to be encoded
+     * @param format         image format of the written files
+     * @param policy         behaviour when the queue is full
+     * @param blockTimeout   how long {@link BackpressurePolicy#BLOCK} waits for queue space
+     * @param syncOnComplete whether to fsync every file of a batch before its future completes
+     */
+    public DatasetWriter(int threads, int queueCapacity, Format format, BackpressurePolicy policy,
+                         Duration blockTimeout, boolean syncOnComplete) {
+        if (threads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("threads and queueCapacity must be positive");
+        }
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.format = Objects.requireNonNull(format, "format");
+        this.policy = Objects.requireNonNull(policy, "policy");
+        this.blockTimeout = Objects.requireNonNull(blockTimeout, "blockTimeout");
+        this.syncOnComplete = syncOnComplete;
+
+        workers = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("DatasetWriterThread"));
+        for (int i = 0; i < threads; i++) {
+            workers.submit(new Worker());
+        }
+    }
+
+    /**
+     * Starts a batch of files in the given directory, typically one per enrollment.
+     *
+     * @param directory directory the files are written to; created if missing
+     * @return the new batch
+     * @throws IOException if the directory cannot be created
+     */
+    public Batch beginBatch(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        return new Batch(directory);
+    }
+
+    /**
+     * Returns the number of frames waiting to be encoded.
+     *
+     * @return the queue depth
+     */
+    public int queuedFrames() {
+        return queue.size();
+    }
+
+    /**
+     * Stops the workers. Frames still queued are released without being written.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        workers.shutdownNow();
+        syncExecutor.shutdownNow();
+        WriteTask task;
+        while ((task = queue.poll()) != null) {
+            task.frame.close();
+            task.result.completeExceptionally(new IOException("Dataset writer closed"));
+        }
+    }
+
+    /**
+     * Files written for one enrollment.
+     */
+    public final class Batch {
+        private final Path directory;
+        private final List<CompletableFuture<Path>> files = new ArrayList<>();
+
+        private Batch(Path directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * Queues a frame for encoding. Ownership of the frame passes to the writer, which closes it.
+         *
+         * @param frame    BGR frame to write
+         * @param baseName file name without extension, e.g. {@code img_1}
+         * @return {@code true} if queued, {@code false} if rejected by the backpressure policy
+         * @throws InterruptedException if interrupted while waiting for queue space
+         */
+        public boolean submit(Mat frame, String baseName) throws InterruptedException {
+            WriteTask task = new WriteTask(frame, directory.resolve(baseName + format.extension()));
+            boolean queued = !closed && (policy == BackpressurePolicy.BLOCK
+                    ? queue.offer(task, blockTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                    : queue.offer(task));
+            if (!queued) {
+                frame.close();
+                return false;
+            }
+            files.add(task.result);
+            return true;
+        }
+
+        /**
+         * Seals the batch.
+         *
+         * @return future completing with the written paths once all of them are written and synced,
+         * or exceptionally if any write failed
+         */
+        public CompletableFuture<List<Path>> complete() {
+            List<CompletableFuture<Path>> pending = List.copyOf(files);
+            return CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new))
+                    .thenApplyAsync(ignored -> {
+                        List<Path> paths = pending.stream().map(CompletableFuture::join).toList();
+                        if (syncOnComplete) {
+                            sync(paths, directory);
+                        }
+                        return paths;
+                    }, syncExecutor);
+        }
+
+        /**
+         * Gives up on the batch after a failure part way through: frames still queued are dropped and files
+         * already written are deleted, so no partial enrollment is left in the directory.
+         */
+        public void abandon() {
+            for (CompletableFuture<Path> file : files) {
+                if (!file.cancel(false)) {
+                    file.thenAccept(DatasetWriter::deleteQuietly);
+                }
+            }
+            files.clear();
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Best effort; the next enrollment of the user overwrites the file.
+        }
+    }
+
+    private static void sync(List<Path> paths, Path directory) {
+        try {
+            for (Path path : paths) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to sync dataset files: " + e.getMessage(), e);
+        }
+
+        // Directory entries must be synced too for new files to survive a crash; not supported everywhere.
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Best effort on platforms that cannot open directories.
+        }
+    }
+
+    private final class Worker implements Runnable {
+        private final BytePointer encoded = new BytePointer();
+        private final IntPointer parameters = format == Format.JPEG
+                ? new IntPointer(IMWRITE_JPEG_QUALITY, JPEG_QUALITY)
+                : new IntPointer(IMWRITE_PNG_COMPRESSION, PNG_COMPRESSION);
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    write(queue.take());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                encoded.close();
+                parameters.close();
+            }
+        }
+
+        private void write(WriteTask task) {
+            try (Mat frame = task.frame) {
+                if (task.result.isDone()) {
+                    return;
+                }
+                if (!imencode(format.extension(), frame, encoded, parameters)) {
+                    throw new IOException("Could not encode " + task.path.getFileName());
+                }
+
+                ByteBuffer bytes = encoded.asByteBuffer();
+                try (FileChannel channel = FileChannel.open(task.path, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                }
+                if (!task.result.complete(task.path)) {
+                    // The batch was abandoned while this file was being written.
+                    deleteQuietly(task.path);
+                }
+            } catch (Exception e) {
+                task.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private record WriteTask(Mat frame, Path path, CompletableFuture<Path> result) {
+        private WriteTask(Mat frame, Path path) {
+            this(frame, path, new CompletableFuture<>());
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
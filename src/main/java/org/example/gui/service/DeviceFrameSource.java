@@ -0,0 +1,157 @@
+package org.example.gui.service;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_videoio.VideoCapture;
+import org.bytedeco.opencv.opencv_videoio.VideoWriter;
+
+import java.util.Optional;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC1;
+import static org.bytedeco.opencv.global.opencv_videoio.CAP_PROP_CONVERT_RGB;
+import static org.bytedeco.opencv.global.opencv_videoio.CAP_PROP_FOURCC;
+import static org.bytedeco.opencv.global.opencv_videoio.CAP_PROP_FPS;
+import static org.bytedeco.opencv.global.opencv_videoio.CAP_PROP_FRAME_HEIGHT;
+import static org.bytedeco.opencv.global.opencv_videoio.CAP_PROP_FRAME_WIDTH;
+
+/**
+ * Live frames from a webcam. The device paces itself, so reads block until the next frame arrives.
+ * <p>
+ * The pixel format and frame rate are negotiated when the device is opened. Without an explicit format
+ * many USB cameras fall back to uncompressed YUYV, which USB 2.0 cannot carry at 720p and 30 fps. When
+ * MJPEG is granted and decoder threads are requested, the driver's conversion is switched off so that
+ * {@link #read(Mat)} returns the compressed bytes and decoding happens outside the grab loop; backends that
+ * ignore the switch keep delivering decoded frames.
+ */
+public class DeviceFrameSource implements FrameSource {
+
+    private static final String MJPEG = "MJPG";
+
+    private final int deviceIndex;
+    private final int width;
+    private final int height;
+    private final CaptureFormat format;
+    private VideoCapture capture;
+    private CaptureSettings settings;
+
+    /**
+     * Creates a source with the device's default pixel format and frame rate.
+     *
+     * @param deviceIndex the camera device index
+     * @param width       desired frame width
+     * @param height      desired frame height
+     */
+    public DeviceFrameSource(int deviceIndex, int width, int height) {
+        this(deviceIndex, width, height, CaptureFormat.deviceDefault());
+    }
+
+    /**
+     * @param deviceIndex the camera device index
+     * @param width       desired frame width
+     * @param height      desired frame height
+     * @param format      pixel format, frame rate and decoding mode to request
+     */
+    public DeviceFrameSource(int deviceIndex, int width, int height, CaptureFormat format) {
+        this.deviceIndex = deviceIndex;
+        this.width = width;
+        this.height = height;
+        this.format = format;
+    }
+
+    @Override
+    public boolean open() {
+        capture = new VideoCapture(deviceIndex);
+        if (!capture.isOpened()) {
+            close();
+            return false;
+        }
+
+        // The pixel format must be chosen before the size, which some drivers validate against it.
+        if (format.fourcc() != null) {
+            capture.set(CAP_PROP_FOURCC, fourccCode(format.fourcc()));
+        }
+        capture.set(CAP_PROP_FRAME_WIDTH, width);
+        capture.set(CAP_PROP_FRAME_HEIGHT, height);
+        if (format.frameRate() > 0) {
+            capture.set(CAP_PROP_FPS, format.frameRate());
+        }
+
+        String grantedFourcc = fourccName((int) capture.get(CAP_PROP_FOURCC));
+        boolean encoded = format.decoderThreads() > 0 && MJPEG.equals(grantedFourcc) && enableRawCapture();
+        settings = new CaptureSettings((int) capture.get(CAP_PROP_FRAME_WIDTH), (int) capture.get(CAP_PROP_FRAME_HEIGHT),
+                grantedFourcc, capture.get(CAP_PROP_FPS), encoded ? format.decoderThreads() : 0);
+        return true;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return capture != null && capture.isOpened();
+    }
+
+    @Override
+    public Optional<CaptureSettings> settings() {
+        return Optional.ofNullable(settings);
+    }
+
+    @Override
+    public boolean read(Mat target) {
+        return capture.read(target) && !target.empty();
+    }
+
+    @Override
+    public void close() {
+        if (capture != null) {
+            if (capture.isOpened()) {
+                capture.release();
+            }
+            capture.close();
+            capture = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "camera " + deviceIndex;
+    }
+
+    /**
+     * Turns off the driver's conversion and checks with one frame that compressed JPEG bytes come out.
+     * Restores the conversion if they do not.
+     */
+    private boolean enableRawCapture() {
+        if (!capture.set(CAP_PROP_CONVERT_RGB, 0)) {
+            return false;
+        }
+        try (Mat probe = new Mat()) {
+            if (capture.read(probe) && isJpeg(probe)) {
+                return true;
+            }
+        }
+        capture.set(CAP_PROP_CONVERT_RGB, 1);
+        return false;
+    }
+
+    private static boolean isJpeg(Mat frame) {
+        if (frame.empty() || frame.type() != CV_8UC1 || frame.rows() != 1 || frame.cols() < 2) {
+            return false;
+        }
+        BytePointer data = frame.data();
+        return (data.get(0) & 0xFF) == 0xFF && (data.get(1) & 0xFF) == 0xD8;
+    }
+
+    private static double fourccCode(String fourcc) {
+        return VideoWriter.fourcc((byte) fourcc.charAt(0), (byte) fourcc.charAt(1),
+                (byte) fourcc.charAt(2), (byte) fourcc.charAt(3));
+    }
+
+    private static String fourccName(int code) {
+        if (code == 0) {
+            return null;
+        }
+        char[] name = new char[4];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = (char) ((code >>> (8 * i)) & 0xFF);
+        }
+        return new String(name);
+    }
+}
@@ -0,0 +1,367 @@
+package org.example.gui.service;
+
+import org.bytedeco.javacpp.DoublePointer;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.example.gui.memory.MatPool;
+import org.example.gui.memory.PooledMat;
+import org.example.gui.recognition.DetectedFace;
+import org.example.gui.service.FaceTracker.TrackedFace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_64F;
+import static org.bytedeco.opencv.global.opencv_core.absdiff;
+import static org.bytedeco.opencv.global.opencv_core.mean;
+import static org.bytedeco.opencv.global.opencv_core.meanStdDev;
+import static org.bytedeco.opencv.global.opencv_imgproc.COLOR_BGR2GRAY;
+import static org.bytedeco.opencv.global.opencv_imgproc.INTER_AREA;
+import static org.bytedeco.opencv.global.opencv_imgproc.Laplacian;
+import static org.bytedeco.opencv.global.opencv_imgproc.cvtColor;
+import static org.bytedeco.opencv.global.opencv_imgproc.resize;
+
+/**
+ * Scores a burst of camera frames and keeps the best ones for enrollment.
+ * <p>
+ * Each offered frame is scored for sharpness (variance of the Laplacian of the face region), for having a
+ * face that is present, centered and reasonably large, and for pose diversity against the frames already
+ * kept (landmark yaw/pitch when both faces were freshly detected, otherwise thumbnail difference). Faces are
+ * located with a {@link FaceTracker}, so the detector only runs on the reduced analysis frame and not on every
+ * frame of the burst. The selector keeps the {@code targetFrames} best-scoring frames and is complete as soon
+ * as that many of them pass every quality gate. Without a tracker the face criteria are not evaluated.
+ * <p>
+ * Diversity is only a gate when it was measured by pose. A thumbnail difference barely changes while the user
+ * holds still, so when it stands in for the pose it only ranks the frames; otherwise a still user could never
+ * complete the burst.
+ * <p>
+ * Kept frames are copied into buffers of a {@link MatPool}, so a frame that is displaced hands its buffer to
+ * the next one. A frame that would need a new buffer while the process is above the pool's memory ceiling is
+ * scored but not kept. Not thread-safe.
+ */
+public class EnrollmentFrameSelector implements AutoCloseable {
+
+    private static final int ANALYSIS_WIDTH = 320;
+    private static final int THUMBNAIL_SIZE = 32;
+
+    private final int targetFrames;
+    private final Thresholds thresholds;
+    private final FaceTracker faceTracker;
+    private final MatPool matPool;
+    private final List<Candidate> kept = new ArrayList<>();
+    private final List<FrameScore> scores = new ArrayList<>();
+
+    private final Mat gray = new Mat();
+    private final Mat small = new Mat();
+    private final Mat laplacian = new Mat();
+    private final Mat meanValue = new Mat();
+    private final Mat stdDevValue = new Mat();
+    private final Mat difference = new Mat();
+
+    /**
+     * Creates a selector.
+     *
+     * @param targetFrames number of frames to keep
+     * @param thresholds   quality gates a frame must pass
+     * @param faceTracker  tracker used for the face criteria, or {@code null} to skip them; it is not closed
+     *                     by the selector
+     */
+    public EnrollmentFrameSelector(int targetFrames, Thresholds thresholds, FaceTracker faceTracker) {
+        this(targetFrames, thresholds, faceTracker, MatPool.shared());
+    }
+
+    /**
+     * Creates a selector that copies kept frames into buffers of the given pool.
+     *
+     * @param targetFrames number of frames to keep
+     * @param thresholds   quality gates a frame must pass
+     * @param faceTracker  tracker used for the face criteria, or {@code null} to skip them; it is not closed
+     *                     by the selector
+     * @param matPool      pool for the frame copies
+     */
+    public EnrollmentFrameSelector(int targetFrames, Thresholds thresholds, FaceTracker faceTracker,
+                                   MatPool matPool) {
+        if (targetFrames < 1) {
+            throw new IllegalArgumentException("targetFrames must be positive");
+        }
+        this.targetFrames = targetFrames;
+        this.thresholds = thresholds;
+        this.faceTracker = faceTracker;
+        this.matPool = matPool;
+    }
+
+    /**
+     * Scores a frame and keeps a copy of it if it ranks among the best so far.
+     *
+     * @param lease the frame to score
+     * @return the frame's scores
+     */
+    public FrameScore offer(FrameLease lease) {
+        Mat frame = lease.frame();
+        Optional<TrackedFace> tracked = faceTracker == null ? Optional.empty() : faceTracker.update(lease);
+        Optional<DetectedFace> face = tracked.map(TrackedFace::face);
+
+        Rect region = face.map(detected -> clampedRect(detected, frame)).orElse(null);
+        Mat thumbnail = new Mat();
+        double sharpness;
+        if (region != null) {
+            try (region; Mat crop = frame.apply(region)) {
+                sharpness = analyze(crop, thumbnail);
+            }
+        } else {
+            sharpness = analyze(frame, thumbnail);
+        }
+
+        double faceScore = faceTracker == null ? 1.0 : face.map(detected -> faceScore(detected, frame)).orElse(0.0);
+        // Tracked faces carry the landmarks of an earlier frame, so only detections are compared by pose.
+        DetectedFace pose = tracked.filter(TrackedFace::detected).map(TrackedFace::face).orElse(null);
+        double diversity = diversity(pose, thumbnail);
+        boolean passes = sharpness >= thresholds.minSharpness()
+                && faceScore >= thresholds.minFaceScore()
+                && (diversity >= thresholds.minDiversity() || !comparedByPose(pose));
+        double total = Math.min(1.0, sharpness / (2 * thresholds.minSharpness())) + faceScore + diversity;
+
+        FrameScore score = new FrameScore(lease.sequence(), sharpness, faceScore, diversity, total, passes);
+        scores.add(score);
+        keepIfBetter(score, lease, face.orElse(null), pose, thumbnail);
+        return score;
+    }
+
+    /**
+     * Indicates whether enough frames passing every gate have been kept.
+     *
+     * @return {@code true} once {@code targetFrames} good frames are available
+     */
+    public boolean isComplete() {
+        return goodFrames() >= targetFrames;
+    }
+
+    /**
+     * Returns how many of the kept frames pass every gate.
+     *
+     * @return number of good frames
+     */
+    public int goodFrames() {
+        return (int) kept.stream().filter(candidate -> candidate.score.passes()).count();
+    }
+
+    /**
+     * Hands over the kept frames that pass every gate, best first, and releases the others. The caller becomes
+     * responsible for closing the frames, which returns their buffers to the pool.
+     *
+     * @return the selected frames, fewer than {@code targetFrames} if the burst ended before it was complete
+     */
+    public List<SelectedFrame> takeSelected() {
+        List<SelectedFrame> selected = new ArrayList<>();
+        for (Candidate candidate : kept) {
+            candidate.thumbnail.close();
+            if (candidate.score.passes()) {
+                selected.add(new SelectedFrame(candidate.frame, candidate.face, candidate.score));
+            } else {
+                candidate.frame.close();
+            }
+        }
+        kept.clear();
+        return selected;
+    }
+
+    /**
+     * Returns the scores of every offered frame in arrival order, for tuning the thresholds.
+     *
+     * @return an unmodifiable view of the score history
+     */
+    public List<FrameScore> scores() {
+        return Collections.unmodifiableList(scores);
+    }
+
+    /**
+     * Releases any frames that were not taken and the scratch buffers.
+     */
+    @Override
+    public void close() {
+        for (Candidate candidate : kept) {
+            candidate.frame.close();
+            candidate.thumbnail.close();
+        }
+        kept.clear();
+        gray.close();
+        small.close();
+        laplacian.close();
+        meanValue.close();
+        stdDevValue.close();
+        difference.close();
+    }
+
+    /**
+     * Converts the region to a small grayscale image, stores its thumbnail and returns its sharpness.
+     */
+    private double analyze(Mat region, Mat thumbnail) {
+        cvtColor(region, gray, COLOR_BGR2GRAY);
+        int width = Math.min(ANALYSIS_WIDTH, gray.cols());
+        int height = Math.max(1, gray.rows() * width / Math.max(1, gray.cols()));
+        try (Size analysisSize = new Size(width, height); Size thumbnailSize = new Size(THUMBNAIL_SIZE, THUMBNAIL_SIZE)) {
+            resize(gray, small, analysisSize, 0, 0, INTER_AREA);
+            resize(small, thumbnail, thumbnailSize, 0, 0, INTER_AREA);
+        }
+
+        Laplacian(small, laplacian, CV_64F);
+        meanStdDev(laplacian, meanValue, stdDevValue);
+        double stdDev = new DoublePointer(stdDevValue.data()).get();
+        return stdDev * stdDev;
+    }
+
+    private double faceScore(DetectedFace face, Mat frame) {
+        double centerX = (face.x() + face.width() / 2) / frame.cols() - 0.5;
+        double centerY = (face.y() + face.height() / 2) / frame.rows() - 0.5;
+        double centering = 1.0 - Math.min(1.0, Math.hypot(centerX, centerY) / Math.hypot(0.5, 0.5));
+        double relativeWidth = face.width() / frame.cols();
+        double sizeScore = relativeWidth < thresholds.minFaceWidth()
+                ? relativeWidth / thresholds.minFaceWidth()
+                : 1.0;
+        return centering * sizeScore;
+    }
+
+    private double diversity(DetectedFace pose, Mat thumbnail) {
+        if (kept.isEmpty()) {
+            return 1.0;
+        }
+
+        double nearest = Double.MAX_VALUE;
+        for (Candidate candidate : kept) {
+            double distance;
+            if (pose != null && candidate.pose != null) {
+                distance = Math.hypot(pose.yaw() - candidate.pose.yaw(), pose.pitch() - candidate.pose.pitch());
+            } else {
+                absdiff(thumbnail, candidate.thumbnail, difference);
+                try (var average = mean(difference)) {
+                    distance = average.get(0) / 255.0;
+                }
+            }
+            nearest = Math.min(nearest, distance);
+        }
+        return Math.min(1.0, nearest / thresholds.diversityScale());
+    }
+
+    /**
+     * Indicates whether the frame's diversity was measured by pose against every kept frame.
+     */
+    private boolean comparedByPose(DetectedFace pose) {
+        return pose != null && kept.stream().allMatch(candidate -> candidate.pose != null);
+    }
+
+    private void keepIfBetter(FrameScore score, FrameLease lease, DetectedFace face, DetectedFace pose,
+                              Mat thumbnail) {
+        if (faceTracker != null && score.faceScore() == 0) {
+            thumbnail.close();
+            return;
+        }
+
+        Comparator<Candidate> ranking = Comparator
+                .comparing((Candidate candidate) -> candidate.score.passes())
+                .thenComparingDouble(candidate -> candidate.score.total());
+        if (kept.size() >= targetFrames) {
+            Candidate worst = Collections.min(kept, ranking);
+            boolean better = score.passes() && !worst.score.passes()
+                    || score.passes() == worst.score.passes() && score.total() > worst.score.total();
+            if (!better) {
+                thumbnail.close();
+                return;
+            }
+            kept.remove(worst);
+            worst.frame.close();
+            worst.thumbnail.close();
+        }
+
+        Optional<PooledMat> copy = matPool.copyOf(lease.frame());
+        if (copy.isEmpty()) {
+            thumbnail.close();
+            return;
+        }
+        kept.add(new Candidate(copy.get(), thumbnail, face, pose, score));
+        kept.sort(ranking.reversed());
+    }
+
+    private static Rect clampedRect(DetectedFace face, Mat frame) {
+        int x = Math.max(0, Math.round(face.x()));
+        int y = Math.max(0, Math.round(face.y()));
+        int width = Math.min(frame.cols() - x, Math.round(face.width()));
+        int height = Math.min(frame.rows() - y, Math.round(face.height()));
+        return width > 0 && height > 0 ? new Rect(x, y, width, height) : null;
+    }
+
+    /**
+     * Quality gates applied to every frame.
+     *
+     * @param minSharpness   minimum Laplacian variance of the face region at analysis resolution
+     * @param minFaceScore   minimum face score (centering times size, 0..1)
+     * @param minFaceWidth   face width, relative to the frame width, below which the face score drops
+     * @param minDiversity   minimum diversity score (0..1) against the frames already kept, when measured by pose
+     * @param diversityScale pose or thumbnail distance that counts as fully diverse
+     */
+    public record Thresholds(double minSharpness, double minFaceScore, double minFaceWidth,
+                             double minDiversity, double diversityScale) {
+
+        public static Thresholds defaults() {
+            return new Thresholds(60, 0.5, 0.15, 0.2, 0.25);
+        }
+
+        /**
+         * Reads the thresholds from {@code enroll.*} system properties, using the defaults for missing ones.
+         *
+         * @return the configured thresholds
+         */
+        public static Thresholds fromSystemProperties() {
+            Thresholds defaults = defaults();
+            return new Thresholds(
+                    doubleProperty("enroll.minSharpness", defaults.minSharpness()),
+                    doubleProperty("enroll.minFaceScore", defaults.minFaceScore()),
+                    doubleProperty("enroll.minFaceWidth", defaults.minFaceWidth()),
+                    doubleProperty("enroll.minDiversity", defaults.minDiversity()),
+                    doubleProperty("enroll.diversityScale", defaults.diversityScale()));
+        }
+
+        private static double doubleProperty(String name, double fallback) {
+            String value = System.getProperty(name);
+            if (value == null) {
+                return fallback;
+            }
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                return fallback;
+            }
+        }
+    }
+
+    /**
+     * Scores of one offered frame.
+     *
+     * @param sequence  sequence number of the frame
+     * @param sharpness Laplacian variance of the face region
+     * @param faceScore face presence, centering and size (0..1)
+     * @param diversity pose diversity against the frames kept at the time (0..1)
+     * @param total     combined ranking score
+     * @param passes    whether every quality gate was passed
+     */
+    public record FrameScore(long sequence, double sharpness, double faceScore, double diversity, double total,
+                             boolean passes) {
+    }
+
+    /**
+     * A frame chosen for enrollment. The caller owns the copy and must close it, or detach the {@link Mat} to
+     * hand it to code that closes it.
+     *
+     * @param frame the pooled frame copy
+     * @param face  the face in the frame, or {@code null} if faces were not located
+     * @param score the frame's scores
+     */
+    public record SelectedFrame(PooledMat frame, DetectedFace face, FrameScore score) {
+    }
+
+    private record Candidate(PooledMat frame, Mat thumbnail, DetectedFace face, DetectedFace pose, FrameScore score) {
+    }
+}
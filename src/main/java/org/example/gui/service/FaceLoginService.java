@@ -1,33 +1,268 @@
 package org.example.gui.service;
 
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.example.gui.audit.LoginAuditLog;
+import org.example.gui.recognition.DetectedFace;
+import org.example.gui.recognition.Identification;
+import org.example.gui.recognition.JavaRecognitionBackend;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 /**
- * Handles the face login flow by delegating the heavy lifting to the Python process service
+ * Handles the face login flow by delegating the heavy lifting to a recognition backend
  * and interpreting the result as a recognized username.
+ * <p>
+ * The backend is either the Python process service or, when configured, the in-JVM
+ * {@link JavaRecognitionBackend}, which works on frames captured by {@link CameraService}.
+ * <p>
+ * The Python recognizer may report {@link RecognizerEvent}s while it runs. They are passed on to an optional
+ * listener, and the login completes as soon as a final result arrives or a match reaches the accept score,
+ * without waiting for the process to exit. A recognizer that prints only the username keeps working.
+ * <p>
+ * With a {@link LoginAuditLog}, every login result is recorded together with a thumbnail of the frame. The
+ * thumbnail is downscaled from the lease's analysis frame on the calling thread; encoding and writing happen
+ * on the log's writer thread.
  */
 public class FaceLoginService {
 
+    /**
+     * Default score at which a partial match is accepted before the recognizer has finished.
+     */
+    public static final double DEFAULT_ACCEPT_SCORE = 0.8;
+
+    private static final List<String> LOGIN_COMMAND = List.of("python3", "face_app.py", "login");
+
     private final PythonProcessService pythonProcessService;
+    private final SharedFrameTransport frameTransport;
+    private final JavaRecognitionBackend recognitionBackend;
+    private final double acceptScore;
+    private final LoginAuditLog auditLog;
 
     public FaceLoginService(PythonProcessService pythonProcessService) {
+        this(pythonProcessService, null);
+    }
+
+    /**
+     * Creates a login service that can hand already captured frames to the recognizer in memory.
+     *
+     * @param pythonProcessService service running the recognizer
+     * @param frameTransport       shared frame transport, or {@code null} to let the recognizer open the camera
+     */
+    public FaceLoginService(PythonProcessService pythonProcessService, SharedFrameTransport frameTransport) {
+        this(pythonProcessService, frameTransport, DEFAULT_ACCEPT_SCORE);
+    }
+
+    /**
+     * Creates a login service that can hand already captured frames to the recognizer in memory.
+     *
+     * @param pythonProcessService service running the recognizer
+     * @param frameTransport       shared frame transport, or {@code null} to let the recognizer open the camera
+     * @param acceptScore          score (0..1) at which a partial match ends the login early; above 1 to
+     *                             always wait for the final result
+     */
+    public FaceLoginService(PythonProcessService pythonProcessService, SharedFrameTransport frameTransport,
+                            double acceptScore) {
+        this(pythonProcessService, frameTransport, acceptScore, null);
+    }
+
+    /**
+     * Creates a login service that hands captured frames to the Python recognizer and audits every attempt.
+     *
+     * @param pythonProcessService service running the recognizer
+     * @param frameTransport       shared frame transport, or {@code null} to let the recognizer open the camera
+     * @param acceptScore          score (0..1) at which a partial match ends the login early
+     * @param auditLog             where login attempts are recorded, or {@code null}
+     */
+    public FaceLoginService(PythonProcessService pythonProcessService, SharedFrameTransport frameTransport,
+                            double acceptScore, LoginAuditLog auditLog) {
         this.pythonProcessService = Objects.requireNonNull(pythonProcessService, "pythonProcessService");
+        this.frameTransport = frameTransport;
+        this.recognitionBackend = null;
+        this.acceptScore = acceptScore;
+        this.auditLog = auditLog;
+    }
+
+    /**
+     * Creates a login service that recognizes faces inside the JVM.
+     *
+     * @param recognitionBackend the in-JVM recognition backend
+     */
+    public FaceLoginService(JavaRecognitionBackend recognitionBackend) {
+        this(recognitionBackend, null);
+    }
+
+    /**
+     * Creates a login service that recognizes faces inside the JVM and audits every attempt.
+     *
+     * @param recognitionBackend the in-JVM recognition backend
+     * @param auditLog           where login attempts are recorded, or {@code null}
+     */
+    public FaceLoginService(JavaRecognitionBackend recognitionBackend, LoginAuditLog auditLog) {
+        this.pythonProcessService = null;
+        this.frameTransport = null;
+        this.recognitionBackend = Objects.requireNonNull(recognitionBackend, "recognitionBackend");
+        this.acceptScore = DEFAULT_ACCEPT_SCORE;
+        this.auditLog = auditLog;
     }
 
+    /**
+     * Runs a login pass in which the recognizer captures its own frame from the camera.
+     *
+     * @param callback callback invoked with the login result
+     */
     public void loginByFace(Consumer<LoginResult> callback) {
+        loginByFace((Consumer<RecognizerEvent>) null, callback);
+    }
+
+    /**
+     * Runs a login pass in which the recognizer captures its own frame from the camera, reporting its
+     * progress.
+     *
+     * @param listener receives the recognizer's events as they arrive until the result is known, or
+     *                 {@code null}
+     * @param callback callback invoked once with the login result
+     */
+    public void loginByFace(Consumer<RecognizerEvent> listener, Consumer<LoginResult> callback) {
+        loginWithoutFrame(listener, new AuditedCallback(null, callback));
+    }
+
+    private void loginWithoutFrame(Consumer<RecognizerEvent> listener, Consumer<LoginResult> callback) {
+        if (recognitionBackend != null) {
+            if (callback != null) {
+                callback.accept(LoginResult.failure("A camera frame is required for face login"));
+            }
+            return;
+        }
+        login(LOGIN_COMMAND, listener, callback);
+    }
+
+    /**
+     * Runs a login pass on a frame that has already been captured, e.g. the one shown in the preview.
+     * The frame is published before this method returns, so the lease may be closed right afterwards.
+     * <p>
+     * With the in-JVM backend the face is located on the lease's analysis frame and only the
+     * full-resolution crop around it is handed to the backend.
+     *
+     * @param frame    the frame to recognize
+     * @param callback callback invoked with the login result
+     */
+    public void loginByFace(FrameLease frame, Consumer<LoginResult> callback) {
+        loginByFace(frame, null, callback);
+    }
+
+    /**
+     * Runs a login pass on a frame that has already been captured, reporting the recognizer's progress.
+     * The in-JVM backend reports no events.
+     *
+     * @param frame          the frame to recognize
+     * @param listener       receives the recognizer's events as they arrive until the result is known, or
+     *                       {@code null}
+     * @param resultCallback callback invoked once with the login result
+     */
+    public void loginByFace(FrameLease frame, Consumer<RecognizerEvent> listener,
+                            Consumer<LoginResult> resultCallback) {
+        AuditedCallback callback = new AuditedCallback(frame.analysisFrame(), resultCallback);
+        try {
+            if (recognitionBackend != null) {
+                Optional<DetectedFace> face = recognitionBackend.faceLocator().locate(frame.analysisFrame());
+                if (face.isEmpty()) {
+                    callback.accept(LoginResult.failure("No face detected"));
+                    return;
+                }
+
+                Mat crop = JavaRecognitionBackend.cropFace(frame.frame(),
+                        face.get().scaled((float) frame.analysisScale()));
+                recognitionBackend.identifyAsync(crop, identification -> callback.accept(toLoginResult(identification)));
+                return;
+            }
+            if (frameTransport == null) {
+                loginWithoutFrame(listener, callback);
+                return;
+            }
+
+            List<String> command = new ArrayList<>(LOGIN_COMMAND);
+            try {
+                SharedFrameTransport.Published published =
+                        frameTransport.publish(frame.frame(), frame.sequence(), frame.timestampNanos());
+                command.addAll(frameTransport.arguments(List.of(published)));
+            } catch (IOException e) {
+                // Shared memory unavailable: let the recognizer capture the frame itself.
+            }
+            login(command, listener, callback);
+        } catch (RuntimeException | Error e) {
+            // The attempt never started, so no result will come to hand the thumbnail to the log.
+            callback.discard();
+            throw e;
+        }
+    }
+
+    private void login(List<String> command, Consumer<RecognizerEvent> listener, Consumer<LoginResult> callback) {
+        AtomicBoolean structured = new AtomicBoolean();
+        AtomicBoolean reported = new AtomicBoolean();
+        Consumer<LoginResult> reportOnce = loginResult -> {
+            if (reported.compareAndSet(false, true) && callback != null) {
+                callback.accept(loginResult);
+            }
+        };
+
         pythonProcessService.executeAsync(
-                List.of("python3", "face_app.py", "login"),
-                result -> {
-                    LoginResult loginResult = toLoginResult(result);
-                    if (callback != null) {
-                        callback.accept(loginResult);
+                command,
+                PythonProcessService.Priority.HIGH,
+                line -> RecognizerEvent.parse(line).ifPresent(event -> {
+                    structured.set(true);
+                    if (listener != null && !reported.get()) {
+                        listener.accept(event);
                     }
-                }
+                    toLoginResult(event).ifPresent(reportOnce);
+                }),
+                result -> reportOnce.accept(structured.get() && !RecognizerEvent.parseAll(result.output()).isEmpty()
+                        ? LoginResult.failure("The recognizer finished without a result (exit code "
+                                + result.exitCode() + ")")
+                        : toLoginResult(result))
         );
     }
 
+
+    /**
+     * Indicates whether recognition runs inside the JVM rather than in Python.
+     *
+     * @return {@code true} if the in-JVM backend is used
+     */
+    public boolean usesJavaBackend() {
+        return recognitionBackend != null;
+    }
+
+    private LoginResult toLoginResult(Identification identification) {
+        return identification.recognized()
+                ? LoginResult.success(identification.match().username(), identification.match().score())
+                : LoginResult.failure(identification.message());
+    }
+
+    /**
+     * Returns the login result an event settles on, if any: a final result, an error, or a confident match.
+     */
+    private Optional<LoginResult> toLoginResult(RecognizerEvent event) {
+        return switch (event) {
+            case RecognizerEvent.Match match when match.score() >= acceptScore ->
+                    Optional.of(LoginResult.success(match.username(), match.score()));
+            case RecognizerEvent.Result result when result.success() && result.username() != null ->
+                    Optional.of(LoginResult.success(result.username(), result.score()));
+            case RecognizerEvent.Result result -> Optional.of(LoginResult.failure(result.message() == null
+                    ? "Face not recognized or face has not been registered"
+                    : result.message()));
+            case RecognizerEvent.Failure failure -> Optional.of(LoginResult.failure(failure.message()));
+            default -> Optional.empty();
+        };
+    }
+
     private LoginResult toLoginResult(PythonProcessService.PythonResult result) {
         if (result.exitCode() != 0) {
             String message = result.output() == null || result.output().isBlank()
@@ -45,13 +280,66 @@ public class FaceLoginService {
         return LoginResult.success(username);
     }
 
-    public record LoginResult(boolean success, String username, String message) {
+    /**
+     * Outcome of a login pass.
+     *
+     * @param success  whether a user was recognized
+     * @param username the recognized user, or {@code null}
+     * @param message  why nobody was recognized, or {@code null}
+     * @param score    match score reported by the recognizer, or {@code NaN} if it reported none
+     */
+    public record LoginResult(boolean success, String username, String message, double score) {
         public static LoginResult success(String username) {
-            return new LoginResult(true, username, null);
+            return success(username, Double.NaN);
+        }
+
+        public static LoginResult success(String username, double score) {
+            return new LoginResult(true, username, null, score);
         }
 
         public static LoginResult failure(String message) {
-            return new LoginResult(false, null, message);
+            return new LoginResult(false, null, message, Double.NaN);
+        }
+    }
+
+    /**
+     * Records a login result in the audit log, if there is one, and then passes it to the caller's callback.
+     * The thumbnail is taken when the attempt starts, because the lease's frame is gone by the time the
+     * result arrives; it is handed to the log with the first result, or released by {@link #discard()} if
+     * the attempt fails before producing one.
+     */
+    private final class AuditedCallback implements Consumer<LoginResult> {
+
+        private final Instant attempted = Instant.now();
+        private final AtomicReference<Mat> thumbnail;
+        private final Consumer<LoginResult> callback;
+
+        /**
+         * @param frame    frame the attempt is made on, or {@code null}
+         * @param callback the caller's callback, or {@code null}
+         */
+        AuditedCallback(Mat frame, Consumer<LoginResult> callback) {
+            this.thumbnail = new AtomicReference<>(auditLog == null || frame == null || frame.empty()
+                    ? null : auditLog.thumbnailOf(frame));
+            this.callback = callback;
+        }
+
+        @Override
+        public void accept(LoginResult result) {
+            if (auditLog != null) {
+                auditLog.record(new LoginAuditLog.Attempt(attempted, result.success(), result.username(),
+                        result.score(), result.message(), thumbnail.getAndSet(null)));
+            }
+            if (callback != null) {
+                callback.accept(result);
+            }
+        }
+
+        void discard() {
+            Mat unused = thumbnail.getAndSet(null);
+            if (unused != null) {
+                unused.close();
+            }
         }
     }
 }
@@ -0,0 +1,215 @@
+package org.example.gui.service;
+
+import org.bytedeco.javacpp.DoublePointer;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Point;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.example.gui.recognition.DetectedFace;
+import org.example.gui.recognition.FaceLocator;
+
+import java.util.Objects;
+import java.util.Optional;
+
+import static org.bytedeco.opencv.global.opencv_core.minMaxLoc;
+import static org.bytedeco.opencv.global.opencv_imgproc.COLOR_BGR2GRAY;
+import static org.bytedeco.opencv.global.opencv_imgproc.TM_CCOEFF_NORMED;
+import static org.bytedeco.opencv.global.opencv_imgproc.cvtColor;
+import static org.bytedeco.opencv.global.opencv_imgproc.matchTemplate;
+import static org.bytedeco.opencv.global.opencv_imgproc.pyrDown;
+
+/**
+ * Follows the most prominent face across consecutive frames so that the detector does not have to run on
+ * every one of them.
+ * <p>
+ * Detection runs on the lease's {@linkplain FrameLease#analysisFrame() analysis frame}. In between, the face
+ * patch from the last detection is searched for around its previous position with normalized
+ * cross-correlation at half the analysis resolution, which costs a fraction of a detector pass. The detector
+ * runs again every {@code detectionInterval} frames, or as soon as the best correlation drops below
+ * {@code minConfidence}. The patch is only refreshed by detections, so small tracking errors cannot
+ * accumulate. Tracked faces keep the landmarks of the last detection, moved along with the box; use
+ * {@link TrackedFace#detected()} to tell them apart. Not thread-safe.
+ */
+public class FaceTracker implements AutoCloseable {
+
+    public static final int DEFAULT_DETECTION_INTERVAL = 10;
+    public static final double DEFAULT_MIN_CONFIDENCE = 0.6;
+
+    /**
+     * How far around the last position the face is searched for, relative to its size.
+     */
+    private static final float SEARCH_MARGIN = 0.5f;
+    private static final int MIN_TEMPLATE_SIZE = 8;
+
+    private final FaceLocator detector;
+    private final int detectionInterval;
+    private final double minConfidence;
+
+    private final Mat gray = new Mat();
+    private final Mat tracking = new Mat();
+    private final Mat template = new Mat();
+    private final Mat response = new Mat();
+
+    private DetectedFace lastFace;
+    private int framesSinceDetection;
+    private long detections;
+    private long trackedFrames;
+
+    /**
+     * Creates a tracker with the default detection interval and confidence threshold.
+     *
+     * @param detector detector run on analysis frames
+     */
+    public FaceTracker(FaceLocator detector) {
+        this(detector, DEFAULT_DETECTION_INTERVAL, DEFAULT_MIN_CONFIDENCE);
+    }
+
+    /**
+     * @param detector          detector run on analysis frames
+     * @param detectionInterval maximum number of frames between two detections, at least 1
+     * @param minConfidence     correlation (0..1) below which the face counts as lost and is detected again
+     */
+    public FaceTracker(FaceLocator detector, int detectionInterval, double minConfidence) {
+        if (detectionInterval < 1) {
+            throw new IllegalArgumentException("detectionInterval must be positive");
+        }
+        this.detector = Objects.requireNonNull(detector, "detector");
+        this.detectionInterval = detectionInterval;
+        this.minConfidence = minConfidence;
+    }
+
+    /**
+     * Locates the face in the next frame, tracking it if possible and detecting it otherwise.
+     *
+     * @param lease the frame, normally newer than the one passed last time
+     * @return the face in full-resolution coordinates, or empty if there is none
+     */
+    public Optional<TrackedFace> update(FrameLease lease) {
+        Mat analysis = lease.analysisFrame();
+        cvtColor(analysis, gray, COLOR_BGR2GRAY);
+        pyrDown(gray, tracking);
+
+        TrackedFace face = null;
+        if (lastFace != null && framesSinceDetection < detectionInterval) {
+            face = track();
+        }
+        if (face == null) {
+            face = detect(analysis);
+        }
+
+        float scale = (float) lease.analysisScale();
+        return Optional.ofNullable(face)
+                .map(found -> new TrackedFace(found.face().scaled(scale), found.detected(), found.confidence()));
+    }
+
+    /**
+     * Forgets the current face, so that the next frame is searched with the detector.
+     */
+    public void reset() {
+        lastFace = null;
+    }
+
+    /**
+     * Returns how many detector passes have been made.
+     *
+     * @return number of detections
+     */
+    public long detections() {
+        return detections;
+    }
+
+    /**
+     * Returns how many frames were served by tracking instead of detection.
+     *
+     * @return number of tracked frames
+     */
+    public long trackedFrames() {
+        return trackedFrames;
+    }
+
+    /**
+     * Releases the scratch buffers.
+     */
+    @Override
+    public void close() {
+        gray.close();
+        tracking.close();
+        template.close();
+        response.close();
+    }
+
+    private TrackedFace detect(Mat analysis) {
+        detections++;
+        framesSinceDetection = 0;
+        lastFace = null;
+
+        Optional<DetectedFace> detected = detector.locate(analysis);
+        if (detected.isEmpty()) {
+            return null;
+        }
+        try (Rect box = trackingRect(detected.get(), 0)) {
+            if (box == null) {
+                return null;
+            }
+            try (Mat patch = tracking.apply(box)) {
+                patch.copyTo(template);
+            }
+        }
+        lastFace = detected.get();
+        return new TrackedFace(lastFace, true, 1.0);
+    }
+
+    private TrackedFace track() {
+        try (Rect search = trackingRect(lastFace, SEARCH_MARGIN)) {
+            if (search == null || search.width() < template.cols() || search.height() < template.rows()) {
+                return null;
+            }
+
+            double confidence;
+            int dx;
+            int dy;
+            try (Mat window = tracking.apply(search);
+                 DoublePointer maxValue = new DoublePointer(1);
+                 Point maxLocation = new Point()) {
+                matchTemplate(window, template, response, TM_CCOEFF_NORMED);
+                minMaxLoc(response, (DoublePointer) null, maxValue, null, maxLocation, null);
+                confidence = maxValue.get();
+                dx = search.x() + maxLocation.x() - Math.max(0, Math.round(lastFace.x() / 2));
+                dy = search.y() + maxLocation.y() - Math.max(0, Math.round(lastFace.y() / 2));
+            }
+            if (confidence < minConfidence) {
+                return null;
+            }
+
+            // Offsets were measured at half the analysis resolution.
+            lastFace = lastFace.translated(2 * dx, 2 * dy);
+            framesSinceDetection++;
+            trackedFrames++;
+            return new TrackedFace(lastFace, false, confidence);
+        }
+    }
+
+    /**
+     * Returns the face box, widened by the margin, in tracking image coordinates and clipped to the image.
+     */
+    private Rect trackingRect(DetectedFace face, float margin) {
+        int left = Math.max(0, Math.round((face.x() - face.width() * margin) / 2));
+        int top = Math.max(0, Math.round((face.y() - face.height() * margin) / 2));
+        int right = Math.min(tracking.cols(), Math.round((face.x() + face.width() * (1 + margin)) / 2));
+        int bottom = Math.min(tracking.rows(), Math.round((face.y() + face.height() * (1 + margin)) / 2));
+        if (right - left < MIN_TEMPLATE_SIZE || bottom - top < MIN_TEMPLATE_SIZE) {
+            return null;
+        }
+        return new Rect(left, top, right - left, bottom - top);
+    }
+
+    /**
+     * A face located by the tracker.
+     *
+     * @param face       the face in full-resolution coordinates
+     * @param detected   {@code true} if the detector found it in this frame, {@code false} if it was tracked
+     *                   and its landmarks are carried over from the last detection
+     * @param confidence tracking correlation (0..1), {@code 1} for detections
+     */
+    public record TrackedFace(DetectedFace face, boolean detected, double confidence) {
+    }
+}
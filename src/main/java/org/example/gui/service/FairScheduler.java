@@ -0,0 +1,234 @@
+package org.example.gui.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of worker threads shared by several producers, e.g. the cameras of an entrance gate, that
+ * serves them in turn.
+ * <p>
+ * Each producer submits to its own {@link Lane}, a bounded queue. The workers take one task at a time from
+ * the lanes that have work, in round-robin order, so a producer with a long backlog gets no more than its
+ * share while the others have work too, and the number of workers caps the CPU all of them use together.
+ * A task offered to a full lane is rejected at once instead of piling up behind work that is already stale.
+ */
+public class FairScheduler implements AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(FairScheduler.class.getName());
+
+    private final String name;
+    private final List<Thread> workers = new ArrayList<>();
+    private final ArrayDeque<Lane> ready = new ArrayDeque<>();
+    private boolean running = true;
+
+    /**
+     * Starts the worker threads.
+     *
+     * @param name    name of the worker threads
+     * @param workers number of tasks that may run at once
+     */
+    public FairScheduler(String name, int workers) {
+        this.name = name;
+        WorkerThreadFactory threadFactory = new WorkerThreadFactory(name);
+        for (int i = 0; i < Math.max(1, workers); i++) {
+            Thread worker = threadFactory.newThread(this::run);
+            this.workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Creates a lane for one producer.
+     *
+     * @param laneName name used in the statistics
+     * @param capacity tasks that may wait in the lane before new ones are rejected
+     * @return the new lane
+     */
+    public Lane lane(String laneName, int capacity) {
+        return new Lane(laneName, Math.max(1, capacity));
+    }
+
+    /**
+     * Returns the number of worker threads.
+     *
+     * @return the worker count
+     */
+    public int workers() {
+        return workers.size();
+    }
+
+    /**
+     * Stops the workers, interrupting running tasks. Tasks still waiting in a lane are dropped.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            for (Lane lane : ready) {
+                lane.clear();
+            }
+            ready.clear();
+            notifyAll();
+        }
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void run() {
+        while (true) {
+            Lane lane;
+            Runnable task;
+            synchronized (this) {
+                while (running && ready.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // Only close() interrupts an idle worker; the loop condition decides.
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+                lane = ready.poll();
+                task = lane.tasks.poll();
+                lane.running++;
+                if (lane.tasks.isEmpty()) {
+                    lane.scheduled = false;
+                } else {
+                    // Back of the line: every other lane with work goes first.
+                    ready.add(lane);
+                }
+            }
+
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(System.Logger.Level.WARNING, name + " task of " + lane.name + " failed", e);
+            } finally {
+                synchronized (this) {
+                    lane.running--;
+                    lane.completed++;
+                }
+                // Do not carry an interrupt meant for the task over to the next one.
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * The queue of one producer. Tasks of a lane run in submission order, but possibly at the same time on
+     * different workers.
+     */
+    public final class Lane implements Executor {
+
+        private final String name;
+        private final int capacity;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private boolean scheduled;
+        private int running;
+        private long completed;
+        private long rejected;
+
+        private Lane(String name, int capacity) {
+            this.name = name;
+            this.capacity = capacity;
+        }
+
+        /**
+         * Queues a task unless the lane is full or the scheduler is closed.
+         *
+         * @param task the task
+         * @return {@code true} if the task was queued
+         */
+        public boolean offer(Runnable task) {
+            synchronized (FairScheduler.this) {
+                if (!FairScheduler.this.running || tasks.size() >= capacity) {
+                    rejected++;
+                    return false;
+                }
+                tasks.add(task);
+                if (!scheduled) {
+                    scheduled = true;
+                    ready.add(this);
+                    FairScheduler.this.notify();
+                }
+                return true;
+            }
+        }
+
+        /**
+         * Queues a task.
+         *
+         * @param task the task
+         * @throws RejectedExecutionException if the lane is full or the scheduler is closed
+         */
+        @Override
+        public void execute(Runnable task) {
+            if (!offer(task)) {
+                throw new RejectedExecutionException(name + " is full");
+            }
+        }
+
+        /**
+         * Returns the lane's counters.
+         *
+         * @return the current statistics
+         */
+        public LaneStats stats() {
+            synchronized (FairScheduler.this) {
+                return new LaneStats(name, tasks.size(), running, completed, rejected);
+            }
+        }
+
+        private void clear() {
+            tasks.clear();
+            scheduled = false;
+        }
+    }
+
+    /**
+     * Counters of a lane. {@code queued} and {@code running} are gauges.
+     *
+     * @param name      the lane
+     * @param queued    tasks waiting
+     * @param running   tasks running
+     * @param completed tasks finished
+     * @param rejected  tasks turned away because the lane was full
+     */
+    public record LaneStats(String name, int queued, int running, long completed, long rejected) {
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        WorkerThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.example.gui.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Parses a single JSON object whose values are strings, numbers, booleans or {@code null}, which is all the
+ * recognizer's event lines use. Nested objects and arrays are rejected rather than skipped, as is anything
+ * after the closing brace, so that log lines that merely look like JSON are not mistaken for events.
+ */
+final class FlatJsonParser {
+
+    private final String text;
+    private int position;
+
+    private FlatJsonParser(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Parses one line.
+     *
+     * @param line the text to parse
+     * @return the members in document order, numbers as {@link Double}; empty if the line is not a flat
+     * JSON object
+     */
+    static Optional<Map<String, Object>> parse(String line) {
+        try {
+            return Optional.of(new FlatJsonParser(line).object());
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> members = new LinkedHashMap<>();
+        expect('{');
+        if (peek() == '}') {
+            position++;
+        } else {
+            do {
+                String name = string();
+                expect(':');
+                members.put(name, value());
+            } while (consume(','));
+            expect('}');
+        }
+        skipWhitespace();
+        if (position != text.length()) {
+            throw new IllegalArgumentException("Trailing characters");
+        }
+        return members;
+    }
+
+    private Object value() {
+        char next = peek();
+        if (next == '"') {
+            return string();
+        }
+        if (next == '-' || next >= '0' && next <= '9') {
+            return number();
+        }
+        if (text.startsWith("true", position)) {
+            position += 4;
+            return Boolean.TRUE;
+        }
+        if (text.startsWith("false", position)) {
+            position += 5;
+            return Boolean.FALSE;
+        }
+        if (text.startsWith("null", position)) {
+            position += 4;
+            return null;
+        }
+        throw new IllegalArgumentException("Unsupported value at " + position);
+    }
+
+    private String string() {
+        expect('"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            char c = next();
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            char escaped = next();
+            switch (escaped) {
+                case '"', '\\', '/' -> value.append(escaped);
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'u' -> {
+                    if (position + 4 > text.length()) {
+                        throw new IllegalArgumentException("Truncated escape");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(text, position, position + 4, 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid escape", e);
+                    }
+                    position += 4;
+                }
+                default -> throw new IllegalArgumentException("Invalid escape");
+            }
+        }
+    }
+
+    private Double number() {
+        int start = position;
+        while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+            position++;
+        }
+        try {
+            return Double.valueOf(text.substring(start, position));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number", e);
+        }
+    }
+
+    private void expect(char expected) {
+        if (peek() != expected) {
+            throw new IllegalArgumentException("Expected '" + expected + "' at " + position);
+        }
+        position++;
+    }
+
+    private boolean consume(char expected) {
+        if (peek() == expected) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private char peek() {
+        skipWhitespace();
+        if (position >= text.length()) {
+            throw new IllegalArgumentException("Unexpected end of input");
+        }
+        return text.charAt(position);
+    }
+
+    private char next() {
+        if (position >= text.length()) {
+            throw new IllegalArgumentException("Unterminated string");
+        }
+        return text.charAt(position++);
+    }
+
+    private void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+}
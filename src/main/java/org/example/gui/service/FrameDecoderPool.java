@@ -0,0 +1,171 @@
+package org.example.gui.service;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.example.gui.metrics.PipelineMetrics;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_COLOR;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imdecode;
+
+/**
+ * Decodes raw MJPEG frames from the grab loop on worker threads and publishes them to a
+ * {@link FrameExchange}, so that the grab loop only ever copies compressed bytes.
+ * <p>
+ * Compressed frames travel in a small set of recycled buffers. When the decoders fall behind the oldest
+ * pending frame is dropped in favour of the newest, and a frame that finishes decoding after a newer one
+ * was already published is discarded, so the exchange only ever moves forward in time. Decoders write
+ * straight into exchange slots; access to the exchange's producer side is serialized through this pool.
+ */
+final class FrameDecoderPool implements AutoCloseable {
+
+    private final FrameExchange exchange;
+    private final PipelineMetrics metrics;
+    private final BlockingQueue<Mat> freeBuffers;
+    private final BlockingQueue<EncodedFrame> pending;
+    private final ExecutorService decoders;
+    private final Object producerLock = new Object();
+
+    private long nextIndex;
+    private long lastPublishedIndex = -1;
+
+    /**
+     * @param exchange exchange receiving the decoded frames; needs one extra slot per additional thread
+     * @param threads  number of decoder threads
+     * @param metrics  where dropped and published frames are counted
+     */
+    FrameDecoderPool(FrameExchange exchange, int threads, PipelineMetrics metrics) {
+        this.exchange = exchange;
+        this.metrics = metrics;
+        // One buffer being grabbed into, one per decoder and one per queued frame.
+        int bufferCount = 2 * threads + 1;
+        freeBuffers = new ArrayBlockingQueue<>(bufferCount);
+        pending = new ArrayBlockingQueue<>(threads);
+        for (int i = 0; i < bufferCount; i++) {
+            freeBuffers.add(new Mat());
+        }
+
+        decoders = Executors.newFixedThreadPool(threads, new DecoderThreadFactory());
+        for (int i = 0; i < threads; i++) {
+            decoders.submit(this::decodeLoop);
+        }
+    }
+
+    /**
+     * Takes a free buffer for the next compressed frame. Called from the grab loop only.
+     *
+     * @return the buffer, or {@code null} if none is free
+     */
+    Mat acquireBuffer() {
+        return freeBuffers.poll();
+    }
+
+    /**
+     * Queues a grabbed frame for decoding, or returns the buffer if the grab failed. Never blocks: if the
+     * decoders are behind, the oldest queued frame is dropped.
+     *
+     * @param buffer         buffer from {@link #acquireBuffer()}
+     * @param grabbed        whether the buffer holds a frame
+     * @param timestampNanos grab time as reported by {@link System#nanoTime()}
+     */
+    void submit(Mat buffer, boolean grabbed, long timestampNanos) {
+        if (!grabbed) {
+            freeBuffers.offer(buffer);
+            return;
+        }
+
+        EncodedFrame frame = new EncodedFrame(buffer, nextIndex++, timestampNanos);
+        while (!pending.offer(frame)) {
+            EncodedFrame stale = pending.poll();
+            if (stale != null) {
+                freeBuffers.offer(stale.buffer());
+                metrics.frameDropped();
+            }
+        }
+    }
+
+    /**
+     * Stops the decoders and releases the buffers. Must be called before the exchange is closed.
+     */
+    @Override
+    public void close() {
+        decoders.shutdownNow();
+        try {
+            decoders.awaitTermination(500, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        EncodedFrame frame;
+        while ((frame = pending.poll()) != null) {
+            freeBuffers.offer(frame.buffer());
+        }
+        Mat buffer;
+        while ((buffer = freeBuffers.poll()) != null) {
+            buffer.close();
+        }
+    }
+
+    private void decodeLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                EncodedFrame frame = pending.take();
+                try {
+                    decode(frame);
+                } finally {
+                    freeBuffers.offer(frame.buffer());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void decode(EncodedFrame frame) {
+        Mat target;
+        synchronized (producerLock) {
+            target = exchange.beginWrite();
+        }
+        if (target == null) {
+            metrics.frameDropped();
+            return;
+        }
+
+        boolean decoded;
+        try (Mat result = imdecode(frame.buffer(), IMREAD_COLOR, target)) {
+            decoded = !result.empty();
+        }
+
+        synchronized (producerLock) {
+            boolean current = decoded && frame.index() > lastPublishedIndex;
+            if (current) {
+                lastPublishedIndex = frame.index();
+            }
+            if (exchange.endWrite(target, current, frame.timestampNanos()) > 0) {
+                metrics.frameCaptured();
+            } else if (decoded) {
+                metrics.frameDropped();
+            }
+        }
+    }
+
+    private record EncodedFrame(Mat buffer, long index, long timestampNanos) {
+    }
+
+    private static class DecoderThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "FrameDecoderThread-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
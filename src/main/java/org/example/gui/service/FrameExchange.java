@@ -0,0 +1,286 @@
+package org.example.gui.service;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.example.gui.memory.MatPool;
+import org.example.gui.memory.PooledMat;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+import static org.bytedeco.opencv.global.opencv_imgproc.INTER_AREA;
+import static org.bytedeco.opencv.global.opencv_imgproc.resize;
+
+/**
+ * Lock-free hand-off of camera frames from a single producer to any number of readers.
+ * <p>
+ * The exchange owns a small ring of preallocated {@link Mat} slots. The producer claims a slot that is
+ * neither the latest frame nor leased by a reader, fills it in place and publishes it; readers lease the
+ * latest published slot without copying. A slot is only reused once every lease on it has been closed, so
+ * the producer never waits for readers and readers never observe a half-written frame. When every slot is
+ * busy the producer drops the frame instead of blocking.
+ * <p>
+ * Each slot also carries a downscaled copy of its frame for analysis such as face detection. It is computed
+ * by the first reader that asks for it and shared by every later lease on the same frame, so the cost is
+ * paid at most once per frame and not at all for frames that are only previewed.
+ * <p>
+ * Slot buffers are leased from a {@link MatPool} and returned to it when the exchange is disposed, so a camera
+ * that is stopped and restarted reuses the buffers of its previous session.
+ */
+public class FrameExchange implements AutoCloseable {
+
+    /**
+     * Default number of slots: one being written, one published and two that readers may hold on to.
+     */
+    public static final int DEFAULT_SLOT_COUNT = 4;
+
+    /**
+     * Width of the analysis frame; narrower frames are analyzed at their own size.
+     */
+    public static final int ANALYSIS_WIDTH = 320;
+
+    private static final int FREE = 0;
+    private static final int WRITING = -1;
+    private static final int DISPOSED = -2;
+
+    private final Slot[] slots;
+    private final AtomicReference<Slot> latest = new AtomicReference<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+
+    private volatile boolean closed;
+    private int nextSlot;
+
+    public FrameExchange() {
+        this(DEFAULT_SLOT_COUNT);
+    }
+
+    /**
+     * Creates an exchange with the given number of slots.
+     *
+     * @param slotCount number of preallocated frame slots, at least 3
+     */
+    public FrameExchange(int slotCount) {
+        this(slotCount, MatPool.shared(), 0, 0);
+    }
+
+    /**
+     * Creates an exchange whose slots are leased from a pool, preshaped for BGR frames of the expected size.
+     *
+     * @param slotCount number of frame slots, at least 3
+     * @param pool      pool to lease the slot buffers from
+     * @param rows      expected frame height, or 0 if unknown
+     * @param cols      expected frame width, or 0 if unknown
+     */
+    public FrameExchange(int slotCount, MatPool pool, int rows, int cols) {
+        if (slotCount < 3) {
+            throw new IllegalArgumentException("slotCount must be at least 3");
+        }
+        int analysisRows = rows > 0 && cols > ANALYSIS_WIDTH
+                ? Math.max(1, Math.round(rows * (float) ANALYSIS_WIDTH / cols))
+                : 0;
+        slots = new Slot[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new Slot(this, pool.acquire(rows, cols, CV_8UC3),
+                    pool.acquire(analysisRows, analysisRows > 0 ? ANALYSIS_WIDTH : 0, CV_8UC3));
+        }
+    }
+
+    /**
+     * Claims a slot for writing the next frame. Must only be called from the producer thread.
+     *
+     * @return the {@link Mat} to fill, or {@code null} if every slot is busy and the frame must be dropped
+     */
+    Mat beginWrite() {
+        if (closed) {
+            return null;
+        }
+
+        Slot current = latest.get();
+        for (int i = 0; i < slots.length; i++) {
+            Slot candidate = slots[(nextSlot + i) % slots.length];
+            if (candidate != current && candidate.refs.compareAndSet(FREE, WRITING)) {
+                nextSlot = (nextSlot + i + 1) % slots.length;
+                return candidate.frame;
+            }
+        }
+
+        droppedFrames.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Publishes or abandons the slot claimed by the last {@link #beginWrite()} call.
+     *
+     * @param frame          the {@link Mat} returned by {@link #beginWrite()}
+     * @param publish        {@code true} to make the frame visible to readers, {@code false} to discard it
+     * @param timestampNanos capture time as reported by {@link System#nanoTime()}
+     * @return the sequence number assigned to the frame, or {@code -1} if it was not published
+     */
+    long endWrite(Mat frame, boolean publish, long timestampNanos) {
+        Slot slot = slotOf(frame);
+        if (!publish || closed) {
+            slot.refs.set(FREE);
+            if (closed) {
+                slot.dispose();
+            }
+            return -1;
+        }
+
+        long frameSequence = sequence.incrementAndGet();
+        slot.sequence = frameSequence;
+        slot.timestampNanos = timestampNanos;
+        slot.refs.set(FREE);
+        latest.set(slot);
+        return frameSequence;
+    }
+
+    /**
+     * Leases the most recently published frame without copying it.
+     *
+     * @return optional containing a lease that must be closed once the caller is done with the frame
+     */
+    public Optional<FrameLease> acquireLatest() {
+        while (!closed) {
+            Slot slot = latest.get();
+            if (slot == null) {
+                return Optional.empty();
+            }
+
+            FrameLease lease = tryLease(slot);
+            if (lease != null) {
+                return Optional.of(lease);
+            }
+            Thread.onSpinWait();
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Pins a slot read from {@link #latest} and leases it. Between reading {@code latest} and pinning, the
+     * producer may have published a newer frame, claimed this slot, written into it and abandoned the write;
+     * the slot is then free again but its pixels no longer match its sequence, so it is only leased if it is
+     * still the latest frame once pinned.
+     *
+     * @param slot slot read from {@link #latest}
+     * @return the lease, or {@code null} if the slot is being written or is no longer the latest frame
+     */
+    FrameLease tryLease(Slot slot) {
+        int refs = slot.refs.get();
+        if (refs < FREE || !slot.refs.compareAndSet(refs, refs + 1)) {
+            return null;
+        }
+        if (latest.get() != slot) {
+            slot.release();
+            return null;
+        }
+        return new FrameLease(slot, slot.frame, slot.sequence, slot.timestampNanos);
+    }
+
+    /**
+     * Returns the slot of the most recently published frame, for tests that interleave readers and the
+     * producer by hand.
+     */
+    Slot latestSlot() {
+        return latest.get();
+    }
+
+    /**
+     * Returns the sequence number of the most recently published frame.
+     *
+     * @return the latest sequence number, or {@code 0} if no frame has been published yet
+     */
+    public long latestSequence() {
+        Slot slot = latest.get();
+        return slot == null ? 0 : slot.sequence;
+    }
+
+    /**
+     * Returns how many frames were dropped because every slot was leased.
+     *
+     * @return number of dropped frames
+     */
+    public long droppedFrames() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * Stops accepting frames and releases every slot that is not currently leased. Leased slots are
+     * released when their last lease is closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        latest.set(null);
+        for (Slot slot : slots) {
+            if (slot.refs.compareAndSet(FREE, DISPOSED)) {
+                slot.frameBuffer.close();
+                slot.analysisBuffer.close();
+            }
+        }
+    }
+
+    private Slot slotOf(Mat frame) {
+        for (Slot slot : slots) {
+            if (slot.frame == frame) {
+                return slot;
+            }
+        }
+        throw new IllegalArgumentException("Frame does not belong to this exchange");
+    }
+
+    static final class Slot {
+        private final FrameExchange owner;
+        private final PooledMat frameBuffer;
+        private final PooledMat analysisBuffer;
+        private final Mat frame;
+        private final Mat analysis;
+        private final AtomicInteger refs = new AtomicInteger(FREE);
+        private volatile long sequence;
+        private volatile long timestampNanos;
+        private long analysisSequence;
+
+        private Slot(FrameExchange owner, PooledMat frameBuffer, PooledMat analysisBuffer) {
+            this.owner = owner;
+            this.frameBuffer = frameBuffer;
+            this.analysisBuffer = analysisBuffer;
+            this.frame = frameBuffer.mat();
+            this.analysis = analysisBuffer.mat();
+        }
+
+        /**
+         * Returns the downscaled frame, computing it on first use. Only called while the slot is leased, so
+         * the producer cannot rewrite the frame meanwhile.
+         */
+        synchronized Mat analysisFrame() {
+            if (frame.cols() <= ANALYSIS_WIDTH) {
+                return frame;
+            }
+            if (analysisSequence != sequence) {
+                int height = Math.max(1, Math.round(frame.rows() * (float) ANALYSIS_WIDTH / frame.cols()));
+                try (Size size = new Size(ANALYSIS_WIDTH, height)) {
+                    resize(frame, analysis, size, 0, 0, INTER_AREA);
+                }
+                analysisSequence = sequence;
+            }
+            return analysis;
+        }
+
+        void release() {
+            int remaining = refs.decrementAndGet();
+            if (remaining == FREE && owner.closed) {
+                dispose();
+            }
+        }
+
+        private void dispose() {
+            if (refs.compareAndSet(FREE, DISPOSED)) {
+                frameBuffer.close();
+                analysisBuffer.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.gui.service;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Read-only, reference-counted view of a frame published by a {@link FrameExchange}.
+ * <p>
+ * The underlying {@link Mat} is shared with other readers and must not be modified or closed directly.
+ * Clone it if the pixels need to outlive the lease.
+ */
+public final class FrameLease implements AutoCloseable {
+
+    private final FrameExchange.Slot slot;
+    private final Mat frame;
+    private final long sequence;
+    private final long timestampNanos;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    FrameLease(FrameExchange.Slot slot, Mat frame, long sequence, long timestampNanos) {
+        this.slot = slot;
+        this.frame = frame;
+        this.sequence = sequence;
+        this.timestampNanos = timestampNanos;
+    }
+
+    /**
+     * Returns the leased frame. Valid until {@link #close()} is called.
+     *
+     * @return the shared frame
+     */
+    public Mat frame() {
+        if (released.get()) {
+            throw new IllegalStateException("Frame lease already released");
+        }
+        return frame;
+    }
+
+    /**
+     * Returns a copy of the leased frame downscaled to {@link FrameExchange#ANALYSIS_WIDTH}, for detection and
+     * other analysis that does not need full resolution. The copy is made once per frame and shared by every
+     * lease on it; it is valid until {@link #close()} is called and must not be modified.
+     *
+     * @return the shared analysis frame, or the frame itself if it is not wider than the analysis width
+     */
+    public Mat analysisFrame() {
+        if (released.get()) {
+            throw new IllegalStateException("Frame lease already released");
+        }
+        return slot.analysisFrame();
+    }
+
+    /**
+     * Returns the factor that maps analysis frame coordinates to full-resolution coordinates.
+     *
+     * @return full frame width divided by analysis frame width, {@code 1} if no downscaling is done
+     */
+    public double analysisScale() {
+        return frame.cols() / (double) analysisFrame().cols();
+    }
+
+    /**
+     * Returns the monotonic frame id assigned when the frame was published.
+     *
+     * @return the frame sequence number, starting at 1
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the capture time of the frame.
+     *
+     * @return capture time as reported by {@link System#nanoTime()}
+     */
+    public long timestampNanos() {
+        return timestampNanos;
+    }
+
+    /**
+     * Returns the lease to the exchange so the slot can be reused. Closing twice has no effect.
+     */
+    @Override
+    public void close() {
+        if (released.compareAndSet(false, true)) {
+            slot.release();
+        }
+    }
+}
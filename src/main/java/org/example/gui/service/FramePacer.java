@@ -0,0 +1,45 @@
+package org.example.gui.service;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spaces frames of a recorded or generated source at a fixed rate. Frame deadlines are computed from the
+ * start time rather than from the previous frame, so a slow frame is caught up instead of shifting every
+ * later one.
+ */
+final class FramePacer {
+
+    private final long periodNanos;
+    private long originNanos;
+    private long frames;
+
+    /**
+     * @param frameRate frames per second, or {@code 0} or less to never wait
+     */
+    FramePacer(double frameRate) {
+        periodNanos = frameRate > 0 ? Math.round(1_000_000_000L / frameRate) : 0;
+        reset();
+    }
+
+    /**
+     * Blocks until the next frame is due.
+     */
+    void awaitNextFrame() {
+        if (periodNanos == 0) {
+            return;
+        }
+        long due = originNanos + frames++ * periodNanos;
+        long wait;
+        while ((wait = due - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    /**
+     * Restarts the schedule, e.g. when a looping recording rewinds.
+     */
+    void reset() {
+        originNanos = System.nanoTime();
+        frames = 0;
+    }
+}
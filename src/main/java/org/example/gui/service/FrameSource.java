@@ -0,0 +1,53 @@
+package org.example.gui.service;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.util.Optional;
+
+/**
+ * Where {@link CameraService} gets its frames from: a live camera, a recording or a generator.
+ * <p>
+ * A source is opened once, read from the capture thread only, and closed by the {@link CameraService} that
+ * started it. {@link #read(Mat)} paces itself, so a recording plays back at its frame rate unless the
+ * source was created to run as fast as possible.
+ */
+public interface FrameSource extends AutoCloseable {
+
+    /**
+     * Opens the underlying device or file.
+     *
+     * @return {@code true} if frames can be read
+     */
+    boolean open();
+
+    /**
+     * Indicates whether more frames may follow. Turns {@code false} when a non-looping recording ends.
+     *
+     * @return {@code true} while the source is open and not exhausted
+     */
+    boolean isOpen();
+
+    /**
+     * Describes what the source delivers once it is open.
+     *
+     * @return the granted capture settings, or empty if the source cannot tell
+     */
+    default Optional<CaptureSettings> settings() {
+        return Optional.empty();
+    }
+
+    /**
+     * Reads the next BGR frame into the target, reallocating it if the size differs. When
+     * {@link CaptureSettings#encoded()} is set the target receives the compressed JPEG bytes instead.
+     *
+     * @param target the {@link Mat} to fill
+     * @return {@code true} if a frame was read, {@code false} if none was available this time
+     */
+    boolean read(Mat target);
+
+    /**
+     * Releases the device or file.
+     */
+    @Override
+    void close();
+}
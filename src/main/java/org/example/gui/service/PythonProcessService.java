@@ -1,67 +1,547 @@
 package org.example.gui.service;
 
+import org.example.gui.metrics.PipelineMetrics;
+
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.time.Duration;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 /**
- * Executes Python commands on a dedicated background thread and reports the outcome to the caller.
+ * Executes Python commands on a small pool of background threads and reports the outcome to the caller.
+ * <p>
+ * Commands wait in a priority queue, so a login submitted with {@link Priority#HIGH} runs before enrollments
+ * that were queued earlier, and a long enrollment occupies only one of the slots. Every command has a
+ * deadline counted from its submission: a command still queued at its deadline is not started, and a
+ * running one-shot process is killed together with its child processes. {@link #executeAsync} returns a
+ * {@link PythonTask} through which the command can be cancelled. An optional output listener receives each
+ * line of output as soon as the process prints it, e.g. to parse {@link RecognizerEvent}s while the command
+ * is still running.
+ * <p>
+ * When a {@link PythonWorker} is configured, commands that invoke the worker's script are served by the
+ * long-lived interpreter instead of a new process; any other command, or a worker that cannot be started,
+ * falls back to a one-shot process. The interpreter handles its requests one after another, so the slots
+ * only add concurrency for one-shot processes. A second worker can be dedicated to {@link Priority#HIGH}
+ * commands so that a login never waits behind an enrollment the first interpreter is busy with. Cancelling
+ * or timing out a command served by a worker abandons its request there; a worker left busy with nothing
+ * else is restarted.
  */
 public class PythonProcessService {
 
-    private final ExecutorService executor = Executors.newSingleThreadExecutor(new DaemonThreadFactory());
+    /**
+     * Default number of commands that run at the same time.
+     */
+    public static final int DEFAULT_SLOTS = 2;
 
     /**
-     * Runs the provided command asynchronously.
+     * Default time from submission after which a command is abandoned.
+     */
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(120);
+
+    /**
+     * Order in which queued commands are started; commands of equal priority run in submission order.
+     */
+    public enum Priority {
+        HIGH,
+        NORMAL,
+        LOW
+    }
+
+    private final PythonWorker worker;
+    private final PythonWorker priorityWorker;
+    private final PipelineMetrics metrics;
+    private final Duration defaultTimeout;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService deadlines =
+            Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("PythonDeadlineThread"));
+    private final Set<PythonTask> running = ConcurrentHashMap.newKeySet();
+    private final AtomicLong submissions = new AtomicLong();
+
+    public PythonProcessService() {
+        this(null);
+    }
+
+    /**
+     * Creates a service that routes the worker's script commands through a persistent interpreter.
+     *
+     * @param worker the persistent worker, or {@code null} to always spawn a new process
+     */
+    public PythonProcessService(PythonWorker worker) {
+        this(worker, new PipelineMetrics());
+    }
+
+    /**
+     * Creates a service that also records spawn, queue and round-trip times.
+     *
+     * @param worker  the persistent worker, or {@code null} to always spawn a new process
+     * @param metrics where to record the timings
+     */
+    public PythonProcessService(PythonWorker worker, PipelineMetrics metrics) {
+        this(worker, metrics, DEFAULT_SLOTS, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param worker         the persistent worker, or {@code null} to always spawn a new process
+     * @param metrics        where to record the timings
+     * @param slots          number of commands that may run at the same time, at least 1
+     * @param defaultTimeout deadline for commands submitted without one
+     */
+    public PythonProcessService(PythonWorker worker, PipelineMetrics metrics, int slots, Duration defaultTimeout) {
+        this(worker, null, metrics, slots, defaultTimeout);
+    }
+
+    /**
+     * Creates a service with a second persistent worker reserved for {@link Priority#HIGH} commands.
+     *
+     * @param worker         the persistent worker, or {@code null} to always spawn a new process
+     * @param priorityWorker the worker serving high-priority commands it handles, or {@code null} to share
+     *                       {@code worker}
+     * @param metrics        where to record the timings
+     * @param slots          number of commands that may run at the same time, at least 1
+     * @param defaultTimeout deadline for commands submitted without one
+     */
+    public PythonProcessService(PythonWorker worker, PythonWorker priorityWorker, PipelineMetrics metrics,
+                                int slots, Duration defaultTimeout) {
+        if (slots < 1) {
+            throw new IllegalArgumentException("slots must be positive");
+        }
+        this.worker = worker;
+        this.priorityWorker = priorityWorker;
+        this.metrics = Objects.requireNonNull(metrics, "metrics");
+        this.defaultTimeout = Objects.requireNonNull(defaultTimeout, "defaultTimeout");
+        executor = new ThreadPoolExecutor(slots, slots, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(),
+                new DaemonThreadFactory("PythonProcessThread"));
+    }
+
+    /**
+     * Runs the provided command asynchronously with normal priority and the default timeout.
      *
      * @param command  the command and its arguments (e.g. {@code List.of("python3", "script.py")})
-     * @param callback callback invoked with the command result on the executor thread
+     * @param callback callback invoked with the command result
+     * @return handle to cancel the command
      */
-    public void executeAsync(List<String> command, Consumer<PythonResult> callback) {
-        executor.submit(() -> {
-            PythonResult result = run(command);
-            if (callback != null) {
-                callback.accept(result);
+    public PythonTask executeAsync(List<String> command, Consumer<PythonResult> callback) {
+        return executeAsync(command, Priority.NORMAL, defaultTimeout, callback);
+    }
+
+    /**
+     * Runs the provided command asynchronously with the default timeout.
+     *
+     * @param command  the command and its arguments
+     * @param priority where the command is placed in the queue
+     * @param callback callback invoked with the command result
+     * @return handle to cancel the command
+     */
+    public PythonTask executeAsync(List<String> command, Priority priority, Consumer<PythonResult> callback) {
+        return executeAsync(command, priority, defaultTimeout, callback);
+    }
+
+    /**
+     * Runs the provided command asynchronously.
+     * <p>
+     * The callback is invoked exactly once: normally on a pool thread, on the deadline thread when the
+     * command times out, or on the cancelling thread when it is cancelled. Timeouts and cancellations are
+     * reported with exit code {@code -1}.
+     *
+     * @param command  the command and its arguments
+     * @param priority where the command is placed in the queue
+     * @param timeout  time from now after which the command is abandoned and its process killed
+     * @param callback callback invoked with the command result
+     * @return handle to cancel the command
+     */
+    public PythonTask executeAsync(List<String> command, Priority priority, Duration timeout,
+                                   Consumer<PythonResult> callback) {
+        return executeAsync(command, priority, timeout, null, callback);
+    }
+
+    /**
+     * Runs the provided command asynchronously with the default timeout and streams its output.
+     *
+     * @param command        the command and its arguments
+     * @param priority       where the command is placed in the queue
+     * @param outputListener receives each output line on the pool thread as it is printed
+     * @param callback       callback invoked with the command result
+     * @return handle to cancel the command
+     */
+    public PythonTask executeAsync(List<String> command, Priority priority, Consumer<String> outputListener,
+                                   Consumer<PythonResult> callback) {
+        return executeAsync(command, priority, defaultTimeout, outputListener, callback);
+    }
+
+    /**
+     * Runs the provided command asynchronously and streams its output.
+     * <p>
+     * One-shot processes report each line as soon as it is printed. The persistent worker answers in one
+     * piece, so its lines are reported together just before the callback. No lines are reported once the
+     * command has timed out or been cancelled.
+     *
+     * @param command        the command and its arguments
+     * @param priority       where the command is placed in the queue
+     * @param timeout        time from now after which the command is abandoned and its process killed
+     * @param outputListener receives each output line on the pool thread, or {@code null}
+     * @param callback       callback invoked with the command result
+     * @return handle to cancel the command
+     */
+    public PythonTask executeAsync(List<String> command, Priority priority, Duration timeout,
+                                   Consumer<String> outputListener, Consumer<PythonResult> callback) {
+        PythonTask task = new PythonTask(List.copyOf(command), priority, timeout, submissions.incrementAndGet(),
+                outputListener, callback);
+        metrics.pythonQueued();
+        try {
+            executor.execute(task.entry);
+        } catch (RuntimeException e) {
+            metrics.pythonAbandoned();
+            task.complete(new PythonResult(-1, "Python service is shut down"));
+            return task;
+        }
+        task.deadline = deadlines.schedule(task::expire, timeout.toNanos(), TimeUnit.NANOSECONDS);
+        return task;
+    }
+
+    /**
+     * Starts the persistent workers in the background so the first command does not pay interpreter startup.
+     *
+     * @return completes with {@code true} once the workers are running, or {@code false} if there is no
+     *         persistent worker or one could not be started
+     */
+    public CompletableFuture<Boolean> warmUp() {
+        CompletableFuture<Boolean> started = new CompletableFuture<>();
+        if (worker == null) {
+            started.complete(false);
+            return started;
+        }
+        deadlines.execute(() -> {
+            boolean ready = startWorker(worker);
+            if (priorityWorker != null) {
+                ready &= startWorker(priorityWorker);
             }
+            started.complete(ready);
         });
+        return started;
     }
 
-    private PythonResult run(List<String> command) {
+    private boolean startWorker(PythonWorker pythonWorker) {
+        try {
+            long start = System.nanoTime();
+            pythonWorker.start();
+            metrics.pythonSpawned(System.nanoTime() - start);
+            return true;
+        } catch (IOException e) {
+            // The first command will retry and fall back to a one-shot process.
+            return false;
+        }
+    }
+
+    /**
+     * Returns how many commands are waiting for a free slot.
+     *
+     * @return the queue depth
+     */
+    public int queueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stops all running processes and cancels the queued commands.
+     */
+    public void shutdown() {
+        for (Runnable queued : executor.shutdownNow()) {
+            metrics.pythonAbandoned();
+            ((QueueEntry) queued).task.complete(new PythonResult(-1, "Python service is shut down"));
+        }
+        running.forEach(PythonTask::cancel);
+        deadlines.shutdownNow();
+        if (worker != null) {
+            worker.close();
+        }
+        if (priorityWorker != null) {
+            priorityWorker.close();
+        }
+    }
+
+    private PythonResult run(PythonTask task) {
+        List<String> command = task.command;
+        long submitted = task.submittedNanos;
+        PythonWorker served = task.priority == Priority.HIGH && priorityWorker != null
+                && priorityWorker.handles(command) ? priorityWorker : worker;
+        if (served != null && served.handles(command)) {
+            if (!task.enterWorker()) {
+                return null;
+            }
+            try {
+                PythonResult result = served.execute(command, Duration.ofNanos(Math.max(0, task.remainingNanos())));
+                metrics.pythonCompleted(command, true, result.exitCode(), System.nanoTime() - submitted);
+                if (result.output() != null) {
+                    result.output().lines().forEach(task::outputLine);
+                }
+                return result;
+            } catch (IOException e) {
+                // Worker mode unavailable: run the command as a one-shot process instead.
+            } finally {
+                task.leaveWorker();
+            }
+        }
+
         ProcessBuilder builder = new ProcessBuilder(command);
         builder.redirectErrorStream(true);
 
+        PythonResult result;
         try {
+            long start = System.nanoTime();
             Process process = builder.start();
+            metrics.pythonSpawned(System.nanoTime() - start);
+            if (!task.attach(process)) {
+                return null;
+            }
             StringBuilder output = new StringBuilder();
             try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
                 String line;
                 while ((line = reader.readLine()) != null) {
                     output.append(line).append(System.lineSeparator());
+                    task.outputLine(line);
                 }
             }
 
             int exitCode = process.waitFor();
-            return new PythonResult(exitCode, output.toString().trim());
+            result = new PythonResult(exitCode, output.toString().trim());
         } catch (Exception e) {
-            return new PythonResult(-1, e.getMessage());
+            result = new PythonResult(-1, e.getMessage());
         }
+        metrics.pythonCompleted(command, false, result.exitCode(), System.nanoTime() - submitted);
+        return result;
+    }
+
+    private static void destroyTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
     }
 
     /**
-     * Stops all running processes.
+     * Handle of a submitted command.
      */
-    public void shutdown() {
-        executor.shutdownNow();
+    public final class PythonTask {
+
+        private final List<String> command;
+        private final Priority priority;
+        private final Duration timeout;
+        private final long sequence;
+        private final long submittedNanos = System.nanoTime();
+        private final Consumer<String> outputListener;
+        private final Consumer<PythonResult> callback;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private final QueueEntry entry = new QueueEntry(this);
+        private volatile ScheduledFuture<?> deadline;
+        private Process process;
+        private Thread workerCaller;
+
+        private PythonTask(List<String> command, Priority priority, Duration timeout, long sequence,
+                           Consumer<String> outputListener, Consumer<PythonResult> callback) {
+            this.command = command;
+            this.priority = Objects.requireNonNull(priority, "priority");
+            this.timeout = timeout;
+            this.sequence = sequence;
+            this.outputListener = outputListener;
+            this.callback = callback;
+        }
+
+        /**
+         * Returns the command this task runs.
+         *
+         * @return the command and its arguments
+         */
+        public List<String> command() {
+            return command;
+        }
+
+        /**
+         * Returns the priority the task was queued with.
+         *
+         * @return the priority
+         */
+        public Priority priority() {
+            return priority;
+        }
+
+        /**
+         * Indicates whether the result has been reported.
+         *
+         * @return {@code true} once the command finished, timed out or was cancelled
+         */
+        public boolean isDone() {
+            return done.get();
+        }
+
+        /**
+         * Cancels the command: a queued command is never started and a running one-shot process is killed
+         * together with its children. A command already sent to a persistent worker is abandoned there, and
+         * the worker is restarted if it was busy with nothing else.
+         *
+         * @return {@code true} if the command was cancelled, {@code false} if it had already completed
+         */
+        public boolean cancel() {
+            return abort(new PythonResult(-1, "Python command cancelled"));
+        }
+
+        private void start() {
+            if (isDone()) {
+                metrics.pythonAbandoned();
+                return;
+            }
+            metrics.pythonStarted(System.nanoTime() - submittedNanos);
+            running.add(this);
+            try {
+                PythonResult result = PythonProcessService.this.run(this);
+                if (result != null) {
+                    complete(result);
+                }
+            } finally {
+                running.remove(this);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return priority + " " + String.join(" ", command);
+        }
+
+        private void outputLine(String line) {
+            if (outputListener != null && !isDone()) {
+                outputListener.accept(line);
+            }
+        }
+
+        private long remainingNanos() {
+            return timeout.toNanos() - (System.nanoTime() - submittedNanos);
+        }
+
+        private void expire() {
+            abort(new PythonResult(-1, "Python command timed out after " + timeout.toMillis() + " ms"));
+        }
+
+        private boolean abort(PythonResult result) {
+            if (!complete(result)) {
+                return false;
+            }
+            if (executor.remove(entry)) {
+                metrics.pythonAbandoned();
+            }
+            Process current;
+            synchronized (this) {
+                current = process;
+                if (workerCaller != null) {
+                    // Makes the worker abandon the request; see PythonWorker#execute.
+                    workerCaller.interrupt();
+                }
+            }
+            if (current != null) {
+                destroyTree(current);
+            }
+            return true;
+        }
+
+        /**
+         * Records the pool thread waiting for a worker's answer so that aborting can interrupt it, unless the
+         * task was aborted meanwhile.
+         */
+        private boolean enterWorker() {
+            synchronized (this) {
+                workerCaller = Thread.currentThread();
+            }
+            if (isDone()) {
+                leaveWorker();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Stops interrupts from reaching the pool thread and clears one that arrived too late to matter.
+         */
+        private void leaveWorker() {
+            synchronized (this) {
+                workerCaller = null;
+            }
+            Thread.interrupted();
+        }
+
+        /**
+         * Records the process running this task, or kills it right away if the task was aborted meanwhile.
+         */
+        private boolean attach(Process started) {
+            synchronized (this) {
+                process = started;
+            }
+            if (isDone()) {
+                destroyTree(started);
+                return false;
+            }
+            return true;
+        }
+
+        private boolean complete(PythonResult result) {
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+            ScheduledFuture<?> pending = deadline;
+            if (pending != null) {
+                pending.cancel(false);
+            }
+            if (callback != null) {
+                callback.accept(result);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * What the pool queue holds: orders tasks by priority, then by submission.
+     */
+    private static final class QueueEntry implements Runnable, Comparable<QueueEntry> {
+        private final PythonTask task;
+
+        private QueueEntry(PythonTask task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            task.start();
+        }
+
+        @Override
+        public int compareTo(QueueEntry other) {
+            int byPriority = task.priority.compareTo(other.task.priority);
+            return byPriority != 0 ? byPriority : Long.compare(task.sequence, other.task.sequence);
+        }
     }
 
     private static class DaemonThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
         @Override
         public Thread newThread(Runnable r) {
-            Thread thread = new Thread(r, "PythonProcessThread");
+            Thread thread = new Thread(r, name + "-" + counter.incrementAndGet());
             thread.setDaemon(true);
             return thread;
         }
@@ -69,4 +549,4 @@ public class PythonProcessService {
 
     public record PythonResult(int exitCode, String output) {
     }
-}
\ No newline at end of file
+}
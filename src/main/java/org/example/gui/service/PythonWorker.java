@@ -0,0 +1,414 @@
+package org.example.gui.service;
+
+import org.example.gui.service.PythonProcessService.PythonResult;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps a single Python interpreter running in worker mode so that imports and model loading are paid once
+ * instead of on every command.
+ * <p>
+ * The worker is launched as {@code <launchCommand> worker} and talks a length-prefixed protocol over its
+ * standard streams (all integers are big-endian 32-bit):
+ * <ul>
+ *     <li>request on stdin: {@code id, length, payload} where the payload is the UTF-8 command arguments
+ *     separated by {@code '\0'} (e.g. {@code "enroll\0alice"})</li>
+ *     <li>response on stdout: {@code id, status, length, payload} where status follows exit-code semantics
+ *     and the payload is the UTF-8 output</li>
+ * </ul>
+ * The worker must answer the {@code ping} command with status {@code 0}. Its stderr is inherited so log
+ * output never corrupts the framing. A crashed worker is restarted on the next request.
+ * <p>
+ * A request that misses its deadline is abandoned on its own: its caller gets a timeout result, its late
+ * response is dropped by id and the other requests in flight keep their place. The worker is then pinged
+ * with the request timeout as deadline and only killed, together with its child processes, if it does not
+ * answer, as it is when it fails a periodic health check. A caller interrupted while waiting, e.g. because
+ * its command was cancelled, also abandons its request; if that was the only request the worker was busy
+ * with, the worker is restarted so the command actually stops.
+ * <p>
+ * A worker that exits before answering a single request, typically because the script has no worker mode,
+ * is not started again for a while: requests fail fast with an {@link IOException} so the caller can fall
+ * back to a one-shot process, and the retry delay doubles with every further failed start.
+ */
+public class PythonWorker implements AutoCloseable {
+
+    private static final String PING = "ping";
+    private static final Duration PING_TIMEOUT = Duration.ofSeconds(2);
+    private static final Duration HEALTH_CHECK_INTERVAL = Duration.ofSeconds(30);
+    private static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(30);
+    private static final Duration MAX_RETRY_DELAY = Duration.ofMinutes(10);
+
+    private final List<String> launchCommand;
+    private final Duration requestTimeout;
+    private final ScheduledExecutorService healthChecker =
+            Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("PythonWorkerHealthThread"));
+
+    private Connection connection;
+    private int failedStarts;
+    private long retryAfterNanos;
+    private volatile boolean closed;
+
+    /**
+     * Creates a worker for the given script launcher. The interpreter is started lazily by {@link #start()}
+     * or by the first request.
+     *
+     * @param launchCommand  interpreter and script, e.g. {@code List.of("python3", "face_app.py")}
+     * @param requestTimeout maximum time a single request may take, and how long a worker has to answer a
+     *                       ping after a request timed out before it is killed
+     */
+    public PythonWorker(List<String> launchCommand, Duration requestTimeout) {
+        this.launchCommand = List.copyOf(launchCommand);
+        this.requestTimeout = Objects.requireNonNull(requestTimeout, "requestTimeout");
+        long interval = HEALTH_CHECK_INTERVAL.toMillis();
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Indicates whether the command is a call of this worker's script that can be served in-process.
+     *
+     * @param command full command line, e.g. {@code python3 face_app.py login}
+     * @return {@code true} if the command starts with the launch command and has at least one argument
+     */
+    public boolean handles(List<String> command) {
+        return command.size() > launchCommand.size()
+                && command.subList(0, launchCommand.size()).equals(launchCommand);
+    }
+
+    /**
+     * Starts the interpreter if it is not already running.
+     *
+     * @throws IOException if the worker process cannot be started
+     */
+    public void start() throws IOException {
+        connection();
+    }
+
+    /**
+     * Sends the script arguments of a full command line to the worker and waits for the response.
+     *
+     * @param command full command line accepted by {@link #handles(List)}
+     * @return the worker's result; a timeout is reported with exit code {@code -1}
+     * @throws IOException if the worker cannot be started or dies again right after a restart
+     */
+    public PythonResult execute(List<String> command) throws IOException {
+        return execute(command, requestTimeout);
+    }
+
+    /**
+     * Sends the script arguments of a full command line to the worker and waits at most the given time for
+     * the response. A request that misses the deadline is abandoned; the worker is only killed if it then
+     * stops answering.
+     *
+     * @param command full command line accepted by {@link #handles(List)}
+     * @param timeout maximum time to wait, e.g. what is left of the caller's deadline
+     * @return the worker's result; a timeout is reported with exit code {@code -1}
+     * @throws IOException if the worker cannot be started or dies again right after a restart
+     */
+    public PythonResult execute(List<String> command, Duration timeout) throws IOException {
+        List<String> arguments = command.subList(launchCommand.size(), command.size());
+        IOException lastFailure = null;
+
+        // A worker that died since the last request is restarted once before giving up; one that never
+        // answered is not restarted until its retry delay has passed.
+        for (int attempt = 0; attempt < 2; attempt++) {
+            Connection current = connection();
+            CompletableFuture<PythonResult> response = null;
+            try {
+                response = current.send(arguments);
+                PythonResult result = response.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+                answered();
+                return result;
+            } catch (TimeoutException e) {
+                current.abandon(response);
+                checkResponsive(current);
+                return new PythonResult(-1, "Python worker timed out after " + timeout.toMillis() + " ms");
+            } catch (ExecutionException | IOException e) {
+                failed(current);
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                lastFailure = cause instanceof IOException io ? io : new IOException(cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (response != null) {
+                    current.abandon(response);
+                    if (current.pending.isEmpty()) {
+                        // The worker is busy with nothing but the abandoned request: stop it.
+                        restart(current);
+                    }
+                }
+                return new PythonResult(-1, "Interrupted while waiting for the Python worker");
+            }
+        }
+        throw lastFailure;
+    }
+
+    /**
+     * Checks that the worker answers a {@code ping} within a short deadline.
+     *
+     * @return {@code true} if the worker is running and responsive
+     */
+    public boolean ping() {
+        Connection current;
+        synchronized (this) {
+            current = connection;
+        }
+        return current != null && responds(current, PING_TIMEOUT);
+    }
+
+    /**
+     * Stops the worker process and its health checks.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        healthChecker.shutdownNow();
+        synchronized (this) {
+            if (connection != null) {
+                connection.kill();
+                connection = null;
+            }
+        }
+    }
+
+    private synchronized Connection connection() throws IOException {
+        if (closed) {
+            throw new IOException("Python worker is closed");
+        }
+        if (connection == null || !connection.process.isAlive()) {
+            if (connection != null) {
+                failed(connection);
+            }
+            long wait = retryAfterNanos - System.nanoTime();
+            if (failedStarts > 0 && wait > 0) {
+                throw new IOException("Python worker mode unavailable, next attempt in "
+                        + TimeUnit.NANOSECONDS.toSeconds(wait) + " s");
+            }
+            List<String> workerCommand = new ArrayList<>(launchCommand);
+            workerCommand.add("worker");
+            try {
+                connection = new Connection(workerCommand);
+            } catch (IOException e) {
+                startFailed();
+                throw e;
+            }
+        }
+        return connection;
+    }
+
+    /**
+     * Discards a connection that broke, counting it as a failed start if the worker never answered.
+     */
+    private synchronized void failed(Connection broken) {
+        discard(broken);
+        if (!broken.answered) {
+            startFailed();
+        }
+    }
+
+    private synchronized void startFailed() {
+        failedStarts++;
+        long delay = Math.min(MAX_RETRY_DELAY.toNanos(), RETRY_DELAY.toNanos() << Math.min(failedStarts - 1, 16));
+        retryAfterNanos = System.nanoTime() + delay;
+    }
+
+    private synchronized void answered() {
+        failedStarts = 0;
+    }
+
+    private synchronized void discard(Connection stale) {
+        stale.kill();
+        if (connection == stale) {
+            connection = null;
+        }
+    }
+
+    /**
+     * Pings a worker that let a request time out, in the background so the caller gets its timeout result
+     * right away. The ping queues behind the requests the worker already has, so it gets the full request
+     * timeout; a worker that cannot answer it in that time is stuck and killed.
+     */
+    private void checkResponsive(Connection suspect) {
+        try {
+            healthChecker.execute(() -> {
+                if (!responds(suspect, requestTimeout)) {
+                    discard(suspect);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Closed meanwhile; the worker is being killed anyway.
+        }
+    }
+
+    /**
+     * Kills a worker and starts a new one in the background, so the next request does not pay for the
+     * interpreter startup.
+     */
+    private void restart(Connection stale) {
+        discard(stale);
+        try {
+            healthChecker.execute(() -> {
+                try {
+                    connection();
+                } catch (IOException e) {
+                    // The next request retries, or fails fast while worker mode is unavailable.
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Closed meanwhile.
+        }
+    }
+
+    private boolean responds(Connection current, Duration timeout) {
+        if (!current.process.isAlive()) {
+            return false;
+        }
+        CompletableFuture<PythonResult> response = null;
+        try {
+            response = current.send(List.of(PING));
+            return response.get(timeout.toMillis(), TimeUnit.MILLISECONDS).exitCode() == 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return false;
+        } finally {
+            if (response != null) {
+                current.abandon(response);
+            }
+        }
+    }
+
+    private void checkHealth() {
+        Connection current;
+        synchronized (this) {
+            current = connection;
+        }
+        if (current != null && current.pending.isEmpty() && !ping()) {
+            discard(current);
+        }
+    }
+
+    private static final class Connection {
+        private final Process process;
+        private final DataOutputStream input;
+        private final Map<Integer, CompletableFuture<PythonResult>> pending = new ConcurrentHashMap<>();
+        private final AtomicInteger nextId = new AtomicInteger();
+        private volatile boolean readerDone;
+        private volatile boolean answered;
+
+        private Connection(List<String> command) throws IOException {
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+            process = builder.start();
+            input = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+
+            Thread reader = new Thread(this::readResponses, "PythonWorkerReaderThread");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private CompletableFuture<PythonResult> send(List<String> arguments) throws IOException {
+            int id = nextId.incrementAndGet();
+            CompletableFuture<PythonResult> future = new CompletableFuture<>();
+            pending.put(id, future);
+            if (readerDone) {
+                pending.remove(id);
+                throw new EOFException("Python worker exited");
+            }
+
+            byte[] payload = String.join("\0", arguments).getBytes(StandardCharsets.UTF_8);
+            try {
+                synchronized (input) {
+                    input.writeInt(id);
+                    input.writeInt(payload.length);
+                    input.write(payload);
+                    input.flush();
+                }
+            } catch (IOException e) {
+                pending.remove(id);
+                throw e;
+            }
+            return future;
+        }
+
+        /**
+         * Forgets a request whose caller stopped waiting; its response is dropped when it arrives.
+         */
+        private void abandon(CompletableFuture<PythonResult> response) {
+            pending.values().remove(response);
+        }
+
+        private void readResponses() {
+            IOException failure = new EOFException("Python worker exited");
+            try (DataInputStream output = new DataInputStream(new BufferedInputStream(process.getInputStream()))) {
+                while (true) {
+                    int id = output.readInt();
+                    int status = output.readInt();
+                    int length = output.readInt();
+                    if (length < 0 || length > MAX_FRAME_LENGTH) {
+                        throw new IOException("Invalid response length from Python worker: " + length);
+                    }
+                    byte[] payload = output.readNBytes(length);
+                    if (payload.length < length) {
+                        throw new EOFException("Truncated response from Python worker");
+                    }
+
+                    answered = true;
+                    CompletableFuture<PythonResult> future = pending.remove(id);
+                    if (future != null) {
+                        future.complete(new PythonResult(status, new String(payload, StandardCharsets.UTF_8).trim()));
+                    }
+                }
+            } catch (IOException e) {
+                failure = e;
+            } finally {
+                readerDone = true;
+                for (CompletableFuture<PythonResult> future : pending.values()) {
+                    future.completeExceptionally(failure);
+                }
+                pending.clear();
+            }
+        }
+
+        private void kill() {
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final String name;
+
+        private DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
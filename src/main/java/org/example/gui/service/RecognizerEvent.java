@@ -0,0 +1,105 @@
+package org.example.gui.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A structured event written by the recognizer script, one JSON object per output line:
+ * <pre>
+ * {"event": "progress", "progress": 0.4, "message": "Embedding image 2/5"}
+ * {"event": "match", "user": "alice", "score": 0.87}
+ * {"event": "result", "success": true, "user": "alice", "score": 0.93, "message": "Welcome"}
+ * {"event": "error", "message": "No face detected"}
+ * </pre>
+ * Scores range from 0 to 1, higher meaning more confident. Lines that are not such an object, e.g. log
+ * output, are ignored, so the script may keep printing diagnostics.
+ */
+public sealed interface RecognizerEvent {
+
+    /**
+     * Parses one output line.
+     *
+     * @param line a line of recognizer output
+     * @return the event, or empty if the line is not a recognizer event
+     */
+    static Optional<RecognizerEvent> parse(String line) {
+        String trimmed = line.strip();
+        if (!trimmed.startsWith("{")) {
+            return Optional.empty();
+        }
+        return FlatJsonParser.parse(trimmed).flatMap(RecognizerEvent::fromMembers);
+    }
+
+    /**
+     * Parses every event in a complete output, e.g. a worker response.
+     *
+     * @param output the recognizer output
+     * @return the events in output order
+     */
+    static List<RecognizerEvent> parseAll(String output) {
+        List<RecognizerEvent> events = new ArrayList<>();
+        if (output != null) {
+            output.lines().forEach(line -> parse(line).ifPresent(events::add));
+        }
+        return events;
+    }
+
+    private static Optional<RecognizerEvent> fromMembers(Map<String, Object> members) {
+        if (!(members.get("event") instanceof String type)) {
+            return Optional.empty();
+        }
+        String message = members.get("message") instanceof String text ? text : null;
+        String user = members.get("user") instanceof String name ? name : null;
+        double score = members.get("score") instanceof Double value ? value : 0;
+        return switch (type) {
+            case "progress" -> Optional.of(new Progress(
+                    members.get("progress") instanceof Double value ? Math.clamp(value, 0.0, 1.0) : 0, message));
+            case "match" -> user == null ? Optional.empty() : Optional.of(new Match(user, score));
+            case "result" -> {
+                boolean success = members.get("success") instanceof Boolean flag ? flag : user != null;
+                yield Optional.of(new Result(success, user, score, message));
+            }
+            case "error" -> Optional.of(new Failure(message));
+            default -> Optional.empty();
+        };
+    }
+
+    /**
+     * How far the current command has got.
+     *
+     * @param fraction completed fraction, 0 to 1
+     * @param message  what is being done, or {@code null}
+     */
+    record Progress(double fraction, String message) implements RecognizerEvent {
+    }
+
+    /**
+     * A candidate match found before the command completed.
+     *
+     * @param username the matched user
+     * @param score    match confidence, 0 to 1
+     */
+    record Match(String username, double score) implements RecognizerEvent {
+    }
+
+    /**
+     * The final outcome of the command.
+     *
+     * @param success  whether the command succeeded, e.g. a user was recognized
+     * @param username the recognized user, or {@code null}
+     * @param score    match confidence, 0 to 1
+     * @param message  human-readable outcome, or {@code null}
+     */
+    record Result(boolean success, String username, double score, String message) implements RecognizerEvent {
+    }
+
+    /**
+     * The command failed.
+     *
+     * @param message why it failed, or {@code null}
+     */
+    record Failure(String message) implements RecognizerEvent {
+    }
+}
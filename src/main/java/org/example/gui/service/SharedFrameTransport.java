@@ -0,0 +1,231 @@
+package org.example.gui.service;
+
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+
+/**
+ * Publishes captured frames to the recognizer through a memory-mapped file so pixels cross the process
+ * boundary without JPEG encoding, decoding or a second camera open.
+ * <p>
+ * The file is a 64-byte header followed by {@code slotCount} slots. All values are little-endian:
+ * <pre>
+ * header: int magic 'FRM1', int version, int slotCount, int slotCapacity (pixel bytes per slot)
+ * slot:   64-byte slot header, then slotCapacity bytes of pixel data
+ *         long stamp (odd while the slot is being written), long frameSequence, long timestampNanos,
+ *         int width, int height, int channels, int step (bytes per row)
+ * </pre>
+ * Pixels are packed BGR rows exactly as OpenCV stores them, and {@code slotCapacity} is a multiple of 8.
+ * Every write of a slot advances its stamp by two, so a stamp identifies one frame for the lifetime of the
+ * file. Slots are reused round-robin and a queued request may only run after its slot was written again, so
+ * the recognizer is given each slot together with the stamp of the frame meant for it
+ * ({@code --slots 3:42,4:18}). It copies the slot and accepts it only if the stamp equals the expected one
+ * both before and after the copy; otherwise the frame has been overwritten and the request must fail.
+ * <p>
+ * The file belongs to one process: it is named after the process id by the caller, truncated when mapped and
+ * unmapped and deleted on {@link #close()}. The mapping is owned by an {@link Arena}, so it is released right
+ * away rather than when the buffer is garbage collected, which also lets Windows delete the file.
+ */
+public class SharedFrameTransport implements AutoCloseable {
+
+    public static final int DEFAULT_SLOT_COUNT = 8;
+    public static final int DEFAULT_SLOT_CAPACITY = 1920 * 1080 * 3;
+
+    private static final int MAGIC = 0x314D5246;
+    private static final int VERSION = 2;
+    private static final int FILE_HEADER_SIZE = 64;
+    private static final int SLOT_HEADER_SIZE = 64;
+
+    private static final int STAMP_OFFSET = 0;
+    private static final int SEQUENCE_OFFSET = 8;
+    private static final int TIMESTAMP_OFFSET = 16;
+    private static final int WIDTH_OFFSET = 24;
+    private static final int HEIGHT_OFFSET = 28;
+    private static final int CHANNELS_OFFSET = 32;
+    private static final int STEP_OFFSET = 36;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    private final Path file;
+    private final int slotCount;
+    private final int slotCapacity;
+
+    private Arena mapping;
+    private ByteBuffer buffer;
+    private BytePointer bufferPointer;
+    private int nextSlot;
+
+    public SharedFrameTransport(Path file) {
+        this(file, DEFAULT_SLOT_COUNT, DEFAULT_SLOT_CAPACITY);
+    }
+
+    /**
+     * Creates a transport backed by the given file. The file is created and mapped on first use.
+     *
+     * @param file         path of the shared file
+     * @param slotCount    number of frame slots
+     * @param slotCapacity maximum pixel bytes per slot, rounded up to a multiple of 8 so stamps stay aligned
+     */
+    public SharedFrameTransport(Path file, int slotCount, int slotCapacity) {
+        if (slotCount < 1 || slotCapacity < 1 || slotCapacity > Integer.MAX_VALUE - 7) {
+            throw new IllegalArgumentException("slotCount and slotCapacity must be positive");
+        }
+        this.file = file;
+        this.slotCount = slotCount;
+        this.slotCapacity = (slotCapacity + 7) & ~7;
+    }
+
+    /**
+     * Copies a frame into the next slot.
+     *
+     * @param frame          8-bit BGR frame
+     * @param frameSequence  id of the frame, e.g. {@link FrameLease#sequence()}
+     * @param timestampNanos capture time of the frame
+     * @return the slot that now holds the frame and the stamp that identifies it
+     * @throws IOException if the shared file cannot be mapped
+     */
+    public synchronized Published publish(Mat frame, long frameSequence, long timestampNanos) throws IOException {
+        if (frame.type() != CV_8UC3) {
+            throw new IllegalArgumentException("Only 8-bit BGR frames can be published");
+        }
+        int width = frame.cols();
+        int height = frame.rows();
+        int step = width * 3;
+        if ((long) step * height > slotCapacity) {
+            throw new IllegalArgumentException("Frame of " + width + "x" + height + " exceeds the slot capacity");
+        }
+
+        ensureMapped();
+        int slot = nextSlot;
+        nextSlot = (nextSlot + 1) % slotCount;
+
+        int base = slotOffset(slot);
+        long stamp = (long) LONGS.getAcquire(buffer, base + STAMP_OFFSET);
+        LONGS.setOpaque(buffer, base + STAMP_OFFSET, stamp | 1);
+        // The odd stamp must be visible before any of the slot's other bytes change.
+        VarHandle.storeStoreFence();
+
+        BytePointer pixels = bufferPointer.getPointer(base + SLOT_HEADER_SIZE);
+        try (Mat target = new Mat(height, width, CV_8UC3, pixels, step)) {
+            frame.copyTo(target);
+        }
+
+        buffer.putLong(base + SEQUENCE_OFFSET, frameSequence);
+        buffer.putLong(base + TIMESTAMP_OFFSET, timestampNanos);
+        buffer.putInt(base + WIDTH_OFFSET, width);
+        buffer.putInt(base + HEIGHT_OFFSET, height);
+        buffer.putInt(base + CHANNELS_OFFSET, 3);
+        buffer.putInt(base + STEP_OFFSET, step);
+        long published = (stamp | 1) + 1;
+        LONGS.setRelease(buffer, base + STAMP_OFFSET, published);
+        return new Published(slot, published);
+    }
+
+    /**
+     * Builds the recognizer arguments that point it at the given frames.
+     *
+     * @param frames frames returned by {@link #publish(Mat, long, long)}
+     * @return arguments of the form {@code --frames <file> --slots 0:42,1:18}, each slot with its expected stamp
+     */
+    public List<String> arguments(List<Published> frames) {
+        List<String> arguments = new ArrayList<>();
+        arguments.add("--frames");
+        arguments.add(file.toAbsolutePath().toString());
+        arguments.add("--slots");
+        arguments.add(frames.stream()
+                .map(frame -> frame.slot() + ":" + frame.stamp())
+                .collect(Collectors.joining(",")));
+        return arguments;
+    }
+
+    /**
+     * Returns the number of slots, i.e. how many frames can be handed over in one request.
+     *
+     * @return the slot count
+     */
+    public int slotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Unmaps and deletes the shared file. If the file still cannot be deleted, e.g. because the recognizer
+     * has it open, it is deleted on exit.
+     */
+    @Override
+    public synchronized void close() {
+        if (mapping == null) {
+            return;
+        }
+        bufferPointer.close();
+        bufferPointer = null;
+        buffer = null;
+        mapping.close();
+        mapping = null;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            file.toFile().deleteOnExit();
+        }
+    }
+
+    private void ensureMapped() throws IOException {
+        if (buffer != null) {
+            return;
+        }
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        long size = FILE_HEADER_SIZE + (long) slotCount * (SLOT_HEADER_SIZE + slotCapacity);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Shared frame file would exceed 2 GiB");
+        }
+        // Truncated so nothing is left of an earlier process that had the same id.
+        Arena arena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size, arena).asByteBuffer();
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+        mapping = arena;
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, slotCount);
+        buffer.putInt(12, slotCapacity);
+        bufferPointer = new BytePointer(buffer);
+    }
+
+    private int slotOffset(int slot) {
+        return FILE_HEADER_SIZE + slot * (SLOT_HEADER_SIZE + slotCapacity);
+    }
+
+    /**
+     * A frame handed to the transport.
+     *
+     * @param slot  index of the slot holding the frame
+     * @param stamp stamp of the slot right after the frame was written; it changes when the slot is reused
+     */
+    public record Published(int slot, long stamp) {
+    }
+}
@@ -0,0 +1,261 @@
+package org.example.gui.service;
+
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.opencv.global.opencv_core;
+import org.bytedeco.opencv.global.opencv_imgcodecs;
+import org.bytedeco.opencv.global.opencv_imgproc;
+import org.bytedeco.opencv.global.opencv_objdetect;
+import org.bytedeco.opencv.global.opencv_videoio;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Size;
+import org.example.gui.metrics.StartupTimeline;
+import org.example.gui.metrics.StartupTimeline.Milestone;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.bytedeco.opencv.global.opencv_imgproc.COLOR_BGR2BGRA;
+import static org.bytedeco.opencv.global.opencv_imgproc.INTER_AREA;
+import static org.bytedeco.opencv.global.opencv_imgproc.cvtColor;
+import static org.bytedeco.opencv.global.opencv_imgproc.resize;
+
+/**
+ * Runs the expensive one-time initialization of the application in the background while the window is
+ * already on screen, so that the first capture or login is as fast as later ones.
+ * <p>
+ * Each warm-up task runs on a small pool of daemon threads and marks a {@link Milestone} of the
+ * {@link StartupTimeline} when it succeeds. A task that fails is logged and leaves its milestone unmarked;
+ * the work it would have done then simply happens on first use, as it would without warm-up.
+ */
+public class StartupOrchestrator implements AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(StartupOrchestrator.class.getName());
+    private static final int WARM_UP_THREADS = 3;
+    private static final int FRAME_PATH_ITERATIONS = 100;
+    private static final long FIRST_FRAME_POLL_MILLIS = 5;
+
+    /**
+     * A warm-up step; it reports failure by throwing.
+     */
+    @FunctionalInterface
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    private final StartupTimeline timeline;
+    private final ExecutorService executor = Executors.newFixedThreadPool(WARM_UP_THREADS, new WarmUpThreadFactory());
+    private final List<CompletableFuture<?>> tasks = new ArrayList<>();
+
+    /**
+     * @param timeline where the milestones are recorded
+     */
+    public StartupOrchestrator(StartupTimeline timeline) {
+        this.timeline = timeline;
+    }
+
+    /**
+     * Runs a warm-up task in the background.
+     *
+     * @param milestone milestone to mark once the task has succeeded
+     * @param task      the task
+     * @return completes when the task has finished, exceptionally if it failed
+     */
+    public CompletableFuture<Void> run(Milestone milestone, Task task) {
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> runTask(milestone, task), executor);
+        track(future);
+        return future;
+    }
+
+    /**
+     * Builds a value in the background, for work that must not run on the JavaFX thread such as loading a
+     * view or opening the services behind it.
+     *
+     * @param milestone milestone to mark once the value has been built
+     * @param factory   builds the value; it reports failure by throwing
+     * @param <T>       type of the value
+     * @return completes with the value, exceptionally if building it failed
+     */
+    public <T> CompletableFuture<T> supply(Milestone milestone, Callable<T> factory) {
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> runTask(milestone, factory), executor);
+        track(future);
+        return future;
+    }
+
+    /**
+     * Runs a warm-up task in the background once another one has succeeded. The task is tracked right away,
+     * so {@link #completion()} waits for it; it is skipped, with its milestone unmarked, if the prerequisite
+     * fails.
+     *
+     * @param prerequisite must complete normally before the task starts
+     * @param milestone    milestone to mark once the task has succeeded
+     * @param task         the task
+     * @return completes when the task has finished, exceptionally if it or its prerequisite failed
+     */
+    public CompletableFuture<Void> runAfter(CompletableFuture<?> prerequisite, Milestone milestone, Task task) {
+        CompletableFuture<Void> future = prerequisite.thenRunAsync(() -> runTask(milestone, task), executor);
+        track(future);
+        return future;
+    }
+
+    /**
+     * Loads the OpenCV native libraries, which otherwise happens on the thread that first touches an
+     * OpenCV class, typically the JavaFX thread while it builds the view.
+     *
+     * @return completes once the libraries are loaded
+     */
+    public CompletableFuture<Void> preloadNatives() {
+        return run(Milestone.NATIVES_LOADED, () -> {
+            Loader.load(opencv_core.class);
+            Loader.load(opencv_imgproc.class);
+            Loader.load(opencv_imgcodecs.class);
+            Loader.load(opencv_videoio.class);
+            Loader.load(opencv_objdetect.class);
+        });
+    }
+
+    /**
+     * Starts a camera, unless it is running already, and waits for its first frame.
+     *
+     * @param camera            the camera
+     * @param source            creates the source to start the camera with
+     * @param firstFrameTimeout how long to wait for the first frame
+     * @return completes once the first frame has been captured
+     */
+    public CompletableFuture<Void> openCamera(CameraService camera, Supplier<FrameSource> source,
+                                              Duration firstFrameTimeout) {
+        return openCamera(CompletableFuture.completedFuture(camera), source, firstFrameTimeout);
+    }
+
+    /**
+     * Starts a camera that is still being created, unless it is running already, and waits for its first
+     * frame.
+     *
+     * @param pendingCamera     completes with the camera; nothing is opened if it fails
+     * @param source            creates the source to start the camera with
+     * @param firstFrameTimeout how long to wait for the first frame
+     * @return completes once the first frame has been captured
+     */
+    public CompletableFuture<Void> openCamera(CompletableFuture<? extends CameraService> pendingCamera,
+                                              Supplier<FrameSource> source, Duration firstFrameTimeout) {
+        CompletableFuture<Void> opened = runAfter(pendingCamera, Milestone.CAMERA_OPENED, () -> {
+            CameraService camera = pendingCamera.join();
+            if (!camera.isRunning() && !camera.start(source.get())) {
+                throw new IOException("Cannot open camera");
+            }
+        });
+        CompletableFuture<Void> firstFrame = opened.thenCompose(ignored -> run(Milestone.FIRST_FRAME, () -> {
+            CameraService camera = pendingCamera.join();
+            long deadline = System.nanoTime() + firstFrameTimeout.toNanos();
+            while (camera.latestFrameSequence() == 0) {
+                if (!camera.isRunning() || System.nanoTime() - deadline > 0) {
+                    throw new IOException("No frame from the camera within "
+                            + firstFrameTimeout.toMillis() + " ms");
+                }
+                Thread.sleep(FIRST_FRAME_POLL_MILLIS);
+            }
+        }));
+        track(firstFrame);
+        return firstFrame;
+    }
+
+    /**
+     * Runs the per-frame work of the preview and analysis path on generated 720p frames: colour conversion
+     * to the preview format and downscaling to the analysis width. This initializes OpenCV's worker threads
+     * and optimized kernels and gets the JNI call path compiled before the first real frame.
+     *
+     * @return completes once the frames have been converted
+     */
+    public CompletableFuture<Void> warmFramePath() {
+        return run(Milestone.FRAME_PATH_WARM, () -> {
+            try (SyntheticFrameSource source = new SyntheticFrameSource(1280, 720, 0);
+                 Mat frame = new Mat();
+                 Mat preview = new Mat();
+                 Mat analysis = new Mat();
+                 Size analysisSize = new Size(FrameExchange.ANALYSIS_WIDTH,
+                         FrameExchange.ANALYSIS_WIDTH * 720 / 1280)) {
+                if (!source.open()) {
+                    throw new IOException("Cannot generate frames");
+                }
+                for (int i = 0; i < FRAME_PATH_ITERATIONS && source.read(frame); i++) {
+                    cvtColor(frame, preview, COLOR_BGR2BGRA);
+                    resize(frame, analysis, analysisSize, 0, 0, INTER_AREA);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns a future that completes once every task started so far has finished, successfully or not, and
+     * logs the startup timeline at that point.
+     *
+     * @return the completion of the current tasks
+     */
+    public CompletableFuture<Void> completion() {
+        CompletableFuture<?>[] started;
+        synchronized (tasks) {
+            started = tasks.stream()
+                    .map(task -> task.exceptionally(error -> null))
+                    .toArray(CompletableFuture<?>[]::new);
+        }
+        return CompletableFuture.allOf(started).whenComplete((ignored, error) ->
+                LOGGER.log(System.Logger.Level.INFO, "Startup warm-up finished: " + timeline.summary()));
+    }
+
+    /**
+     * Stops the warm-up threads, interrupting tasks that are still running.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void runTask(Milestone milestone, Task task) {
+        runTask(milestone, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    private <T> T runTask(Milestone milestone, Callable<T> task) {
+        try {
+            T result = task.call();
+            timeline.mark(milestone);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } catch (Exception | LinkageError e) {
+            // A missing native library surfaces as a LinkageError; it fails again, visibly, on first use.
+            LOGGER.log(System.Logger.Level.WARNING, "Startup warm-up for " + milestone + " failed: " + e);
+            throw new CompletionException(e);
+        }
+    }
+
+    private void track(CompletableFuture<?> future) {
+        synchronized (tasks) {
+            tasks.add(future);
+        }
+    }
+
+    private static class WarmUpThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "StartupWarmUpThread-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
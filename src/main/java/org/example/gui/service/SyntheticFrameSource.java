@@ -0,0 +1,97 @@
+package org.example.gui.service;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Point;
+import org.bytedeco.opencv.opencv_core.Scalar;
+
+import java.util.Optional;
+import java.util.Random;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+import static org.bytedeco.opencv.global.opencv_imgproc.FILLED;
+import static org.bytedeco.opencv.global.opencv_imgproc.FONT_HERSHEY_SIMPLEX;
+import static org.bytedeco.opencv.global.opencv_imgproc.circle;
+import static org.bytedeco.opencv.global.opencv_imgproc.putText;
+
+/**
+ * Generates frames without any hardware: a fixed noise texture with a moving disc and the frame number
+ * drawn on top, so that consecutive frames differ and have realistic sharpness. Intended for headless
+ * throughput and latency tests of the capture, preview and enrollment pipeline.
+ */
+public class SyntheticFrameSource implements FrameSource {
+
+    private final int width;
+    private final int height;
+    private final double frameRate;
+    private final FramePacer pacer;
+    private final Point center = new Point();
+    private final Point label = new Point(16, 40);
+    private final Scalar discColor = new Scalar(40, 180, 240, 0);
+    private final Scalar labelColor = new Scalar(255, 255, 255, 0);
+    private Mat background;
+    private long frameNumber;
+
+    /**
+     * @param width     frame width
+     * @param height    frame height
+     * @param frameRate frames per second, or {@code 0} to generate as fast as possible
+     */
+    public SyntheticFrameSource(int width, int height, double frameRate) {
+        this.width = width;
+        this.height = height;
+        this.frameRate = frameRate;
+        this.pacer = new FramePacer(frameRate);
+    }
+
+    @Override
+    public boolean open() {
+        if (background == null) {
+            background = new Mat(height, width, CV_8UC3);
+            byte[] pixels = new byte[width * height * 3];
+            new Random(7).nextBytes(pixels);
+            background.data().put(pixels);
+        }
+        frameNumber = 0;
+        pacer.reset();
+        return true;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return background != null;
+    }
+
+    @Override
+    public Optional<CaptureSettings> settings() {
+        return Optional.of(new CaptureSettings(width, height, null, frameRate, 0));
+    }
+
+    @Override
+    public boolean read(Mat target) {
+        pacer.awaitNextFrame();
+        background.copyTo(target);
+
+        long frame = ++frameNumber;
+        int radius = Math.max(8, height / 6);
+        int travel = Math.max(1, width - 2 * radius);
+        int offset = (int) (frame * 8 % (2L * travel));
+        center.x(radius + (offset < travel ? offset : 2 * travel - offset));
+        center.y(height / 2);
+        circle(target, center, radius, discColor, FILLED, 8, 0);
+        putText(target, Long.toString(frame), label, FONT_HERSHEY_SIMPLEX, 1.0, labelColor, 2, 8, false);
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (background != null) {
+            background.close();
+            background = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "synthetic " + width + "x" + height;
+    }
+}
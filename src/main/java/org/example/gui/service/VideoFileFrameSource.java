@@ -0,0 +1,126 @@
+package org.example.gui.service;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_videoio.VideoCapture;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.bytedeco.opencv.global.opencv_videoio.CAP_ANY;
+import static org.bytedeco.opencv.global.opencv_videoio.CAP_PROP_FPS;
+import static org.bytedeco.opencv.global.opencv_videoio.CAP_PROP_FRAME_HEIGHT;
+import static org.bytedeco.opencv.global.opencv_videoio.CAP_PROP_FRAME_WIDTH;
+import static org.bytedeco.opencv.global.opencv_videoio.CAP_PROP_POS_FRAMES;
+
+/**
+ * Replays a recorded session from a video file or an image sequence such as {@code session/img_%04d.jpg}.
+ * <p>
+ * With {@link Pacing#RECORDED} frames are delivered at the recording's frame rate, so the rest of the
+ * pipeline sees the same timing as with the live camera; with {@link Pacing#FASTEST} they are delivered as
+ * fast as they decode, for throughput tests. A looping source rewinds at the end, otherwise it closes.
+ */
+public class VideoFileFrameSource implements FrameSource {
+
+    /**
+     * How quickly frames are delivered.
+     */
+    public enum Pacing {
+        RECORDED,
+        FASTEST
+    }
+
+    private static final double FALLBACK_FRAME_RATE = 30;
+
+    private final String location;
+    private final double frameRate;
+    private final Pacing pacing;
+    private final boolean loop;
+    private VideoCapture capture;
+    private FramePacer pacer;
+    private CaptureSettings settings;
+
+    /**
+     * Creates a source for a video file, paced at the frame rate stored in the file.
+     *
+     * @param file   the recording
+     * @param pacing how quickly frames are delivered
+     * @param loop   whether to rewind at the end instead of closing
+     */
+    public VideoFileFrameSource(Path file, Pacing pacing, boolean loop) {
+        this(file.toString(), 0, pacing, loop);
+    }
+
+    /**
+     * Creates a source for a video file or an image sequence pattern.
+     *
+     * @param location  file path or {@code printf}-style image sequence pattern
+     * @param frameRate playback rate for {@link Pacing#RECORDED}, or {@code 0} to use the rate stored in
+     *                  the file (image sequences fall back to 30 fps)
+     * @param pacing    how quickly frames are delivered
+     * @param loop      whether to rewind at the end instead of closing
+     */
+    public VideoFileFrameSource(String location, double frameRate, Pacing pacing, boolean loop) {
+        this.location = location;
+        this.frameRate = frameRate;
+        this.pacing = pacing;
+        this.loop = loop;
+    }
+
+    @Override
+    public boolean open() {
+        capture = new VideoCapture(location, CAP_ANY);
+        if (!capture.isOpened()) {
+            close();
+            return false;
+        }
+
+        double recordedRate = frameRate > 0 ? frameRate : capture.get(CAP_PROP_FPS);
+        if (!(recordedRate > 0)) {
+            recordedRate = FALLBACK_FRAME_RATE;
+        }
+        pacer = new FramePacer(pacing == Pacing.RECORDED ? recordedRate : 0);
+        settings = new CaptureSettings((int) capture.get(CAP_PROP_FRAME_WIDTH), (int) capture.get(CAP_PROP_FRAME_HEIGHT),
+                null, recordedRate, 0);
+        return true;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return capture != null && capture.isOpened();
+    }
+
+    @Override
+    public Optional<CaptureSettings> settings() {
+        return Optional.ofNullable(settings);
+    }
+
+    @Override
+    public boolean read(Mat target) {
+        pacer.awaitNextFrame();
+        if (capture.read(target) && !target.empty()) {
+            return true;
+        }
+
+        if (!loop) {
+            close();
+            return false;
+        }
+        capture.set(CAP_PROP_POS_FRAMES, 0);
+        pacer.reset();
+        return capture.read(target) && !target.empty();
+    }
+
+    @Override
+    public void close() {
+        if (capture != null) {
+            capture.release();
+            capture.close();
+            capture = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "recording " + location;
+    }
+}
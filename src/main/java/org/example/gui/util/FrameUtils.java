@@ -6,15 +6,18 @@ import javafx.scene.image.PixelWriter;
 import javafx.scene.image.WritableImage;
 import org.bytedeco.opencv.global.opencv_imgcodecs;
 import org.bytedeco.opencv.opencv_core.Mat;
+import org.example.gui.memory.MatPool;
+import org.example.gui.memory.PooledMat;
 
 import java.nio.file.Path;
 
-import static org.bytedeco.opencv.global.opencv_imgproc.COLOR_BGR2RGB;
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC4;
 import static org.bytedeco.opencv.global.opencv_imgproc.COLOR_BGR2RGBA;
 import static org.bytedeco.opencv.global.opencv_imgproc.cvtColor;
 
 /**
- * Helper utilities for converting and persisting OpenCV frames.
+ * Helper utilities for converting and persisting OpenCV frames. Intermediate buffers are leased from the
+ * shared {@link MatPool}.
  */
 public final class FrameUtils {
 
@@ -28,32 +31,30 @@ public final class FrameUtils {
      * @return the corresponding {@link Image}
      */
     public static Image matToImage(Mat frame) {
-        Mat rgbaFrame = new Mat();
-        cvtColor(frame, rgbaFrame, COLOR_BGR2RGBA);
-
-        int width = rgbaFrame.cols();
-        int height = rgbaFrame.rows();
-        byte[] buffer = new byte[width * height * (int) rgbaFrame.elemSize()];
-        rgbaFrame.data().get(buffer);
-
-        WritableImage image = new WritableImage(width, height);
-        PixelWriter writer = image.getPixelWriter();
-        writer.setPixels(0, 0, width, height, PixelFormat.getByteBgraInstance(), buffer, 0, width * 4);
-
-        rgbaFrame.close();
-        return image;
+        try (PooledMat rgba = MatPool.shared().acquire(frame.rows(), frame.cols(), CV_8UC4)) {
+            Mat rgbaFrame = rgba.mat();
+            cvtColor(frame, rgbaFrame, COLOR_BGR2RGBA);
+
+            int width = rgbaFrame.cols();
+            int height = rgbaFrame.rows();
+            byte[] buffer = new byte[width * height * (int) rgbaFrame.elemSize()];
+            rgbaFrame.data().get(buffer);
+
+            WritableImage image = new WritableImage(width, height);
+            PixelWriter writer = image.getPixelWriter();
+            writer.setPixels(0, 0, width, height, PixelFormat.getByteBgraInstance(), buffer, 0, width * 4);
+            return image;
+        }
     }
 
     /**
-     * Saves the provided {@link Mat} frame as a JPEG on disk.
+     * Saves the provided BGR {@link Mat} frame as a JPEG on disk. {@code imwrite} expects BGR input, so
+     * the frame is written as is.
      *
      * @param frame the frame to persist
      * @param path  the file path where the frame should be written
      */
     public static void saveFrame(Mat frame, Path path) {
-        Mat rgbFrame = new Mat();
-        cvtColor(frame, rgbFrame, COLOR_BGR2RGB);
-        opencv_imgcodecs.imwrite(path.toString(), rgbFrame);
-        rgbFrame.close();
+        opencv_imgcodecs.imwrite(path.toString(), frame);
     }
 }
\ No newline at end of file
@@ -0,0 +1,102 @@
+package org.example.gui.util;
+
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.util.Callback;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.nio.ByteBuffer;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC1;
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC4;
+import static org.bytedeco.opencv.global.opencv_imgproc.COLOR_BGR2BGRA;
+import static org.bytedeco.opencv.global.opencv_imgproc.COLOR_GRAY2BGRA;
+import static org.bytedeco.opencv.global.opencv_imgproc.cvtColor;
+
+/**
+ * Renders OpenCV frames into a single, reused JavaFX {@link Image}.
+ * <p>
+ * The renderer owns a {@link PixelBuffer} backed by a direct {@link ByteBuffer} and a {@link Mat} that wraps
+ * the same memory, so each frame is colour-converted straight into the image memory. After the first frame
+ * of a given size, rendering allocates neither heap nor native memory. All methods must be called on the
+ * JavaFX application thread.
+ */
+public final class PreviewRenderer {
+
+    private final Callback<PixelBuffer<ByteBuffer>, Rectangle2D> fullUpdate = buffer -> null;
+
+    private ByteBuffer buffer;
+    private BytePointer bufferPointer;
+    private Mat target;
+    private PixelBuffer<ByteBuffer> pixelBuffer;
+    private WritableImage image;
+
+    /**
+     * Converts the frame into the renderer's image and returns that image. The same instance is returned
+     * for every frame of the same size, so an {@code ImageView} showing it only needs to be set once.
+     *
+     * @param frame a BGR, BGRA or grayscale 8-bit frame
+     * @return the image holding the rendered frame
+     */
+    public Image render(Mat frame) {
+        int width = frame.cols();
+        int height = frame.rows();
+        if (image == null || width != pixelBuffer.getWidth() || height != pixelBuffer.getHeight()) {
+            allocate(width, height);
+        }
+
+        int type = frame.type();
+        if (type == CV_8UC3) {
+            cvtColor(frame, target, COLOR_BGR2BGRA);
+        } else if (type == CV_8UC4) {
+            frame.copyTo(target);
+        } else if (type == CV_8UC1) {
+            cvtColor(frame, target, COLOR_GRAY2BGRA);
+        } else {
+            throw new IllegalArgumentException("Unsupported frame type: " + type);
+        }
+
+        pixelBuffer.updateBuffer(fullUpdate);
+        return image;
+    }
+
+    /**
+     * Returns the image currently backing the preview.
+     *
+     * @return the current image, or {@code null} if nothing has been rendered yet
+     */
+    public Image image() {
+        return image;
+    }
+
+    /**
+     * Drops the pixel buffer and its native wrapper. The next {@link #render(Mat)} call reallocates them.
+     */
+    public void release() {
+        if (target != null) {
+            target.close();
+            target = null;
+        }
+        if (bufferPointer != null) {
+            bufferPointer.close();
+            bufferPointer = null;
+        }
+        buffer = null;
+        pixelBuffer = null;
+        image = null;
+    }
+
+    private void allocate(int width, int height) {
+        release();
+        buffer = ByteBuffer.allocateDirect(width * height * 4);
+        bufferPointer = new BytePointer(buffer);
+        target = new Mat(height, width, CV_8UC4, bufferPointer);
+        pixelBuffer = new PixelBuffer<>(width, height, buffer, PixelFormat.getByteBgraPreInstance());
+        image = new WritableImage(pixelBuffer);
+    }
+}
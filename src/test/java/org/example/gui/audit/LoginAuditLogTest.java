@@ -0,0 +1,214 @@
+package org.example.gui.audit;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writes attempts through the log to check queries by time range, segment rotation and re-indexing after a
+ * crash or a failed seal.
+ */
+class LoginAuditLogTest {
+
+    private static final Instant T0 = Instant.parse("2026-01-01T08:00:00Z");
+    private static final Path INDEX = Path.of("segments.idx");
+
+    @TempDir
+    Path directory;
+
+    private LoginAuditLog log;
+
+    @AfterEach
+    void close() {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    @Test
+    void queryReturnsTheAttemptsOfTheRangeOldestFirst() throws Exception {
+        log = LoginAuditLog.open(directory, LoginAuditLog.Settings.defaults());
+        Mat frame = new Mat(48, 64, CV_8UC3, new Scalar(40, 80, 120, 0));
+        Mat thumbnail = log.thumbnailOf(frame);
+        frame.close();
+        log.record(new LoginAuditLog.Attempt(T0.plusSeconds(7200), false, null, Double.NaN, "late", null));
+        log.record(new LoginAuditLog.Attempt(T0.plusSeconds(3600), true, "alice", 0.91, null, thumbnail));
+        log.record(new LoginAuditLog.Attempt(T0, false, null, 0.2, "Face not recognized", null));
+        awaitWritten(3);
+
+        List<LoginAuditLog.Entry> entries = log.query(T0, T0.plusSeconds(7200));
+        assertEquals(2, entries.size());
+        assertEquals(T0, entries.get(0).timestamp());
+        assertEquals("Face not recognized", entries.get(0).message());
+        assertEquals(0, entries.get(0).thumbnailJpeg().length);
+        LoginAuditLog.Entry alice = entries.get(1);
+        assertTrue(alice.success());
+        assertEquals("alice", alice.username());
+        assertEquals(0.91, alice.score(), 1e-6);
+        assertTrue(alice.thumbnailJpeg().length > 0);
+        assertTrue(log.query(T0.minusSeconds(60), T0).isEmpty());
+    }
+
+    @Test
+    void fullSegmentIsSealedAndIndexed() throws Exception {
+        // Just over the 16-byte header, so every record fills its segment.
+        log = LoginAuditLog.open(directory, new LoginAuditLog.Settings(16, 1, 17, Duration.ofDays(1), 32));
+        for (int i = 0; i < 3; i++) {
+            log.record(attempt(T0.plusSeconds(i), "user" + i));
+            awaitWritten(i + 1);
+        }
+
+        // The last segment is sealed just after its attempt is counted as written.
+        await(() -> readLines(directory.resolve(INDEX)).size() == 3);
+        assertEquals(3, segmentFiles().size());
+        assertEquals(3, log.stats().segments());
+        assertEquals(List.of("user0", "user1", "user2"),
+                log.query(T0, T0.plusSeconds(3)).stream().map(LoginAuditLog.Entry::username).toList());
+    }
+
+    @Test
+    void expiredSegmentIsSealedWithoutWaitingForTheNextAttempt() throws Exception {
+        log = LoginAuditLog.open(directory, new LoginAuditLog.Settings(16, 64, 1 << 20, Duration.ofMillis(50), 32));
+        log.record(attempt(T0, "alice"));
+        awaitWritten(1);
+
+        await(() -> readLines(directory.resolve(INDEX)).size() == 1);
+        assertEquals(1, log.stats().segments());
+        assertEquals(1, log.query(T0, T0.plusSeconds(1)).size());
+    }
+
+    @Test
+    void segmentLeftOpenByACrashIsIndexedWhenTheLogIsOpened() throws Exception {
+        log = LoginAuditLog.open(directory, LoginAuditLog.Settings.defaults());
+        log.record(attempt(T0, "alice"));
+        log.record(attempt(T0.plusSeconds(1), "bob"));
+        awaitWritten(2);
+        // Copy the segment while it is still being written, as a crash would leave it.
+        Path crashed = Files.createDirectory(directory.resolve("crashed"));
+        Path segment = segmentFiles().getFirst();
+        Files.copy(segment, crashed.resolve(segment.getFileName()));
+
+        try (LoginAuditLog reopened = LoginAuditLog.open(crashed, LoginAuditLog.Settings.defaults())) {
+            assertEquals(List.of("alice", "bob"),
+                    reopened.query(T0, T0.plusSeconds(2)).stream().map(LoginAuditLog.Entry::username).toList());
+            assertEquals(1, Files.readAllLines(crashed.resolve(INDEX)).size());
+        }
+    }
+
+    @Test
+    void segmentThatCannotBeSealedIsDroppedAndIndexedOnTheNextOpen() throws Exception {
+        log = LoginAuditLog.open(directory, new LoginAuditLog.Settings(16, 64, 1 << 20, Duration.ofMillis(50), 32));
+        // The index cannot be appended to while a directory stands in its place.
+        Files.deleteIfExists(directory.resolve(INDEX));
+        Files.createDirectory(directory.resolve(INDEX));
+        log.record(attempt(T0, "alice"));
+        awaitWritten(1);
+
+        await(() -> log.stats().segments() == 0);
+        log.record(attempt(T0.plusSeconds(1), "bob"));
+        awaitWritten(2);
+        assertEquals(1, log.stats().segments());
+        log.close();
+        log = null;
+
+        Files.delete(directory.resolve(INDEX));
+        try (LoginAuditLog reopened = LoginAuditLog.open(directory, LoginAuditLog.Settings.defaults())) {
+            assertEquals(List.of("alice", "bob"),
+                    reopened.query(T0, T0.plusSeconds(2)).stream().map(LoginAuditLog.Entry::username).toList());
+        }
+    }
+
+    @Test
+    void attemptsBeyondTheQueueCapacityAreDroppedAndReleased() throws Exception {
+        // Room for one waiting attempt, and thumbnails wide enough to be encoded at full size.
+        log = LoginAuditLog.open(directory, new LoginAuditLog.Settings(1, 1, 1 << 30, Duration.ofDays(1), 4096));
+        // Holds the writer up while it encodes a large noisy thumbnail.
+        assertTrue(log.record(new LoginAuditLog.Attempt(T0, true, "large", 0.9, null, noise(2048, 2048))));
+        await(() -> log.stats().queued() == 0);
+
+        List<Boolean> queued = new ArrayList<>();
+        List<Mat> thumbnails = new ArrayList<>();
+        for (int i = 1; i <= 8; i++) {
+            Mat thumbnail = new Mat(8, 8, CV_8UC3);
+            thumbnails.add(thumbnail);
+            queued.add(log.record(
+                    new LoginAuditLog.Attempt(T0.plusSeconds(i), true, "user" + i, 0.9, null, thumbnail)));
+        }
+
+        assertEquals(List.of(true, false, false, false, false, false, false, false), queued);
+        assertTrue(thumbnails.stream().skip(1).allMatch(thumbnail -> thumbnail.isNull()));
+        assertEquals(7, log.stats().dropped());
+        awaitWritten(2);
+        assertEquals(List.of("large", "user1"),
+                log.query(T0, T0.plusSeconds(9)).stream().map(LoginAuditLog.Entry::username).toList());
+    }
+
+    @Test
+    void attemptsRecordedAfterCloseAreDroppedAndReleased() throws Exception {
+        log = LoginAuditLog.open(directory, LoginAuditLog.Settings.defaults());
+        log.close();
+        Mat thumbnail = new Mat(8, 8, CV_8UC3);
+
+        assertFalse(log.record(new LoginAuditLog.Attempt(T0, true, "alice", 0.9, null, thumbnail)));
+        assertTrue(thumbnail.isNull());
+        assertEquals(1, log.stats().dropped());
+    }
+
+    private static LoginAuditLog.Attempt attempt(Instant timestamp, String username) {
+        return new LoginAuditLog.Attempt(timestamp, true, username, 0.9, null, null);
+    }
+
+    private static Mat noise(int rows, int cols) {
+        byte[] pixels = new byte[rows * cols * 3];
+        new Random(1).nextBytes(pixels);
+        Mat mat = new Mat(rows, cols, CV_8UC3);
+        mat.data().put(pixels);
+        return mat;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".audit")).sorted().toList();
+        }
+    }
+
+    private void awaitWritten(long written) throws InterruptedException {
+        await(() -> log.stats().written() >= written);
+        assertEquals(written, log.stats().written());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean(), "condition not reached within 5 s");
+    }
+
+    private static List<String> readLines(Path file) {
+        try {
+            return Files.readAllLines(file);
+        } catch (IOException e) {
+            return List.of();
+        }
+    }
+}
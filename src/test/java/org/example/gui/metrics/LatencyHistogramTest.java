@@ -0,0 +1,137 @@
+package org.example.gui.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the bucket math against exact values and the percentile estimate against known distributions.
+ */
+class LatencyHistogramTest {
+
+    private static final double MAX_RELATIVE_ERROR = 0.125;
+
+    @Test
+    void smallValuesHaveABucketEach() {
+        for (long value = 0; value < 16; value++) {
+            assertEquals(value, LatencyHistogram.indexOf(value));
+            assertEquals(value, LatencyHistogram.valueOf((int) value));
+        }
+    }
+
+    @Test
+    void bucketsAreContiguousAndOrdered() {
+        int previous = LatencyHistogram.indexOf(0);
+        for (long value = 1; value < 1 << 20; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(index == previous || index == previous + 1, "bucket gap at " + value);
+            previous = index;
+        }
+    }
+
+    @Test
+    void bucketValueStaysWithinTheRelativeErrorBound() {
+        Random random = new Random(1);
+        List<Long> values = new ArrayList<>(List.of(16L, 17L, 31L, 32L, 1000L, 1L << 40, Long.MAX_VALUE));
+        for (int shift = 4; shift < 63; shift++) {
+            values.add(1L << shift);
+            values.add((1L << shift) - 1);
+        }
+        for (int i = 0; i < 100_000; i++) {
+            values.add(random.nextLong(Long.MAX_VALUE));
+        }
+
+        for (long value : values) {
+            long estimate = LatencyHistogram.valueOf(LatencyHistogram.indexOf(value));
+            assertTrue(estimate > 0, "overflow for " + value);
+            double error = Math.abs((double) estimate - value) / value;
+            assertTrue(error <= MAX_RELATIVE_ERROR, value + " reported as " + estimate);
+        }
+    }
+
+    @Test
+    void largestValueFallsInTheLastBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        long[] counts = histogram.snapshot().counts();
+        assertEquals(counts.length - 1, LatencyHistogram.indexOf(Long.MAX_VALUE));
+        assertEquals(1, counts[counts.length - 1]);
+    }
+
+    @Test
+    void negativeValuesAreCountedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(1, histogram.snapshot().counts()[0]);
+        assertEquals(0, histogram.snapshot().percentile(50));
+    }
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+        assertEquals(0, snapshot.count());
+        assertEquals(0, snapshot.percentile(99));
+    }
+
+    @Test
+    void percentilesOfAUniformDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(1000, snapshot.count());
+        assertWithinBound(500_000, snapshot.percentile(50));
+        assertWithinBound(990_000, snapshot.percentile(99));
+        assertWithinBound(1_000_000, snapshot.percentile(100));
+        assertWithinBound(1_000, snapshot.percentile(0));
+    }
+
+    @Test
+    void sinceReportsOnlyTheWindow() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 100; i++) {
+            histogram.record(1_000_000);
+        }
+        LatencyHistogram.Snapshot earlier = histogram.snapshot();
+        for (int i = 0; i < 10; i++) {
+            histogram.record(5_000);
+        }
+
+        LatencyHistogram.Snapshot window = histogram.snapshot().since(earlier);
+        assertEquals(10, window.count());
+        assertWithinBound(5_000, window.percentile(99));
+        assertEquals(110, histogram.snapshot().count());
+    }
+
+    @Test
+    void concurrentRecordingLosesNoCounts() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long value = 1000L * (t + 1);
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(value);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400_000, histogram.snapshot().count());
+    }
+
+    private static void assertWithinBound(long expected, long actual) {
+        double error = Math.abs((double) actual - expected) / expected;
+        assertTrue(error <= MAX_RELATIVE_ERROR, "expected about " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,162 @@
+package org.example.gui.recognition;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imwrite;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Imports a small dataset with a fake embedder to check resuming, replacing, the reported failures and the
+ * worker count.
+ */
+class DatasetImporterTest {
+
+    private static final int DIMENSION = 4;
+
+    @TempDir
+    Path directory;
+
+    private final AtomicInteger embedders = new AtomicInteger();
+    private final AtomicInteger embeddedImages = new AtomicInteger();
+    private Path dataset;
+    private EmbeddingIndex index;
+
+    @BeforeEach
+    void createDataset() throws IOException {
+        dataset = Files.createDirectory(directory.resolve("dataset"));
+        index = new EmbeddingIndex(DIMENSION, EmbeddingIndex.Metric.COSINE, 0.5f);
+    }
+
+    @AfterEach
+    void closeIndex() {
+        index.close();
+    }
+
+    @Test
+    void failedUsersAreReportedWithTheirReason() throws Exception {
+        writeImage("alice", "img_1.png", 200);
+        writeImage("alice", "img_2.png", 180);
+        Files.writeString(Files.createDirectories(dataset.resolve("empty")).resolve("notes.txt"), "no images");
+        Files.write(Files.createDirectories(dataset.resolve("broken")).resolve("img_1.jpg"), new byte[]{1, 2, 3});
+        writeImage("faceless", "img_1.png", 0);
+        writeImage("faceless", "img_2.png", 0);
+
+        DatasetImporter.Report report =
+                importer(DatasetImporter.Settings.defaults()).importAll(dataset, outcome -> { });
+
+        assertEquals(4, report.users());
+        assertEquals(1, report.imported());
+        assertEquals(Map.of(
+                        "broken", "No readable images",
+                        "empty", "No images",
+                        "faceless", "No face found in 2 images"),
+                report.failures().stream().collect(Collectors.toMap(DatasetImporter.UserOutcome::username,
+                        DatasetImporter.UserOutcome::failure)));
+        assertEquals(Set.of("alice"), index.enrolledUsers());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void importedUsersAreWrittenToTheStore() throws Exception {
+        writeImage("alice", "img_1.png", 200);
+        Path file = directory.resolve("embeddings.bin");
+        try (EmbeddingStore store = EmbeddingStore.open(file, index)) {
+            new DatasetImporter(this::createEmbedder, index, store, DatasetImporter.Settings.defaults())
+                    .importAll(dataset, outcome -> { });
+        }
+
+        try (EmbeddingIndex reopened = new EmbeddingIndex(DIMENSION, EmbeddingIndex.Metric.COSINE, 0.5f);
+             EmbeddingStore store = EmbeddingStore.open(file, reopened)) {
+            assertEquals(Set.of("alice"), reopened.enrolledUsers());
+        }
+    }
+
+    @Test
+    void secondRunSkipsEnrolledUsersUnlessReplacing() throws Exception {
+        writeImage("alice", "img_1.png", 200);
+        writeImage("bob", "img_1.png", 150);
+        importer(DatasetImporter.Settings.defaults()).importAll(dataset, outcome -> { });
+        writeImage("carol", "img_1.png", 100);
+        embeddedImages.set(0);
+
+        DatasetImporter.Report resumed =
+                importer(DatasetImporter.Settings.defaults()).importAll(dataset, outcome -> { });
+        assertEquals(2, resumed.skipped());
+        assertEquals(1, resumed.imported());
+        assertEquals(1, embeddedImages.get());
+
+        writeImage("alice", "img_2.png", 190);
+        embeddedImages.set(0);
+        DatasetImporter.Report replaced = importer(new DatasetImporter.Settings(2, 0, true))
+                .importAll(dataset, outcome -> { });
+        assertEquals(0, replaced.skipped());
+        assertEquals(3, replaced.imported());
+        assertEquals(4, embeddedImages.get());
+        // Alice's enrollment was replaced by both of her images rather than added to.
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void memoryBudgetCapsTheWorkers() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            writeImage("user" + i, "img_1.png", 100 + i);
+        }
+
+        importer(new DatasetImporter.Settings(4, 2 * DatasetImporter.WORKER_MEMORY_ESTIMATE, true))
+                .importAll(dataset, outcome -> { });
+        assertEquals(2, embedders.getAndSet(0));
+
+        // A budget below a single worker still imports, with one worker.
+        DatasetImporter.Report report = importer(new DatasetImporter.Settings(4, 1, true))
+                .importAll(dataset, outcome -> { });
+        assertEquals(1, embedders.get());
+        assertEquals(4, report.imported());
+        assertTrue(report.failures().isEmpty());
+    }
+
+    private DatasetImporter importer(DatasetImporter.Settings settings) {
+        return new DatasetImporter(this::createEmbedder, index, null, settings);
+    }
+
+    /**
+     * An embedder that finds a face in any image that is not black and embeds its colour.
+     */
+    private DatasetImporter.Embedder createEmbedder() {
+        embedders.incrementAndGet();
+        return new DatasetImporter.Embedder() {
+            @Override
+            public Optional<float[]> embed(Mat image) {
+                embeddedImages.incrementAndGet();
+                int value = image.ptr(0, 0).get() & 0xFF;
+                return value == 0 ? Optional.empty() : Optional.of(new float[]{value, 1, 1, 1});
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private void writeImage(String username, String name, int value) throws IOException {
+        Path userDirectory = Files.createDirectories(dataset.resolve(username));
+        try (Mat image = new Mat(8, 8, CV_8UC3, new Scalar(value, value, value, 0))) {
+            assertTrue(imwrite(userDirectory.resolve(name).toString(), image));
+        }
+    }
+}
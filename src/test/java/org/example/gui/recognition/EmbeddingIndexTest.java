@@ -0,0 +1,268 @@
+package org.example.gui.recognition;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the vectorized, quantized search against a plain scalar scan of the same embeddings.
+ */
+class EmbeddingIndexTest {
+
+    private static final float COSINE_THRESHOLD = 0.363f;
+    private static final float L2_THRESHOLD = 0.5f;
+    private static final float TOLERANCE = 1e-4f;
+
+    private final Random random = new Random(42);
+
+    @Test
+    void bestMatchAgreesWithScalarSearch() {
+        Reference reference = new Reference(128, EmbeddingIndex.Metric.COSINE, COSINE_THRESHOLD);
+        try (EmbeddingIndex index = reference.newIndex()) {
+            enroll(index, reference, 200, 5);
+            for (float[] query : queries(reference, 100)) {
+                assertSameMatch(reference.bestMatch(query), index.bestMatch(query));
+            }
+        }
+    }
+
+    @Test
+    void bestMatchHandlesDimensionsThatAreNotAMultipleOfTheVectorLength() {
+        for (int dimension : new int[]{5, 17, 100, 131}) {
+            Reference reference = new Reference(dimension, EmbeddingIndex.Metric.COSINE, 0.9f);
+            try (EmbeddingIndex index = reference.newIndex()) {
+                // Few enough rows at low dimensions that every row is re-ranked; close calls stay exact.
+                enroll(index, reference, dimension < 32 ? 8 : 50, 2);
+                for (float[] query : queries(reference, 50)) {
+                    assertSameMatch(reference.bestMatch(query), index.bestMatch(query));
+                }
+            }
+        }
+    }
+
+    @Test
+    void l2BestMatchAgreesWithScalarSearch() {
+        Reference reference = new Reference(64, EmbeddingIndex.Metric.L2, L2_THRESHOLD);
+        try (EmbeddingIndex index = reference.newIndex()) {
+            enroll(index, reference, 100, 4);
+            for (float[] query : queries(reference, 100)) {
+                assertSameMatch(reference.bestMatch(query), index.bestMatch(query));
+            }
+        }
+    }
+
+    @Test
+    void bestMatchesAgreesWithBestMatch() {
+        Reference reference = new Reference(128, EmbeddingIndex.Metric.COSINE, COSINE_THRESHOLD);
+        try (EmbeddingIndex index = reference.newIndex()) {
+            enroll(index, reference, 100, 5);
+            List<float[]> queries = queries(reference, 40);
+            List<Optional<Match>> batch = index.bestMatches(queries);
+            assertEquals(queries.size(), batch.size());
+            for (int i = 0; i < queries.size(); i++) {
+                assertSameMatch(reference.bestMatch(queries.get(i)), batch.get(i));
+            }
+        }
+    }
+
+    @Test
+    void largeIndexIsSearchedInParallelChunks() {
+        Reference reference = new Reference(32, EmbeddingIndex.Metric.COSINE, 0.8f);
+        try (EmbeddingIndex index = reference.newIndex()) {
+            enroll(index, reference, 10_000, 7);
+            assertEquals(70_000, index.size());
+            List<float[]> queries = queries(reference, 20);
+            List<Optional<Match>> batch = index.bestMatches(queries);
+            for (int i = 0; i < queries.size(); i++) {
+                Optional<Match> expected = reference.bestMatch(queries.get(i));
+                assertSameMatch(expected, index.bestMatch(queries.get(i)));
+                assertSameMatch(expected, batch.get(i));
+            }
+        }
+    }
+
+    @Test
+    void topKRanksUsersByTheirClosestEmbedding() {
+        Reference reference = new Reference(128, EmbeddingIndex.Metric.COSINE, COSINE_THRESHOLD);
+        try (EmbeddingIndex index = reference.newIndex()) {
+            enroll(index, reference, 50, 3);
+            for (float[] query : queries(reference, 20)) {
+                List<Match> expected = reference.topK(query, 5);
+                List<Match> actual = index.topK(query, 5);
+                assertEquals(expected.size(), actual.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertSameMatch(Optional.of(expected.get(i)), Optional.of(actual.get(i)));
+                }
+            }
+            assertEquals(50, index.topK(randomVector(128), 1000).size());
+        }
+    }
+
+    @Test
+    void replaceDropsTheUsersPreviousEmbeddings() {
+        Reference reference = new Reference(128, EmbeddingIndex.Metric.COSINE, COSINE_THRESHOLD);
+        try (EmbeddingIndex index = reference.newIndex()) {
+            enroll(index, reference, 30, 4);
+            String user = "user-7";
+            float[] before = reference.embeddings.get(user).getFirst();
+
+            List<float[]> replacement = List.of(randomVector(128), randomVector(128));
+            index.replace(user, replacement);
+            reference.embeddings.put(user, new ArrayList<>(replacement));
+
+            assertEquals(30 * 4 - 2, index.size());
+            assertSameMatch(reference.bestMatch(before), index.bestMatch(before));
+            assertTrue(index.bestMatch(before).map(match -> !match.username().equals(user)).orElse(true));
+            assertEquals(user, index.bestMatch(replacement.get(1)).orElseThrow().username());
+            for (float[] query : queries(reference, 50)) {
+                assertSameMatch(reference.bestMatch(query), index.bestMatch(query));
+            }
+        }
+    }
+
+    @Test
+    void removeKeepsTheRemainingRowsSearchable() {
+        Reference reference = new Reference(128, EmbeddingIndex.Metric.COSINE, COSINE_THRESHOLD);
+        try (EmbeddingIndex index = reference.newIndex()) {
+            enroll(index, reference, 40, 3);
+            for (int user = 0; user < 40; user += 3) {
+                assertTrue(index.remove("user-" + user));
+                assertFalse(index.remove("user-" + user));
+                reference.embeddings.remove("user-" + user);
+            }
+
+            assertEquals(reference.embeddings.keySet(), index.enrolledUsers());
+            assertEquals(reference.embeddings.size() * 3, index.size());
+            for (float[] query : queries(reference, 60)) {
+                assertSameMatch(reference.bestMatch(query), index.bestMatch(query));
+            }
+        }
+    }
+
+    private void enroll(EmbeddingIndex index, Reference reference, int users, int embeddingsPerUser) {
+        for (int user = 0; user < users; user++) {
+            List<float[]> embeddings = new ArrayList<>();
+            for (int i = 0; i < embeddingsPerUser; i++) {
+                embeddings.add(randomVector(reference.dimension));
+            }
+            index.replace("user-" + user, embeddings);
+            reference.embeddings.put("user-" + user, embeddings);
+        }
+    }
+
+    /**
+     * Half of the queries are noisy copies of enrolled embeddings, the other half random.
+     */
+    private List<float[]> queries(Reference reference, int count) {
+        List<float[]> enrolled = reference.embeddings.values().stream().flatMap(List::stream).toList();
+        List<float[]> queries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (i % 2 == 0) {
+                float[] query = enrolled.get(random.nextInt(enrolled.size())).clone();
+                for (int j = 0; j < query.length; j++) {
+                    query[j] += (float) random.nextGaussian() * 0.1f;
+                }
+                queries.add(query);
+            } else {
+                queries.add(randomVector(reference.dimension));
+            }
+        }
+        return queries;
+    }
+
+    private float[] randomVector(int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static void assertSameMatch(Optional<Match> expected, Optional<Match> actual) {
+        assertEquals(expected.isPresent(), actual.isPresent(), () -> "expected " + expected + " but was " + actual);
+        if (expected.isPresent()) {
+            assertEquals(expected.get().username(), actual.get().username());
+            assertEquals(expected.get().score(), actual.get().score(),
+                    TOLERANCE * Math.max(1, Math.abs(expected.get().score())));
+        }
+    }
+
+    /**
+     * Exhaustive search in double precision.
+     */
+    private static final class Reference {
+        private final int dimension;
+        private final EmbeddingIndex.Metric metric;
+        private final float threshold;
+        private final Map<String, List<float[]>> embeddings = new LinkedHashMap<>();
+
+        private Reference(int dimension, EmbeddingIndex.Metric metric, float threshold) {
+            this.dimension = dimension;
+            this.metric = metric;
+            this.threshold = threshold;
+        }
+
+        private EmbeddingIndex newIndex() {
+            return new EmbeddingIndex(dimension, metric, threshold);
+        }
+
+        private Optional<Match> bestMatch(float[] query) {
+            List<Match> ranked = topK(query, 1);
+            if (ranked.isEmpty()) {
+                return Optional.empty();
+            }
+            Match best = ranked.getFirst();
+            boolean accepted = metric == EmbeddingIndex.Metric.COSINE
+                    ? best.score() >= threshold
+                    : best.score() <= threshold;
+            return accepted ? Optional.of(best) : Optional.empty();
+        }
+
+        private List<Match> topK(float[] query, int k) {
+            List<Match> perUser = new ArrayList<>();
+            for (Map.Entry<String, List<float[]>> user : embeddings.entrySet()) {
+                double best = metric == EmbeddingIndex.Metric.COSINE
+                        ? Double.NEGATIVE_INFINITY
+                        : Double.POSITIVE_INFINITY;
+                for (float[] embedding : user.getValue()) {
+                    double score = score(query, embedding);
+                    best = metric == EmbeddingIndex.Metric.COSINE ? Math.max(best, score) : Math.min(best, score);
+                }
+                perUser.add(new Match(user.getKey(), (float) best));
+            }
+            Comparator<Match> byScore = Comparator.comparingDouble(Match::score);
+            perUser.sort(metric == EmbeddingIndex.Metric.COSINE ? byScore.reversed() : byScore);
+            return perUser.subList(0, Math.min(k, perUser.size()));
+        }
+
+        private double score(float[] query, float[] embedding) {
+            if (metric == EmbeddingIndex.Metric.L2) {
+                double sum = 0;
+                for (int i = 0; i < dimension; i++) {
+                    double diff = query[i] - embedding[i];
+                    sum += diff * diff;
+                }
+                return sum;
+            }
+            double dot = 0;
+            double queryNorm = 0;
+            double embeddingNorm = 0;
+            for (int i = 0; i < dimension; i++) {
+                dot += query[i] * (double) embedding[i];
+                queryNorm += query[i] * (double) query[i];
+                embeddingNorm += embedding[i] * (double) embedding[i];
+            }
+            return dot / Math.sqrt(queryNorm * embeddingNorm);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package org.example.gui.recognition;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the store replays only committed appends and survives compaction and reopening.
+ */
+class EmbeddingStoreTest {
+
+    private static final int DIMENSION = 16;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 12 + DIMENSION * Float.BYTES;
+
+    @TempDir
+    Path directory;
+
+    private final Random random = new Random(7);
+
+    @Test
+    void reopeningRestoresEveryEnrollment() throws IOException {
+        Path file = directory.resolve("embeddings.bin");
+        float[] alice = embedding();
+        try (EmbeddingIndex index = newIndex(); EmbeddingStore store = EmbeddingStore.open(file, index)) {
+            store.replaceUser("alice", List.of(alice, embedding()));
+            store.replaceUser("bob", List.of(embedding()));
+        }
+
+        try (EmbeddingIndex index = reopen(file)) {
+            assertEquals(Set.of("alice", "bob"), index.enrolledUsers());
+            assertEquals(3, index.size());
+            assertEquals("alice", index.bestMatch(alice).orElseThrow().username());
+        }
+    }
+
+    @Test
+    void reEnrollmentTornAfterItsDeleteKeepsThePreviousEnrollment() throws IOException {
+        Path file = directory.resolve("embeddings.bin");
+        float[] previous = embedding();
+        try (EmbeddingIndex index = newIndex(); EmbeddingStore store = EmbeddingStore.open(file, index)) {
+            store.replaceUser("alice", List.of(previous, embedding()));
+            store.replaceUser("alice", List.of(embedding(), embedding(), embedding()));
+        }
+        // Lose the commit record and the last embedding, as a crash in the middle of the append would.
+        truncate(file, Files.size(file) - 2 * RECORD_SIZE);
+
+        try (EmbeddingIndex index = reopen(file)) {
+            assertEquals(Set.of("alice"), index.enrolledUsers());
+            assertEquals(2, index.size());
+            assertEquals("alice", index.bestMatch(previous).orElseThrow().username());
+        }
+    }
+
+    @Test
+    void corruptCommitRecordDiscardsItsBatch() throws IOException {
+        Path file = directory.resolve("embeddings.bin");
+        try (EmbeddingIndex index = newIndex(); EmbeddingStore store = EmbeddingStore.open(file, index)) {
+            store.replaceUser("alice", List.of(embedding()));
+            store.replaceUser("alice", List.of(embedding(), embedding()));
+        }
+        flipByte(file, Files.size(file) - RECORD_SIZE + 8);
+
+        try (EmbeddingIndex index = reopen(file)) {
+            assertEquals(1, index.size());
+        }
+    }
+
+    @Test
+    void appendAfterTornTailOverwritesIt() throws IOException {
+        Path file = directory.resolve("embeddings.bin");
+        try (EmbeddingIndex index = newIndex(); EmbeddingStore store = EmbeddingStore.open(file, index)) {
+            store.replaceUser("alice", List.of(embedding()));
+            store.replaceUser("bob", List.of(embedding(), embedding()));
+        }
+        truncate(file, Files.size(file) - RECORD_SIZE);
+
+        try (EmbeddingIndex index = newIndex(); EmbeddingStore store = EmbeddingStore.open(file, index)) {
+            assertEquals(Set.of("alice"), index.enrolledUsers());
+            store.replaceUser("carol", List.of(embedding()));
+        }
+
+        try (EmbeddingIndex index = reopen(file)) {
+            assertEquals(Set.of("alice", "carol"), index.enrolledUsers());
+            assertEquals(2, index.size());
+        }
+    }
+
+    @Test
+    void removedUserStaysRemovedAfterReopening() throws IOException {
+        Path file = directory.resolve("embeddings.bin");
+        try (EmbeddingIndex index = newIndex(); EmbeddingStore store = EmbeddingStore.open(file, index)) {
+            store.replaceUser("alice", List.of(embedding()));
+            store.replaceUser("bob", List.of(embedding()));
+            store.removeUser("alice");
+        }
+
+        try (EmbeddingIndex index = reopen(file)) {
+            assertEquals(Set.of("bob"), index.enrolledUsers());
+        }
+    }
+
+    @Test
+    void compactionKeepsOnlyTheLiveRecords() throws IOException {
+        Path file = directory.resolve("embeddings.bin");
+        float[] latest = embedding();
+        try (EmbeddingIndex index = newIndex(); EmbeddingStore store = EmbeddingStore.open(file, index)) {
+            for (int i = 0; i < 20; i++) {
+                store.replaceUser("alice", List.of(embedding(), embedding()));
+                store.replaceUser("bob", List.of(embedding()));
+            }
+            store.replaceUser("alice", List.of(latest));
+            store.removeUser("bob");
+            store.compact();
+            // One user record, one embedding and the commit.
+            assertEquals(HEADER_SIZE + 3L * RECORD_SIZE, Files.size(file));
+
+            store.replaceUser("carol", List.of(embedding()));
+        }
+
+        try (EmbeddingIndex index = reopen(file)) {
+            assertEquals(Set.of("alice", "carol"), index.enrolledUsers());
+            assertEquals(2, index.size());
+            assertEquals("alice", index.bestMatch(latest).orElseThrow().username());
+        }
+        assertTrue(Files.notExists(directory.resolve("embeddings.bin.compact")));
+    }
+
+    @Test
+    void fileWithoutCommitRecordsIsReadAndRewritten() throws IOException {
+        Path file = directory.resolve("embeddings.bin");
+        float[] alice = embedding();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(0x31424D45).putInt(1).putInt(DIMENSION).putInt(RECORD_SIZE).flip());
+            channel.write(userRecord(0, "alice"));
+            channel.write(embeddingRecord(0, alice));
+            channel.write(userRecord(1, "bob"));
+            channel.write(embeddingRecord(1, embedding()));
+        }
+
+        try (EmbeddingIndex index = newIndex(); EmbeddingStore store = EmbeddingStore.open(file, index)) {
+            assertEquals(Set.of("alice", "bob"), index.enrolledUsers());
+            store.replaceUser("carol", List.of(embedding()));
+        }
+
+        try (EmbeddingIndex index = reopen(file)) {
+            assertEquals(Set.of("alice", "bob", "carol"), index.enrolledUsers());
+            assertEquals("alice", index.bestMatch(alice).orElseThrow().username());
+        }
+    }
+
+    private EmbeddingIndex newIndex() {
+        return new EmbeddingIndex(DIMENSION, EmbeddingIndex.Metric.COSINE, 0.9f);
+    }
+
+    private EmbeddingIndex reopen(Path file) throws IOException {
+        EmbeddingIndex index = newIndex();
+        EmbeddingStore.open(file, index).close();
+        return index;
+    }
+
+    private float[] embedding() {
+        float[] embedding = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            embedding[i] = (float) random.nextGaussian();
+        }
+        return embedding;
+    }
+
+    private static void truncate(Path file, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+    }
+
+    private static void flipByte(Path file, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, position);
+            value.put(0, (byte) ~value.get(0));
+            channel.write(value.rewind(), position);
+        }
+    }
+
+    private static ByteBuffer userRecord(int userId, String username) {
+        byte[] name = username.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = newRecord(1, userId);
+        record.putShort((short) name.length).put(name);
+        return sealed(record);
+    }
+
+    private static ByteBuffer embeddingRecord(int userId, float[] embedding) {
+        ByteBuffer record = newRecord(2, userId);
+        for (float value : embedding) {
+            record.putFloat(value);
+        }
+        return sealed(record);
+    }
+
+    private static ByteBuffer newRecord(int type, int userId) {
+        return ByteBuffer.allocate(RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN).putInt(type).putInt(userId);
+    }
+
+    private static ByteBuffer sealed(ByteBuffer record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, RECORD_SIZE - 4);
+        return record.putInt(RECORD_SIZE - 4, (int) crc.getValue()).clear();
+    }
+}
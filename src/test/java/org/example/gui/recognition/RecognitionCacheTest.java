@@ -0,0 +1,92 @@
+package org.example.gui.recognition;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that a cache hit is scored with the query's real similarity and never bypasses a stricter threshold.
+ */
+class RecognitionCacheTest {
+
+    private static final float[] ALICE = {1, 0, 0, 0};
+    private static final float[] BOB = {0, 1, 0, 0};
+    private static final Match STALE_SCORE = new Match("alice", 0.99f);
+
+    private final RecognitionCache cache = new RecognitionCache(new RecognitionCache.Settings(4, Duration.ofMinutes(1), 0.6f));
+
+    @Test
+    void hitReportsTheQuerysSimilarityToTheCachedEmbedding() {
+        cache.put(ALICE, STALE_SCORE);
+        float[] query = {0.8f, 0.6f, 0, 0};
+
+        Optional<Match> hit = cache.lookup(query, 0.363f);
+        assertEquals("alice", hit.orElseThrow().username());
+        assertEquals(0.8f, hit.get().score(), 1e-6f);
+        assertEquals(1, cache.stats().hits());
+    }
+
+    @Test
+    void queryBelowTheCallersThresholdMisses() {
+        cache.put(ALICE, STALE_SCORE);
+        float[] query = {0.8f, 0.6f, 0, 0};
+
+        assertEquals(Optional.empty(), cache.lookup(query, 0.9f));
+        assertEquals(1, cache.stats().misses());
+        assertEquals(Optional.of("alice"), cache.nearestUser(query));
+        assertEquals(0, cache.stats().hits());
+    }
+
+    @Test
+    void queryBelowTheHitThresholdIsNeitherAHitNorAHint() {
+        cache.put(ALICE, STALE_SCORE);
+        float[] query = {0.5f, 0.866f, 0, 0};
+
+        assertEquals(Optional.empty(), cache.lookup(query, 0));
+        assertEquals(Optional.empty(), cache.nearestUser(query));
+    }
+
+    @Test
+    void closestEntryWins() {
+        cache.put(ALICE, STALE_SCORE);
+        cache.put(BOB, new Match("bob", 0.5f));
+
+        assertEquals("bob", cache.lookup(new float[]{0.1f, 0.9f, 0, 0}, 0).orElseThrow().username());
+    }
+
+    @Test
+    void invalidatedUserIsNoLongerReturned() {
+        cache.put(ALICE, STALE_SCORE);
+        cache.invalidate("alice");
+
+        assertEquals(Optional.empty(), cache.lookup(ALICE, 0));
+        assertEquals(1, cache.stats().invalidations());
+    }
+
+    @Test
+    void entriesExpireAfterTheirLifetime() throws InterruptedException {
+        RecognitionCache shortLived = new RecognitionCache(new RecognitionCache.Settings(4, Duration.ofMillis(20), 0.6f));
+        shortLived.put(ALICE, STALE_SCORE);
+        Thread.sleep(50);
+
+        assertEquals(Optional.empty(), shortLived.nearestUser(ALICE));
+        assertEquals(1, shortLived.stats().expirations());
+    }
+
+    @Test
+    void leastRecentlyHitEntryIsEvicted() {
+        RecognitionCache small = new RecognitionCache(new RecognitionCache.Settings(2, Duration.ofMinutes(1), 0.6f));
+        small.put(ALICE, STALE_SCORE);
+        small.put(BOB, new Match("bob", 0.5f));
+        assertTrue(small.lookup(ALICE, 0).isPresent());
+        small.put(new float[]{0, 0, 1, 0}, new Match("carol", 0.5f));
+
+        assertEquals(Optional.of("alice"), small.nearestUser(ALICE));
+        assertEquals(Optional.empty(), small.nearestUser(BOB));
+        assertEquals(1, small.stats().evictions());
+    }
+}
@@ -0,0 +1,182 @@
+package org.example.gui.server;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.example.gui.recognition.EnrollmentResult;
+import org.example.gui.recognition.Identification;
+import org.example.gui.recognition.Match;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the recognizer with a backend that can be held busy, to check batching, shedding, expiry and
+ * withdrawal of requests.
+ */
+class BatchingRecognizerTest {
+
+    private final FakeBackend backend = new FakeBackend();
+    private BatchingRecognizer recognizer;
+
+    @AfterEach
+    void close() {
+        backend.release.countDown();
+        if (recognizer != null) {
+            recognizer.close();
+        }
+    }
+
+    @Test
+    void loginsWaitingTogetherAreRecognizedInOneBatch() throws Exception {
+        recognizer = new BatchingRecognizer(backend, settings(16, Duration.ofSeconds(5)));
+        CompletableFuture<Identification> first = recognizer.submitLogin(frame()).orElseThrow();
+        assertTrue(backend.entered.await(5, TimeUnit.SECONDS));
+        List<CompletableFuture<Identification>> waiting = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            waiting.add(recognizer.submitLogin(frame()).orElseThrow());
+        }
+
+        backend.release.countDown();
+        assertTrue(first.get(5, TimeUnit.SECONDS).recognized());
+        for (CompletableFuture<Identification> login : waiting) {
+            assertTrue(login.get(5, TimeUnit.SECONDS).recognized());
+        }
+        assertEquals(List.of(1, 3), backend.batchSizes);
+    }
+
+    @Test
+    void requestIsShedWhenTheQueueIsFull() throws Exception {
+        recognizer = new BatchingRecognizer(backend, settings(1, Duration.ofSeconds(5)));
+        recognizer.submitLogin(frame()).orElseThrow();
+        assertTrue(backend.entered.await(5, TimeUnit.SECONDS));
+        recognizer.submitLogin(frame()).orElseThrow();
+
+        Mat shedFrame = frame();
+        assertTrue(recognizer.submitLogin(shedFrame).isEmpty());
+        assertTrue(shedFrame.isNull());
+        assertEquals(1, recognizer.stats().shed());
+    }
+
+    @Test
+    void requestWaitingPastTheMaximumIsExpired() throws Exception {
+        recognizer = new BatchingRecognizer(backend, settings(16, Duration.ofMillis(50)));
+        recognizer.submitLogin(frame()).orElseThrow();
+        assertTrue(backend.entered.await(5, TimeUnit.SECONDS));
+        CompletableFuture<EnrollmentResult> enrollment =
+                recognizer.submitEnrollment("alice", List.of(frame())).orElseThrow();
+        Thread.sleep(100);
+
+        backend.release.countDown();
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> enrollment.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, failure.getCause());
+        assertEquals(0, backend.enrollments.get());
+        assertEquals(1, recognizer.stats().expired());
+    }
+
+    @Test
+    void cancelledEnrollmentIsNeverRun() throws Exception {
+        recognizer = new BatchingRecognizer(backend, settings(16, Duration.ofSeconds(5)));
+        recognizer.submitLogin(frame()).orElseThrow();
+        assertTrue(backend.entered.await(5, TimeUnit.SECONDS));
+        Mat enrollmentFrame = frame();
+        CompletableFuture<EnrollmentResult> enrollment =
+                recognizer.submitEnrollment("alice", List.of(enrollmentFrame)).orElseThrow();
+
+        assertTrue(enrollment.cancel(false));
+        backend.release.countDown();
+        CompletableFuture<Identification> later = recognizer.submitLogin(frame()).orElseThrow();
+        later.get(5, TimeUnit.SECONDS);
+
+        assertTrue(enrollment.isCancelled());
+        assertEquals(0, backend.enrollments.get());
+        assertTrue(enrollmentFrame.isNull());
+    }
+
+    @Test
+    void startedEnrollmentCannotBeCancelled() throws Exception {
+        recognizer = new BatchingRecognizer(backend, settings(16, Duration.ofSeconds(5)));
+        CompletableFuture<EnrollmentResult> enrollment =
+                recognizer.submitEnrollment("alice", List.of(frame())).orElseThrow();
+        assertTrue(backend.entered.await(5, TimeUnit.SECONDS));
+
+        assertFalse(enrollment.cancel(false));
+        backend.release.countDown();
+        assertTrue(enrollment.get(5, TimeUnit.SECONDS).success());
+        assertEquals(1, backend.enrollments.get());
+    }
+
+    @Test
+    void closeFailsWaitingRequests() throws Exception {
+        recognizer = new BatchingRecognizer(backend, settings(16, Duration.ofSeconds(5)));
+        recognizer.submitLogin(frame()).orElseThrow();
+        assertTrue(backend.entered.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Identification> waiting = recognizer.submitLogin(frame()).orElseThrow();
+
+        backend.release.countDown();
+        recognizer.close();
+        // Either recognized before the thread stopped or failed as stopped, never left pending.
+        try {
+            waiting.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        }
+        assertTrue(recognizer.submitLogin(frame()).isEmpty());
+    }
+
+    private static BatchingRecognizer.Settings settings(int queueCapacity, Duration maxWait) {
+        return new BatchingRecognizer.Settings(queueCapacity, 8, Duration.ofMillis(2), maxWait);
+    }
+
+    private static Mat frame() {
+        return new Mat(2, 2, CV_8UC3);
+    }
+
+    /**
+     * Blocks in its first call until released, then answers every request at once.
+     */
+    private static final class FakeBackend implements BatchingRecognizer.Backend {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger enrollments = new AtomicInteger();
+
+        @Override
+        public List<Identification> identifyAll(List<Mat> frames) {
+            batchSizes.add(frames.size());
+            block();
+            return frames.stream().map(frame -> Identification.matched(new Match("alice", 0.9f))).toList();
+        }
+
+        @Override
+        public EnrollmentResult enroll(String username, List<Mat> frames) {
+            enrollments.incrementAndGet();
+            block();
+            return EnrollmentResult.success(frames.size(), "Enrolled " + username);
+        }
+
+        private void block() {
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.gui.service;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that completed batches are written and abandoned ones leave nothing behind.
+ */
+class DatasetWriterTest {
+
+    @TempDir
+    Path directory;
+
+    private final DatasetWriter writer = new DatasetWriter(1, 4, DatasetWriter.Format.PNG,
+            DatasetWriter.BackpressurePolicy.BLOCK, Duration.ofSeconds(2), false);
+
+    @AfterEach
+    void closeWriter() {
+        writer.close();
+    }
+
+    @Test
+    void completedBatchWritesEveryFrame() throws Exception {
+        DatasetWriter.Batch batch = writer.beginBatch(directory);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(batch.submit(frame(), "img_" + i));
+        }
+
+        List<Path> paths = batch.complete().get();
+        assertEquals(3, paths.size());
+        for (Path path : paths) {
+            assertTrue(Files.size(path) > 0);
+        }
+    }
+
+    @Test
+    void abandonedBatchLeavesNoFiles() throws Exception {
+        DatasetWriter.Batch batch = writer.beginBatch(directory);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(batch.submit(frame(), "img_" + i));
+        }
+        batch.abandon();
+
+        // A frame being encoded while the batch is abandoned is deleted once written.
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while ((writer.queuedFrames() > 0 || fileCount() > 0) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        assertEquals(0, fileCount());
+    }
+
+    @Test
+    void abandoningAfterCompletionDeletesTheWrittenFiles() throws Exception {
+        DatasetWriter.Batch batch = writer.beginBatch(directory);
+        assertTrue(batch.submit(frame(), "img_1"));
+        batch.complete().get();
+
+        batch.abandon();
+        assertEquals(0, fileCount());
+    }
+
+    private static Mat frame() {
+        return new Mat(32, 32, CV_8UC3, new Scalar(40, 80, 120, 0));
+    }
+
+    private long fileCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.gui.service;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Point;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.example.gui.memory.MatPool;
+import org.example.gui.service.EnrollmentFrameSelector.SelectedFrame;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.bytedeco.opencv.global.opencv_imgproc.FILLED;
+import static org.bytedeco.opencv.global.opencv_imgproc.rectangle;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Feeds frames without a face tracker, as with the Python recognizer and no detector models, to check that a
+ * user holding still completes the burst and that only frames passing the gates are handed over.
+ */
+class EnrollmentFrameSelectorTest {
+
+    private static final int ROWS = 120;
+    private static final int COLS = 160;
+    private static final int TARGET_FRAMES = 5;
+
+    private final MatPool pool = new MatPool(MatPool.Settings.defaults());
+    private final FrameExchange exchange = new FrameExchange(3, pool, ROWS, COLS);
+
+    @AfterEach
+    void close() {
+        exchange.close();
+        pool.close();
+    }
+
+    @Test
+    void stillUserCompletesWithoutATracker() {
+        try (EnrollmentFrameSelector selector = new EnrollmentFrameSelector(TARGET_FRAMES,
+                EnrollmentFrameSelector.Thresholds.defaults(), null, pool)) {
+            int offered = 0;
+            // The burst would otherwise run until its deadline; a still user must not need more than the target.
+            while (!selector.isComplete() && offered < TARGET_FRAMES) {
+                offer(selector, offered % 2);
+                offered++;
+            }
+
+            assertTrue(selector.isComplete(), selector.scores().toString());
+            List<SelectedFrame> selected = selector.takeSelected();
+            assertEquals(TARGET_FRAMES, selected.size());
+            selected.forEach(frame -> frame.frame().close());
+        }
+    }
+
+    @Test
+    void framesFailingAGateAreNotHandedOver() {
+        try (EnrollmentFrameSelector selector = new EnrollmentFrameSelector(TARGET_FRAMES,
+                EnrollmentFrameSelector.Thresholds.defaults(), null, pool)) {
+            for (int i = 0; i < 3; i++) {
+                offerBlank(selector);
+            }
+            offer(selector, 0);
+
+            assertFalse(selector.isComplete());
+            List<SelectedFrame> selected = selector.takeSelected();
+            assertEquals(1, selected.size());
+            assertTrue(selected.getFirst().score().passes());
+            selected.forEach(frame -> frame.frame().close());
+        }
+    }
+
+    /**
+     * Offers a sharp checkerboard; {@code jitter} dims the white squares by a few grey levels, as sensor noise would.
+     */
+    private void offer(EnrollmentFrameSelector selector, int jitter) {
+        Mat frame = exchange.beginWrite();
+        try (Scalar black = new Scalar(0, 0, 0, 0); Scalar white = new Scalar(255 - jitter, 255 - jitter, 255, 0)) {
+            frame.put(black);
+            for (int y = 0; y < ROWS; y += 8) {
+                for (int x = (y / 8) % 2 * 8; x < COLS; x += 16) {
+                    try (Point from = new Point(x, y); Point to = new Point(x + 7, y + 7)) {
+                        rectangle(frame, from, to, white, FILLED, 8, 0);
+                    }
+                }
+            }
+        }
+        exchange.endWrite(frame, true, System.nanoTime());
+        try (FrameLease lease = exchange.acquireLatest().orElseThrow()) {
+            selector.offer(lease);
+        }
+    }
+
+    private void offerBlank(EnrollmentFrameSelector selector) {
+        Mat frame = exchange.beginWrite();
+        try (Scalar grey = new Scalar(128, 128, 128, 0)) {
+            frame.put(grey);
+        }
+        exchange.endWrite(frame, true, System.nanoTime());
+        try (FrameLease lease = exchange.acquireLatest().orElseThrow()) {
+            selector.offer(lease);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package org.example.gui.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that lanes are served in turn, that full lanes reject work and that closing stops everything.
+ */
+class FairSchedulerTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private FairScheduler scheduler;
+
+    @AfterEach
+    void close() {
+        release.countDown();
+        if (scheduler != null) {
+            scheduler.close();
+        }
+    }
+
+    @Test
+    void lanesWithWorkAreServedInTurn() throws InterruptedException {
+        scheduler = new FairScheduler("test", 1);
+        FairScheduler.Lane a = scheduler.lane("a", 10);
+        FairScheduler.Lane b = scheduler.lane("b", 10);
+        FairScheduler.Lane c = scheduler.lane("c", 10);
+        blockWorkers(a, 1);
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(8);
+        for (int i = 0; i < 5; i++) {
+            a.execute(record(order, "a", done));
+        }
+        for (int i = 0; i < 2; i++) {
+            b.execute(record(order, "b", done));
+        }
+        c.execute(record(order, "c", done));
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("a", "b", "c", "a", "b", "a", "a", "a"), order);
+    }
+
+    @Test
+    void backloggedLaneDoesNotDelayAnotherLanesTask() throws InterruptedException {
+        scheduler = new FairScheduler("test", 2);
+        FairScheduler.Lane flooded = scheduler.lane("flooded", 200);
+        FairScheduler.Lane quiet = scheduler.lane("quiet", 10);
+        AtomicInteger floodedRuns = new AtomicInteger();
+        for (int i = 0; i < 200; i++) {
+            flooded.execute(() -> {
+                floodedRuns.incrementAndGet();
+                sleep(2);
+            });
+        }
+
+        CountDownLatch ran = new CountDownLatch(1);
+        AtomicInteger floodedBefore = new AtomicInteger();
+        quiet.execute(() -> {
+            floodedBefore.set(floodedRuns.get());
+            ran.countDown();
+        });
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        // At most one flooded task per worker, plus those already started when the quiet task was queued.
+        assertTrue(floodedBefore.get() <= 6, floodedBefore.get() + " flooded tasks ran first");
+    }
+
+    @Test
+    void fullLaneRejectsNewTasks() throws InterruptedException {
+        scheduler = new FairScheduler("test", 1);
+        FairScheduler.Lane lane = scheduler.lane("lane", 2);
+        blockWorkers(lane, 1);
+
+        assertTrue(lane.offer(() -> { }));
+        assertTrue(lane.offer(() -> { }));
+        assertFalse(lane.offer(() -> { }));
+        assertThrows(RejectedExecutionException.class, () -> lane.execute(() -> { }));
+
+        FairScheduler.LaneStats stats = lane.stats();
+        assertEquals(2, stats.queued());
+        assertEquals(1, stats.running());
+        assertEquals(2, stats.rejected());
+    }
+
+    @Test
+    void failingTaskDoesNotStopTheWorker() throws InterruptedException {
+        scheduler = new FairScheduler("test", 1);
+        FairScheduler.Lane lane = scheduler.lane("lane", 10);
+        CountDownLatch ran = new CountDownLatch(1);
+        lane.execute(() -> {
+            throw new IllegalStateException("expected by the test");
+        });
+        lane.execute(ran::countDown);
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        awaitCompleted(lane, 2);
+    }
+
+    @Test
+    void closeDropsQueuedTasksAndInterruptsRunningOnes() throws InterruptedException {
+        scheduler = new FairScheduler("test", 1);
+        FairScheduler.Lane lane = scheduler.lane("lane", 10);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        lane.execute(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        AtomicBoolean queuedRan = new AtomicBoolean();
+        lane.execute(() -> queuedRan.set(true));
+
+        scheduler.close();
+        assertTrue(interrupted.get());
+        assertFalse(queuedRan.get());
+        assertFalse(lane.offer(() -> { }));
+    }
+
+    @Test
+    void atLeastOneWorkerIsStarted() {
+        scheduler = new FairScheduler("test", 0);
+        assertEquals(1, scheduler.workers());
+    }
+
+    /**
+     * Occupies every worker with a task that waits for {@link #release}.
+     */
+    private void blockWorkers(FairScheduler.Lane lane, int workers) throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(workers);
+        for (int i = 0; i < workers; i++) {
+            lane.execute(() -> {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+    }
+
+    private static Runnable record(List<String> order, String lane, CountDownLatch done) {
+        return () -> {
+            order.add(lane);
+            done.countDown();
+        };
+    }
+
+    private static void awaitCompleted(FairScheduler.Lane lane, long completed) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (lane.stats().completed() < completed && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(completed, lane.stats().completed());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
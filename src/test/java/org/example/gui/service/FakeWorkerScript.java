@@ -0,0 +1,90 @@
+package org.example.gui.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A Python script that speaks the {@link PythonWorker} protocol, answering its requests one after another as
+ * a real interpreter does, and appends a line to a file every time it starts.
+ * <p>
+ * Commands: {@code ping}; {@code echo <text>}; {@code sleep <seconds> <text>}, which answers with the text
+ * after sleeping.
+ */
+final class FakeWorkerScript {
+
+    private static final String SCRIPT = """
+            import struct, sys, time
+
+            with open(sys.argv[1], "a") as starts:
+                starts.write("started\\n")
+
+            def read(count):
+                data = sys.stdin.buffer.read(count)
+                if len(data) < count:
+                    sys.exit(0)
+                return data
+
+            while True:
+                request_id, length = struct.unpack(">ii", read(8))
+                args = read(length).decode("utf-8").split("\\0")
+                status, reply = 0, ""
+                if args[0] == "ping":
+                    reply = "pong"
+                elif args[0] == "echo":
+                    reply = args[1]
+                elif args[0] == "sleep":
+                    time.sleep(float(args[1]))
+                    reply = args[2]
+                else:
+                    status, reply = 2, "unknown command " + args[0]
+                data = reply.encode("utf-8")
+                sys.stdout.buffer.write(struct.pack(">iii", request_id, status, len(data)) + data)
+                sys.stdout.buffer.flush()
+            """;
+
+    private final Path starts;
+    private final List<String> launchCommand;
+
+    /**
+     * Writes the script into a directory.
+     *
+     * @param directory where the script and its start log are written
+     * @param name      distinguishes several workers in the same directory
+     */
+    FakeWorkerScript(Path directory, String name) throws IOException {
+        Path script = directory.resolve(name + ".py");
+        Files.writeString(script, SCRIPT);
+        starts = directory.resolve(name + ".starts");
+        launchCommand = List.of("python3", script.toString(), starts.toString());
+    }
+
+    static boolean pythonAvailable() {
+        try {
+            return new ProcessBuilder("python3", "--version").start().waitFor() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    List<String> launchCommand() {
+        return launchCommand;
+    }
+
+    List<String> command(String... arguments) {
+        return Stream.concat(launchCommand.stream(), Arrays.stream(arguments)).toList();
+    }
+
+    /**
+     * Returns how many times the worker has been started.
+     */
+    int starts() throws IOException {
+        return Files.exists(starts) ? Files.readAllLines(starts).size() : 0;
+    }
+}
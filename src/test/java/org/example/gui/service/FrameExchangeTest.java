@@ -0,0 +1,256 @@
+package org.example.gui.service;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.example.gui.memory.MatPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameExchangeTest {
+
+    private static final int ROWS = 4;
+    private static final int COLS = 4;
+
+    private final MatPool pool = new MatPool(MatPool.Settings.defaults());
+
+    @AfterEach
+    void closePool() {
+        pool.close();
+    }
+
+    @Test
+    void leasesTheLatestPublishedFrame() {
+        try (FrameExchange exchange = new FrameExchange(3, pool, ROWS, COLS)) {
+            assertTrue(exchange.acquireLatest().isEmpty());
+
+            assertEquals(1, publish(exchange, 10));
+            assertEquals(2, publish(exchange, 20));
+
+            try (FrameLease lease = exchange.acquireLatest().orElseThrow()) {
+                assertEquals(2, lease.sequence());
+                assertEquals(20, firstByte(lease.frame()));
+            }
+            assertEquals(2, exchange.latestSequence());
+        }
+    }
+
+    @Test
+    void leasedFrameIsNotOverwritten() {
+        try (FrameExchange exchange = new FrameExchange(3, pool, ROWS, COLS)) {
+            publish(exchange, 1);
+            try (FrameLease held = exchange.acquireLatest().orElseThrow()) {
+                for (int i = 2; i < 50; i++) {
+                    assertTrue(publish(exchange, i) > 0);
+                }
+                assertEquals(1, firstByte(held.frame()));
+                assertEquals(1, held.sequence());
+            }
+        }
+    }
+
+    @Test
+    void dropsFrameWhenEverySlotIsBusy() {
+        try (FrameExchange exchange = new FrameExchange(3, pool, ROWS, COLS)) {
+            List<FrameLease> leases = new ArrayList<>();
+            for (int i = 1; i <= 3; i++) {
+                publish(exchange, i);
+                leases.add(exchange.acquireLatest().orElseThrow());
+            }
+
+            assertNull(exchange.beginWrite());
+            assertEquals(1, exchange.droppedFrames());
+
+            leases.getFirst().close();
+            assertEquals(4, publish(exchange, 4));
+            leases.forEach(FrameLease::close);
+        }
+    }
+
+    @Test
+    void abandonedWriteIsNotPublished() {
+        try (FrameExchange exchange = new FrameExchange(3, pool, ROWS, COLS)) {
+            publish(exchange, 7);
+            Mat frame = exchange.beginWrite();
+            fill(frame, 8);
+            assertEquals(-1, exchange.endWrite(frame, false, System.nanoTime()));
+
+            try (FrameLease lease = exchange.acquireLatest().orElseThrow()) {
+                assertEquals(1, lease.sequence());
+                assertEquals(7, firstByte(lease.frame()));
+            }
+        }
+    }
+
+    @Test
+    void slotRewrittenAndAbandonedAfterBeingReadIsNotLeased() {
+        try (FrameExchange exchange = new FrameExchange(3, pool, ROWS, COLS)) {
+            publish(exchange, 1);
+            // A reader reads the latest slot, then loses the processor before pinning it.
+            FrameExchange.Slot observed = exchange.latestSlot();
+            publish(exchange, 2);
+            publish(exchange, 3);
+            // With every other slot published since, the producer claims the observed one.
+            Mat reused = exchange.beginWrite();
+            fill(reused, 255);
+            exchange.endWrite(reused, false, System.nanoTime());
+
+            assertNull(exchange.tryLease(observed));
+            try (FrameLease lease = exchange.acquireLatest().orElseThrow()) {
+                assertEquals(3, lease.sequence());
+                assertEquals(3, firstByte(lease.frame()));
+            }
+        }
+        // The failed attempt left no pin behind that would keep the slot's buffers out.
+        assertEquals(0, pool.stats().leased());
+    }
+
+    @Test
+    void closingTwiceReleasesTheSlotOnce() {
+        try (FrameExchange exchange = new FrameExchange(3, pool, ROWS, COLS)) {
+            publish(exchange, 1);
+            FrameLease first = exchange.acquireLatest().orElseThrow();
+            FrameLease second = exchange.acquireLatest().orElseThrow();
+            first.close();
+            first.close();
+
+            // The second lease still pins the slot, so two more frames need the other two slots.
+            publish(exchange, 2);
+            publish(exchange, 3);
+            exchange.acquireLatest().orElseThrow().close();
+            assertEquals(1, firstByte(second.frame()));
+            second.close();
+        }
+    }
+
+    @Test
+    void closeReleasesLeasedSlotsWhenTheirLastLeaseCloses() {
+        FrameExchange exchange = new FrameExchange(3, pool, ROWS, COLS);
+        publish(exchange, 1);
+        FrameLease lease = exchange.acquireLatest().orElseThrow();
+
+        exchange.close();
+        assertTrue(exchange.acquireLatest().isEmpty());
+        assertNull(exchange.beginWrite());
+        assertEquals(2, pool.stats().leased(), "only the leased slot's buffers stay out");
+
+        lease.close();
+        assertEquals(0, pool.stats().leased());
+    }
+
+    @Test
+    void readersNeverSeeATornOrRecycledFrame() throws InterruptedException {
+        exchangeFramesWithReaders(false);
+    }
+
+    @Test
+    void readersNeverSeeAnAbandonedWrite() throws InterruptedException {
+        exchangeFramesWithReaders(true);
+    }
+
+    /**
+     * Publishes frames filled with their sequence number while three readers check every frame they lease.
+     * With {@code abandonWrites}, every other claimed slot is filled with a value no published frame has and
+     * then discarded.
+     */
+    private void exchangeFramesWithReaders(boolean abandonWrites) throws InterruptedException {
+        int frames = 20_000;
+        try (FrameExchange exchange = new FrameExchange(4, pool, ROWS, COLS)) {
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicReference<String> failure = new AtomicReference<>();
+            AtomicLong leases = new AtomicLong();
+            CountDownLatch started = new CountDownLatch(3);
+            List<Thread> readers = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                Thread reader = new Thread(() -> {
+                    started.countDown();
+                    long lastSequence = 0;
+                    while (!done.get()) {
+                        Optional<FrameLease> acquired = exchange.acquireLatest();
+                        if (acquired.isEmpty()) {
+                            continue;
+                        }
+                        try (FrameLease lease = acquired.get()) {
+                            int expected = (int) (lease.sequence() % 251);
+                            byte[] pixels = new byte[ROWS * COLS * 3];
+                            lease.frame().data().get(pixels);
+                            Thread.yield();
+                            byte[] again = new byte[pixels.length];
+                            lease.frame().data().get(again);
+                            for (int i = 0; i < pixels.length; i++) {
+                                if ((pixels[i] & 0xFF) != expected || (again[i] & 0xFF) != expected) {
+                                    failure.compareAndSet(null, "frame " + lease.sequence() + " has byte "
+                                            + (pixels[i] & 0xFF) + "/" + (again[i] & 0xFF) + " at " + i);
+                                }
+                            }
+                            if (lease.sequence() < lastSequence) {
+                                failure.compareAndSet(null, "sequence went back from " + lastSequence
+                                        + " to " + lease.sequence());
+                            }
+                            lastSequence = lease.sequence();
+                            leases.incrementAndGet();
+                        }
+                    }
+                });
+                readers.add(reader);
+                reader.start();
+            }
+
+            started.await();
+            long published = 0;
+            boolean abandon = false;
+            while (published < frames) {
+                Mat frame = exchange.beginWrite();
+                if (frame == null) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                abandon = abandonWrites && !abandon;
+                if (abandon) {
+                    fill(frame, 255);
+                    exchange.endWrite(frame, false, System.nanoTime());
+                    continue;
+                }
+                fill(frame, (int) ((exchange.latestSequence() + 1) % 251));
+                published = exchange.endWrite(frame, true, System.nanoTime());
+            }
+            done.set(true);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+
+            assertNull(failure.get());
+            assertTrue(leases.get() > 0);
+        }
+        assertEquals(0, pool.stats().leased());
+    }
+
+    private static long publish(FrameExchange exchange, int value) {
+        Mat frame = exchange.beginWrite();
+        assertNotNull(frame);
+        fill(frame, value);
+        return exchange.endWrite(frame, true, System.nanoTime());
+    }
+
+    private static void fill(Mat frame, int value) {
+        try (Scalar scalar = new Scalar(value, value, value, 0)) {
+            frame.put(scalar);
+        }
+    }
+
+    private static int firstByte(Mat frame) {
+        return frame.data().get(0) & 0xFF;
+    }
+}
@@ -0,0 +1,261 @@
+package org.example.gui.service;
+
+import org.example.gui.metrics.PipelineMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs small shell commands, and a fake worker script, through the service to check queue order, deadlines and
+ * cancellation.
+ */
+class PythonProcessServiceTest {
+
+    private static final Duration LONG_TIMEOUT = Duration.ofSeconds(30);
+
+    @TempDir
+    Path directory;
+
+    private PythonProcessService service;
+
+    @BeforeEach
+    void requireShell() {
+        assumeTrue(Files.isExecutable(Path.of("/bin/sh")), "needs a POSIX shell");
+        service = new PythonProcessService(null, new PipelineMetrics(), 1, LONG_TIMEOUT);
+    }
+
+    @AfterEach
+    void shutDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void reportsOutputAndExitCode() throws Exception {
+        CompletableFuture<PythonProcessService.PythonResult> result = new CompletableFuture<>();
+        service.executeAsync(shell("echo hello; exit 3"), result::complete);
+
+        assertEquals(new PythonProcessService.PythonResult(3, "hello"), result.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void higherPriorityRunsBeforeEarlierQueuedCommands() throws Exception {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch finished = new CountDownLatch(4);
+        service.executeAsync(shell("sleep 0.3"), result -> finished.countDown());
+        for (PythonProcessService.Priority priority : List.of(PythonProcessService.Priority.LOW,
+                PythonProcessService.Priority.NORMAL, PythonProcessService.Priority.HIGH)) {
+            service.executeAsync(shell("echo " + priority), priority, result -> {
+                order.add(result.output());
+                finished.countDown();
+            });
+        }
+
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of("HIGH", "NORMAL", "LOW"), order);
+    }
+
+    @Test
+    void equalPriorityRunsInSubmissionOrder() throws Exception {
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch finished = new CountDownLatch(5);
+        service.executeAsync(shell("sleep 0.3"), result -> finished.countDown());
+        for (int i = 0; i < 4; i++) {
+            service.executeAsync(shell("echo " + i), result -> {
+                order.add(result.output());
+                finished.countDown();
+            });
+        }
+
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of("0", "1", "2", "3"), order);
+    }
+
+    @Test
+    void queuedCommandPastItsDeadlineIsNotStarted() throws Exception {
+        Path marker = directory.resolve("started");
+        CompletableFuture<PythonProcessService.PythonResult> blocker = new CompletableFuture<>();
+        CompletableFuture<PythonProcessService.PythonResult> expired = new CompletableFuture<>();
+        service.executeAsync(shell("sleep 0.5"), blocker::complete);
+        service.executeAsync(shell("touch " + marker), PythonProcessService.Priority.HIGH,
+                Duration.ofMillis(100), expired::complete);
+
+        PythonProcessService.PythonResult result = expired.get(10, TimeUnit.SECONDS);
+        assertEquals(-1, result.exitCode());
+        assertTrue(result.output().contains("timed out"), result.output());
+        assertEquals(0, blocker.get(10, TimeUnit.SECONDS).exitCode());
+        awaitIdle();
+        assertFalse(Files.exists(marker));
+    }
+
+    @Test
+    void runningCommandIsKilledWithItsChildrenAtItsDeadline() throws Exception {
+        CompletableFuture<Long> child = new CompletableFuture<>();
+        CompletableFuture<PythonProcessService.PythonResult> result = new CompletableFuture<>();
+        long start = System.nanoTime();
+        service.executeAsync(shell("sleep 30 & echo $!; wait"), PythonProcessService.Priority.NORMAL,
+                Duration.ofMillis(500), line -> child.complete(Long.parseLong(line.trim())), result::complete);
+
+        assertEquals(-1, result.get(10, TimeUnit.SECONDS).exitCode());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertChildExits(child.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void cancelledQueuedCommandNeverStarts() throws Exception {
+        Path marker = directory.resolve("started");
+        CompletableFuture<PythonProcessService.PythonResult> cancelled = new CompletableFuture<>();
+        service.executeAsync(shell("sleep 0.3"), result -> { });
+        PythonProcessService.PythonTask task = service.executeAsync(shell("touch " + marker), cancelled::complete);
+
+        assertTrue(task.cancel());
+        assertFalse(task.cancel());
+        assertTrue(task.isDone());
+        assertTrue(cancelled.get(1, TimeUnit.SECONDS).output().contains("cancelled"));
+        awaitIdle();
+        assertFalse(Files.exists(marker));
+    }
+
+    @Test
+    void cancellingARunningCommandKillsItsProcessTree() throws Exception {
+        CompletableFuture<Long> child = new CompletableFuture<>();
+        List<PythonProcessService.PythonResult> results = Collections.synchronizedList(new ArrayList<>());
+        PythonProcessService.PythonTask task = service.executeAsync(shell("sleep 30 & echo $!; wait"),
+                PythonProcessService.Priority.NORMAL, line -> child.complete(Long.parseLong(line.trim())),
+                results::add);
+        long pid = child.get(10, TimeUnit.SECONDS);
+
+        assertTrue(task.cancel());
+        assertChildExits(pid);
+        awaitIdle();
+        assertEquals(1, results.size());
+        assertEquals(-1, results.getFirst().exitCode());
+    }
+
+    @Test
+    void outputIsStreamedWhileTheCommandRuns() throws Exception {
+        CompletableFuture<Boolean> doneAtFirstLine = new CompletableFuture<>();
+        CompletableFuture<PythonProcessService.PythonResult> result = new CompletableFuture<>();
+        List<PythonProcessService.PythonTask> task = new ArrayList<>(1);
+        CountDownLatch submitted = new CountDownLatch(1);
+        task.add(service.executeAsync(shell("echo first; sleep 0.3; echo second"),
+                PythonProcessService.Priority.NORMAL, line -> {
+                    if (line.equals("first")) {
+                        awaitQuietly(submitted);
+                        doneAtFirstLine.complete(task.getFirst().isDone());
+                    }
+                }, result::complete));
+        submitted.countDown();
+
+        assertFalse(doneAtFirstLine.get(10, TimeUnit.SECONDS));
+        assertEquals("first\nsecond", result.get(10, TimeUnit.SECONDS).output().replace(System.lineSeparator(), "\n"));
+    }
+
+    @Test
+    void shutdownCompletesQueuedCommands() throws Exception {
+        CompletableFuture<PythonProcessService.PythonResult> queued = new CompletableFuture<>();
+        service.executeAsync(shell("sleep 30"), result -> { });
+        service.executeAsync(shell("echo never"), queued::complete);
+
+        service.shutdown();
+        assertTrue(queued.get(1, TimeUnit.SECONDS).output().contains("shut down"));
+
+        CompletableFuture<PythonProcessService.PythonResult> late = new CompletableFuture<>();
+        service.executeAsync(shell("echo late"), late::complete);
+        assertEquals(-1, late.get(1, TimeUnit.SECONDS).exitCode());
+    }
+
+    @Test
+    void loginOvertakesAnEnrollmentTheWorkerIsBusyWith() throws Exception {
+        FakeWorkerScript script = workerScript();
+        service.shutdown();
+        service = new PythonProcessService(new PythonWorker(script.launchCommand(), LONG_TIMEOUT),
+                new PythonWorker(script.launchCommand(), LONG_TIMEOUT), new PipelineMetrics(), 2, LONG_TIMEOUT);
+        assertTrue(service.warmUp().get(10, TimeUnit.SECONDS));
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch finished = new CountDownLatch(2);
+
+        service.executeAsync(script.command("sleep", "1", "enrolled"), result -> {
+            order.add(result.output());
+            finished.countDown();
+        });
+        Thread.sleep(200);
+        service.executeAsync(script.command("echo", "login"), PythonProcessService.Priority.HIGH, result -> {
+            order.add(result.output());
+            finished.countDown();
+        });
+
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of("login", "enrolled"), order);
+    }
+
+    @Test
+    void cancellingACommandServedByTheWorkerFreesItsSlot() throws Exception {
+        FakeWorkerScript script = workerScript();
+        service.shutdown();
+        service = new PythonProcessService(new PythonWorker(script.launchCommand(), LONG_TIMEOUT),
+                new PipelineMetrics(), 1, LONG_TIMEOUT);
+        assertTrue(service.warmUp().get(10, TimeUnit.SECONDS));
+        CompletableFuture<PythonProcessService.PythonResult> cancelled = new CompletableFuture<>();
+        PythonProcessService.PythonTask task =
+                service.executeAsync(script.command("sleep", "30", "enrolled"), cancelled::complete);
+        Thread.sleep(200);
+
+        assertTrue(task.cancel());
+        assertTrue(cancelled.get(1, TimeUnit.SECONDS).output().contains("cancelled"));
+        // The only slot is free again and the worker, restarted, answers the next command.
+        CompletableFuture<PythonProcessService.PythonResult> next = new CompletableFuture<>();
+        service.executeAsync(script.command("echo", "next"), next::complete);
+        assertEquals(new PythonProcessService.PythonResult(0, "next"), next.get(5, TimeUnit.SECONDS));
+        assertEquals(2, script.starts());
+    }
+
+    private FakeWorkerScript workerScript() throws IOException {
+        assumeTrue(FakeWorkerScript.pythonAvailable(), "needs python3");
+        return new FakeWorkerScript(directory, "worker");
+    }
+
+    private static List<String> shell(String script) {
+        return List.of("/bin/sh", "-c", script);
+    }
+
+    private void awaitIdle() throws Exception {
+        CompletableFuture<PythonProcessService.PythonResult> last = new CompletableFuture<>();
+        service.executeAsync(shell("true"), PythonProcessService.Priority.LOW, last::complete);
+        last.get(10, TimeUnit.SECONDS);
+    }
+
+    private static void assertChildExits(long pid) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false), "child " + pid + " survived");
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
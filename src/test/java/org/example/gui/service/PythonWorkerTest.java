@@ -0,0 +1,124 @@
+package org.example.gui.service;
+
+import org.example.gui.service.PythonProcessService.PythonResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs a fake worker script to check that a timed-out or cancelled request is abandoned on its own and that
+ * the interpreter is only restarted when it is stuck or idle.
+ */
+class PythonWorkerTest {
+
+    @TempDir
+    Path directory;
+
+    private FakeWorkerScript script;
+    private PythonWorker worker;
+
+    @BeforeEach
+    void requirePython() throws Exception {
+        assumeTrue(FakeWorkerScript.pythonAvailable(), "needs python3");
+        script = new FakeWorkerScript(directory, "worker");
+    }
+
+    @AfterEach
+    void close() {
+        if (worker != null) {
+            worker.close();
+        }
+    }
+
+    @Test
+    void answersRequestsFromOneInterpreter() throws Exception {
+        worker = new PythonWorker(script.launchCommand(), Duration.ofSeconds(10));
+
+        assertEquals(new PythonResult(0, "first"), worker.execute(script.command("echo", "first")));
+        assertEquals(new PythonResult(0, "second"), worker.execute(script.command("echo", "second")));
+        assertTrue(worker.ping());
+        assertEquals(1, script.starts());
+    }
+
+    @Test
+    void timedOutRequestIsAbandonedWithoutFailingTheOthers() throws Exception {
+        worker = new PythonWorker(script.launchCommand(), Duration.ofSeconds(10));
+        worker.start();
+
+        CompletableFuture<PythonResult> slow = CompletableFuture.supplyAsync(() -> execute(
+                script.command("sleep", "0.6", "slow"), Duration.ofMillis(200)));
+        Thread.sleep(100);
+        CompletableFuture<PythonResult> queued = CompletableFuture.supplyAsync(() -> execute(
+                script.command("echo", "queued"), Duration.ofSeconds(10)));
+
+        assertEquals(-1, slow.get(10, TimeUnit.SECONDS).exitCode());
+        // The slow request's late answer is dropped by id; the queued one gets its own.
+        assertEquals(new PythonResult(0, "queued"), queued.get(10, TimeUnit.SECONDS));
+        assertEquals(1, script.starts());
+        assertTrue(worker.ping());
+    }
+
+    @Test
+    void workerThatStaysStuckAfterATimeoutIsRestarted() throws Exception {
+        worker = new PythonWorker(script.launchCommand(), Duration.ofMillis(500));
+
+        assertEquals(-1, worker.execute(script.command("sleep", "30", "stuck"), Duration.ofMillis(200)).exitCode());
+        awaitStarts(1);
+        // The background ping gets the 500 ms request timeout; once it fails the worker stops answering.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (worker.ping() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+
+        assertEquals(new PythonResult(0, "after"), worker.execute(script.command("echo", "after")));
+        assertEquals(2, script.starts());
+    }
+
+    @Test
+    void interruptedCallerStopsTheRequestTheWorkerWasBusyWith() throws Exception {
+        worker = new PythonWorker(script.launchCommand(), Duration.ofSeconds(30));
+        worker.start();
+        CompletableFuture<PythonResult> result = new CompletableFuture<>();
+        Thread caller = new Thread(() -> result.complete(execute(script.command("sleep", "30", "long"),
+                Duration.ofSeconds(30))));
+        caller.start();
+        Thread.sleep(200);
+
+        caller.interrupt();
+        assertEquals(-1, result.get(5, TimeUnit.SECONDS).exitCode());
+        // Restarted in the background, ready for the next request.
+        awaitStarts(2);
+        long start = System.nanoTime();
+        assertEquals(new PythonResult(0, "next"), worker.execute(script.command("echo", "next")));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    private PythonResult execute(List<String> command, Duration timeout) {
+        try {
+            return worker.execute(command, timeout);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void awaitStarts(int starts) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (script.starts() < starts && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(starts, script.starts());
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.gui.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the recognizer's event lines and that log output is never mistaken for an event.
+ */
+class RecognizerEventTest {
+
+    @Test
+    void parsesEveryEventType() {
+        assertEquals(Optional.of(new RecognizerEvent.Progress(0.4, "Embedding image 2/5")),
+                RecognizerEvent.parse("{\"event\": \"progress\", \"progress\": 0.4, \"message\": \"Embedding image 2/5\"}"));
+        assertEquals(Optional.of(new RecognizerEvent.Match("alice", 0.87)),
+                RecognizerEvent.parse("{\"event\": \"match\", \"user\": \"alice\", \"score\": 0.87}"));
+        assertEquals(Optional.of(new RecognizerEvent.Result(true, "alice", 0.93, "Welcome")),
+                RecognizerEvent.parse("{\"event\": \"result\", \"success\": true, \"user\": \"alice\", "
+                        + "\"score\": 0.93, \"message\": \"Welcome\"}"));
+        assertEquals(Optional.of(new RecognizerEvent.Failure("No face detected")),
+                RecognizerEvent.parse("{\"event\": \"error\", \"message\": \"No face detected\"}"));
+    }
+
+    @Test
+    void toleratesWhitespaceAndMemberOrder() {
+        assertEquals(Optional.of(new RecognizerEvent.Match("bob", 0.5)),
+                RecognizerEvent.parse("  {\"score\":5e-1,\"user\":\"bob\" , \"event\":\"match\"}\r"));
+    }
+
+    @Test
+    void resultWithoutSuccessFlagSucceedsWhenAUserIsNamed() {
+        assertEquals(Optional.of(new RecognizerEvent.Result(true, "alice", 0, null)),
+                RecognizerEvent.parse("{\"event\": \"result\", \"user\": \"alice\"}"));
+        assertEquals(Optional.of(new RecognizerEvent.Result(false, null, 0, "Unknown face")),
+                RecognizerEvent.parse("{\"event\": \"result\", \"user\": null, \"message\": \"Unknown face\"}"));
+    }
+
+    @Test
+    void progressIsClampedToAFraction() {
+        assertEquals(Optional.of(new RecognizerEvent.Progress(1.0, null)),
+                RecognizerEvent.parse("{\"event\": \"progress\", \"progress\": 3}"));
+        assertEquals(Optional.of(new RecognizerEvent.Progress(0.0, null)),
+                RecognizerEvent.parse("{\"event\": \"progress\", \"progress\": -0.5}"));
+    }
+
+    @Test
+    void decodesStringEscapes() {
+        assertEquals(Optional.of(new RecognizerEvent.Failure("line\n\"quoted\" \\ caf\u00e9")),
+                RecognizerEvent.parse("{\"event\": \"error\", \"message\": \"line\\n\\\"quoted\\\" \\\\ caf\\u00e9\"}"));
+    }
+
+    @Test
+    void ignoresLinesThatAreNotEvents() {
+        for (String line : List.of(
+                "",
+                "Loading model from models/face.onnx",
+                "[INFO] {\"event\": \"match\", \"user\": \"alice\"}",
+                "{}",
+                "{\"event\": \"unknown\"}",
+                "{\"event\": 3}",
+                "{\"event\": \"match\", \"score\": 0.9}",
+                "{\"event\": \"match\", \"user\": \"alice\"} trailing",
+                "{\"event\": \"match\", \"user\": [\"alice\"]}",
+                "{\"event\": \"match\", \"user\": {\"name\": \"alice\"}}",
+                "{\"event\": \"error\", \"message\": \"unterminated}",
+                "{\"event\": \"error\", \"message\": \"bad \\x escape\"}",
+                "{\"event\": \"error\", \"message\": \"short \\u00\"}",
+                "{\"event\": \"match\", \"user\": \"alice\", \"score\": 1.2.3}",
+                "{\"event\": \"error\",}",
+                "{\"event\": \"error\"")) {
+            assertEquals(Optional.empty(), RecognizerEvent.parse(line), line);
+        }
+    }
+
+    @Test
+    void parseAllKeepsOutputOrderAndSkipsLogLines() {
+        String output = String.join(System.lineSeparator(),
+                "Warming up",
+                "{\"event\": \"progress\", \"progress\": 0.5}",
+                "{\"event\": \"match\", \"user\": \"alice\", \"score\": 0.8}",
+                "done",
+                "{\"event\": \"result\", \"success\": true, \"user\": \"alice\", \"score\": 0.9}");
+
+        List<RecognizerEvent> events = RecognizerEvent.parseAll(output);
+        assertEquals(List.of(new RecognizerEvent.Progress(0.5, null), new RecognizerEvent.Match("alice", 0.8),
+                new RecognizerEvent.Result(true, "alice", 0.9, null)), events);
+        assertTrue(RecognizerEvent.parseAll(null).isEmpty());
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.gui.service;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Reads the shared file back the way the recognizer does, and checks that closing removes it.
+ */
+class SharedFrameTransportTest {
+
+    private static final int SLOT_CAPACITY = 64;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void publishedFrameIsReadableWithItsStamp() throws Exception {
+        Path file = directory.resolve("frames.bin");
+        try (SharedFrameTransport transport = new SharedFrameTransport(file, 2, SLOT_CAPACITY);
+             Mat frame = new Mat(2, 3, CV_8UC3, new Scalar(7, 8, 9, 0))) {
+            SharedFrameTransport.Published published = transport.publish(frame, 42, 1000);
+
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+            assertEquals(0x314D5246, data.getInt(0));
+            int base = 64 + published.slot() * (64 + SLOT_CAPACITY);
+            assertEquals(published.stamp(), data.getLong(base));
+            assertEquals(42, data.getLong(base + 8));
+            assertEquals(3, data.getInt(base + 24));
+            assertEquals(2, data.getInt(base + 28));
+            assertEquals(7, data.get(base + 64));
+            assertEquals(9, data.get(base + 64 + 2));
+            assertEquals(List.of("--frames", file.toAbsolutePath().toString(), "--slots",
+                    published.slot() + ":" + published.stamp()), transport.arguments(List.of(published)));
+        }
+    }
+
+    @Test
+    void reusedSlotGetsANewStamp() throws Exception {
+        try (SharedFrameTransport transport = new SharedFrameTransport(directory.resolve("frames.bin"), 1,
+                SLOT_CAPACITY); Mat frame = new Mat(2, 2, CV_8UC3)) {
+            SharedFrameTransport.Published first = transport.publish(frame, 1, 0);
+            SharedFrameTransport.Published second = transport.publish(frame, 2, 0);
+
+            assertEquals(first.slot(), second.slot());
+            assertNotEquals(first.stamp(), second.stamp());
+        }
+    }
+
+    @Test
+    void closeUnmapsAndDeletesTheFile() throws Exception {
+        Path file = directory.resolve("frames.bin");
+        SharedFrameTransport transport = new SharedFrameTransport(file, 2, SLOT_CAPACITY);
+        try (Mat frame = new Mat(2, 2, CV_8UC3)) {
+            transport.publish(frame, 1, 0);
+        }
+
+        transport.close();
+        assertFalse(Files.exists(file));
+        transport.close();
+    }
+}
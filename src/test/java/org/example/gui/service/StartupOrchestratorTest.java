@@ -0,0 +1,152 @@
+package org.example.gui.service;
+
+import org.example.gui.metrics.StartupTimeline;
+import org.example.gui.metrics.StartupTimeline.Milestone;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Replays the shape of application startup to check which milestones are reached, in what order, and that
+ * slow work never holds up the caller.
+ */
+class StartupOrchestratorTest {
+
+    private final StartupTimeline timeline = new StartupTimeline();
+    private final StartupOrchestrator orchestrator = new StartupOrchestrator(timeline);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void close() {
+        release.countDown();
+        orchestrator.close();
+    }
+
+    @Test
+    void slowViewAndServicesDoNotDelayTheWindow() throws Exception {
+        Thread caller = Thread.currentThread();
+        long start = System.nanoTime();
+        CompletableFuture<Thread> view = orchestrator.supply(Milestone.VIEW_LOADED, () -> {
+            Thread.sleep(100);
+            return Thread.currentThread();
+        });
+        CompletableFuture<String> services = orchestrator.supply(Milestone.SERVICES_READY, () -> {
+            release.await();
+            return "services";
+        });
+        timeline.mark(Milestone.WINDOW_SHOWN);
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100), "the caller was held up");
+
+        assertNotSame(caller, view.get(5, TimeUnit.SECONDS));
+        assertFalse(services.isDone());
+        assertTrue(timeline.elapsed(Milestone.SERVICES_READY).isEmpty());
+        release.countDown();
+
+        assertEquals("services", services.get(5, TimeUnit.SECONDS));
+        Duration window = timeline.elapsed(Milestone.WINDOW_SHOWN).orElseThrow();
+        Duration viewLoaded = timeline.elapsed(Milestone.VIEW_LOADED).orElseThrow();
+        Duration servicesReady = timeline.elapsed(Milestone.SERVICES_READY).orElseThrow();
+        assertTrue(window.compareTo(viewLoaded) < 0, timeline.summary());
+        assertTrue(viewLoaded.compareTo(servicesReady) <= 0, timeline.summary());
+    }
+
+    @Test
+    void failedTaskLeavesItsMilestoneUnmarkedAndSkipsDependentTasks() {
+        CompletableFuture<String> services = orchestrator.supply(Milestone.SERVICES_READY, () -> {
+            throw new IOException("expected by the test");
+        });
+        AtomicBoolean dependentRan = new AtomicBoolean();
+        CompletableFuture<Void> recognizer =
+                orchestrator.runAfter(services, Milestone.RECOGNIZER_READY, () -> dependentRan.set(true));
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> recognizer.get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof IOException, String.valueOf(failure.getCause()));
+        assertFalse(dependentRan.get());
+        assertTrue(timeline.elapsed(Milestone.SERVICES_READY).isEmpty());
+        assertTrue(timeline.elapsed(Milestone.RECOGNIZER_READY).isEmpty());
+    }
+
+    @Test
+    void dependentTaskStartsOnlyOnceItsPrerequisiteSucceeded() throws Exception {
+        CompletableFuture<String> services = orchestrator.supply(Milestone.SERVICES_READY, () -> {
+            release.await();
+            return "services";
+        });
+        AtomicBoolean prerequisiteDone = new AtomicBoolean();
+        CompletableFuture<Void> recognizer = orchestrator.runAfter(services, Milestone.RECOGNIZER_READY,
+                () -> prerequisiteDone.set(services.isDone()));
+        Thread.sleep(50);
+        assertFalse(recognizer.isDone());
+
+        release.countDown();
+        recognizer.get(5, TimeUnit.SECONDS);
+        assertTrue(prerequisiteDone.get());
+        assertTrue(timeline.elapsed(Milestone.RECOGNIZER_READY).isPresent());
+    }
+
+    @Test
+    void completionWaitsForEveryTaskIncludingDependentOnes() throws Exception {
+        CompletableFuture<String> services = orchestrator.supply(Milestone.SERVICES_READY, () -> {
+            release.await();
+            return "services";
+        });
+        orchestrator.runAfter(services, Milestone.RECOGNIZER_READY, () -> Thread.sleep(50));
+        orchestrator.run(Milestone.FRAME_PATH_WARM, () -> {
+            throw new IOException("expected by the test");
+        });
+        CompletableFuture<Void> completion = orchestrator.completion();
+        Thread.sleep(50);
+        assertFalse(completion.isDone());
+
+        release.countDown();
+        completion.get(5, TimeUnit.SECONDS);
+        assertTrue(timeline.elapsed(Milestone.RECOGNIZER_READY).isPresent());
+        assertTrue(timeline.elapsed(Milestone.FRAME_PATH_WARM).isEmpty());
+    }
+
+    @Test
+    void cameraCreatedInTheBackgroundIsOpenedAndDeliversAFrame() throws Exception {
+        CompletableFuture<CameraService> camera = orchestrator.supply(Milestone.SERVICES_READY, CameraService::new);
+        try {
+            orchestrator.openCamera(camera, () -> new SyntheticFrameSource(64, 48, 0), Duration.ofSeconds(5))
+                    .get(10, TimeUnit.SECONDS);
+
+            assertTrue(camera.join().latestFrameSequence() > 0);
+            List<Milestone> reached = List.of(Milestone.SERVICES_READY, Milestone.CAMERA_OPENED, Milestone.FIRST_FRAME);
+            for (int i = 1; i < reached.size(); i++) {
+                assertTrue(timeline.elapsed(reached.get(i - 1)).orElseThrow()
+                        .compareTo(timeline.elapsed(reached.get(i)).orElseThrow()) <= 0, timeline.summary());
+            }
+        } finally {
+            camera.join().stop();
+        }
+    }
+
+    @Test
+    void summaryListsMilestonesInStartupOrder() throws Exception {
+        orchestrator.run(Milestone.RECOGNIZER_READY, () -> { }).get(5, TimeUnit.SECONDS);
+        orchestrator.supply(Milestone.VIEW_LOADED, () -> "view").get(5, TimeUnit.SECONDS);
+        timeline.mark(Milestone.WINDOW_SHOWN);
+
+        String summary = timeline.summary();
+        int window = summary.indexOf("window shown");
+        int view = summary.indexOf("view loaded");
+        int recognizer = summary.indexOf("recognizer ready");
+        assertTrue(window >= 0 && window < view && view < recognizer, summary);
+        assertFalse(summary.contains("services ready"), summary);
+    }
+}
@@ -0,0 +1,134 @@
+package org.example.gui.util;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC1;
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class PreviewRendererTest {
+
+    private static final int WARM_UP_FRAMES = 500;
+    private static final int MEASURED_FRAMES = 1_000;
+
+    private static final Object THREADS;
+    private static final Method ALLOCATED_BYTES;
+
+    static {
+        try {
+            THREADS = Class.forName("java.lang.management.ManagementFactory")
+                    .getMethod("getThreadMXBean").invoke(null);
+            ALLOCATED_BYTES = Class.forName("com.sun.management.ThreadMXBean")
+                    .getMethod("getCurrentThreadAllocatedBytes");
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @BeforeAll
+    static void startToolkit() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        Thread starter = new Thread(() -> {
+            try {
+                Platform.startup(started::countDown);
+            } catch (IllegalStateException e) {
+                // Already started by another test.
+                started.countDown();
+            } catch (RuntimeException e) {
+                // No display; the latch times out and the tests are skipped.
+            }
+        }, "PreviewRendererTest-startup");
+        starter.setDaemon(true);
+        starter.start();
+        assumeTrue(started.await(10, TimeUnit.SECONDS), "JavaFX toolkit is not available");
+    }
+
+    @Test
+    void reusesTheImageForFramesOfTheSameSize() throws Exception {
+        try (Mat bgr = frame(480, 640, CV_8UC3, 40); Mat gray = frame(480, 640, CV_8UC1, 90);
+             Mat smaller = frame(240, 320, CV_8UC3, 40)) {
+            onFxThread(() -> {
+                PreviewRenderer renderer = new PreviewRenderer();
+                Image first = renderer.render(bgr);
+                assertSame(first, renderer.render(gray));
+                assertSame(first, renderer.image());
+
+                Image resized = renderer.render(smaller);
+                assertNotSame(first, resized);
+                assertEquals(320, resized.getWidth());
+                renderer.release();
+                return null;
+            });
+        }
+    }
+
+    @Test
+    void rendersWithoutHeapAllocationAfterWarmUp() throws Exception {
+        try (Mat frame = frame(720, 1280, CV_8UC3, 128)) {
+            long allocated = onFxThread(() -> {
+                PreviewRenderer renderer = new PreviewRenderer();
+                for (int i = 0; i < WARM_UP_FRAMES; i++) {
+                    renderer.render(frame);
+                }
+                long before = allocatedBytes();
+                for (int i = 0; i < MEASURED_FRAMES; i++) {
+                    renderer.render(frame);
+                }
+                long bytes = allocatedBytes() - before;
+                renderer.release();
+                return bytes;
+            });
+
+            // Less than one object per frame on average: a per-frame image, array or Mat would be far more.
+            assertTrue(allocated < MEASURED_FRAMES,
+                    allocated + " bytes allocated by " + MEASURED_FRAMES + " renders");
+        }
+    }
+
+    private static Mat frame(int rows, int cols, int type, int value) {
+        Mat frame = new Mat(rows, cols, type);
+        try (Scalar scalar = new Scalar(value, value, value, 0)) {
+            frame.put(scalar);
+        }
+        return frame;
+    }
+
+    private static <T> T onFxThread(Supplier<T> action) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                result.complete(action.get());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return result.get(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Bytes allocated on the heap by the current thread so far. Looked up reflectively because the
+     * application module does not read {@code java.management}.
+     */
+    private static long allocatedBytes() {
+        try {
+            return (long) ALLOCATED_BYTES.invoke(THREADS);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}